@@ -15,6 +15,8 @@ import com.adobe.marketing.mobile.Event;
 import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MobileCore;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
@@ -68,6 +70,28 @@ final class EventUtils {
 			   && IdentityConstants.EventSource.REQUEST_RESET.equalsIgnoreCase(event.getSource());
 	}
 
+	/**
+	 * Checks if the provided {@code event} is of type {@link IdentityConstants.EventType#HUB} and source {@link IdentityConstants.EventSource#BOOTED}
+	 *
+	 * @param event the event to verify
+	 * @return true if both type and source match
+	 */
+	static boolean isHubBootedEvent(final Event event) {
+		return event != null && IdentityConstants.EventType.HUB.equalsIgnoreCase(event.getType())
+			   && IdentityConstants.EventSource.BOOTED.equalsIgnoreCase(event.getSource());
+	}
+
+	/**
+	 * Checks if the provided {@code event} is of type {@link IdentityConstants.EventType#HUB} and source {@link IdentityConstants.EventSource#SHARED_STATE}
+	 *
+	 * @param event the event to verify
+	 * @return true if both type and source match
+	 */
+	static boolean isHubSharedStateEvent(final Event event) {
+		return event != null && IdentityConstants.EventType.HUB.equalsIgnoreCase(event.getType())
+			   && IdentityConstants.EventSource.SHARED_STATE.equalsIgnoreCase(event.getSource());
+	}
+
 	/**
 	 * Checks if the provided {@code event} is a shared state update event for {@code stateOwnerName}
 	 *
@@ -91,6 +115,156 @@ final class EventUtils {
 		return stateOwnerName.equals(stateOwner);
 	}
 
+	/**
+	 * Extracts the list of namespaces from the {@link IdentityConstants.EventDataKeys#NAMESPACES} key of the event data.
+	 * Null or empty namespace values are skipped.
+	 *
+	 * @param event the event containing the namespaces
+	 * @return the list of namespaces or null if not present or unable to parse the payload
+	 */
+	static List<String> getNamespaces(final Event event) {
+		return getStringList(event, IdentityConstants.EventDataKeys.NAMESPACES);
+	}
+
+	/**
+	 * Extracts the list of ids to remove from all namespaces from the {@link IdentityConstants.EventDataKeys#IDS} key
+	 * of the event data. Null or empty id values are skipped.
+	 *
+	 * @param event the event containing the ids
+	 * @return the list of ids or null if not present or unable to parse the payload
+	 */
+	static List<String> getIds(final Event event) {
+		return getStringList(event, IdentityConstants.EventDataKeys.IDS);
+	}
+
+	private static List<String> getStringList(final Event event, final String key) {
+		final Map<String, Object> eventData = event == null ? null : event.getEventData();
+
+		if (eventData == null) {
+			return null;
+		}
+
+		try {
+			final List<Object> valueList = (List<Object>) eventData.get(key);
+
+			if (valueList == null) {
+				return null;
+			}
+
+			final List<String> values = new ArrayList<>(valueList.size());
+
+			for (final Object value : valueList) {
+				if (!Utils.isNullOrEmpty((String) value)) {
+					values.add((String) value);
+				}
+			}
+
+			return values;
+		} catch (ClassCastException e) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "EventUtils - Failed to extract " + key + " from event data, expected List of String: "
+						   + e.getLocalizedMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Extracts the identifiers to remove from the {@link IdentityConstants.EventDataKeys#REMOVED_IDENTITIES} key of the event data.
+	 *
+	 * @param event the update identity event; should not be null
+	 * @return the {@link IdentityMapView} of identifiers to remove or null if not present or unable to parse the payload
+	 */
+	static IdentityMapView getRemovedIdentities(final Event event) {
+		final Map<String, Object> eventData = event.getEventData();
+
+		if (eventData == null) {
+			return null;
+		}
+
+		try {
+			return IdentityMapView.fromXDMMap((Map<String, Object>) eventData.get(IdentityConstants.EventDataKeys.REMOVED_IDENTITIES));
+		} catch (ClassCastException e) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "EventUtils - Failed to extract removed identities from event data, expected Map: "
+						   + e.getLocalizedMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Checks if the {@link IdentityConstants.EventDataKeys#REMOVED_IDENTITIES} key of the event data contains an identity
+	 * map, whether or not it is within the {@link IdentityPayloadLimits}.
+	 *
+	 * @param event the update identity event; should not be null
+	 * @return true if the event contains identifiers to remove
+	 */
+	static boolean hasRemovedIdentities(final Event event) {
+		final Map<String, Object> eventData = event.getEventData();
+
+		if (eventData == null || !(eventData.get(IdentityConstants.EventDataKeys.REMOVED_IDENTITIES) instanceof Map)) {
+			return false;
+		}
+
+		return IdentityMapView.containsIdentityMap((Map<String, Object>) eventData.get(
+					IdentityConstants.EventDataKeys.REMOVED_IDENTITIES));
+	}
+
+	/**
+	 * Checks if the {@link IdentityConstants.EventDataKeys#RESPONSE_REQUESTED} flag is set in the event data, in which case
+	 * the extension dispatches a response event once the request was processed.
+	 *
+	 * @param event the update or remove identity event; should not be null
+	 * @return true if the event requests a response
+	 */
+	static boolean isResponseRequested(final Event event) {
+		final Map<String, Object> eventData = event.getEventData();
+		return eventData != null && Boolean.TRUE.equals(eventData.get(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED));
+	}
+
+	/**
+	 * Extracts the state version from the {@link IdentityConstants.EventDataKeys#STATE_VERSION} key of the event data.
+	 *
+	 * @param event the Edge Identity response event
+	 * @return the state version or null if the event is null or the state version is not present or not a number
+	 */
+	static Long getStateVersion(final Event event) {
+		return getLong(event, IdentityConstants.EventDataKeys.STATE_VERSION);
+	}
+
+	/**
+	 * Extracts the state version a conditional update expects from the
+	 * {@link IdentityConstants.EventDataKeys#EXPECTED_STATE_VERSION} key of the event data.
+	 *
+	 * @param event the update identity event
+	 * @return the expected state version or null if the update is not conditional
+	 */
+	static Long getExpectedStateVersion(final Event event) {
+		return getLong(event, IdentityConstants.EventDataKeys.EXPECTED_STATE_VERSION);
+	}
+
+	/**
+	 * Checks if the {@link IdentityConstants.EventDataKeys#APPLIED} flag is set in the event data of a conditional update response.
+	 *
+	 * @param event the Edge Identity response event; should not be null
+	 * @return true if the conditional update was applied
+	 */
+	static boolean isUpdateApplied(final Event event) {
+		final Map<String, Object> eventData = event.getEventData();
+		return eventData != null && Boolean.TRUE.equals(eventData.get(IdentityConstants.EventDataKeys.APPLIED));
+	}
+
+	/**
+	 * Checks if the {@link IdentityConstants.EventDataKeys#REJECTED} flag is set in the event data of a completion
+	 * response, in which case the request was not applied as its identifiers exceed the {@link IdentityPayloadLimits}.
+	 *
+	 * @param event the Edge Identity response event; should not be null
+	 * @return true if the request was rejected
+	 */
+	static boolean isRejected(final Event event) {
+		final Map<String, Object> eventData = event.getEventData();
+		return eventData != null && Boolean.TRUE.equals(eventData.get(IdentityConstants.EventDataKeys.REJECTED));
+	}
+
 	/**
 	 * Extracts the ECID from the Identity Direct shared state and returns it as an {@link ECID} object
 	 *
@@ -112,4 +286,15 @@ final class EventUtils {
 
 		return legacyEcid;
 	}
+
+	private static Long getLong(final Event event, final String key) {
+		final Map<String, Object> eventData = event == null ? null : event.getEventData();
+
+		if (eventData == null) {
+			return null;
+		}
+
+		final Object value = eventData.get(key);
+		return value instanceof Number ? ((Number) value).longValue() : null;
+	}
 }
@@ -20,15 +20,64 @@ import com.adobe.marketing.mobile.ExtensionErrorCallback;
 import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MobileCore;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
 
 /**
  * Defines the public APIs for the AEP Edge Identity extension.
+ * <p>
+ * Calls which send or request identities dispatch their event on the calling thread, so they are ordered with other
+ * events dispatched by the same thread, for example an {@code Edge.sendEvent} call made right after
+ * {@link #updateIdentities(IdentityMap)}. Applications which call these APIs from a latency sensitive thread can opt in
+ * to processing them on a background thread with {@link #enableBackgroundDispatch()}; calls are then processed in the
+ * order they were made, but events dispatched directly by the calling thread, including
+ * {@code MobileCore.resetIdentities()}, may be processed before identities updated or removed just before them. Use the
+ * completion callbacks of {@link #updateIdentities(IdentityMap, AdobeCallback)} and
+ * {@link #removeIdentity(IdentityItem, String, AdobeCallback)} to wait until a change was applied.
  */
 public class Identity {
 
+	private static final long API_EXECUTOR_KEEP_ALIVE_MS = 1000;
+
+	// requests which did not receive a response within this time are no longer shared with new callers
+	private static final long REQUEST_COALESCING_TIMEOUT_MS = 5000;
+	private static final IdentityRequestCoalescer requestCoalescer = new IdentityRequestCoalescer(
+		REQUEST_COALESCING_TIMEOUT_MS);
+
+	private static final IdentityUpdateBatcher updateBatcher = new IdentityUpdateBatcher(
+	new IdentityUpdateBatcher.FlushHandler() {
+		@Override
+		public void flush(final IdentityMap updatedIdentities, final IdentityMap removedIdentities) {
+			dispatchUpdateIdentities(updatedIdentities, removedIdentities, null);
+		}
+	}, new Executor() {
+		// timed flushes are dispatched by the API executor, in order with the API calls
+		@Override
+		public void execute(final Runnable runnable) {
+			apiExecutor.execute(runnable);
+		}
+	});
+
+	// processes API calls on the calling thread unless background dispatch is enabled
+	private static final Executor CALLER_THREAD_EXECUTOR = new Executor() {
+		@Override
+		public void execute(final Runnable runnable) {
+			runnable.run();
+		}
+	};
+
+	private static volatile Executor apiExecutor = CALLER_THREAD_EXECUTOR;
+
 	private Identity() {}
 
 	/**
@@ -53,6 +102,69 @@ public class Identity {
 		});
 	}
 
+	/**
+	 * Sets the {@link Executor} on which the Identity extension processes its events, for example a pool shared with
+	 * other parts of the application. Events are still processed one at a time in the order they were received, at most
+	 * one task of the Identity extension is submitted to {@code executor} at any time.
+	 * Must be called before {@link #registerExtension()}. If not set, the extension uses a dedicated thread which is
+	 * stopped while idle.
+	 *
+	 * @param executor the {@code Executor} to process events on, or null to use a dedicated thread
+	 */
+	public static void setExtensionExecutor(final Executor executor) {
+		IdentityExtension.setSharedExecutor(executor);
+	}
+
+	/**
+	 * Sets the name and priority of the dedicated thread on which the Identity extension processes its events.
+	 * Must be called before {@link #registerExtension()}. Has no effect if an executor was set with
+	 * {@link #setExtensionExecutor(Executor)}.
+	 *
+	 * @param threadName the thread name; if null the default name is used
+	 * @param threadPriority the thread priority, between {@link Thread#MIN_PRIORITY} and {@link Thread#MAX_PRIORITY}
+	 */
+	public static void setExtensionThreadOptions(final String threadName, final int threadPriority) {
+		if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to setExtensionThreadOptions, threadPriority is out of range");
+			return;
+		}
+
+		IdentityExtension.setThreadOptions(threadName, threadPriority);
+	}
+
+	/**
+	 * Sets the size limits for identity payloads received by the Identity extension. An update or removal exceeding any
+	 * limit is rejected as a whole and logged with a warning, without processing its identifiers.
+	 *
+	 * @param maxNamespaces the maximum number of namespaces in a payload; must be positive
+	 * @param maxItemsPerNamespace the maximum number of identifiers in a namespace; must be positive
+	 * @param maxIdLength the maximum length of an identifier id; must be positive
+	 * @param maxTotalBytes the maximum size of all namespaces and ids in a payload, estimated from their number of
+	 *                      characters; must be positive
+	 */
+	public static void setPayloadLimits(final int maxNamespaces, final int maxItemsPerNamespace, final int maxIdLength,
+										final int maxTotalBytes) {
+		if (maxNamespaces <= 0 || maxItemsPerNamespace <= 0 || maxIdLength <= 0 || maxTotalBytes <= 0) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to setPayloadLimits, all limits must be positive");
+			return;
+		}
+
+		IdentityPayloadLimits.setLimits(maxNamespaces, maxItemsPerNamespace, maxIdLength, maxTotalBytes);
+	}
+
+	/**
+	 * Returns the number of update and removal payloads rejected for exceeding the payload limits since the
+	 * application started.
+	 *
+	 * @return the number of payloads rejected
+	 * @see #setPayloadLimits(int, int, int, int)
+	 */
+	public static long getPayloadLimitRejectionCount() {
+		return IdentityPayloadLimits.getRejectionCount();
+	}
+
 	/**
 	 * Returns the Experience Cloud ID. An empty string is returned if the Experience Cloud ID was previously cleared.
 	 *
@@ -61,43 +173,30 @@ public class Identity {
 	 *                 eventuality of any error that occurred while getting the Experience Cloud ID
 	 */
 	public static void getExperienceCloudId(final AdobeCallback<String> callback) {
+		getExperienceCloudId(null, callback);
+	}
+
+	/**
+	 * Returns the Experience Cloud ID on the given {@link Executor}. An empty string is returned if the Experience Cloud ID
+	 * was previously cleared. The response is also read on {@code executor}, so the SDK thread delivering the response
+	 * is not blocked by the callback.
+	 *
+	 * @param executor the {@code Executor} on which {@code callback} is invoked; if null, {@code callback} is invoked
+	 *                 directly on the SDK thread delivering the response, which should only be used for quick callbacks
+	 * @param callback {@link AdobeCallback} of {@code String} invoked with the Experience Cloud ID
+	 *                 If an {@link AdobeCallbackWithError} is provided, an {@link AdobeError} can be returned in the
+	 *                 eventuality of any error that occurred while getting the Experience Cloud ID
+	 */
+	public static void getExperienceCloudId(final Executor executor, final AdobeCallback<String> callback) {
 		if (callback == null) {
 			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
 						   "Identity - Unexpected null callback, provide a callback to retrieve current ECID.");
 			return;
 		}
 
-		final Event event = new Event.Builder(IdentityConstants.EventNames.IDENTITY_REQUEST_IDENTITY_ECID,
-											  IdentityConstants.EventType.EDGE_IDENTITY,
-											  IdentityConstants.EventSource.REQUEST_IDENTITY).build();
-
-		final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
+		final AdobeCallback<IdentityMap> identityMapCallback = new AdobeCallbackWithError<IdentityMap>() {
 			@Override
-			public void error(final ExtensionError extensionError) {
-				returnError(callback, extensionError);
-				MobileCore.log(LoggingMode.DEBUG, LOG_TAG, String.format("Identity - Failed to dispatch %s event: Error : %s.",
-							   IdentityConstants.EventNames.IDENTITY_REQUEST_IDENTITY_ECID,
-							   extensionError.getErrorName()));
-			}
-		};
-
-		MobileCore.dispatchEventWithResponseCallback(event, new AdobeCallback<Event>() {
-			@Override
-			public void call(Event responseEvent) {
-				if (responseEvent == null || responseEvent.getEventData() == null) {
-					returnError(callback, AdobeError.UNEXPECTED_ERROR);
-					return;
-				}
-
-				final IdentityMap identityMap = IdentityMap.fromXDMMap(responseEvent.getEventData());
-
-				if (identityMap == null) {
-					MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
-								   "Identity - Failed to read IdentityMap from response event, invoking error callback with AdobeError.UNEXPECTED_ERROR");
-					returnError(callback, AdobeError.UNEXPECTED_ERROR);
-					return;
-				}
-
+			public void call(final IdentityMap identityMap) {
 				final List<IdentityItem> ecidItems = identityMap.getIdentityItemsForNamespace(IdentityConstants.Namespaces.ECID);
 
 				if (ecidItems == null || ecidItems.isEmpty() || ecidItems.get(0).getId() == null) {
@@ -105,9 +204,21 @@ public class Identity {
 				} else {
 					callback.call(ecidItems.get(0).getId());
 				}
+			}
 
+			@Override
+			public void fail(final AdobeError error) {
+				returnError(callback, error);
 			}
-		}, errorCallback);
+		};
+
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				dispatchIdentityRequest(IdentityConstants.EventNames.IDENTITY_REQUEST_IDENTITY_ECID,
+										Collections.singletonList(IdentityConstants.Namespaces.ECID), executor, identityMapCallback);
+			}
+		});
 	}
 
 	/**
@@ -115,8 +226,11 @@ public class Identity {
 	 * The Identity extension will merge the received identifiers with the previously saved one in an additive manner,
 	 * no identifiers will be removed using this API.
 	 * Identifiers which have an empty {@code id} or empty {@code namespace} are not allowed and are ignored.
+	 * If all the given identifiers are already stored unchanged, no update is dispatched.
+	 * If update batching is enabled, the identifiers are sent with the next batch.
 	 *
 	 * @param identityMap The identifiers to add or update.
+	 * @see #enableUpdateBatching(long, int)
 	 */
 	public static void updateIdentities(final IdentityMap identityMap) {
 		if (identityMap == null || identityMap.isEmpty()) {
@@ -124,29 +238,111 @@ public class Identity {
 			return;
 		}
 
-		final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
+		final IdentityMap snapshot = identityMap.snapshot();
+		apiExecutor.execute(new Runnable() {
 			@Override
-			public void error(final ExtensionError extensionError) {
-				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
-							   String.format("Identity - Update Identities API. Failed to dispatch %s event: Error : %s.",
-											 IdentityConstants.EventNames.UPDATE_IDENTITIES,
-											 extensionError.getErrorName()));
+			public void run() {
+				if (updateBatcher.update(snapshot)) {
+					return;
+				}
+
+				if (IdentityUpdateCache.getInstance().isUnchanged(snapshot)) {
+					MobileCore.log(LoggingMode.VERBOSE, LOG_TAG,
+								   "Identity - Skipping updateIdentities, the given identifiers are already stored unchanged.");
+					return;
+				}
+
+				dispatchUpdateIdentities(snapshot, null, null);
 			}
-		};
+		});
+	}
+
+	/**
+	 * Updates the currently known {@link IdentityMap} within the SDK and invokes {@code callback} once the update was
+	 * applied by the Identity extension and its XDM shared state was updated.
+	 * The identifiers are merged in the same way as {@link #updateIdentities(IdentityMap)}, however the update is always
+	 * dispatched immediately, even if the identifiers are already stored unchanged or update batching is enabled.
+	 * Any identifiers pending in the current batch are sent first.
+	 *
+	 * @param identityMap The identifiers to add or update.
+	 * @param callback {@link AdobeCallback} invoked with the state version of the identities after the update was applied.
+	 *                 If an {@link AdobeCallbackWithError} is provided, an {@link AdobeError} is returned if the update
+	 *                 could not be dispatched, the identifiers are null or empty, or they exceed the payload limits.
+	 *                 If null, this behaves as {@link #updateIdentities(IdentityMap)}.
+	 */
+	public static void updateIdentities(final IdentityMap identityMap, final AdobeCallback<Long> callback) {
+		if (callback == null) {
+			updateIdentities(identityMap);
+			return;
+		}
 
+		if (identityMap == null || identityMap.isEmpty()) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG, "Identity - Unable to updateIdentities, IdentityMap is null or empty");
+			returnError(callback, AdobeError.UNEXPECTED_ERROR);
+			return;
+		}
 
-		final Event updateIdentitiesEvent = new Event.Builder(IdentityConstants.EventNames.UPDATE_IDENTITIES,
-				IdentityConstants.EventType.EDGE_IDENTITY,
-				IdentityConstants.EventSource.UPDATE_IDENTITY).setEventData(identityMap.asXDMMap(false)).build();
-		MobileCore.dispatchEvent(updateIdentitiesEvent, errorCallback);
+		final IdentityMap snapshot = identityMap.snapshot();
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// send pending identifiers first to keep call order
+				updateBatcher.flush();
+				dispatchUpdateIdentities(snapshot, null, callback);
+			}
+		});
+	}
+
+	/**
+	 * Updates the currently known {@link IdentityMap} within the SDK only if the stored identities are at
+	 * {@code expectedStateVersion}, and invokes {@code callback} with an {@link IdentityUpdateResult}.
+	 * The identifiers are merged in the same way as {@link #updateIdentities(IdentityMap)}.
+	 * If the state version changed, for example because another caller updated the identities, the update is not applied
+	 * and the result contains the current identities and state version, so the update can be retried without first
+	 * retrieving the identities. The state version for the first attempt is read with
+	 * {@link #getIdentitiesWithStateVersion(AdobeCallback)}.
+	 * The update is always dispatched immediately, any identifiers pending in the current batch are sent first.
+	 *
+	 * @param identityMap The identifiers to add or update.
+	 * @param expectedStateVersion the state version the identities are expected to be at
+	 * @param callback {@link AdobeCallback} invoked with the {@code IdentityUpdateResult}.
+	 *                 If an {@link AdobeCallbackWithError} is provided, an {@link AdobeError} is returned if the update
+	 *                 could not be dispatched, the identifiers are null or empty, or they exceed the payload limits.
+	 */
+	public static void updateIdentitiesIfVersionMatches(final IdentityMap identityMap, final long expectedStateVersion,
+			final AdobeCallback<IdentityUpdateResult> callback) {
+		if (callback == null) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unexpected null callback, provide a callback to retrieve the update result.");
+			return;
+		}
+
+		if (identityMap == null || identityMap.isEmpty()) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to updateIdentitiesIfVersionMatches, IdentityMap is null or empty");
+			returnError(callback, AdobeError.UNEXPECTED_ERROR);
+			return;
+		}
+
+		final IdentityMap snapshot = identityMap.snapshot();
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// send pending identifiers first to keep call order
+				updateBatcher.flush();
+				dispatchConditionalUpdateIdentities(snapshot, expectedStateVersion, callback);
+			}
+		});
 	}
 
 	/**
 	 * Removes the identity from the stored client-side {@link IdentityMap}. The Identity extension will stop sending this identifier.
 	 * This does not clear the identifier from the User Profile Graph.
+	 * If update batching is enabled, the removal is sent with the next batch.
 	 *
 	 * @param item the {@link IdentityItem} to remove.
 	 * @param namespace The namespace of the identity to remove.
+	 * @see #enableUpdateBatching(long, int)
 	 */
 	public static void removeIdentity(final IdentityItem item, final String namespace) {
 		if (Utils.isNullOrEmpty(namespace)) {
@@ -159,24 +355,367 @@ public class Identity {
 			return;
 		}
 
-		IdentityMap identityMap = new IdentityMap();
-		identityMap.addItem(item, namespace);
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (updateBatcher.remove(item, namespace)) {
+					return;
+				}
 
-		final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
+				final IdentityMap identityMap = new IdentityMap();
+				identityMap.addItem(item, namespace);
+				dispatchRemoveIdentities(identityMap, null, null, null);
+			}
+		});
+	}
+
+	/**
+	 * Removes the identity from the stored client-side {@link IdentityMap} and invokes {@code callback} once the removal
+	 * was applied by the Identity extension and its XDM shared state was updated.
+	 * The removal is always dispatched immediately, even if update batching is enabled. Any identifiers pending in the
+	 * current batch are sent first.
+	 *
+	 * @param item the {@link IdentityItem} to remove.
+	 * @param namespace The namespace of the identity to remove.
+	 * @param callback {@link AdobeCallback} invoked with the state version of the identities after the removal was applied.
+	 *                 If an {@link AdobeCallbackWithError} is provided, an {@link AdobeError} is returned if the removal
+	 *                 could not be dispatched, the item or namespace is invalid, or the item exceeds the payload limits.
+	 *                 If null, this behaves as {@link #removeIdentity(IdentityItem, String)}.
+	 */
+	public static void removeIdentity(final IdentityItem item, final String namespace, final AdobeCallback<Long> callback) {
+		if (callback == null) {
+			removeIdentity(item, namespace);
+			return;
+		}
+
+		if (Utils.isNullOrEmpty(namespace) || item == null) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to removeIdentity, namespace is null or empty or IdentityItem is null");
+			returnError(callback, AdobeError.UNEXPECTED_ERROR);
+			return;
+		}
+
+		apiExecutor.execute(new Runnable() {
 			@Override
-			public void error(final ExtensionError extensionError) {
-				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
-							   String.format("Identity - removeIdentity API. Failed to dispatch %s event: Error : %s.",
-											 IdentityConstants.EventNames.REMOVE_IDENTITIES,
-											 extensionError.getErrorName()));
+			public void run() {
+				// send pending identifiers first to keep call order
+				updateBatcher.flush();
+				final IdentityMap identityMap = new IdentityMap();
+				identityMap.addItem(item, namespace);
+				dispatchRemoveIdentities(identityMap, null, null, callback);
 			}
-		};
+		});
+	}
+
+	/**
+	 * Removes the identities in the given {@link IdentityMap} from the stored client-side {@code IdentityMap} using a single
+	 * request. The Identity extension will stop sending these identifiers.
+	 * This does not clear the identifiers from the User Profile Graph.
+	 * If update batching is enabled, the removals are sent with the next batch.
+	 *
+	 * @param identityMap the identifiers to remove.
+	 * @see #removeIdentity(IdentityItem, String)
+	 */
+	public static void removeIdentities(final IdentityMap identityMap) {
+		if (identityMap == null || identityMap.isEmpty()) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG, "Identity - Unable to removeIdentities, IdentityMap is null or empty");
+			return;
+		}
 
+		final IdentityMap snapshot = identityMap.snapshot();
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (updateBatcher.remove(snapshot)) {
+					return;
+				}
 
-		final Event removeIdentitiesEvent = new Event.Builder(IdentityConstants.EventNames.REMOVE_IDENTITIES,
-				IdentityConstants.EventType.EDGE_IDENTITY,
-				IdentityConstants.EventSource.REMOVE_IDENTITY).setEventData(identityMap.asXDMMap(false)).build();
-		MobileCore.dispatchEvent(removeIdentitiesEvent, errorCallback);
+				dispatchRemoveIdentities(snapshot, null, null, null);
+			}
+		});
+	}
+
+	/**
+	 * Removes all identities in the given namespace from the stored client-side {@link IdentityMap}.
+	 * The namespace is matched ignoring case. The Identity extension will stop sending these identifiers.
+	 * This does not clear the identifiers from the User Profile Graph.
+	 * Identities in the ECID, IDFA and GAID namespaces cannot be removed.
+	 * If update batching is enabled, pending identifiers are sent before the namespace is cleared.
+	 *
+	 * @param namespace the namespace of the identities to remove.
+	 */
+	public static void removeIdentitiesForNamespace(final String namespace) {
+		if (Utils.isNullOrEmpty(namespace)) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to removeIdentitiesForNamespace, namespace is null or empty");
+			return;
+		}
+
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// a namespace-wide removal cannot be merged into a batch, send pending identifiers first to keep call order
+				updateBatcher.flush();
+				dispatchRemoveIdentities(null, Collections.singletonList(namespace), null, null);
+			}
+		});
+	}
+
+	/**
+	 * Removes the identity with the given id from every namespace of the stored client-side {@link IdentityMap}, without
+	 * knowing its namespaces. The id is matched ignoring case. The Identity extension will stop sending this identifier.
+	 * This does not clear the identifier from the User Profile Graph.
+	 * Identities in the ECID, IDFA and GAID namespaces cannot be removed.
+	 * If update batching is enabled, pending identifiers are sent before the identity is removed.
+	 *
+	 * @param id the id of the identity to remove.
+	 * @see IdentityMap#getNamespacesForId(String)
+	 */
+	public static void removeIdentityFromAllNamespaces(final String id) {
+		if (Utils.isNullOrEmpty(id)) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to removeIdentityFromAllNamespaces, id is null or empty");
+			return;
+		}
+
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// the namespaces of the id are not known, so the removal cannot be merged into a batch
+				updateBatcher.flush();
+				dispatchRemoveIdentities(null, null, Collections.singletonList(id), null);
+			}
+		});
+	}
+
+	/**
+	 * Registers a listener notified with the changes made to the stored identities after registration.
+	 * Changes are delivered on a single background thread shared by all listeners registered without an
+	 * {@link Executor}, and contain only the identities which changed, each as an
+	 * {@link IdentityChange} which was added, removed or updated. If the listener is slow, changes made while it is
+	 * running are combined into its next call. Use {@link #getIdentities(AdobeCallback)} to retrieve the current identities.
+	 * Registering an already registered listener has no effect.
+	 *
+	 * @param listener the {@link IdentityChangeListener} to register
+	 */
+	public static void registerIdentityChangeListener(final IdentityChangeListener listener) {
+		if (listener == null) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG, "Identity - Unable to registerIdentityChangeListener, listener is null");
+			return;
+		}
+
+		IdentityChangeDispatcher.getInstance().register(listener);
+	}
+
+	/**
+	 * Registers a listener notified on {@code executor} with the changes made to the stored identities after registration.
+	 * The listener is called with one batch of changes at a time.
+	 * Registering an already registered listener has no effect.
+	 *
+	 * @param listener the {@link IdentityChangeListener} to register
+	 * @param executor the {@link Executor} calling the listener
+	 * @see #registerIdentityChangeListener(IdentityChangeListener)
+	 */
+	public static void registerIdentityChangeListener(final IdentityChangeListener listener, final Executor executor) {
+		if (listener == null || executor == null) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to registerIdentityChangeListener, listener and executor must not be null");
+			return;
+		}
+
+		IdentityChangeDispatcher.getInstance().register(listener, executor);
+	}
+
+	/**
+	 * Unregisters a listener previously registered with {@link #registerIdentityChangeListener(IdentityChangeListener)}.
+	 * Changes not yet delivered to the listener are discarded.
+	 *
+	 * @param listener the {@link IdentityChangeListener} to unregister
+	 */
+	public static void unregisterIdentityChangeListener(final IdentityChangeListener listener) {
+		if (listener == null) {
+			return;
+		}
+
+		IdentityChangeDispatcher.getInstance().unregister(listener);
+	}
+
+	/**
+	 * Enables processing of the identity API calls on a background thread, so the calling thread does not copy and
+	 * serialize the given identities or dispatch the resulting events. Calls are processed one at a time in the order
+	 * they were made, but are no longer ordered with events the calling thread dispatches directly, for example an
+	 * {@code Edge.sendEvent} call made right after {@link #updateIdentities(IdentityMap)}.
+	 * Has no effect if background dispatch is already enabled.
+	 */
+	public static synchronized void enableBackgroundDispatch() {
+		if (apiExecutor == CALLER_THREAD_EXECUTOR) {
+			apiExecutor = createApiExecutor();
+		}
+	}
+
+	/**
+	 * Disables processing of the identity API calls on a background thread, so later calls dispatch their events on
+	 * the calling thread. Calls made before this method are still processed by the background thread.
+	 *
+	 * @see #enableBackgroundDispatch()
+	 */
+	public static synchronized void disableBackgroundDispatch() {
+		final Executor executor = apiExecutor;
+		apiExecutor = CALLER_THREAD_EXECUTOR;
+
+		if (executor instanceof ThreadPoolExecutor) {
+			((ThreadPoolExecutor) executor).shutdown();
+		}
+	}
+
+	/**
+	 * Enables batching of {@link #updateIdentities(IdentityMap)}, {@link #removeIdentity(IdentityItem, String)} and
+	 * {@link #removeIdentities(IdentityMap)} calls.
+	 * While batching is enabled, added and removed identifiers are accumulated into a single net change, where the last
+	 * call for an identifier wins, and sent to the Identity extension as one update after {@code windowMillis} has elapsed
+	 * since the first pending identifier, or once {@code maxItems} identifiers are pending.
+	 * Calling this method while batching is enabled updates the batching configuration.
+	 * <p>
+	 * Pending identifiers are not visible to {@link #getIdentities(AdobeCallback)} or included in the XDM shared state,
+	 * use {@link #flushPendingUpdates()} to send them immediately, for example before calling {@code MobileCore.resetIdentities()}.
+	 *
+	 * @param windowMillis the maximum time in milliseconds identifiers are held before being sent; must be positive
+	 * @param maxItems the number of pending identifiers which triggers sending the batch; must be positive
+	 */
+	public static void enableUpdateBatching(final long windowMillis, final int maxItems) {
+		if (windowMillis <= 0 || maxItems <= 0) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to enableUpdateBatching, windowMillis and maxItems must be positive");
+			return;
+		}
+
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				updateBatcher.enable(windowMillis, maxItems);
+			}
+		});
+	}
+
+	/**
+	 * Disables batching of identity updates. Any pending identifiers are sent immediately.
+	 */
+	public static void disableUpdateBatching() {
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				updateBatcher.disable();
+			}
+		});
+	}
+
+	/**
+	 * Enables coalescing of the Identity extension XDM shared state.
+	 * While enabled, all changes to the identifiers made within {@code windowMillis} of the first change are published
+	 * together as one shared state once the window elapses, tied to the event of the last change. Events dispatched
+	 * before that event read the previous shared state, so they never read identifiers changed after them. Completion
+	 * callbacks of changes made during the window are invoked once the shared state is published.
+	 * Calling this method while coalescing is enabled updates the window.
+	 *
+	 * @param windowMillis the time in milliseconds changes are coalesced before the shared state is published; must be positive
+	 */
+	public static void enableSharedStateCoalescing(final long windowMillis) {
+		if (windowMillis <= 0) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to enableSharedStateCoalescing, windowMillis must be positive");
+			return;
+		}
+
+		IdentityExtension.setSharedStateWindow(windowMillis);
+	}
+
+	/**
+	 * Disables coalescing of the Identity extension XDM shared state. A shared state is published for every change to the
+	 * identifiers, after any pending shared state is published.
+	 *
+	 * @see #enableSharedStateCoalescing(long)
+	 */
+	public static void disableSharedStateCoalescing() {
+		IdentityExtension.setSharedStateWindow(0);
+	}
+
+	/**
+	 * Enables the compact encoding of identifiers, which leaves out the authenticated state of identifiers which are
+	 * ambiguous and the primary flag of identifiers which are not primary. While enabled the identifiers are persisted
+	 * in compact form, and if {@code includeResponses} is true, {@link #getIdentities(AdobeCallback)} responses are
+	 * compact as well. Readers of the identity map apply the defaults when the fields are missing. The XDM shared state
+	 * always contains all fields.
+	 * Calling this method while the compact encoding is enabled updates whether responses are compact.
+	 *
+	 * @param includeResponses true to also leave out the default fields from identity responses
+	 */
+	public static void enableCompactEncoding(final boolean includeResponses) {
+		IdentityCompactEncoding.setEnabled(true, includeResponses);
+	}
+
+	/**
+	 * Disables the compact encoding of identifiers, so identifiers are persisted and returned with all fields.
+	 *
+	 * @see #enableCompactEncoding(boolean)
+	 */
+	public static void disableCompactEncoding() {
+		IdentityCompactEncoding.setEnabled(false, false);
+	}
+
+	/**
+	 * Enables limits on the number of customer identifiers retained by the Identity extension. When an update exceeds a
+	 * limit, the least recently added or updated identifiers are removed and reported to registered
+	 * {@link IdentityChangeListener}s as {@link IdentityChange.Type#EVICTED}. Identifiers in the ECID, GAID and IDFA
+	 * namespaces are never evicted and do not count towards the limits.
+	 * Calling this method while retention limits are enabled updates the limits.
+	 *
+	 * @param maxIdentitiesPerNamespace the maximum number of identifiers per namespace, or 0 for no limit; must not be negative
+	 * @param maxIdentities the maximum number of identifiers in all namespaces, or 0 for no limit; must not be negative
+	 */
+	public static void enableIdentityRetentionLimits(final int maxIdentitiesPerNamespace, final int maxIdentities) {
+		if (maxIdentitiesPerNamespace < 0 || maxIdentities < 0 || (maxIdentitiesPerNamespace == 0 && maxIdentities == 0)) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unable to enableIdentityRetentionLimits, limits must not be negative and at least one must be positive");
+			return;
+		}
+
+		IdentityRetention.setLimits(maxIdentitiesPerNamespace, maxIdentities);
+	}
+
+	/**
+	 * Disables the limits on the number of customer identifiers retained by the Identity extension.
+	 *
+	 * @see #enableIdentityRetentionLimits(int, int)
+	 */
+	public static void disableIdentityRetentionLimits() {
+		IdentityRetention.setLimits(0, 0);
+	}
+
+	/**
+	 * Returns the number of customer identifiers evicted by the retention limits since the application started.
+	 * Each evicted identifier is also reported to registered {@link IdentityChangeListener}s as
+	 * {@link IdentityChange.Type#EVICTED}.
+	 *
+	 * @return the number of identifiers evicted
+	 * @see #enableIdentityRetentionLimits(int, int)
+	 */
+	public static long getIdentityRetentionEvictionCount() {
+		return IdentityRetention.getEvictionCount();
+	}
+
+	/**
+	 * Sends any identifiers pending in the current batch to the Identity extension immediately.
+	 * Has no effect if batching is not enabled or no identifiers are pending.
+	 *
+	 * @see #enableUpdateBatching(long, int)
+	 */
+	public static void flushPendingUpdates() {
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				updateBatcher.flush();
+			}
+		});
 	}
 
 	/**
@@ -187,55 +726,461 @@ public class Identity {
 	 *                 eventuality of any error that occurred while getting the stored identities.
 	 */
 	public static void getIdentities(final AdobeCallback<IdentityMap> callback) {
+		getIdentities(null, null, callback);
+	}
+
+	/**
+	 * Returns all identifiers on the given {@link Executor}, including customer identifiers which were previously added.
+	 * The response is also read on {@code executor}, so the SDK thread delivering the response is not blocked by the callback.
+	 *
+	 * @param executor the {@code Executor} on which {@code callback} is invoked; if null, {@code callback} is invoked
+	 *                 directly on the SDK thread delivering the response, which should only be used for quick callbacks
+	 * @param callback {@link AdobeCallback} invoked with the current {@link IdentityMap}
+	 *                 If an {@link AdobeCallbackWithError} is provided, an {@link AdobeError} can be returned in the
+	 *                 eventuality of any error that occurred while getting the stored identities.
+	 */
+	public static void getIdentities(final Executor executor, final AdobeCallback<IdentityMap> callback) {
+		getIdentities(null, executor, callback);
+	}
+
+	/**
+	 * Returns the identifiers in the given namespaces, including customer identifiers which were previously added.
+	 * Only the requested namespaces are retrieved, namespaces are matched exactly.
+	 *
+	 * @param namespaces the namespaces of the identifiers to retrieve; if null or empty all identifiers are returned
+	 * @param callback {@link AdobeCallback} invoked with an {@link IdentityMap} containing the identifiers in the requested namespaces
+	 *                 If an {@link AdobeCallbackWithError} is provided, an {@link AdobeError} can be returned in the
+	 *                 eventuality of any error that occurred while getting the stored identities.
+	 */
+	public static void getIdentities(final List<String> namespaces, final AdobeCallback<IdentityMap> callback) {
+		getIdentities(namespaces, null, callback);
+	}
+
+	/**
+	 * Returns the identifiers in the given namespaces on the given {@link Executor}, including customer identifiers which
+	 * were previously added. Only the requested namespaces are retrieved, namespaces are matched exactly.
+	 * The response is also read on {@code executor}, so the SDK thread delivering the response is not blocked by the callback.
+	 *
+	 * @param namespaces the namespaces of the identifiers to retrieve; if null or empty all identifiers are returned
+	 * @param executor the {@code Executor} on which {@code callback} is invoked; if null, {@code callback} is invoked
+	 *                 directly on the SDK thread delivering the response, which should only be used for quick callbacks
+	 * @param callback {@link AdobeCallback} invoked with an {@link IdentityMap} containing the identifiers in the requested namespaces
+	 *                 If an {@link AdobeCallbackWithError} is provided, an {@link AdobeError} can be returned in the
+	 *                 eventuality of any error that occurred while getting the stored identities.
+	 */
+	public static void getIdentities(final List<String> namespaces, final Executor executor,
+									 final AdobeCallback<IdentityMap> callback) {
 		if (callback == null) {
 			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
 						   "Identity - Unexpected null callback, provide a callback to retrieve current IdentityMap.");
 			return;
 		}
 
-		final Event event = new Event.Builder(IdentityConstants.EventNames.REQUEST_IDENTITIES,
-											  IdentityConstants.EventType.EDGE_IDENTITY,
-											  IdentityConstants.EventSource.REQUEST_IDENTITY).build();
+		final List<String> namespacesCopy = namespaces == null ? null : new ArrayList<>(namespaces);
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				List<String> requestedNamespaces = null;
+
+				if (namespacesCopy != null && !namespacesCopy.isEmpty()) {
+					requestedNamespaces = new ArrayList<>();
+
+					for (final String namespace : namespacesCopy) {
+						if (!Utils.isNullOrEmpty(namespace) && !requestedNamespaces.contains(namespace)) {
+							requestedNamespaces.add(namespace);
+						}
+					}
+
+					Collections.sort(requestedNamespaces);
+				}
+
+				dispatchIdentityRequest(IdentityConstants.EventNames.REQUEST_IDENTITIES, requestedNamespaces, executor, callback);
+			}
+		});
+	}
+
+	/**
+	 * Returns all identifiers together with the state version they are stored at, to be used as the expected state
+	 * version of {@link #updateIdentitiesIfVersionMatches(IdentityMap, long, AdobeCallback)}.
+	 * Unlike {@link #getIdentities(AdobeCallback)}, the request is never coalesced with other requests.
+	 *
+	 * @param callback {@link AdobeCallback} invoked with the {@link IdentityReadResult}.
+	 *                 If an {@link AdobeCallbackWithError} is provided, an {@link AdobeError} can be returned in the
+	 *                 eventuality of any error that occurred while getting the stored identities.
+	 */
+	public static void getIdentitiesWithStateVersion(final AdobeCallback<IdentityReadResult> callback) {
+		if (callback == null) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "Identity - Unexpected null callback, provide a callback to retrieve current IdentityMap and state version.");
+			return;
+		}
+
+		apiExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final Event event = new Event.Builder(IdentityConstants.EventNames.REQUEST_IDENTITIES,
+													  IdentityConstants.EventType.EDGE_IDENTITY,
+													  IdentityConstants.EventSource.REQUEST_IDENTITY).build();
+
+				final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
+					@Override
+					public void error(final ExtensionError extensionError) {
+						returnError(callback, extensionError);
+						MobileCore.log(LoggingMode.DEBUG, LOG_TAG, String.format("Identity - Failed to dispatch %s event: Error : %s.",
+									   IdentityConstants.EventNames.REQUEST_IDENTITIES,
+									   extensionError.getErrorName()));
+					}
+				};
+
+				MobileCore.dispatchEventWithResponseCallback(event, new AdobeCallback<Event>() {
+					@Override
+					public void call(final Event responseEvent) {
+						final IdentityMap identities = responseEvent == null ? null : IdentityMap.fromXDMMap(
+														   responseEvent.getEventData());
+
+						if (identities == null) {
+							MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+										   "Identity - Failed to read IdentityMap from response event, invoking error callback with AdobeError.UNEXPECTED_ERROR");
+							returnError(callback, AdobeError.UNEXPECTED_ERROR);
+							return;
+						}
+
+						// the state version is left out of the response while it is 0
+						final Long stateVersion = EventUtils.getStateVersion(responseEvent);
+						callback.call(new IdentityReadResult(stateVersion == null ? 0 : stateVersion, identities));
+					}
+				}, errorCallback);
+			}
+		});
+	}
+
+	/**
+	 * Dispatches an Edge Identity update identities event for {@code updatedIdentities}. When {@code removedIdentities}
+	 * contains identifiers they are removed by the same event.
+	 *
+	 * @param updatedIdentities the {@link IdentityMap} of identifiers to add or update; should not be null
+	 * @param removedIdentities the {@code IdentityMap} of identifiers to remove; may be null
+	 * @param callback {@link AdobeCallback} invoked with the state version once the update was applied; may be null
+	 */
+	private static void dispatchUpdateIdentities(final IdentityMap updatedIdentities,
+			final IdentityMap removedIdentities, final AdobeCallback<Long> callback) {
+		final boolean hasRemovedIdentities = removedIdentities != null && !removedIdentities.isEmpty();
+		final Map<String, Object> eventData = updatedIdentities.asXDMMap(false);
+		putExpirations(eventData, updatedIdentities);
+
+		if (hasRemovedIdentities) {
+			eventData.put(IdentityConstants.EventDataKeys.REMOVED_IDENTITIES, removedIdentities.asXDMMap(false));
+		}
+
+		if (callback != null) {
+			eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+		}
+
+		final Event updateIdentitiesEvent = new Event.Builder(IdentityConstants.EventNames.UPDATE_IDENTITIES,
+				IdentityConstants.EventType.EDGE_IDENTITY,
+				IdentityConstants.EventSource.UPDATE_IDENTITY).setEventData(eventData).build();
+
+		IdentityUpdateCache.getInstance().updateRequested(updateIdentitiesEvent.getUniqueIdentifier());
+		// identity requests after this update should include it
+		requestCoalescer.closeAll();
+
+		if (hasRemovedIdentities) {
+			IdentityUpdateCache.getInstance().invalidationRequested(updateIdentitiesEvent.getUniqueIdentifier(),
+					removedIdentities.getNamespaces());
+		}
 
 		final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
 			@Override
 			public void error(final ExtensionError extensionError) {
+				IdentityUpdateCache.getInstance().updateCompleted(updateIdentitiesEvent.getUniqueIdentifier());
+
+				if (hasRemovedIdentities) {
+					IdentityUpdateCache.getInstance().invalidationCompleted(updateIdentitiesEvent.getUniqueIdentifier(),
+							removedIdentities.getNamespaces());
+				}
+
 				returnError(callback, extensionError);
-				MobileCore.log(LoggingMode.DEBUG, LOG_TAG, String.format("Identity - Failed to dispatch %s event: Error : %s.",
-							   IdentityConstants.EventNames.REQUEST_IDENTITIES,
-							   extensionError.getErrorName()));
+
+				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+							   String.format("Identity - Update Identities API. Failed to dispatch %s event: Error : %s.",
+											 IdentityConstants.EventNames.UPDATE_IDENTITIES,
+											 extensionError.getErrorName()));
 			}
 		};
 
-		MobileCore.dispatchEventWithResponseCallback(event, new AdobeCallback<Event>() {
+		dispatchMutationEvent(updateIdentitiesEvent, errorCallback, callback);
+	}
+
+	/**
+	 * Adds the expiration times of the expiring identifiers in {@code identityMap} to {@code eventData}, as the XDM
+	 * identity map has no expiration time.
+	 *
+	 * @param eventData the event data of an update identities event
+	 * @param identityMap the {@link IdentityMap} of identifiers to add or update
+	 */
+	private static void putExpirations(final Map<String, Object> eventData, final IdentityMap identityMap) {
+		final Map<String, Object> expirations = identityMap.getExpirations();
+
+		if (expirations != null) {
+			eventData.put(IdentityConstants.EventDataKeys.EXPIRATIONS, expirations);
+		}
+	}
+
+	/**
+	 * Dispatches an Edge Identity remove identities event for the identifiers in {@code identityMap}, all the
+	 * identifiers in {@code namespaces} and the identifiers with {@code ids} in any namespace.
+	 *
+	 * @param identityMap the {@link IdentityMap} of identifiers to remove; may be null
+	 * @param namespaces the namespaces to clear; may be null
+	 * @param ids the ids to remove from all namespaces; may be null
+	 * @param callback {@link AdobeCallback} invoked with the state version once the removal was applied; may be null
+	 */
+	private static void dispatchRemoveIdentities(final IdentityMap identityMap, final List<String> namespaces,
+			final List<String> ids, final AdobeCallback<Long> callback) {
+		final Map<String, Object> eventData = identityMap == null ? new HashMap<String, Object>() : identityMap.asXDMMap(
+				false);
+		final List<String> removedNamespaces = new ArrayList<>();
+
+		if (identityMap != null) {
+			removedNamespaces.addAll(identityMap.getNamespaces());
+		}
+
+		if (namespaces != null) {
+			eventData.put(IdentityConstants.EventDataKeys.NAMESPACES, namespaces);
+			removedNamespaces.addAll(namespaces);
+		}
+
+		if (ids != null) {
+			eventData.put(IdentityConstants.EventDataKeys.IDS, ids);
+		}
+
+		if (callback != null) {
+			eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+		}
+
+		final Event removeIdentitiesEvent = new Event.Builder(IdentityConstants.EventNames.REMOVE_IDENTITIES,
+				IdentityConstants.EventType.EDGE_IDENTITY,
+				IdentityConstants.EventSource.REMOVE_IDENTITY).setEventData(eventData).build();
+
+		// the namespaces of ids are only known to the extension, so all namespaces are invalidated
+		final List<String> invalidatedNamespaces = ids == null ? removedNamespaces : null;
+		IdentityUpdateCache.getInstance().invalidationRequested(removeIdentitiesEvent.getUniqueIdentifier(),
+				invalidatedNamespaces);
+		// identity requests after this removal should include it
+		requestCoalescer.closeAll();
+
+		final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
+			@Override
+			public void error(final ExtensionError extensionError) {
+				IdentityUpdateCache.getInstance().invalidationCompleted(removeIdentitiesEvent.getUniqueIdentifier(),
+						invalidatedNamespaces);
+				returnError(callback, extensionError);
+				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+							   String.format("Identity - Remove Identities API. Failed to dispatch %s event: Error : %s.",
+											 IdentityConstants.EventNames.REMOVE_IDENTITIES,
+											 extensionError.getErrorName()));
+			}
+		};
+
+		dispatchMutationEvent(removeIdentitiesEvent, errorCallback, callback);
+	}
+
+	/**
+	 * Dispatches an Edge Identity update identities event which is only applied if the stored identities are at
+	 * {@code expectedStateVersion}, and invokes {@code callback} with the {@link IdentityUpdateResult} from its response.
+	 *
+	 * @param identityMap the {@link IdentityMap} of identifiers to add or update; should not be null
+	 * @param expectedStateVersion the state version the identities are expected to be at
+	 * @param callback {@link AdobeCallback} invoked with the {@code IdentityUpdateResult}; should not be null
+	 */
+	private static void dispatchConditionalUpdateIdentities(final IdentityMap identityMap,
+			final long expectedStateVersion, final AdobeCallback<IdentityUpdateResult> callback) {
+		final Map<String, Object> eventData = identityMap.asXDMMap(false);
+		putExpirations(eventData, identityMap);
+		eventData.put(IdentityConstants.EventDataKeys.EXPECTED_STATE_VERSION, expectedStateVersion);
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+
+		final Event updateIdentitiesEvent = new Event.Builder(IdentityConstants.EventNames.UPDATE_IDENTITIES,
+				IdentityConstants.EventType.EDGE_IDENTITY,
+				IdentityConstants.EventSource.UPDATE_IDENTITY).setEventData(eventData).build();
+		IdentityUpdateCache.getInstance().updateRequested(updateIdentitiesEvent.getUniqueIdentifier());
+		requestCoalescer.closeAll();
+
+		final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
 			@Override
-			public void call(Event responseEvent) {
-				if (responseEvent == null || responseEvent.getEventData() == null) {
+			public void error(final ExtensionError extensionError) {
+				IdentityUpdateCache.getInstance().updateCompleted(updateIdentitiesEvent.getUniqueIdentifier());
+				returnError(callback, extensionError);
+				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+							   String.format("Identity - Update Identities If Version Matches API. Failed to dispatch %s event: Error : %s.",
+											 IdentityConstants.EventNames.UPDATE_IDENTITIES,
+											 extensionError.getErrorName()));
+			}
+		};
+
+		MobileCore.dispatchEventWithResponseCallback(updateIdentitiesEvent, new AdobeCallback<Event>() {
+			@Override
+			public void call(final Event responseEvent) {
+				final Long stateVersion = EventUtils.getStateVersion(responseEvent);
+
+				if (stateVersion == null) {
+					MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+								   "Identity - Failed to read the state version from the response event, invoking error callback with AdobeError.UNEXPECTED_ERROR");
+					returnError(callback, AdobeError.UNEXPECTED_ERROR);
+					return;
+				}
+
+				if (EventUtils.isRejected(responseEvent)) {
+					MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+								   "Identity - The identifiers exceed the identity payload limits and were rejected, invoking error callback with AdobeError.UNEXPECTED_ERROR");
 					returnError(callback, AdobeError.UNEXPECTED_ERROR);
 					return;
 				}
 
-				final IdentityMap identityMap = IdentityMap.fromXDMMap(responseEvent.getEventData());
+				final IdentityMap identities = IdentityMap.fromXDMMap(responseEvent.getEventData());
+				callback.call(new IdentityUpdateResult(EventUtils.isUpdateApplied(responseEvent), stateVersion,
+													   identities == null ? new IdentityMap() : identities));
+			}
+		}, errorCallback);
+	}
+
+	/**
+	 * Dispatches an Edge Identity update or remove identities event. If {@code callback} is not null, the event requests
+	 * a response from the Identity extension and {@code callback} is invoked with the state version from the response.
+	 *
+	 * @param event the update or remove identities {@link Event}; its event data should not be null
+	 * @param errorCallback the {@link ExtensionErrorCallback} called if the event could not be dispatched
+	 * @param callback {@link AdobeCallback} invoked with the state version once the event was processed; may be null
+	 */
+	private static void dispatchMutationEvent(final Event event, final ExtensionErrorCallback<ExtensionError> errorCallback,
+			final AdobeCallback<Long> callback) {
+		if (callback == null) {
+			MobileCore.dispatchEvent(event, errorCallback);
+			return;
+		}
+
+		MobileCore.dispatchEventWithResponseCallback(event, new AdobeCallback<Event>() {
+			@Override
+			public void call(final Event responseEvent) {
+				final Long stateVersion = EventUtils.getStateVersion(responseEvent);
 
-				if (identityMap == null) {
+				if (stateVersion == null) {
 					MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
-								   "Identity - Failed to read IdentityMap from response event, invoking error callback with AdobeError.UNEXPECTED_ERROR");
+								   "Identity - Failed to read the state version from the response event, invoking error callback with AdobeError.UNEXPECTED_ERROR");
 					returnError(callback, AdobeError.UNEXPECTED_ERROR);
 					return;
 				}
 
-				callback.call(identityMap);
+				if (EventUtils.isRejected(responseEvent)) {
+					MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+								   "Identity - The identifiers exceed the identity payload limits and were rejected, invoking error callback with AdobeError.UNEXPECTED_ERROR");
+					returnError(callback, AdobeError.UNEXPECTED_ERROR);
+					return;
+				}
+
+				callback.call(stateVersion);
+			}
+		}, errorCallback);
+	}
+
+	/**
+	 * Dispatches an Edge Identity request event and invokes {@code callback} with the {@link IdentityMap} from its response.
+	 * Concurrent requests with the same {@code eventName} are coalesced into a single request event whose parsed response
+	 * is shared by all the waiting callbacks.
+	 *
+	 * @param eventName the name of the request event, also used to identify identical requests
+	 * @param namespaces the namespaces to request, or null to request all identifiers
+	 * @param executor the {@link Executor} on which {@code callback} is invoked, or null to invoke it directly
+	 * @param callback {@link AdobeCallback} invoked with the {@code IdentityMap} from the response event; should not be null
+	 */
+	private static void dispatchIdentityRequest(final String eventName, final List<String> namespaces,
+			final Executor executor, final AdobeCallback<IdentityMap> callback) {
+		final String requestKey = namespaces == null ? eventName : eventName + namespaces;
+		final IdentityRequestCoalescer.Flight flight = requestCoalescer.join(requestKey, callback, executor);
+
+		if (flight == null) {
+			MobileCore.log(LoggingMode.VERBOSE, LOG_TAG,
+						   String.format("Identity - A %s event is already in flight, waiting for its response.", eventName));
+			return;
+		}
+
+		final Event.Builder eventBuilder = new Event.Builder(eventName,
+				IdentityConstants.EventType.EDGE_IDENTITY,
+				IdentityConstants.EventSource.REQUEST_IDENTITY);
+
+		if (namespaces != null) {
+			final Map<String, Object> eventData = new HashMap<>();
+			eventData.put(IdentityConstants.EventDataKeys.NAMESPACES, namespaces);
+			eventBuilder.setEventData(eventData);
+		}
+
+		final Event event = eventBuilder.build();
+
+		final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
+			@Override
+			public void error(final ExtensionError extensionError) {
+				requestCoalescer.fail(flight, extensionError);
+				MobileCore.log(LoggingMode.DEBUG, LOG_TAG, String.format("Identity - Failed to dispatch %s event: Error : %s.",
+							   eventName,
+							   extensionError.getErrorName()));
+			}
+		};
+
+		MobileCore.dispatchEventWithResponseCallback(event, new AdobeCallback<Event>() {
+			@Override
+			public void call(final Event responseEvent) {
+				requestCoalescer.complete(flight, responseEvent);
 			}
 		}, errorCallback);
 	}
 
+	/**
+	 * Discards all pending coalesced identity requests, pending batched updates and the cache of confirmed identifiers,
+	 * and restores processing API calls on the calling thread. Used for testing.
+	 */
+	static void resetPendingRequests() {
+		requestCoalescer.clear();
+		updateBatcher.reset();
+		IdentityUpdateCache.getInstance().clear();
+		apiExecutor = CALLER_THREAD_EXECUTOR;
+	}
+
+	/**
+	 * Sets the {@link Executor} processing API calls. Used for testing.
+	 *
+	 * @param executor the {@code Executor} to use; should run tasks one at a time in submission order
+	 */
+	static void setApiExecutor(final Executor executor) {
+		apiExecutor = executor;
+	}
+
+	/**
+	 * Creates the {@link Executor} processing API calls while background dispatch is enabled, which runs them one at a
+	 * time in call order on a background thread. The thread is stopped while no calls are made.
+	 *
+	 * @return the API {@code Executor}
+	 */
+	private static Executor createApiExecutor() {
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, API_EXECUTOR_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "EdgeIdentityApi");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
 	/**
 	 * When an {@link AdobeCallbackWithError} is provided, the fail method will be called with provided {@link AdobeError}.
 	 *
 	 * @param callback should not be null, should be instance of {@code AdobeCallbackWithError}
 	 * @param error    the {@code AdobeError} returned back in the callback
 	 */
-	private static <T> void returnError(final AdobeCallback<T> callback, final AdobeError error) {
+	static <T> void returnError(final AdobeCallback<T> callback, final AdobeError error) {
 		if (callback == null) {
 			return;
 		}
@@ -0,0 +1,168 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import java.util.Locale;
+
+/**
+ * Describes a single change to the identities stored by the Identity extension.
+ *
+ * @see Identity#registerIdentityChangeListener(IdentityChangeListener)
+ */
+public final class IdentityChange {
+
+	/**
+	 * The type of an {@link IdentityChange}.
+	 */
+	public enum Type {
+		/**
+		 * The identity was added.
+		 */
+		ADDED,
+
+		/**
+		 * The identity was removed.
+		 */
+		REMOVED,
+
+		/**
+		 * The identity was already stored and its authenticated state, primary flag or id casing changed.
+		 */
+		UPDATED,
+
+		/**
+		 * The identity was removed by the extension to keep the stored identities within the retention limits.
+		 *
+		 * @see Identity#enableIdentityRetentionLimits(int, int)
+		 */
+		EVICTED
+	}
+
+	private final Type type;
+	private final String namespace;
+	private final IdentityItem item;
+	private final IdentityItem previousItem;
+
+	/**
+	 * Creates a new {@link IdentityChange}
+	 *
+	 * @param type the {@link Type} of change; should not be null
+	 * @param namespace the namespace of the changed identity; should not be null
+	 * @param item the added or updated {@link IdentityItem}, or the removed or evicted item; should not be null
+	 * @param previousItem the {@code IdentityItem} before an update; null for other change types
+	 */
+	IdentityChange(final Type type, final String namespace, final IdentityItem item, final IdentityItem previousItem) {
+		this.type = type;
+		this.namespace = namespace;
+		this.item = item;
+		this.previousItem = previousItem;
+	}
+
+	/**
+	 * @return the {@link Type} of this change
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the namespace of the changed identity
+	 */
+	public String getNamespace() {
+		return namespace;
+	}
+
+	/**
+	 * Returns the {@link IdentityItem} which was added or updated, or the item which was removed or evicted.
+	 *
+	 * @return the changed {@code IdentityItem}
+	 */
+	public IdentityItem getItem() {
+		return item;
+	}
+
+	/**
+	 * Returns the {@link IdentityItem} before it was updated.
+	 *
+	 * @return the previous {@code IdentityItem} if the type of this change is {@link Type#UPDATED}, null otherwise
+	 */
+	public IdentityItem getPreviousItem() {
+		return previousItem;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+			   + "\"type\": \"" + type + "\", "
+			   + "\"namespace\": \"" + namespace + "\", "
+			   + "\"item\": " + item
+			   + (previousItem == null ? "" : ", \"previousItem\": " + previousItem)
+			   + "}";
+	}
+
+	// ========================================================================================
+	// package protected methods
+	// ========================================================================================
+
+	/**
+	 * @return a key identifying the changed identity, built from its namespace and its id ignoring case
+	 */
+	String getKey() {
+		return namespace + '\u0000' + item.getId().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Combines {@code older} with {@code newer}, a later change of the same identity, into a single change with the same
+	 * net effect.
+	 *
+	 * @param older the earlier {@link IdentityChange}; should not be null
+	 * @param newer the later {@code IdentityChange} of the same identity; should not be null
+	 * @return the combined {@code IdentityChange}, or null if the changes cancel each other out
+	 */
+	static IdentityChange conflate(final IdentityChange older, final IdentityChange newer) {
+		switch (older.type) {
+			case ADDED:
+				if (newer.isRemoval()) {
+					return null;
+				}
+
+				return new IdentityChange(Type.ADDED, newer.namespace, newer.item, null);
+
+			case REMOVED:
+			case EVICTED:
+				if (newer.isRemoval()) {
+					return newer;
+				}
+
+				return updated(older.item, newer);
+
+			default:
+				if (newer.isRemoval()) {
+					return new IdentityChange(newer.type, newer.namespace, older.previousItem, null);
+				}
+
+				return updated(older.previousItem, newer);
+		}
+	}
+
+	private boolean isRemoval() {
+		return type == Type.REMOVED || type == Type.EVICTED;
+	}
+
+	private static IdentityChange updated(final IdentityItem previousItem, final IdentityChange newer) {
+		if (previousItem.hasSameValues(newer.item)) {
+			return null;
+		}
+
+		return new IdentityChange(Type.UPDATED, newer.namespace, newer.item, previousItem);
+	}
+}
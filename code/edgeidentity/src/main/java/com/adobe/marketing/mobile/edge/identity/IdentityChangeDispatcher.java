@@ -0,0 +1,239 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.LoggingMode;
+import com.adobe.marketing.mobile.MobileCore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
+
+/**
+ * Delivers the {@link IdentityChange}s made by the {@link IdentityExtension} to the registered {@link IdentityChangeListener}s.
+ * <p>
+ * Each listener has its own queue of pending changes, keyed by namespace and id. While a listener is being called, newer
+ * changes are conflated into its queue, so a slow listener receives one combined change per identity instead of every
+ * intermediate change, and publishing never waits for listeners.
+ * <p>
+ * Listeners are called on a single background thread, one batch of changes at a time in turn, unless they were
+ * registered with their own {@link Executor}.
+ */
+class IdentityChangeDispatcher {
+
+	private static final IdentityChangeDispatcher INSTANCE = new IdentityChangeDispatcher();
+	private static final long THREAD_KEEP_ALIVE_MS = 1000;
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final Object executorMutex = new Object();
+	private Executor executor;
+
+	IdentityChangeDispatcher() {}
+
+	/**
+	 * @return the {@link IdentityChangeDispatcher} shared by the public API and the extension
+	 */
+	static IdentityChangeDispatcher getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers {@code listener}, called on the dispatcher thread. Registering an already registered listener has no effect.
+	 *
+	 * @param listener the {@link IdentityChangeListener} to register; should not be null
+	 */
+	void register(final IdentityChangeListener listener) {
+		register(listener, null);
+	}
+
+	/**
+	 * Registers {@code listener}, called on {@code executor}. Registering an already registered listener has no effect.
+	 *
+	 * @param listener the {@link IdentityChangeListener} to register; should not be null
+	 * @param executor the {@link Executor} calling the listener, or null for the dispatcher thread
+	 */
+	synchronized void register(final IdentityChangeListener listener, final Executor executor) {
+		for (final Subscription subscription : subscriptions) {
+			if (subscription.listener == listener) {
+				return;
+			}
+		}
+
+		subscriptions.add(new Subscription(listener, executor));
+	}
+
+	/**
+	 * Unregisters {@code listener}. Changes pending for the listener are discarded.
+	 *
+	 * @param listener the {@link IdentityChangeListener} to unregister
+	 */
+	synchronized void unregister(final IdentityChangeListener listener) {
+		for (final Subscription subscription : subscriptions) {
+			if (subscription.listener == listener) {
+				subscriptions.remove(subscription);
+				subscription.cancel();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Unregisters all listeners.
+	 */
+	synchronized void clear() {
+		for (final Subscription subscription : subscriptions) {
+			subscription.cancel();
+		}
+
+		subscriptions.clear();
+	}
+
+	/**
+	 * Queues {@code changes} for delivery to every registered listener.
+	 *
+	 * @param changes the {@link IdentityChange}s to deliver, in the order they were made
+	 */
+	void publish(final List<IdentityChange> changes) {
+		if (changes == null || changes.isEmpty()) {
+			return;
+		}
+
+		for (final Subscription subscription : subscriptions) {
+			subscription.enqueue(changes);
+		}
+	}
+
+	private Executor getExecutor() {
+		synchronized (executorMutex) {
+			if (executor == null) {
+				final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1,
+						THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = new Thread(runnable, "EdgeIdentityChangeDispatcher");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				threadPoolExecutor.allowCoreThreadTimeOut(true);
+				executor = threadPoolExecutor;
+			}
+
+			return executor;
+		}
+	}
+
+	/**
+	 * A registered listener and its pending changes.
+	 */
+	private final class Subscription implements Runnable {
+		private final IdentityChangeListener listener;
+		// the executor supplied with the listener, null for the dispatcher thread
+		private final Executor listenerExecutor;
+		private final Map<String, IdentityChange> pendingChanges = new LinkedHashMap<>();
+		private boolean scheduled;
+		private boolean cancelled;
+
+		private Subscription(final IdentityChangeListener listener, final Executor listenerExecutor) {
+			this.listener = listener;
+			this.listenerExecutor = listenerExecutor;
+		}
+
+		private void enqueue(final List<IdentityChange> changes) {
+			synchronized (this) {
+				if (cancelled) {
+					return;
+				}
+
+				for (final IdentityChange change : changes) {
+					final String key = change.getKey();
+					final IdentityChange pending = pendingChanges.remove(key);
+					final IdentityChange conflated = pending == null ? change : IdentityChange.conflate(pending, change);
+
+					if (conflated != null) {
+						pendingChanges.put(key, conflated);
+					}
+				}
+
+				if (scheduled || pendingChanges.isEmpty()) {
+					return;
+				}
+
+				scheduled = true;
+			}
+
+			schedule();
+		}
+
+		private void schedule() {
+			try {
+				(listenerExecutor != null ? listenerExecutor : getExecutor()).execute(this);
+			} catch (RuntimeException e) {
+				MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+							   "IdentityChangeDispatcher - Unable to schedule identity change listener: " + e.getLocalizedMessage());
+
+				synchronized (this) {
+					scheduled = false;
+				}
+			}
+		}
+
+		private synchronized void cancel() {
+			cancelled = true;
+			pendingChanges.clear();
+		}
+
+		/**
+		 * Delivers the pending changes as one batch. Changes queued meanwhile are delivered by the next run, scheduled
+		 * behind the other listeners waiting for the dispatcher thread.
+		 */
+		@Override
+		public void run() {
+			final List<IdentityChange> changes;
+
+			synchronized (this) {
+				if (pendingChanges.isEmpty()) {
+					scheduled = false;
+					return;
+				}
+
+				changes = new ArrayList<>(pendingChanges.values());
+				pendingChanges.clear();
+			}
+
+			try {
+				listener.onIdentitiesChanged(changes);
+			} catch (Exception e) {
+				MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+							   "IdentityChangeDispatcher - Exception thrown from identity change listener: " + e.getLocalizedMessage());
+			}
+
+			synchronized (this) {
+				if (pendingChanges.isEmpty()) {
+					scheduled = false;
+					return;
+				}
+			}
+
+			schedule();
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import java.util.List;
+
+/**
+ * Receives the changes to the identities stored by the Identity extension.
+ *
+ * @see Identity#registerIdentityChangeListener(IdentityChangeListener)
+ */
+public interface IdentityChangeListener {
+	/**
+	 * Called with the identities changed since the previous call. The listener is never called concurrently with itself.
+	 * If changes occur while the listener is still handling a previous call, they are combined so that the next call
+	 * contains at most one {@link IdentityChange} per namespace and id, with the same net effect.
+	 *
+	 * @param changes the list of {@link IdentityChange}s; not empty
+	 */
+	void onIdentitiesChanged(final List<IdentityChange> changes);
+}
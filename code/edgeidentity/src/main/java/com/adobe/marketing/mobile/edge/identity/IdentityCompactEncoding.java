@@ -0,0 +1,58 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+/**
+ * Optional compact encoding of identifiers, which leaves out the fields with default values: an ambiguous authenticated
+ * state and a false primary flag. Readers of the identity map, including earlier versions of this extension, apply
+ * these defaults when the fields are missing, so compact data reads back to the same identifiers. The XDM shared state
+ * always contains all fields.
+ */
+class IdentityCompactEncoding {
+
+	private static volatile boolean compactPersistence;
+	private static volatile boolean compactResponses;
+
+	private IdentityCompactEncoding() {}
+
+	/**
+	 * Sets where the compact encoding is used.
+	 *
+	 * @param persistence true to persist identifiers in compact form
+	 * @param responses true to return identifiers in compact form in identity responses
+	 */
+	static void setEnabled(final boolean persistence, final boolean responses) {
+		compactPersistence = persistence;
+		compactResponses = responses;
+	}
+
+	/**
+	 * @return true if identifiers are persisted in compact form
+	 */
+	static boolean isPersistenceCompact() {
+		return compactPersistence;
+	}
+
+	/**
+	 * @return true if identity responses contain identifiers in compact form
+	 */
+	static boolean isResponseCompact() {
+		return compactResponses;
+	}
+
+	/**
+	 * Disables the compact encoding. Used for testing.
+	 */
+	static void reset() {
+		setEnabled(false, false);
+	}
+}
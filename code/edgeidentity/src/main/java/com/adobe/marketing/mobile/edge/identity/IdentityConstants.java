@@ -46,6 +46,8 @@ final class IdentityConstants {
 		static final String REMOVE_IDENTITIES = "Edge Identity Remove Identities";
 		static final String REQUEST_IDENTITIES = "Edge Identity Request Identities";
 		static final String RESET_IDENTITIES_COMPLETE = "Edge Identity Reset Identities Complete";
+		static final String UPDATE_IDENTITIES_COMPLETE = "Edge Identity Update Identities Complete";
+		static final String REMOVE_IDENTITIES_COMPLETE = "Edge Identity Remove Identities Complete";
 		private EventNames() { }
 	}
 
@@ -82,6 +84,24 @@ final class IdentityConstants {
 		private XDMKeys() { }
 	}
 
+	final class EventDataKeys {
+		static final String NAMESPACES = "namespaces";
+		static final String IDS = "ids";
+		static final String REMOVED_IDENTITIES = "removedIdentities";
+		static final String STATE_VERSION = "stateVersion";
+		static final String RESPONSE_REQUESTED = "responseRequested";
+		static final String EXPECTED_STATE_VERSION = "expectedStateVersion";
+		static final String APPLIED = "applied";
+		static final String REJECTED = "rejected";
+		static final String EXPIRATIONS = "expirations";
+		private EventDataKeys() { }
+	}
+
+	final class PersistenceKeys {
+		static final String RECENCY = "recency";
+		private PersistenceKeys() { }
+	}
+
 	final class DataStoreKey {
 		static final String DATASTORE_NAME = EXTENSION_NAME;
 		static final String IDENTITY_PROPERTIES = "identity.properties";
@@ -0,0 +1,157 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timer wheel of identifier expirations. Each expiration is placed in the bucket of its deadline tick, so
+ * scheduling is constant time and advancing the wheel only visits the buckets of the elapsed ticks. Expirations which
+ * are more than one revolution away stay in their bucket until their deadline tick is reached.
+ * <p>
+ * Entries are not cancelled when an identifier is removed or updated, the caller verifies each due entry against the
+ * stored identifiers. Not thread safe, used on the Identity extension executor only.
+ */
+class IdentityExpiryWheel {
+
+	static final long DEFAULT_TICK_MILLIS = 60000;
+	static final int DEFAULT_WHEEL_SIZE = 64;
+
+	/**
+	 * The expiration of one identifier.
+	 */
+	static final class Entry {
+		final String namespace;
+		final String id;
+		final long expirationTime;
+		private final long deadlineTick;
+
+		private Entry(final String namespace, final String id, final long expirationTime, final long deadlineTick) {
+			this.namespace = namespace;
+			this.id = id;
+			this.expirationTime = expirationTime;
+			this.deadlineTick = deadlineTick;
+		}
+	}
+
+	private final long tickMillis;
+	private final List<List<Entry>> buckets;
+	// the last tick the wheel was advanced to, -1 before the first advance
+	private long lastTick = -1;
+	private int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param tickMillis the duration of one tick in milliseconds, the granularity of expirations; should be positive
+	 * @param wheelSize the number of buckets; should be positive
+	 */
+	IdentityExpiryWheel(final long tickMillis, final int wheelSize) {
+		this.tickMillis = tickMillis;
+		this.buckets = new ArrayList<>(wheelSize);
+
+		for (int i = 0; i < wheelSize; i++) {
+			buckets.add(new ArrayList<Entry>());
+		}
+	}
+
+	/**
+	 * @return the duration of one tick in milliseconds
+	 */
+	long getTickMillis() {
+		return tickMillis;
+	}
+
+	/**
+	 * Schedules the expiration of an identifier. An expiration time already passed is due on the next advance.
+	 *
+	 * @param namespace the namespace of the identifier
+	 * @param id the id of the identifier
+	 * @param expirationTime the expiration time in milliseconds since the epoch; ignored if not positive
+	 */
+	void schedule(final String namespace, final String id, final long expirationTime) {
+		if (expirationTime <= 0) {
+			return;
+		}
+
+		// round up so an entry is never due before its expiration time
+		final long deadlineTick = (expirationTime + tickMillis - 1) / tickMillis;
+		final long bucketTick = Math.max(deadlineTick, lastTick + 1);
+		buckets.get((int) (bucketTick % buckets.size())).add(new Entry(namespace, id, expirationTime, deadlineTick));
+		size++;
+	}
+
+	/**
+	 * Advances the wheel to {@code nowMillis} and removes the entries which are due.
+	 *
+	 * @param nowMillis the current time in milliseconds since the epoch
+	 * @return the due {@link Entry}s; empty if none are due
+	 */
+	List<Entry> advance(final long nowMillis) {
+		final long nowTick = nowMillis / tickMillis;
+
+		if (size == 0 || nowTick <= lastTick) {
+			lastTick = Math.max(lastTick, nowTick);
+			return Collections.emptyList();
+		}
+
+		final List<Entry> due = new ArrayList<>();
+
+		if (lastTick < 0 || nowTick - lastTick >= buckets.size()) {
+			for (final List<Entry> bucket : buckets) {
+				collectDue(bucket, nowTick, due);
+			}
+		} else {
+			for (long tick = lastTick + 1; tick <= nowTick; tick++) {
+				collectDue(buckets.get((int) (tick % buckets.size())), nowTick, due);
+			}
+		}
+
+		lastTick = nowTick;
+		size -= due.size();
+		return due;
+	}
+
+	/**
+	 * @return true if no expiration is scheduled
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all scheduled expirations.
+	 */
+	void clear() {
+		for (final List<Entry> bucket : buckets) {
+			bucket.clear();
+		}
+
+		size = 0;
+	}
+
+	private static void collectDue(final List<Entry> bucket, final long nowTick, final List<Entry> due) {
+		final Iterator<Entry> iterator = bucket.iterator();
+
+		while (iterator.hasNext()) {
+			final Entry entry = iterator.next();
+
+			if (entry.deadlineTick <= nowTick) {
+				due.add(entry);
+				iterator.remove();
+			}
+		}
+	}
+}
@@ -19,19 +19,88 @@ import com.adobe.marketing.mobile.ExtensionErrorCallback;
 import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MobileCore;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
 
 
 class IdentityExtension extends Extension {
-	private ExecutorService executorService;
+	private static final String DEFAULT_THREAD_NAME = "EdgeIdentityExtension";
+	private static final long THREAD_IDLE_TIMEOUT_MS = 5000;
+	private static final long SCHEDULER_KEEP_ALIVE_MS = 1000;
+	// delay before retrying a task rejected by the extension executor
+	private static final long EXECUTOR_RETRY_DELAY_MS = 100;
+
+	// executor configuration applied when the extension executor is created
+	private static Executor sharedExecutor;
+	private static String threadName = DEFAULT_THREAD_NAME;
+	private static int threadPriority = Thread.NORM_PRIORITY;
+	// time window in which shared state changes are coalesced into one shared state, 0 if disabled
+	private static volatile long sharedStateWindowMillis;
+
+	private SerialExecutor executor;
 	private final Object executorMutex = new Object();
-	private final ConcurrentLinkedQueue<Event>
-	cachedEvents; // cached events in memory until required shared states are resolved
+	// schedules the publication of coalesced shared states and the expiry ticks
+	private ScheduledThreadPoolExecutor scheduler;
+	// event of the last coalesced shared state change, not yet published; only accessed on the executor
+	private Event pendingSharedStateEvent;
+	// scheduled publication of the coalesced shared state; only accessed on the executor
+	private ScheduledFuture<?> pendingSharedStatePublication;
+	private final Runnable publishPendingSharedStateTask = new Runnable() {
+		@Override
+		public void run() {
+			publishPendingSharedState();
+		}
+	};
+	// completion and reset responses held until the coalesced shared state is published; only accessed on the executor
+	private final List<Runnable> pendingCompletionResponses = new ArrayList<>();
+	// events received by the listeners, drained in order on the executor; multiple producers, single consumer
+	private final ConcurrentLinkedQueue<Event> mailbox = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+	private final Runnable drainTask = new Runnable() {
+		@Override
+		public void run() {
+			drainMailbox();
+		}
+	};
+	private final Runnable retryDrainTask = new Runnable() {
+		@Override
+		public void run() {
+			if (!mailbox.isEmpty()) {
+				scheduleDrain();
+			}
+		}
+	};
+	// expirations of stored identifiers and the periodic tick advancing them; only accessed on the executor
+	IdentityExpiryWheel expiryWheel = new IdentityExpiryWheel(IdentityExpiryWheel.DEFAULT_TICK_MILLIS,
+			IdentityExpiryWheel.DEFAULT_WHEEL_SIZE); // package private for testing
+	private ScheduledFuture<?> expiryTick;
+	private final Runnable expireIdentitiesTask = new Runnable() {
+		@Override
+		public void run() {
+			expireIdentities();
+		}
+	};
+	// latest queued direct Identity shared state event, earlier ones still waiting to be processed are skipped
+	private volatile Event latestIdentityDirectStateEvent;
+	// cached events in memory until required shared states are resolved; only accessed while draining the mailbox
+	private final Queue<Event> cachedEvents = new ArrayDeque<>();
 
 	// package private for testing
 	IdentityState state = new IdentityState(new IdentityProperties());
@@ -65,7 +134,6 @@ class IdentityExtension extends Extension {
 	 */
 	protected IdentityExtension(ExtensionApi extensionApi) {
 		super(extensionApi);
-		cachedEvents = new ConcurrentLinkedQueue<>();
 
 		ExtensionErrorCallback<ExtensionError> listenerErrorCallback = new ExtensionErrorCallback<ExtensionError>() {
 			@Override
@@ -109,8 +177,121 @@ class IdentityExtension extends Extension {
 		return IdentityConstants.EXTENSION_VERSION;
 	}
 
+	/**
+	 * Called by listeners to hand off a received event. The event is added to the mailbox, and a drain of the mailbox is
+	 * scheduled on the executor only if none is already scheduled, so no task is allocated per event.
+	 * <p>
+	 * Thread : Event hub thread
+	 *
+	 * @param event the received {@link Event}; ignored if null
+	 */
+	void queueEvent(final Event event) {
+		if (event == null) {
+			return;
+		}
+
+		mailbox.add(event);
+		scheduleDrain();
+	}
+
+	/**
+	 * Schedules a drain of the mailbox on the executor, unless one is already scheduled. If the executor rejects the
+	 * drain, the events stay in the mailbox and the drain is retried after {@link #EXECUTOR_RETRY_DELAY_MS}.
+	 */
+	private void scheduleDrain() {
+		if (!drainScheduled.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			getExecutor().execute(drainTask);
+		} catch (RejectedExecutionException e) {
+			drainScheduled.set(false);
+			retryLater(retryDrainTask, e);
+		}
+	}
+
+	/**
+	 * Runs {@code task} on the executor. If the executor rejects it, running it is retried after
+	 * {@link #EXECUTOR_RETRY_DELAY_MS}.
+	 *
+	 * @param task the {@link Runnable} to run on the executor
+	 */
+	private void executeOrRetry(final Runnable task) {
+		try {
+			getExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			retryLater(new Runnable() {
+				@Override
+				public void run() {
+					executeOrRetry(task);
+				}
+			}, e);
+		}
+	}
+
+	private void retryLater(final Runnable retry, final RejectedExecutionException rejection) {
+		MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+					   String.format("IdentityExtension - Executor rejected the task, retrying in %d ms: %s", EXECUTOR_RETRY_DELAY_MS,
+									 rejection.getLocalizedMessage()));
+
+		try {
+			getScheduler().schedule(retry, EXECUTOR_RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+						   "IdentityExtension - Unable to retry the rejected task, the scheduler was shut down.");
+		}
+	}
+
+	/**
+	 * Called by listeners to hand off a shared state change event of the direct Identity extension.
+	 * Only the latest of these events is handled, as it reads the latest direct Identity shared state; earlier events
+	 * still waiting in the queues are skipped.
+	 * <p>
+	 * Thread : Event hub thread
+	 *
+	 * @param event the received shared state change {@link Event}; ignored if null
+	 */
+	void queueIdentityDirectStateEvent(final Event event) {
+		if (event == null) {
+			return;
+		}
+
+		latestIdentityDirectStateEvent = event;
+		queueEvent(event);
+	}
+
+	/**
+	 * Processes the events in the mailbox in the order they were received, until the mailbox is empty.
+	 * <p>
+	 * Thread : Extension executor
+	 */
+	void drainMailbox() {
+		while (true) {
+			Event event;
+
+			while ((event = mailbox.poll()) != null) {
+				try {
+					processMailboxEvent(event);
+				} catch (Exception e) {
+					MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+								   String.format("IdentityExtension - Failed to process event %s: %s", event.getName(), e.getLocalizedMessage()));
+				}
+			}
+
+			drainScheduled.set(false);
+
+			// an event added after the last poll but before the flag was cleared did not schedule a drain
+			if (mailbox.isEmpty() || !drainScheduled.compareAndSet(false, true)) {
+				return;
+			}
+		}
+	}
+
 	/**
 	 * Adds an event to the event queue and starts processing the queue.
+	 * If the extension has booted and no events are waiting, the event is processed directly.
+	 *
 	 * @param event the received event to be added in the events queue; should not be null
 	 */
 	void processAddEvent(final Event event) {
@@ -118,6 +299,11 @@ class IdentityExtension extends Extension {
 			return;
 		}
 
+		if (state.hasBooted() && cachedEvents.isEmpty()) {
+			processEvent(event);
+			return;
+		}
+
 		cachedEvents.add(event);
 		processCachedEvents();
 	}
@@ -131,24 +317,48 @@ class IdentityExtension extends Extension {
 		}
 
 		while (!cachedEvents.isEmpty()) {
-			final Event event = cachedEvents.peek();
-
-			if (EventUtils.isRequestIdentityEvent(event)) {
-				handleIdentityRequest(event);
-			} else if (EventUtils.isUpdateIdentityEvent(event)) {
-				handleUpdateIdentities(event);
-			} else if (EventUtils.isRemoveIdentityEvent(event)) {
-				handleRemoveIdentity(event);
-			} else if (EventUtils.isRequestResetEvent(event)) {
-				handleRequestReset(event);
-			} else if (EventUtils.isSharedStateUpdateFor(IdentityConstants.SharedState.IdentityDirect.NAME, event)) {
-				handleIdentityDirectECIDUpdate(event);
+			processEvent(cachedEvents.peek());
+			cachedEvents.poll();
+		}
+	}
+
+	private void processMailboxEvent(final Event event) {
+		if (EventUtils.isHubBootedEvent(event)) {
+			if (bootupIfReady()) {
+				processCachedEvents();
 			}
+		} else if (EventUtils.isHubSharedStateEvent(event)) {
+			handleHubSharedState(event);
+		} else {
+			processAddEvent(event);
+		}
+	}
 
-			cachedEvents.poll();
+	private void processEvent(final Event event) {
+		if (EventUtils.isRequestIdentityEvent(event)) {
+			handleIdentityRequest(event);
+		} else if (EventUtils.isUpdateIdentityEvent(event)) {
+			handleUpdateIdentities(event);
+		} else if (EventUtils.isRemoveIdentityEvent(event)) {
+			handleRemoveIdentity(event);
+		} else if (EventUtils.isRequestResetEvent(event)) {
+			handleRequestReset(event);
+		} else if (EventUtils.isSharedStateUpdateFor(IdentityConstants.SharedState.IdentityDirect.NAME, event)) {
+			if (isSupersededIdentityDirectStateEvent(event)) {
+				MobileCore.log(LoggingMode.VERBOSE, LOG_TAG,
+							   "IdentityExtension - Skipping direct Identity shared state change, a later change is queued.");
+				return;
+			}
+
+			handleIdentityDirectECIDUpdate(event);
 		}
 	}
 
+	private boolean isSupersededIdentityDirectStateEvent(final Event event) {
+		final Event latestEvent = latestIdentityDirectStateEvent;
+		return latestEvent != null && latestEvent != event;
+	}
+
 	/**
 	 * Calls {@link IdentityState#bootupIfReady(SharedStateCallback)} with a valid callback
 	 *
@@ -191,47 +401,149 @@ class IdentityExtension extends Extension {
 			}
 		};
 
-		return state.bootupIfReady(callback);
+		final boolean wasBooted = state.hasBooted();
+		final boolean hasBooted = state.bootupIfReady(callback);
+
+		if (hasBooted) {
+			publishIdentityChanges();
+		}
+
+		if (hasBooted && !wasBooted) {
+			scheduleExpirations(state.getIdentityProperties().getExpirations());
+		}
+
+		return hasBooted;
 	}
 
 	/**
 	 * Handles update identity requests to add/update customer identifiers.
+	 * Batched update requests may also contain customer identifiers to remove.
+	 * Conditional update requests are only applied if their expected state version matches the current state version.
+	 * Requests whose identifiers exceed the {@link IdentityPayloadLimits} are rejected without applying any change.
+	 * If the request event asks for a response, a response event with the resulting state version is dispatched after
+	 * the XDM shared state is updated.
 	 *
 	 * @param event the edge update identity {@link Event}
 	 */
 	void handleUpdateIdentities(final Event event) {
+		try {
+			applyUpdateIdentities(event);
+		} finally {
+			// completed only once the identifiers are confirmed, until then no update is skipped as unchanged
+			IdentityUpdateCache.getInstance().updateCompleted(event.getUniqueIdentifier());
+		}
+	}
+
+	/**
+	 * Applies an update identity request.
+	 *
+	 * @param event the edge update identity {@link Event}
+	 * @see #handleUpdateIdentities(Event)
+	 */
+	private void applyUpdateIdentities(final Event event) {
 		final Map<String, Object> eventData =
 			event.getEventData(); // do not need to null check on eventData, as they are done on listeners
-		final IdentityMap map = IdentityMap.fromXDMMap(eventData);
+		final IdentityMapView map = IdentityMapView.fromXDMMap(eventData);
+		final IdentityMapView removedMap = EventUtils.getRemovedIdentities(event);
+		final Long expectedStateVersion = EventUtils.getExpectedStateVersion(event);
+
+		if ((map == null && IdentityMapView.containsIdentityMap(eventData))
+				|| (removedMap == null && EventUtils.hasRemovedIdentities(event))) {
+			MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+						   "IdentityExtension - Rejected update identities request, its identifiers exceed the identity payload limits.");
+			IdentityUpdateCache.getInstance().invalidationCompleted(event.getUniqueIdentifier(),
+					Collections.<String>emptyList());
+			dispatchRejectedResponse(event, IdentityConstants.EventNames.UPDATE_IDENTITIES_COMPLETE);
+			return;
+		}
+
+		if (expectedStateVersion != null
+				&& expectedStateVersion != state.getIdentityProperties().getStateVersion()) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   String.format("IdentityExtension - Conditional update not applied, expected state version %d but is %d.",
+										 expectedStateVersion, state.getIdentityProperties().getStateVersion()));
+			dispatchCompletionResponse(event, IdentityConstants.EventNames.UPDATE_IDENTITIES_COMPLETE, false);
+			return;
+		}
 
-		if (map == null) {
+		if (map == null && removedMap == null) {
 			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
 						   "IdentityExtension - Failed to update identifiers as no identifiers were found in the event data.");
+			dispatchCompletionResponse(event, IdentityConstants.EventNames.UPDATE_IDENTITIES_COMPLETE,
+									   expectedStateVersion == null ? null : true);
 			return;
 		}
 
-		state.updateCustomerIdentifiers(map);
+		if (removedMap == null) {
+			state.updateCustomerIdentifiers(map);
+		} else {
+			// batched update, apply removals and updates with a single persistence write
+			state.updateCustomerIdentifiers(map, removedMap);
+			IdentityUpdateCache.getInstance().invalidationCompleted(event.getUniqueIdentifier(),
+					removedMap.getNamespaces());
+		}
+
+		IdentityUpdateCache.getInstance().confirm(map, state.getPendingChanges());
+		scheduleExpirations(map);
 		shareIdentityXDMSharedState(event);
+		dispatchCompletionResponse(event, IdentityConstants.EventNames.UPDATE_IDENTITIES_COMPLETE,
+								   expectedStateVersion == null ? null : true);
 	}
 
 	/**
 	 * Handles remove identity requests to remove customer identifiers.
+	 * If the request event data contains a list of namespaces, all customer identifiers in those namespaces are removed.
+	 * If the request event data contains a list of ids, the customer identifiers with those ids are removed from every namespace.
+	 * Requests whose identifiers exceed the {@link IdentityPayloadLimits} are rejected without removing any identifier.
+	 * If the request event asks for a response, a response event with the resulting state version is dispatched after
+	 * the XDM shared state is updated.
 	 *
 	 * @param event the edge remove identity request {@link Event}
 	 */
 	void handleRemoveIdentity(final Event event) {
 		final Map<String, Object> eventData =
 			event.getEventData(); // do not need to null check on eventData, as they are done on listeners
-		final IdentityMap map = IdentityMap.fromXDMMap(eventData);
+		final IdentityMapView map = IdentityMapView.fromXDMMap(eventData);
+		final List<String> namespaces = EventUtils.getNamespaces(event);
+		final List<String> ids = EventUtils.getIds(event);
 
-		if (map == null) {
+		if (map == null && IdentityMapView.containsIdentityMap(eventData)) {
+			MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+						   "IdentityExtension - Rejected remove identities request, its identifiers exceed the identity payload limits.");
+			IdentityUpdateCache.getInstance().invalidationCompleted(event.getUniqueIdentifier(),
+					Collections.<String>emptyList());
+			dispatchRejectedResponse(event, IdentityConstants.EventNames.REMOVE_IDENTITIES_COMPLETE);
+			return;
+		}
+
+		if (map == null && (namespaces == null || namespaces.isEmpty()) && (ids == null || ids.isEmpty())) {
 			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
 						   "IdentityExtension - Failed to remove identifiers as no identifiers were found in the event data.");
+			IdentityUpdateCache.getInstance().invalidationCompleted(event.getUniqueIdentifier(),
+					Collections.<String>emptyList());
+			dispatchCompletionResponse(event, IdentityConstants.EventNames.REMOVE_IDENTITIES_COMPLETE);
 			return;
 		}
 
-		state.removeCustomerIdentifiers(map);
+		final List<String> removedNamespaces = new ArrayList<>();
+
+		if (namespaces == null && ids == null) {
+			state.removeCustomerIdentifiers(map);
+		} else {
+			removedNamespaces.addAll(state.removeCustomerIdentifiers(map, namespaces, ids));
+
+			if (namespaces != null) {
+				removedNamespaces.addAll(namespaces);
+			}
+		}
+
+		if (map != null) {
+			removedNamespaces.addAll(map.getNamespaces());
+		}
+
+		IdentityUpdateCache.getInstance().invalidationCompleted(event.getUniqueIdentifier(), removedNamespaces);
 		shareIdentityXDMSharedState(event);
+		dispatchCompletionResponse(event, IdentityConstants.EventNames.REMOVE_IDENTITIES_COMPLETE);
 	}
 
 	/**
@@ -260,11 +572,16 @@ class IdentityExtension extends Extension {
 
 	/**
 	 * Handles events requesting for identifiers. Dispatches response event containing the identifiers. Called by listener registered with event hub.
+	 * If the request event data contains a list of namespaces, only the identifiers in those namespaces are returned.
+	 * While compact responses are enabled, identifier fields with default values are left out of the response.
+	 * @see IdentityCompactEncoding
 	 *
 	 * @param event the identity request {@link Event}
 	 */
 	void handleIdentityRequest(final Event event) {
-		Map<String, Object> xdmData = state.getIdentityProperties().toXDMData(false);
+		final List<String> namespaces = EventUtils.getNamespaces(event);
+		Map<String, Object> xdmData = state.getIdentityProperties().toXDMData(false, namespaces,
+										 IdentityCompactEncoding.isResponseCompact());
 		Event responseEvent = new Event.Builder(IdentityConstants.EventNames.IDENTITY_RESPONSE_CONTENT_ONE_TIME,
 												IdentityConstants.EventType.EDGE_IDENTITY,
 												IdentityConstants.EventSource.RESPONSE_IDENTITY)
@@ -290,21 +607,28 @@ class IdentityExtension extends Extension {
 	 */
 	void handleRequestReset(final Event event) {
 		state.resetIdentifiers();
+		expiryWheel.clear();
+		IdentityUpdateCache.getInstance().invalidationCompleted(event.getUniqueIdentifier(), null);
 		shareIdentityXDMSharedState(event);
 
-		// dispatch reset complete event
+		// dispatch reset complete event, once the shared state of the reset is published
 		final Event responseEvent = new Event.Builder(IdentityConstants.EventNames.RESET_IDENTITIES_COMPLETE,
 				IdentityConstants.EventType.EDGE_IDENTITY,
 				IdentityConstants.EventSource.RESET_COMPLETE).build();
 
-		MobileCore.dispatchEvent(responseEvent, new ExtensionErrorCallback<ExtensionError>() {
+		dispatchAfterSharedStatePublished(new Runnable() {
 			@Override
-			public void error(ExtensionError extensionError) {
-				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
-							   "IdentityExtension - Failed to dispatch Edge Identity reset response event for event " +
-							   event.getUniqueIdentifier() +
-							   " with error " +
-							   extensionError.getErrorName());
+			public void run() {
+				MobileCore.dispatchEvent(responseEvent, new ExtensionErrorCallback<ExtensionError>() {
+					@Override
+					public void error(ExtensionError extensionError) {
+						MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+									   "IdentityExtension - Failed to dispatch Edge Identity reset response event for event " +
+									   event.getUniqueIdentifier() +
+									   " with error " +
+									   extensionError.getErrorName());
+					}
+				});
 			}
 		});
 	}
@@ -329,23 +653,93 @@ class IdentityExtension extends Extension {
 	}
 
 	/**
-	 * Called by listeners to retrieve an {@code ExecutorService}.
-	 * The {@code ExecutorService} is used to process events on a separate thread than the
+	 * Called when the extension is unregistered. Shuts down the extension executor, pending events are discarded.
+	 * The coalesced XDM shared state, if any, is published before the executor stops.
+	 */
+	@Override
+	protected void onUnregistered() {
+		synchronized (executorMutex) {
+			if (executor != null) {
+				executor.shutdown(publishPendingSharedStateTask);
+			}
+
+			if (scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
+			}
+		}
+	}
+
+	/**
+	 * Called by listeners to retrieve an {@code Executor}.
+	 * The {@code Executor} is used to process events on a separate thread than the
 	 * {@code EventHub} thread on which they were received. Processing events on a separate
 	 * thread prevents blocking of the {@code EventHub}.
+	 * Events are processed one at a time in the order they were received, either on the shared executor set with
+	 * {@link #setSharedExecutor(Executor)} or on a dedicated thread which is stopped while idle.
 	 *
-	 * @return this extension's instance of a single thread executor
+	 * @return this extension's instance of a serial executor
 	 */
-	ExecutorService getExecutor() {
+	Executor getExecutor() {
 		synchronized (executorMutex) {
-			if (executorService == null) {
-				executorService = Executors.newSingleThreadExecutor();
+			if (executor == null) {
+				executor = createExecutor();
 			}
 
-			return executorService;
+			return executor;
 		}
 	}
 
+	/**
+	 * Sets the {@link Executor} on which extensions created afterwards process their events, through a serial view
+	 * so that events are still processed one at a time in order.
+	 *
+	 * @param executor the shared {@code Executor}, or null to use a dedicated thread
+	 */
+	static synchronized void setSharedExecutor(final Executor executor) {
+		sharedExecutor = executor;
+	}
+
+	/**
+	 * Sets the name and priority of the dedicated thread of extensions created afterwards.
+	 *
+	 * @param name the thread name, or null for the default name
+	 * @param priority the thread priority, between {@link Thread#MIN_PRIORITY} and {@link Thread#MAX_PRIORITY}
+	 */
+	static synchronized void setThreadOptions(final String name, final int priority) {
+		threadName = name == null ? DEFAULT_THREAD_NAME : name;
+		threadPriority = priority;
+	}
+
+	/**
+	 * Sets the time window in which changes to the identifiers are coalesced into a single XDM shared state.
+	 *
+	 * @param windowMillis the window in milliseconds, or 0 to create a shared state for every change
+	 */
+	static void setSharedStateWindow(final long windowMillis) {
+		sharedStateWindowMillis = windowMillis;
+	}
+
+	private static synchronized SerialExecutor createExecutor() {
+		if (sharedExecutor != null) {
+			return new SerialExecutor(sharedExecutor, null);
+		}
+
+		final String name = threadName;
+		final int priority = threadPriority;
+		final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, THREAD_IDLE_TIMEOUT_MS,
+				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, name);
+				thread.setPriority(priority);
+				return thread;
+			}
+		});
+		threadPoolExecutor.allowCoreThreadTimeOut(true);
+		return new SerialExecutor(threadPoolExecutor, threadPoolExecutor);
+	}
+
 	/**
 	 * Retrieves the shared state for the given state owner
 	 *
@@ -372,9 +766,14 @@ class IdentityExtension extends Extension {
 	}
 
 	/**
-	 * Fetches the latest Identity properties and shares the XDMSharedState.
+	 * Fetches the latest Identity properties and shares the XDMSharedState, then publishes the identity changes
+	 * to the registered {@link IdentityChangeListener}s.
+	 *
+	 * While shared state changes are coalesced, the shared state is published once the window elapses, tied to the event
+	 * of the last change in the window.
 	 *
-	 * @param event the {@link Event} that triggered the XDM shared state change
+	 * @param event the {@link Event} that triggered the XDM shared state change, or null if the change was not triggered
+	 *              by an event, in which case the shared state is not coalesced
 	 */
 	private void shareIdentityXDMSharedState(final Event event) {
 		final ExtensionApi extensionApi = super.getApi();
@@ -382,19 +781,318 @@ class IdentityExtension extends Extension {
 		if (extensionApi == null) {
 			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
 						   "IdentityExtension - ExtensionApi is null, unable to share XDM shared state for reset identities");
+			publishIdentityChanges();
+			return;
+		}
+
+		if (pendingSharedStateEvent != null) {
+			if (event == null) {
+				// the coalesced shared state holds the current identifiers, including this change
+				publishPendingSharedState();
+			} else {
+				pendingSharedStateEvent = event;
+			}
+
+			publishIdentityChanges();
+			return;
+		}
+
+		final long windowMillis = sharedStateWindowMillis;
+
+		if (windowMillis > 0 && event != null) {
+			// events before the last change of the window keep reading the previous shared state
+			pendingSharedStateEvent = event;
+			pendingSharedStatePublication = getScheduler().schedule(new Runnable() {
+				@Override
+				public void run() {
+					executeOrRetry(publishPendingSharedStateTask);
+				}
+			}, windowMillis, TimeUnit.MILLISECONDS);
+			publishIdentityChanges();
+			return;
+		}
+
+		extensionApi.setXDMSharedEventState(state.getIdentityProperties().toXDMData(false), event,
+											getSharedStateErrorCallback());
+		publishIdentityChanges();
+	}
+
+	/**
+	 * Publishes the coalesced XDM shared state, if any, with the current identifiers, which include all changes made
+	 * within the window, tied to the event of the last change. Then dispatches the responses held until the shared state
+	 * was published, in the order their requests were processed.
+	 * <p>
+	 * Thread : Extension executor
+	 */
+	void publishPendingSharedState() {
+		final Event event = pendingSharedStateEvent;
+
+		if (event == null) {
 			return;
 		}
 
-		// set the shared state
-		final ExtensionErrorCallback<ExtensionError> errorCallback = new ExtensionErrorCallback<ExtensionError>() {
+		pendingSharedStateEvent = null;
+
+		if (pendingSharedStatePublication != null) {
+			pendingSharedStatePublication.cancel(false);
+			pendingSharedStatePublication = null;
+		}
+
+		final ExtensionApi extensionApi = super.getApi();
+
+		if (extensionApi == null) {
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   "IdentityExtension - ExtensionApi is null, unable to publish coalesced XDM shared state");
+		} else {
+			extensionApi.setXDMSharedEventState(state.getIdentityProperties().toXDMData(false), event,
+												getSharedStateErrorCallback());
+		}
+
+		final List<Runnable> responses = new ArrayList<>(pendingCompletionResponses);
+		pendingCompletionResponses.clear();
+
+		for (final Runnable response : responses) {
+			response.run();
+		}
+	}
+
+	private ExtensionErrorCallback<ExtensionError> getSharedStateErrorCallback() {
+		return new ExtensionErrorCallback<ExtensionError>() {
 			@Override
 			public void error(final ExtensionError extensionError) {
 				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
 							   String.format("IdentityExtension - Failed create XDM shared state. Error : %s.", extensionError.getErrorName()));
 			}
 		};
+	}
+
+	/**
+	 * Removes the identifiers whose expiration is due in {@link #expiryWheel} in one batch, with a single persistence
+	 * write and a single XDM shared state. Stops the expiry tick once no expiration is scheduled.
+	 * <p>
+	 * Thread : Extension executor
+	 */
+	void expireIdentities() {
+		final long now = System.currentTimeMillis();
+		final List<IdentityExpiryWheel.Entry> due = expiryWheel.advance(now);
+
+		if (expiryWheel.isEmpty() && expiryTick != null) {
+			expiryTick.cancel(false);
+			expiryTick = null;
+		}
+
+		if (due.isEmpty()) {
+			return;
+		}
+
+		final List<String> namespaces = state.removeExpiredIdentifiers(due, now);
+
+		if (namespaces.isEmpty()) {
+			return;
+		}
+
+		MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+					   "IdentityExtension - Removed expired identifiers in namespaces " + namespaces);
+		IdentityUpdateCache.getInstance().invalidate(namespaces);
+		shareIdentityXDMSharedState(null);
+	}
+
+	/**
+	 * Schedules the expirations of the expiring identifiers in {@code view}.
+	 *
+	 * @param view the {@link IdentityMapView} of merged identifiers; may be null
+	 */
+	private void scheduleExpirations(final IdentityMapView view) {
+		if (view == null) {
+			return;
+		}
+
+		for (final String namespace : view.getNamespaces()) {
+			for (final IdentityItem item : view.getItems(namespace)) {
+				expiryWheel.schedule(namespace, item.getId(), item.getExpirationTime());
+			}
+		}
+
+		startExpiryTick();
+	}
+
+	/**
+	 * Schedules the expirations of identifiers loaded from persistence.
+	 *
+	 * @param expirations the expiration times keyed by namespace and then by id, as returned by
+	 *                    {@link IdentityProperties#getExpirations()}; may be null
+	 */
+	private void scheduleExpirations(final Map<String, Object> expirations) {
+		if (expirations == null) {
+			return;
+		}
+
+		for (final Map.Entry<String, Object> namespaceEntry : expirations.entrySet()) {
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>) namespaceEntry.getValue()).entrySet()) {
+				expiryWheel.schedule(namespaceEntry.getKey(), (String) entry.getKey(), ((Number) entry.getValue()).longValue());
+			}
+		}
+
+		startExpiryTick();
+	}
+
+	private void startExpiryTick() {
+		if (expiryTick != null || expiryWheel.isEmpty()) {
+			return;
+		}
+
+		final long tickMillis = expiryWheel.getTickMillis();
+		expiryTick = getScheduler().scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					getExecutor().execute(expireIdentitiesTask);
+				} catch (RejectedExecutionException e) {
+					MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+								   "IdentityExtension - Executor rejected the expiry task, expiring at the next tick: " + e.getLocalizedMessage());
+				}
+			}
+		}, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private ScheduledThreadPoolExecutor getScheduler() {
+		synchronized (executorMutex) {
+			if (scheduler == null) {
+				scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = new Thread(runnable, "EdgeIdentityScheduler");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				scheduler.setKeepAliveTime(SCHEDULER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+				scheduler.allowCoreThreadTimeOut(true);
+			}
+
+			return scheduler;
+		}
+	}
+
+	/**
+	 * Dispatches a response event containing the current state version if {@code event} requested a response.
+	 *
+	 * @param event the processed update or remove identity request {@link Event}
+	 * @param eventName the name of the response event
+	 */
+	private void dispatchCompletionResponse(final Event event, final String eventName) {
+		dispatchCompletionResponse(event, eventName, null);
+	}
+
+	/**
+	 * Dispatches a response event containing the current state version if {@code event} requested a response.
+	 * For conditional updates the response also contains whether the update was applied and all current identifiers,
+	 * so a rejected update can be retried without requesting the identifiers.
+	 *
+	 * @param event the processed update or remove identity request {@link Event}
+	 * @param eventName the name of the response event
+	 * @param applied for conditional updates, whether the update was applied; null for other requests
+	 */
+	private void dispatchCompletionResponse(final Event event, final String eventName, final Boolean applied) {
+		dispatchCompletionResponse(event, eventName, applied, false);
+	}
+
+	/**
+	 * Dispatches a response event marked as {@link IdentityConstants.EventDataKeys#REJECTED} if {@code event} requested
+	 * a response, for requests not applied as their identifiers exceed the {@link IdentityPayloadLimits}.
+	 * Conditional updates are reported as not applied.
+	 *
+	 * @param event the rejected update or remove identity request {@link Event}
+	 * @param eventName the name of the response event
+	 */
+	private void dispatchRejectedResponse(final Event event, final String eventName) {
+		final Boolean applied = EventUtils.getExpectedStateVersion(event) == null ? null : false;
+		dispatchCompletionResponse(event, eventName, applied, true);
+	}
+
+	/**
+	 * Dispatches a response event containing the current state version if {@code event} requested a response.
+	 * While the XDM shared state is pending, the response is held until the shared state is published, so callers are
+	 * only notified once the shared state includes their change.
+	 *
+	 * @param event the processed update or remove identity request {@link Event}
+	 * @param eventName the name of the response event
+	 * @param applied for conditional updates, whether the update was applied; null for other requests
+	 * @param rejected true if the request was rejected as its identifiers exceed the {@code IdentityPayloadLimits}
+	 */
+	private void dispatchCompletionResponse(final Event event, final String eventName, final Boolean applied,
+											final boolean rejected) {
+		if (!EventUtils.isResponseRequested(event)) {
+			return;
+		}
+
+		final Map<String, Object> eventData;
 
-		extensionApi.setXDMSharedEventState(state.getIdentityProperties().toXDMData(false), event, errorCallback);
+		if (applied == null) {
+			eventData = new HashMap<>();
+		} else {
+			eventData = state.getIdentityProperties().toXDMData(true);
+			eventData.put(IdentityConstants.EventDataKeys.APPLIED, applied);
+		}
+
+		if (rejected) {
+			eventData.put(IdentityConstants.EventDataKeys.REJECTED, true);
+		}
+
+		eventData.put(IdentityConstants.EventDataKeys.STATE_VERSION, state.getIdentityProperties().getStateVersion());
+		final Event responseEvent = new Event.Builder(eventName,
+				IdentityConstants.EventType.EDGE_IDENTITY,
+				IdentityConstants.EventSource.RESPONSE_IDENTITY)
+		.setEventData(eventData)
+		.build();
+
+		dispatchAfterSharedStatePublished(new Runnable() {
+			@Override
+			public void run() {
+				dispatchResponse(responseEvent, event);
+			}
+		});
+	}
+
+	/**
+	 * Runs {@code dispatch} once the coalesced XDM shared state is published, or right away if no shared state change
+	 * is waiting to be published.
+	 *
+	 * @param dispatch dispatches a response to a processed request
+	 */
+	private void dispatchAfterSharedStatePublished(final Runnable dispatch) {
+		if (pendingSharedStateEvent == null) {
+			dispatch.run();
+			return;
+		}
+
+		pendingCompletionResponses.add(dispatch);
+	}
+
+	/**
+	 * Dispatches {@code responseEvent} as the response to the update or remove identity request {@code event}.
+	 *
+	 * @param responseEvent the completion response {@link Event}
+	 * @param event the processed update or remove identity request {@code Event}
+	 */
+	private void dispatchResponse(final Event responseEvent, final Event event) {
+		MobileCore.dispatchResponseEvent(responseEvent, event, new ExtensionErrorCallback<ExtensionError>() {
+			@Override
+			public void error(ExtensionError extensionError) {
+				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+							   "IdentityExtension - Failed to dispatch Edge Identity completion response event for event " +
+							   event.getUniqueIdentifier() +
+							   " with error " +
+							   extensionError.getErrorName());
+			}
+		});
+	}
+
+	/**
+	 * Publishes the identity changes made since the last call to the registered {@link IdentityChangeListener}s.
+	 */
+	private void publishIdentityChanges() {
+		IdentityChangeDispatcher.getInstance().publish(state.drainChanges());
 	}
 
 }
@@ -30,6 +30,7 @@ public final class IdentityItem {
 	private final String id;
 	private final AuthenticatedState authenticatedState;
 	private final boolean primary;
+	private final long expirationTime;
 
 	/**
 	 * Creates a new {@link IdentityItem}
@@ -39,6 +40,20 @@ public final class IdentityItem {
 	 * @throws IllegalArgumentException if id is null
 	 */
 	public IdentityItem(final String id, final AuthenticatedState authenticatedState, final boolean primary) {
+		this(id, authenticatedState, primary, 0);
+	}
+
+	/**
+	 * Creates a new {@link IdentityItem} which expires. Once stored by the Identity extension, the item is removed
+	 * automatically shortly after its expiration time.
+	 * @param id id for the item
+	 * @param authenticatedState {@link AuthenticatedState} for the item
+	 * @param primary primary flag for the item
+	 * @param expirationTime the time the item expires, in milliseconds since the epoch; 0 or negative if it never expires
+	 * @throws IllegalArgumentException if id is null
+	 */
+	public IdentityItem(final String id, final AuthenticatedState authenticatedState, final boolean primary,
+						final long expirationTime) {
 		if (id == null) {
 			throw new IllegalArgumentException("id must be non-null");
 		}
@@ -46,6 +61,7 @@ public final class IdentityItem {
 		this.id = id;
 		this.authenticatedState = authenticatedState != null ? authenticatedState : AuthenticatedState.AMBIGUOUS;
 		this.primary = primary;
+		this.expirationTime = expirationTime > 0 ? expirationTime : 0;
 	}
 
 	/**
@@ -63,7 +79,7 @@ public final class IdentityItem {
 	 * @param item A {@link IdentityItem} to be copied
 	 */
 	public IdentityItem(final IdentityItem item) {
-		this(item.id, item.authenticatedState, item.primary);
+		this(item.id, item.authenticatedState, item.primary, item.expirationTime);
 	}
 
 	/**
@@ -91,6 +107,14 @@ public final class IdentityItem {
 		return primary;
 	}
 
+	/**
+	 * The time this identity expires.
+	 * @return the expiration time in milliseconds since the epoch, or 0 if this item never expires
+	 */
+	public long getExpirationTime() {
+		return expirationTime;
+	}
+
 	@Override
 	public String toString() {
 		return "{"
@@ -124,24 +148,75 @@ public final class IdentityItem {
 	// package protected methods
 	// ========================================================================================
 
+	/**
+	 * Determines if {@code other} has exactly the same id, authenticated state, primary flag and expiration time as this item.
+	 * Unlike {@link #equals(Object)}, which only compares ids ignoring case, this compares every value.
+	 *
+	 * @param other the {@link IdentityItem} to compare with
+	 * @return true if all values of {@code other} are equal to the values of this item
+	 */
+	boolean hasSameValues(final IdentityItem other) {
+		return other != null
+			   && id.equals(other.id)
+			   && authenticatedState == other.authenticatedState
+			   && primary == other.primary
+			   && expirationTime == other.expirationTime;
+	}
+
+	/**
+	 * @param now the current time in milliseconds since the epoch
+	 * @return true if this item expires and its expiration time is not after {@code now}
+	 */
+	boolean isExpired(final long now) {
+		return expirationTime > 0 && expirationTime <= now;
+	}
+
+	/**
+	 * Returns this item with the expiration time of its id in {@code namespaceExpirations}, the expirations of one namespace
+	 * as returned by {@link IdentityMap#getExpirations()}.
+	 * @param namespaceExpirations the expiration times of a namespace keyed by id; may be null
+	 * @return a copy of this item with its expiration time, or this item if {@code namespaceExpirations} has none for its id
+	 */
+	IdentityItem withExpiration(final Map<?, ?> namespaceExpirations) {
+		if (namespaceExpirations == null || !(namespaceExpirations.get(id) instanceof Number)) {
+			return this;
+		}
+
+		return new IdentityItem(id, authenticatedState, primary, ((Number) namespaceExpirations.get(id)).longValue());
+	}
+
 	/**
 	 * Converts this object into a map representation
 	 * @return this object in a map representation
 	 */
 	Map<String, Object> toObjectMap() {
+		return toObjectMap(false);
+	}
+
+	/**
+	 * Converts this object into a map representation, optionally leaving out the fields which have their default value.
+	 * {@link #fromData(Map)} restores an ambiguous authenticated state and a false primary flag when they are missing,
+	 * so the compact representation reads back to an equal item.
+	 * @param compact true to leave out an {@link AuthenticatedState#AMBIGUOUS} authenticated state and a false primary flag
+	 * @return this object in a map representation
+	 */
+	Map<String, Object> toObjectMap(final boolean compact) {
 		Map<String, Object> map = new HashMap<>();
 
 		if (id != null) {
 			map.put(IdentityConstants.XDMKeys.ID, id);
 		}
 
-		if (authenticatedState != null) {
-			map.put(IdentityConstants.XDMKeys.AUTHENTICATED_STATE, authenticatedState.getName());
-		} else {
-			map.put(IdentityConstants.XDMKeys.AUTHENTICATED_STATE, AuthenticatedState.AMBIGUOUS.getName());
+		final AuthenticatedState state = authenticatedState != null ? authenticatedState : AuthenticatedState.AMBIGUOUS;
+
+		if (!compact || state != AuthenticatedState.AMBIGUOUS) {
+			map.put(IdentityConstants.XDMKeys.AUTHENTICATED_STATE, state.getName());
+		}
+
+		if (!compact || primary) {
+			map.put(IdentityConstants.XDMKeys.PRIMARY, primary);
 		}
 
-		map.put(IdentityConstants.XDMKeys.PRIMARY, primary);
 		return map;
 	}
 
@@ -170,7 +245,7 @@ public final class IdentityItem {
 				primary = (boolean) data.get(IdentityConstants.XDMKeys.PRIMARY);
 			}
 
-			return new IdentityItem(id, authenticatedState, primary);
+			return new IdentityItem(IdentityStringPool.internId(id), authenticatedState, primary);
 		} catch (ClassCastException e) {
 			MobileCore.log(LoggingMode.DEBUG, LOG_TAG, "IdentityItem - Failed to create IdentityItem from data.");
 			return null;
@@ -14,10 +14,20 @@ package com.adobe.marketing.mobile.edge.identity;
 import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MobileCore;
 
+import org.json.JSONArray;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
 
@@ -31,7 +41,71 @@ import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG
  */
 @SuppressWarnings("unused")
 public class IdentityMap {
-	private final Map<String, List<IdentityItem>> identityItems = new HashMap<>();
+	private Map<String, List<IdentityItem>> identityItems = new HashMap<>();
+	private List<IdentityChange> changeRecorder;
+	// true while identityItems and the indexes are shared with a snapshot, copied before the next modification
+	private boolean shared;
+	// XDM and JSON representations of the items per namespace, built on first use and dropped when the namespace is modified
+	private final Map<String, List<Map<String, Object>>> xdmItemsCache = new HashMap<>();
+	private final Map<String, List<Map<String, Object>>> compactXDMItemsCache = new HashMap<>();
+	private final Map<String, String> jsonItemsCache = new HashMap<>();
+	// true if jsonItemsCache holds items in compact form
+	private boolean jsonItemsCompact;
+	// incremented on every modification of this map
+	private int modificationCount;
+	// per namespace, the update sequence of each item aligned with its item list; null unless recency is tracked
+	private Map<String, SequenceList> recency;
+	// the last update sequence assigned to an item
+	private long lastUpdateSequence;
+	// indexes of the primary items and of the items per authenticated state, built on first query and kept up to date;
+	// once built they are shared with snapshots like identityItems
+	private ItemIndex primaryIndex;
+	private Map<AuthenticatedState, ItemIndex> authenticatedStateIndexes;
+	// reverse index of lower case id to the namespaces containing it
+	private Map<String, Set<String>> namespacesById;
+
+	/**
+	 * Creates a new empty {@link IdentityMap}
+	 */
+	public IdentityMap() {}
+
+	/**
+	 * Creates a copy of map. {@link IdentityItem}s are immutable and are shared with the original map.
+	 *
+	 * @param map the {@link IdentityMap} to be copied; should not be null
+	 */
+	IdentityMap(final IdentityMap map) {
+		for (final Map.Entry<String, List<IdentityItem>> entry : map.identityItems.entrySet()) {
+			identityItems.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+		}
+
+		copyIndexes(map);
+
+		if (map.recency != null) {
+			recency = new HashMap<>();
+
+			for (final Map.Entry<String, SequenceList> entry : map.recency.entrySet()) {
+				recency.put(entry.getKey(), new SequenceList(entry.getValue().toArray()));
+			}
+
+			lastUpdateSequence = map.lastUpdateSequence;
+		}
+	}
+
+	/**
+	 * Creates a map sharing the storage and indexes of {@code map}, used for snapshots.
+	 *
+	 * @param map the map being snapshot
+	 * @param shared true to copy the storage and indexes before the first modification of this map
+	 * @see #snapshot()
+	 */
+	private IdentityMap(final IdentityMap map, final boolean shared) {
+		this.identityItems = map.identityItems;
+		this.primaryIndex = map.primaryIndex;
+		this.authenticatedStateIndexes = map.authenticatedStateIndexes;
+		this.namespacesById = map.namespacesById;
+		this.shared = shared;
+	}
 
 	/**
 	 * Gets the {@link IdentityItem}s for the namespace
@@ -101,6 +175,65 @@ public class IdentityMap {
 		removeItemFromMap(item, namespace);
 	}
 
+	/**
+	 * Returns the {@link IdentityItem}s with the primary flag set, keyed by namespace.
+	 * The items are read from an index, so the cost is proportional to the number of primary items.
+	 *
+	 * @return a map of namespace to its primary {@code IdentityItem}s; empty if no item is primary
+	 */
+	public Map<String, List<IdentityItem>> getPrimaryItems() {
+		ensureIndexes();
+		return primaryIndex.getItems();
+	}
+
+	/**
+	 * @return the number of {@link IdentityItem}s with the primary flag set
+	 */
+	public int getPrimaryItemCount() {
+		ensureIndexes();
+		return primaryIndex.size;
+	}
+
+	/**
+	 * Returns the {@link IdentityItem}s with the given {@link AuthenticatedState}, keyed by namespace.
+	 * The items are read from an index, so the cost is proportional to the number of matching items.
+	 *
+	 * @param authenticatedState the {@code AuthenticatedState} of the items to return
+	 * @return a map of namespace to its {@code IdentityItem}s in {@code authenticatedState}; empty if there are none
+	 */
+	public Map<String, List<IdentityItem>> getItemsWithAuthenticatedState(final AuthenticatedState authenticatedState) {
+		ensureIndexes();
+		final ItemIndex index = authenticatedStateIndexes.get(authenticatedState);
+		return index == null ? new HashMap<String, List<IdentityItem>>() : index.getItems();
+	}
+
+	/**
+	 * @param authenticatedState the {@link AuthenticatedState} of the items to count
+	 * @return the number of {@link IdentityItem}s in {@code authenticatedState}
+	 */
+	public int getItemCountWithAuthenticatedState(final AuthenticatedState authenticatedState) {
+		ensureIndexes();
+		final ItemIndex index = authenticatedStateIndexes.get(authenticatedState);
+		return index == null ? 0 : index.size;
+	}
+
+	/**
+	 * Returns the namespaces containing an {@link IdentityItem} with the given id, matched ignoring case.
+	 * The namespaces are read from an index, so the cost is proportional to the number of matching namespaces.
+	 *
+	 * @param id the id of the identity
+	 * @return the namespaces containing {@code id}; empty if no namespace contains it or {@code id} is null
+	 */
+	public List<String> getNamespacesForId(final String id) {
+		if (id == null) {
+			return new ArrayList<>();
+		}
+
+		ensureIndexes();
+		final Set<String> namespaces = namespacesById.get(id.toLowerCase(Locale.ROOT));
+		return namespaces == null ? new ArrayList<String>() : new ArrayList<>(namespaces);
+	}
+
 	/**
 	 * Determines if this {@link IdentityMap} has no identities.
 	 *
@@ -221,13 +354,234 @@ public class IdentityMap {
 			}
 		}
 
+		if (isRemoved) {
+			copyIfShared();
+		}
+
 		for (final String eachNamespace : filteredNamespaces) {
-			identityItems.remove(eachNamespace);
+			final List<IdentityItem> removedItems = identityItems.remove(eachNamespace);
+			onNamespaceModified(eachNamespace);
+
+			for (final IdentityItem removedItem : removedItems) {
+				unindexItem(removedItem, eachNamespace);
+			}
+
+			if (recency != null) {
+				recency.remove(eachNamespace);
+			}
+
+			if (changeRecorder != null) {
+				for (final IdentityItem removedItem : removedItems) {
+					changeRecorder.add(new IdentityChange(IdentityChange.Type.REMOVED, eachNamespace, removedItem, null));
+				}
+			}
 		}
 
 		return isRemoved;
 	}
 
+	/**
+	 * Removes the {@link IdentityItem} with the given id, matched ignoring case, from every namespace containing it.
+	 * Namespaces are found with the reverse index, so the cost is proportional to the number of matching namespaces.
+	 *
+	 * @param id the id of the identity to remove
+	 * @param exemptNamespaces the namespaces not to remove from, matched ignoring case; may be null
+	 * @return the namespaces the item was removed from; empty if none
+	 */
+	List<String> removeItemFromAllNamespaces(final String id, final Collection<String> exemptNamespaces) {
+		final List<String> removedNamespaces = new ArrayList<>();
+		final IdentityItem item = new IdentityItem(id);
+
+		for (final String namespace : getNamespacesForId(id)) {
+			if (containsIgnoreCase(exemptNamespaces, namespace)) {
+				continue;
+			}
+
+			removeItemAt(namespace, identityItems.get(namespace).indexOf(item), IdentityChange.Type.REMOVED);
+			removedNamespaces.add(namespace);
+		}
+
+		return removedNamespaces;
+	}
+
+	/**
+	 * Sets the list to which every change made to this {@link IdentityMap} is appended as an {@link IdentityChange}.
+	 * Changes are not recorded when {@code recorder} is null.
+	 *
+	 * @param recorder the list recording the changes, or null to stop recording
+	 */
+	void setChangeRecorder(final List<IdentityChange> recorder) {
+		this.changeRecorder = recorder;
+	}
+
+	/**
+	 * Starts tracking when each {@link IdentityItem} was last added or updated, used to evict the least recently
+	 * updated items. Items already in this map are considered older than any later update, in their list order.
+	 */
+	void enableRecencyTracking() {
+		if (recency != null) {
+			return;
+		}
+
+		recency = new HashMap<>();
+
+		for (final Map.Entry<String, List<IdentityItem>> entry : identityItems.entrySet()) {
+			recency.put(entry.getKey(), new SequenceList(new long[entry.getValue().size()]));
+		}
+	}
+
+	/**
+	 * Stops tracking when each {@link IdentityItem} was last added or updated and discards the tracked update sequences.
+	 */
+	void disableRecencyTracking() {
+		recency = null;
+		lastUpdateSequence = 0;
+	}
+
+	/**
+	 * @return true if recency is tracked
+	 * @see #enableRecencyTracking()
+	 */
+	boolean isRecencyTracked() {
+		return recency != null;
+	}
+
+	/**
+	 * Returns the update sequence of each {@link IdentityItem} in {@code namespace}, in the order of its items.
+	 * A higher sequence means a more recent update.
+	 *
+	 * @param namespace the namespace, matched exactly
+	 * @return a copy of the update sequences, or null if recency is not tracked or the namespace has no items
+	 */
+	long[] getRecency(final String namespace) {
+		if (recency == null || !recency.containsKey(namespace)) {
+			return null;
+		}
+
+		return recency.get(namespace).toArray();
+	}
+
+	/**
+	 * Restores the update sequences of the {@link IdentityItem}s in {@code namespace}, as returned by {@link #getRecency(String)}.
+	 * Ignored if recency is not tracked or {@code sequences} does not have one entry per item.
+	 *
+	 * @param namespace the namespace, matched exactly
+	 * @param sequences the update sequence of each item in {@code namespace}, in the order of its items
+	 */
+	void setRecency(final String namespace, final long[] sequences) {
+		final List<IdentityItem> items = identityItems.get(namespace);
+
+		if (recency == null || items == null || sequences == null || sequences.length != items.size()) {
+			return;
+		}
+
+		recency.put(namespace, new SequenceList(sequences.clone()));
+
+		for (final long sequence : sequences) {
+			lastUpdateSequence = Math.max(lastUpdateSequence, sequence);
+		}
+	}
+
+	/**
+	 * Removes the least recently updated {@link IdentityItem}s until every namespace holds at most {@code maxPerNamespace}
+	 * items and all namespaces together hold at most {@code maxTotal} items. Items in {@code exemptNamespaces} are never
+	 * evicted and not counted. Evicted items are recorded as {@link IdentityChange.Type#EVICTED}.
+	 * Does nothing if recency is not tracked.
+	 *
+	 * @param maxPerNamespace the maximum number of items per namespace, or 0 for no limit
+	 * @param maxTotal the maximum number of items in all namespaces, or 0 for no limit
+	 * @param exemptNamespaces the namespaces never evicted from, matched ignoring case
+	 * @return the number of evicted items
+	 */
+	int evictLeastRecentlyUpdated(final int maxPerNamespace, final int maxTotal, final Collection<String> exemptNamespaces) {
+		if (recency == null) {
+			return 0;
+		}
+
+		final List<String> namespaces = new ArrayList<>();
+		int total = 0;
+
+		for (final Map.Entry<String, List<IdentityItem>> entry : identityItems.entrySet()) {
+			if (!containsIgnoreCase(exemptNamespaces, entry.getKey())) {
+				namespaces.add(entry.getKey());
+				total += entry.getValue().size();
+			}
+		}
+
+		int evicted = 0;
+
+		if (maxPerNamespace > 0) {
+			for (final String namespace : namespaces) {
+				while (identityItems.containsKey(namespace) && identityItems.get(namespace).size() > maxPerNamespace) {
+					removeItemAt(namespace, indexOfLeastRecentlyUpdated(namespace), IdentityChange.Type.EVICTED);
+					evicted++;
+					total--;
+				}
+			}
+		}
+
+		while (maxTotal > 0 && total > maxTotal) {
+			String oldestNamespace = null;
+			long oldestSequence = Long.MAX_VALUE;
+
+			for (final String namespace : namespaces) {
+				final SequenceList sequences = recency.get(namespace);
+
+				if (sequences != null && sequences.size() > 0) {
+					final long sequence = sequences.get(indexOfLeastRecentlyUpdated(namespace));
+
+					if (sequence < oldestSequence) {
+						oldestSequence = sequence;
+						oldestNamespace = namespace;
+					}
+				}
+			}
+
+			if (oldestNamespace == null) {
+				break;
+			}
+
+			removeItemAt(oldestNamespace, indexOfLeastRecentlyUpdated(oldestNamespace), IdentityChange.Type.EVICTED);
+			evicted++;
+			total--;
+		}
+
+		return evicted;
+	}
+
+	/**
+	 * Creates a copy of this map in constant time. The copy shares its storage with this map until either map is modified,
+	 * at which point the modified map copies the storage first, so later changes to one map are never visible in the other.
+	 * Used to hand an application provided map to a background thread without copying it on the caller thread.
+	 *
+	 * @return a copy of this {@link IdentityMap}
+	 */
+	IdentityMap snapshot() {
+		shared = true;
+		return new IdentityMap(this, true);
+	}
+
+	/**
+	 * Returns a read-only view of the {@link IdentityItem}s in this {@link IdentityMap}, keyed by namespace.
+	 *
+	 * @return an unmodifiable {@code Map} of namespace to its {@code IdentityItem}s
+	 */
+	Map<String, List<IdentityItem>> getItems() {
+		return Collections.unmodifiableMap(identityItems);
+	}
+
+	/**
+	 * Returns the {@link IdentityItem} at {@code index} of {@code namespace} without copying the items of the namespace.
+	 *
+	 * @param namespace the namespace, matched exactly
+	 * @param index the position of the item in the namespace
+	 * @return the {@code IdentityItem}, or null if the namespace has no item at {@code index}
+	 */
+	IdentityItem getItem(final String namespace, final int index) {
+		final List<IdentityItem> items = identityItems.get(namespace);
+		return items == null || index < 0 || index >= items.size() ? null : items.get(index);
+	}
+
 	/**
 	 * Use this method to cast the {@link IdentityMap} as {@code Map<String, Object>} to be passed as EventData for an SDK Event.
 	 * This method returns an empty map if the {@code IdentityMap} contains no data
@@ -246,17 +600,47 @@ public class IdentityMap {
 	 * @return {@code Map} representation of xdm formatted IdentityMap
 	 */
 	Map<String, Object> asXDMMap(final boolean allowEmpty) {
+		return asXDMMap(allowEmpty, null);
+	}
+
+	/**
+	 * Use this method to cast the requested namespaces of this {@link IdentityMap} as {@code Map<String,Object>} to be passed
+	 * as EventData for an SDK Event. Only the {@link IdentityItem}s of the requested namespaces are serialized.
+	 * The item lists are cached per namespace until the namespace is modified and are shared between the returned maps,
+	 * so they must not be modified by the caller.
+	 *
+	 * @param allowEmpty If false and if the result contains no data, then returns a map with empty xdmFormatted Identity Map.
+	 *                   If true and if the result contains no data, then returns an empty map
+	 * @param namespaces the namespaces to include, matched exactly; if null all namespaces are included
+	 * @return {@code Map} representation of xdm formatted IdentityMap
+	 */
+	Map<String, Object> asXDMMap(final boolean allowEmpty, final Collection<String> namespaces) {
+		return asXDMMap(allowEmpty, namespaces, false);
+	}
+
+	/**
+	 * Use this method to cast the requested namespaces of this {@link IdentityMap} as {@code Map<String,Object>} to be passed
+	 * as EventData for an SDK Event, optionally in the compact form of {@link IdentityItem#toObjectMap(boolean)}.
+	 *
+	 * @param allowEmpty If false and if the result contains no data, then returns a map with empty xdmFormatted Identity Map.
+	 *                   If true and if the result contains no data, then returns an empty map
+	 * @param namespaces the namespaces to include, matched exactly; if null all namespaces are included
+	 * @param compact true to leave out the item fields which have their default value
+	 * @return {@code Map} representation of xdm formatted IdentityMap
+	 * @see #asXDMMap(boolean, Collection)
+	 */
+	Map<String, Object> asXDMMap(final boolean allowEmpty, final Collection<String> namespaces, final boolean compact) {
 		final Map<String, Object> xdmMap = new HashMap<>();
 		final Map<String, List<Map<String, Object>>> identityMap = new HashMap<>();
 
-		for (String namespace : identityItems.keySet()) {
-			final List<Map<String, Object>> namespaceIds = new ArrayList<>();
+		for (String namespace : namespaces == null ? identityItems.keySet() : namespaces) {
+			final List<IdentityItem> items = identityItems.get(namespace);
 
-			for (IdentityItem identityItem : identityItems.get(namespace)) {
-				namespaceIds.add(identityItem.toObjectMap());
+			if (items == null) {
+				continue;
 			}
 
-			identityMap.put(namespace, namespaceIds);
+			identityMap.put(namespace, getXDMItems(namespace, items, compact));
 		}
 
 		if (!identityMap.isEmpty() || !allowEmpty) {
@@ -267,9 +651,110 @@ public class IdentityMap {
 	}
 
 	/**
-	 * Creates an {@link IdentityMap} from the given xdm formatted {@link Map}
+	 * Returns the JSON array representation of the {@link IdentityItem}s in {@code namespace}, cached until the namespace
+	 * or the requested form changes.
+	 *
+	 * @param namespace the namespace, matched exactly
+	 * @param compact true for the compact form of {@link IdentityItem#toObjectMap(boolean)}, which leaves out the fields
+	 *                with default values
+	 * @return the JSON array of the items in {@code namespace}, or null if the namespace has no items
+	 */
+	String getJSONItems(final String namespace, final boolean compact) {
+		if (compact != jsonItemsCompact) {
+			jsonItemsCache.clear();
+			jsonItemsCompact = compact;
+		}
+
+		String jsonItems = jsonItemsCache.get(namespace);
+
+		if (jsonItems == null) {
+			final List<IdentityItem> items = identityItems.get(namespace);
+
+			if (items == null) {
+				return null;
+			}
+
+			jsonItems = new JSONArray(getXDMItems(namespace, items, compact)).toString();
+			jsonItemsCache.put(namespace, jsonItems);
+		}
+
+		return jsonItems;
+	}
+
+	/**
+	 * @return the number of modifications made to this {@link IdentityMap}, used to detect changes
+	 */
+	int getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * Returns the expiration time of every {@link IdentityItem} which expires, keyed by namespace and then by id. The XDM
+	 * format has no expiration time, so expirations are carried next to the identity map in event data and persistence.
+	 *
+	 * @return the expirations, or null if no item expires
+	 * @see #fromXDMMap(Map)
+	 */
+	Map<String, Object> getExpirations() {
+		Map<String, Object> expirations = null;
+
+		for (final Map.Entry<String, List<IdentityItem>> entry : identityItems.entrySet()) {
+			Map<String, Object> namespaceExpirations = null;
+
+			for (final IdentityItem item : entry.getValue()) {
+				if (item.getExpirationTime() == 0) {
+					continue;
+				}
+
+				if (namespaceExpirations == null) {
+					namespaceExpirations = new HashMap<>();
+				}
+
+				namespaceExpirations.put(item.getId(), item.getExpirationTime());
+			}
+
+			if (namespaceExpirations != null) {
+				if (expirations == null) {
+					expirations = new HashMap<>();
+				}
+
+				expirations.put(entry.getKey(), namespaceExpirations);
+			}
+		}
+
+		return expirations;
+	}
+
+	/**
+	 * Returns the expirations of {@code namespace} carried next to the identity map in {@code map}.
+	 *
+	 * @param map the XDM formatted map which may contain expirations
+	 * @param namespace the namespace
+	 * @return the expiration times of {@code namespace} keyed by id, or null if there are none
+	 * @see #getExpirations()
+	 */
+	static Map<?, ?> getNamespaceExpirations(final Map<String, Object> map, final String namespace) {
+		final Object expirations = map.get(IdentityConstants.EventDataKeys.EXPIRATIONS);
+
+		if (!(expirations instanceof Map)) {
+			return null;
+		}
+
+		final Object namespaceExpirations = ((Map<?, ?>) expirations).get(namespace);
+		return namespaceExpirations instanceof Map ? (Map<?, ?>) namespaceExpirations : null;
+	}
+
+	/**
+	 * Creates an {@link IdentityMap} from the given xdm formatted {@link Map}, including the expirations carried next to
+	 * the identity map.
 	 * Returns null if the provided map is null/empty.
 	 * Return null if the provided map is not in Identity Map's XDM format.
+	 * <p>
+	 * The {@link IdentityPayloadLimits} are not applied, as this only parses identifiers written by the Identity
+	 * extension: its persisted identifiers and its identity responses, which were checked when they were received.
+	 * Rejecting them after the limits were lowered would lose the persisted ECID or hide stored identifiers from
+	 * {@code Identity.getIdentities}. Request event data is parsed with {@link IdentityMapView}, which
+	 * applies the limits.
 	 *
 	 * @return {@code Map<String,Object>} XDM format representation of IdentityMap
 	 */
@@ -289,12 +774,14 @@ public class IdentityMap {
 		for (final String namespace : identityMapDict.keySet()) {
 			try {
 				final ArrayList<HashMap<String, Object>> idArr = (ArrayList<HashMap<String, Object>>) identityMapDict.get(namespace);
+				final Map<?, ?> namespaceExpirations = getNamespaceExpirations(map, namespace);
+				final String canonicalNamespace = IdentityStringPool.internNamespace(namespace);
 
 				for (Object idMap : idArr) {
 					final IdentityItem item = IdentityItem.fromData((Map<String, Object>) idMap);
 
 					if (item != null) {
-						identityMap.addItemToMap(item, namespace, false);
+						identityMap.addItemToMap(item.withExpiration(namespaceExpirations), canonicalNamespace, false);
 					}
 				}
 			} catch (ClassCastException e) {
@@ -310,6 +797,9 @@ public class IdentityMap {
 	// ========================================================================================
 
 	private void addItemToMap(final IdentityItem newItem, final String namespace, final boolean isFirstItem) {
+		copyIfShared();
+		onNamespaceModified(namespace);
+
 		// check if namespace exists
 		final List<IdentityItem> itemList;
 
@@ -323,14 +813,31 @@ public class IdentityMap {
 		int index = itemList.indexOf(newItem);
 
 		if (index >= 0) {
-			itemList.set(index, newItem);
-		} else if (isFirstItem) {
+			final IdentityItem previousItem = itemList.set(index, newItem);
+			setUpdateSequence(namespace, index, false);
+			unindexItem(previousItem, namespace);
+			indexItem(newItem, namespace);
+
+			if (changeRecorder != null && !previousItem.hasSameValues(newItem)) {
+				changeRecorder.add(new IdentityChange(IdentityChange.Type.UPDATED, namespace, newItem, previousItem));
+			}
+
+			return;
+		}
+
+		if (isFirstItem) {
 			itemList.add(0, newItem);
 		} else {
 			itemList.add(newItem);
 		}
 
 		identityItems.put(namespace, itemList);
+		setUpdateSequence(namespace, isFirstItem ? 0 : itemList.size() - 1, true);
+		indexItem(newItem, namespace);
+
+		if (changeRecorder != null) {
+			changeRecorder.add(new IdentityChange(IdentityChange.Type.ADDED, namespace, newItem, null));
+		}
 	}
 
 	private void removeItemFromMap(final IdentityItem item, final String namespace) {
@@ -339,11 +846,328 @@ public class IdentityMap {
 			return;
 		}
 
+		final int index = identityItems.get(namespace).indexOf(item);
+
+		if (index < 0) {
+			return;
+		}
+
+		removeItemAt(namespace, index, IdentityChange.Type.REMOVED);
+	}
+
+	private void removeItemAt(final String namespace, final int index, final IdentityChange.Type changeType) {
+		copyIfShared();
+		onNamespaceModified(namespace);
 		final List<IdentityItem> itemList = identityItems.get(namespace);
-		itemList.remove(item);
+		final IdentityItem removedItem = itemList.remove(index);
+		unindexItem(removedItem, namespace);
+
+		if (recency != null) {
+			recency.get(namespace).remove(index);
+		}
 
 		if (itemList.isEmpty()) {
 			identityItems.remove(namespace);
+
+			if (recency != null) {
+				recency.remove(namespace);
+			}
+		}
+
+		if (changeRecorder != null) {
+			changeRecorder.add(new IdentityChange(changeType, namespace, removedItem, null));
+		}
+	}
+
+	/**
+	 * Assigns the next update sequence to the item at {@code index} in {@code namespace}, if recency is tracked.
+	 *
+	 * @param namespace the namespace of the item
+	 * @param index the index of the item in its namespace
+	 * @param inserted true if the item was inserted at {@code index}, false if it replaced the item at {@code index}
+	 */
+	private void setUpdateSequence(final String namespace, final int index, final boolean inserted) {
+		if (recency == null) {
+			return;
+		}
+
+		SequenceList sequences = recency.get(namespace);
+
+		if (sequences == null) {
+			sequences = new SequenceList(new long[0]);
+			recency.put(namespace, sequences);
+		}
+
+		if (inserted) {
+			sequences.insert(index, ++lastUpdateSequence);
+		} else {
+			sequences.set(index, ++lastUpdateSequence);
+		}
+	}
+
+	private void ensureIndexes() {
+		if (primaryIndex != null) {
+			return;
+		}
+
+		primaryIndex = new ItemIndex();
+		authenticatedStateIndexes = new EnumMap<>(AuthenticatedState.class);
+		namespacesById = new HashMap<>();
+
+		for (final Map.Entry<String, List<IdentityItem>> entry : identityItems.entrySet()) {
+			for (final IdentityItem item : entry.getValue()) {
+				indexItem(item, entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Replaces the indexes of this map with copies of the indexes of {@code map}.
+	 * Indexes not yet built by {@code map} are left to be built on the first query of this map.
+	 *
+	 * @param map the map whose indexes are copied
+	 */
+	private void copyIndexes(final IdentityMap map) {
+		if (map.primaryIndex == null) {
+			primaryIndex = null;
+			authenticatedStateIndexes = null;
+			namespacesById = null;
+			return;
+		}
+
+		// read the source indexes first as map may be this map
+		final Map<AuthenticatedState, ItemIndex> sourceStateIndexes = map.authenticatedStateIndexes;
+		final Map<String, Set<String>> sourceNamespacesById = map.namespacesById;
+		primaryIndex = new ItemIndex(map.primaryIndex);
+		authenticatedStateIndexes = new EnumMap<>(AuthenticatedState.class);
+
+		for (final Map.Entry<AuthenticatedState, ItemIndex> entry : sourceStateIndexes.entrySet()) {
+			authenticatedStateIndexes.put(entry.getKey(), new ItemIndex(entry.getValue()));
+		}
+
+		namespacesById = new HashMap<>();
+
+		for (final Map.Entry<String, Set<String>> entry : sourceNamespacesById.entrySet()) {
+			namespacesById.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+		}
+	}
+
+	private void indexItem(final IdentityItem item, final String namespace) {
+		if (primaryIndex == null) {
+			return;
+		}
+
+		if (item.isPrimary()) {
+			primaryIndex.add(namespace, item);
+		}
+
+		ItemIndex index = authenticatedStateIndexes.get(item.getAuthenticatedState());
+
+		if (index == null) {
+			index = new ItemIndex();
+			authenticatedStateIndexes.put(item.getAuthenticatedState(), index);
+		}
+
+		index.add(namespace, item);
+
+		final String id = item.getId().toLowerCase(Locale.ROOT);
+		Set<String> namespaces = namespacesById.get(id);
+
+		if (namespaces == null) {
+			namespaces = new LinkedHashSet<>();
+			namespacesById.put(id, namespaces);
+		}
+
+		namespaces.add(namespace);
+	}
+
+	private void unindexItem(final IdentityItem item, final String namespace) {
+		if (primaryIndex == null) {
+			return;
+		}
+
+		if (item.isPrimary()) {
+			primaryIndex.remove(namespace, item);
+		}
+
+		final ItemIndex index = authenticatedStateIndexes.get(item.getAuthenticatedState());
+
+		if (index != null) {
+			index.remove(namespace, item);
+		}
+
+		final String id = item.getId().toLowerCase(Locale.ROOT);
+		final Set<String> namespaces = namespacesById.get(id);
+
+		if (namespaces != null && namespaces.remove(namespace) && namespaces.isEmpty()) {
+			namespacesById.remove(id);
+		}
+	}
+
+	private int indexOfLeastRecentlyUpdated(final String namespace) {
+		final SequenceList sequences = recency.get(namespace);
+		int oldest = 0;
+
+		for (int i = 1; i < sequences.size(); i++) {
+			if (sequences.get(i) < sequences.get(oldest)) {
+				oldest = i;
+			}
+		}
+
+		return oldest;
+	}
+
+	private static boolean containsIgnoreCase(final Collection<String> namespaces, final String namespace) {
+		if (namespaces == null) {
+			return false;
+		}
+
+		for (final String each : namespaces) {
+			if (each.equalsIgnoreCase(namespace)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private List<Map<String, Object>> getXDMItems(final String namespace, final List<IdentityItem> items,
+			final boolean compact) {
+		final Map<String, List<Map<String, Object>>> cache = compact ? compactXDMItemsCache : xdmItemsCache;
+		List<Map<String, Object>> xdmItems = cache.get(namespace);
+
+		if (xdmItems == null) {
+			xdmItems = new ArrayList<>(items.size());
+
+			for (IdentityItem identityItem : items) {
+				xdmItems.add(identityItem.toObjectMap(compact));
+			}
+
+			cache.put(namespace, xdmItems);
+		}
+
+		return xdmItems;
+	}
+
+	private void onNamespaceModified(final String namespace) {
+		xdmItemsCache.remove(namespace);
+		compactXDMItemsCache.remove(namespace);
+		jsonItemsCache.remove(namespace);
+		modificationCount++;
+	}
+
+	private void copyIfShared() {
+		if (!shared) {
+			return;
+		}
+
+		final Map<String, List<IdentityItem>> copiedItems = new HashMap<>();
+
+		for (final Map.Entry<String, List<IdentityItem>> entry : identityItems.entrySet()) {
+			copiedItems.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+		}
+
+		identityItems = copiedItems;
+		copyIndexes(this);
+		shared = false;
+	}
+
+	/**
+	 * Secondary index of the {@link IdentityItem}s matching one criteria, keyed by namespace.
+	 */
+	private static final class ItemIndex {
+		private final Map<String, Set<IdentityItem>> items = new LinkedHashMap<>();
+		private int size;
+
+		ItemIndex() {}
+
+		ItemIndex(final ItemIndex index) {
+			for (final Map.Entry<String, Set<IdentityItem>> entry : index.items.entrySet()) {
+				items.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+			}
+
+			size = index.size;
+		}
+
+		void add(final String namespace, final IdentityItem item) {
+			Set<IdentityItem> namespaceItems = items.get(namespace);
+
+			if (namespaceItems == null) {
+				namespaceItems = new LinkedHashSet<>();
+				items.put(namespace, namespaceItems);
+			}
+
+			if (namespaceItems.add(item)) {
+				size++;
+			}
+		}
+
+		void remove(final String namespace, final IdentityItem item) {
+			final Set<IdentityItem> namespaceItems = items.get(namespace);
+
+			if (namespaceItems == null || !namespaceItems.remove(item)) {
+				return;
+			}
+
+			size--;
+
+			if (namespaceItems.isEmpty()) {
+				items.remove(namespace);
+			}
+		}
+
+		Map<String, List<IdentityItem>> getItems() {
+			final Map<String, List<IdentityItem>> copy = new HashMap<>();
+
+			for (final Map.Entry<String, Set<IdentityItem>> entry : items.entrySet()) {
+				copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+			}
+
+			return copy;
+		}
+	}
+
+	/**
+	 * Growable list of update sequences, inserting and removing in amortized constant time at the end of the list.
+	 */
+	private static final class SequenceList {
+		private long[] values;
+		private int size;
+
+		SequenceList(final long[] values) {
+			this.values = values;
+			this.size = values.length;
+		}
+
+		int size() {
+			return size;
+		}
+
+		long get(final int index) {
+			return values[index];
+		}
+
+		void set(final int index, final long value) {
+			values[index] = value;
+		}
+
+		void insert(final int index, final long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, Math.max(4, size * 2));
+			}
+
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = value;
+			size++;
+		}
+
+		void remove(final int index) {
+			System.arraycopy(values, index + 1, values, index, size - index - 1);
+			size--;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(values, size);
 		}
 	}
 }
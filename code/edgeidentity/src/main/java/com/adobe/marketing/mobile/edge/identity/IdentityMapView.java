@@ -0,0 +1,155 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.LoggingMode;
+import com.adobe.marketing.mobile.MobileCore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
+
+/**
+ * Read-only view of an XDM formatted identity map received in event data.
+ * <p>
+ * Unlike {@link IdentityMap#fromXDMMap(Map)} the view does not copy the event data. The {@link IdentityItem}s of a
+ * namespace are decoded the first time the namespace is read and then kept, so namespaces which are skipped, such as
+ * reserved namespaces, are never decoded.
+ */
+class IdentityMapView {
+
+	private final Map<String, Object> data;
+	private final Map<String, Object> identityMapData;
+	private final Map<String, List<IdentityItem>> decodedItems = new HashMap<>();
+
+	private IdentityMapView(final Map<String, Object> data, final Map<String, Object> identityMapData) {
+		this.data = data;
+		this.identityMapData = identityMapData;
+	}
+
+	/**
+	 * Creates a view over the given XDM formatted {@link Map}.
+	 *
+	 * @param map the XDM formatted map containing an identity map
+	 * @return the {@link IdentityMapView} of the identity map, or null if {@code map} is null, empty, does not
+	 * contain an identity map or the identity map exceeds the {@link IdentityPayloadLimits}
+	 */
+	static IdentityMapView fromXDMMap(final Map<String, Object> map) {
+		if (Utils.isNullOrEmpty(map)) {
+			return null;
+		}
+
+		final Object identityMapData = map.get(IdentityConstants.XDMKeys.IDENTITY_MAP);
+
+		if (!(identityMapData instanceof Map)) {
+			return null;
+		}
+
+		if (!IdentityPayloadLimits.isWithinLimits((Map<String, Object>) identityMapData)) {
+			return null;
+		}
+
+		return new IdentityMapView(map, (Map<String, Object>) identityMapData);
+	}
+
+	/**
+	 * Checks if the given XDM formatted {@link Map} contains an identity map, regardless of whether it is within the
+	 * {@link IdentityPayloadLimits}. Used to tell a payload rejected by the limits apart from a payload without identifiers.
+	 *
+	 * @param map the XDM formatted map; may be null
+	 * @return true if {@code map} contains an identity map
+	 */
+	static boolean containsIdentityMap(final Map<String, Object> map) {
+		return map != null && map.get(IdentityConstants.XDMKeys.IDENTITY_MAP) instanceof Map;
+	}
+
+	/**
+	 * @return the namespaces in this view, including namespaces without valid items, as their canonical
+	 * {@link IdentityStringPool} instances
+	 */
+	List<String> getNamespaces() {
+		final List<String> namespaces = new ArrayList<>(identityMapData.size());
+
+		for (final String namespace : identityMapData.keySet()) {
+			namespaces.add(IdentityStringPool.internNamespace(namespace));
+		}
+
+		return namespaces;
+	}
+
+	/**
+	 * Returns the {@link IdentityItem}s of {@code namespace}, decoding them with their expiration times on first access.
+	 * Items which cannot be decoded are skipped.
+	 *
+	 * @param namespace the namespace, matched exactly
+	 * @return an unmodifiable list of the items in {@code namespace}; empty if there are none
+	 */
+	List<IdentityItem> getItems(final String namespace) {
+		List<IdentityItem> items = decodedItems.get(namespace);
+
+		if (items == null) {
+			items = Collections.unmodifiableList(decodeItems(identityMapData.get(namespace),
+												 IdentityMap.getNamespaceExpirations(data, namespace)));
+			decodedItems.put(namespace, items);
+		}
+
+		return items;
+	}
+
+	/**
+	 * Decodes all namespaces into a new {@link IdentityMap}.
+	 *
+	 * @return the {@code IdentityMap} with all items of this view
+	 */
+	IdentityMap toIdentityMap() {
+		final IdentityMap map = new IdentityMap();
+
+		for (final String namespace : getNamespaces()) {
+			for (final IdentityItem item : getItems(namespace)) {
+				map.addItem(item, namespace);
+			}
+		}
+
+		return map;
+	}
+
+	private static List<IdentityItem> decodeItems(final Object itemsData, final Map<?, ?> namespaceExpirations) {
+		if (!(itemsData instanceof List)) {
+			if (itemsData != null) {
+				MobileCore.log(LoggingMode.DEBUG, LOG_TAG, "IdentityMapView - Failed to read identity items, expected List.");
+			}
+
+			return Collections.emptyList();
+		}
+
+		final List<?> itemList = (List<?>) itemsData;
+		final List<IdentityItem> items = new ArrayList<>(itemList.size());
+
+		for (final Object itemData : itemList) {
+			if (!(itemData instanceof Map)) {
+				continue;
+			}
+
+			final IdentityItem item = IdentityItem.fromData((Map<String, Object>) itemData);
+
+			if (item != null) {
+				items.add(item.withExpiration(namespaceExpirations));
+			}
+		}
+
+		return items;
+	}
+}
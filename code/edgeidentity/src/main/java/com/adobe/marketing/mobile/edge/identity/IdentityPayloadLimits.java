@@ -0,0 +1,182 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.LoggingMode;
+import com.adobe.marketing.mobile.MobileCore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
+
+/**
+ * Size limits for identity payloads received in event data, so an oversized payload is rejected without unbounded work.
+ * A payload is validated before any of its identifiers are decoded, validation stops at the first limit exceeded.
+ * Every rejection is logged and counted per {@link Limit}.
+ */
+class IdentityPayloadLimits {
+
+	static final int DEFAULT_MAX_NAMESPACES = 100;
+	static final int DEFAULT_MAX_ITEMS_PER_NAMESPACE = 1000;
+	static final int DEFAULT_MAX_ID_LENGTH = 4096;
+	static final int DEFAULT_MAX_TOTAL_BYTES = 512 * 1024;
+	// maximum nesting depth of JSON converted by Utils, identity payloads are at most 4 levels deep
+	static final int MAX_DEPTH = 16;
+
+	/**
+	 * The limits a payload may exceed.
+	 */
+	enum Limit {
+		NAMESPACES,
+		ITEMS_PER_NAMESPACE,
+		ID_LENGTH,
+		TOTAL_BYTES,
+		DEPTH
+	}
+
+	private static volatile int maxNamespaces = DEFAULT_MAX_NAMESPACES;
+	private static volatile int maxItemsPerNamespace = DEFAULT_MAX_ITEMS_PER_NAMESPACE;
+	private static volatile int maxIdLength = DEFAULT_MAX_ID_LENGTH;
+	private static volatile int maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
+	private static final AtomicLongArray rejections = new AtomicLongArray(Limit.values().length);
+
+	private IdentityPayloadLimits() {}
+
+	/**
+	 * Sets the limits applied to identity payloads.
+	 *
+	 * @param namespaces the maximum number of namespaces
+	 * @param itemsPerNamespace the maximum number of identifiers in a namespace
+	 * @param idLength the maximum length of an identifier id
+	 * @param totalBytes the maximum size of all namespaces and ids, estimated from their number of characters
+	 */
+	static void setLimits(final int namespaces, final int itemsPerNamespace, final int idLength, final int totalBytes) {
+		maxNamespaces = namespaces;
+		maxItemsPerNamespace = itemsPerNamespace;
+		maxIdLength = idLength;
+		maxTotalBytes = totalBytes;
+	}
+
+	/**
+	 * Restores the default limits and clears the rejection counts. Used for testing.
+	 */
+	static void reset() {
+		setLimits(DEFAULT_MAX_NAMESPACES, DEFAULT_MAX_ITEMS_PER_NAMESPACE, DEFAULT_MAX_ID_LENGTH, DEFAULT_MAX_TOTAL_BYTES);
+
+		for (int i = 0; i < rejections.length(); i++) {
+			rejections.set(i, 0);
+		}
+	}
+
+	/**
+	 * Checks the XDM identity map data against the limits, without decoding any identifier.
+	 * Values which are not valid identifiers are not counted, they are skipped when decoded.
+	 *
+	 * @param identityMapData the namespace to identifiers map of an XDM identity map; should not be null
+	 * @return true if {@code identityMapData} is within all limits, false if it was rejected
+	 */
+	static boolean isWithinLimits(final Map<String, Object> identityMapData) {
+		if (identityMapData.size() > maxNamespaces) {
+			return reject(Limit.NAMESPACES, identityMapData.size() + " namespaces");
+		}
+
+		final int namespaceItemLimit = maxItemsPerNamespace;
+		final int idLengthLimit = maxIdLength;
+		final int totalBytesLimit = maxTotalBytes;
+		long totalBytes = 0;
+
+		for (final Map.Entry<String, Object> entry : identityMapData.entrySet()) {
+			if (!(entry.getValue() instanceof List)) {
+				continue;
+			}
+
+			final List<?> items = (List<?>) entry.getValue();
+
+			if (items.size() > namespaceItemLimit) {
+				return reject(Limit.ITEMS_PER_NAMESPACE, items.size() + " identifiers in namespace " + entry.getKey());
+			}
+
+			final String namespace = entry.getKey();
+			totalBytes += namespace == null ? 0 : namespace.length();
+
+			for (final Object item : items) {
+				if (!(item instanceof Map)) {
+					continue;
+				}
+
+				final Object id = ((Map<?, ?>) item).get(IdentityConstants.XDMKeys.ID);
+
+				if (!(id instanceof String)) {
+					continue;
+				}
+
+				final int idLength = ((String) id).length();
+
+				if (idLength > idLengthLimit) {
+					return reject(Limit.ID_LENGTH, "id of length " + idLength + " in namespace " + namespace);
+				}
+
+				totalBytes += idLength;
+
+				if (totalBytes > totalBytesLimit) {
+					return reject(Limit.TOTAL_BYTES, "more than " + totalBytesLimit + " bytes");
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks the nesting depth of a JSON value against {@link #MAX_DEPTH}.
+	 *
+	 * @param depth the nesting depth of the value, 0 for the top level
+	 * @return true if the value may be converted, false if it was rejected
+	 */
+	static boolean isWithinDepth(final int depth) {
+		if (depth > MAX_DEPTH) {
+			return reject(Limit.DEPTH, "nesting deeper than " + MAX_DEPTH + " levels");
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param limit the {@link Limit}
+	 * @return the number of payloads rejected for exceeding {@code limit}
+	 */
+	static long getRejectionCount(final Limit limit) {
+		return rejections.get(limit.ordinal());
+	}
+
+	/**
+	 * @return the number of payloads rejected for exceeding any limit
+	 */
+	static long getRejectionCount() {
+		long count = 0;
+
+		for (int i = 0; i < rejections.length(); i++) {
+			count += rejections.get(i);
+		}
+
+		return count;
+	}
+
+	private static boolean reject(final Limit limit, final String detail) {
+		rejections.incrementAndGet(limit.ordinal());
+		MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+					   String.format("IdentityPayloadLimits - Rejected identity payload exceeding the %s limit: %s.", limit, detail));
+		return false;
+	}
+}
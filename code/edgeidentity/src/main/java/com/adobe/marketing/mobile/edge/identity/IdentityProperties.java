@@ -14,7 +14,10 @@ package com.adobe.marketing.mobile.edge.identity;
 import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MobileCore;
 
+import org.json.JSONObject;
+
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -34,9 +37,24 @@ class IdentityProperties {
 	};
 
 	private final IdentityMap identityMap;
+	private long stateVersion;
+	// JSON form of these properties, valid while the identity map and state version are unchanged
+	private String jsonCache;
+	private int jsonCacheModificationCount;
+	private long jsonCacheStateVersion;
+	private boolean jsonCacheWithRecency;
+	private boolean jsonCacheCompact;
+	// primary and secondary ECID of the identity map, valid while the identity map is unchanged
+	private ECID ecid;
+	private ECID ecidSecondary;
+	private int ecidModificationCount = -1;
+	// persisted update sequences, loaded once recency is tracked unless the identity map was modified since
+	private Map<String, Object> persistedRecency;
+	private int persistedRecencyModificationCount;
 
 	IdentityProperties() {
 		this.identityMap = new IdentityMap();
+		updateRecencyTracking();
 	}
 
 	/**
@@ -48,6 +66,42 @@ class IdentityProperties {
 		IdentityMap map = IdentityMap.fromXDMMap(xdmData);
 		this.identityMap = map == null ? new IdentityMap() :
 						   map; // always keep an empty identity map so there is no need for null check
+
+		if (xdmData != null && xdmData.get(IdentityConstants.EventDataKeys.STATE_VERSION) instanceof Number) {
+			this.stateVersion = ((Number) xdmData.get(IdentityConstants.EventDataKeys.STATE_VERSION)).longValue();
+		}
+
+		if (xdmData != null && xdmData.get(IdentityConstants.PersistenceKeys.RECENCY) instanceof Map) {
+			persistedRecency = (Map<String, Object>) xdmData.get(IdentityConstants.PersistenceKeys.RECENCY);
+			persistedRecencyModificationCount = identityMap.getModificationCount();
+		}
+
+		updateRecencyTracking();
+	}
+
+	/**
+	 * Retrieves the state version, incremented on every change to the identifiers.
+	 *
+	 * @return the current state version, 0 if the identifiers were never changed
+	 */
+	long getStateVersion() {
+		return stateVersion;
+	}
+
+	/**
+	 * Sets the state version
+	 *
+	 * @param stateVersion the new state version
+	 */
+	void setStateVersion(final long stateVersion) {
+		this.stateVersion = stateVersion;
+	}
+
+	/**
+	 * Increments the state version
+	 */
+	void incrementStateVersion() {
+		stateVersion++;
 	}
 
 	/**
@@ -57,11 +111,8 @@ class IdentityProperties {
 	 */
 	void setECID(final ECID newEcid) {
 		// delete the previous ECID from the identity map if exist
-		final ECID currentECID = getECID();
-
-		if (currentECID != null) {
-			final IdentityItem previousECIDItem = new IdentityItem(currentECID.toString());
-			identityMap.removeItem(previousECIDItem, IdentityConstants.Namespaces.ECID);
+		if (getECID() != null) {
+			identityMap.removeItem(identityMap.getItem(IdentityConstants.Namespaces.ECID, 0), IdentityConstants.Namespaces.ECID);
 		}
 
 		// if primary ecid is null, clear off all the existing ECID's
@@ -81,14 +132,8 @@ class IdentityProperties {
 	 * @return current {@code ECID}
 	 */
 	ECID getECID() {
-		final List<IdentityItem> ecidItems = identityMap.getIdentityItemsForNamespace(IdentityConstants.Namespaces.ECID);
-
-		if (ecidItems != null && !ecidItems.isEmpty() && ecidItems.get(0) != null
-				&& !Utils.isNullOrEmpty(ecidItems.get(0).getId())) {
-			return new ECID(ecidItems.get(0).getId());
-		}
-
-		return null;
+		syncECIDs();
+		return ecid;
 	}
 
 	/**
@@ -98,11 +143,8 @@ class IdentityProperties {
 	 */
 	void setECIDSecondary(final ECID newSecondaryEcid) {
 		// delete the previous secondary ECID from the identity map if exist
-		final ECID ecidSecondary = getECIDSecondary();
-
-		if (ecidSecondary != null) {
-			final IdentityItem previousECIDItem = new IdentityItem(ecidSecondary.toString());
-			identityMap.removeItem(previousECIDItem, IdentityConstants.Namespaces.ECID);
+		if (getECIDSecondary() != null) {
+			identityMap.removeItem(identityMap.getItem(IdentityConstants.Namespaces.ECID, 1), IdentityConstants.Namespaces.ECID);
 		}
 
 		// do not set secondary ECID if primary ECID is not set
@@ -125,14 +167,31 @@ class IdentityProperties {
 	 * @return secondary {@code ECID}
 	 */
 	ECID getECIDSecondary() {
-		final List<IdentityItem> ecidItems = identityMap.getIdentityItemsForNamespace(IdentityConstants.Namespaces.ECID);
+		syncECIDs();
+		return ecidSecondary;
+	}
 
-		if (ecidItems != null && ecidItems.size() > 1 && ecidItems.get(1) != null
-				&& !Utils.isNullOrEmpty(ecidItems.get(1).getId())) {
-			return new ECID(ecidItems.get(1).getId());
+	/**
+	 * Brings the primary and secondary {@link ECID} fields in line with the first two items of the ECID namespace once
+	 * the identity map was modified. A field keeps its {@code ECID} instance while the id at its position is unchanged,
+	 * so reading the ECIDs does not allocate.
+	 */
+	private void syncECIDs() {
+		if (ecidModificationCount == identityMap.getModificationCount()) {
+			return;
+		}
+
+		ecid = toECID(identityMap.getItem(IdentityConstants.Namespaces.ECID, 0), ecid);
+		ecidSecondary = toECID(identityMap.getItem(IdentityConstants.Namespaces.ECID, 1), ecidSecondary);
+		ecidModificationCount = identityMap.getModificationCount();
+	}
+
+	private static ECID toECID(final IdentityItem item, final ECID current) {
+		if (item == null || Utils.isNullOrEmpty(item.getId())) {
+			return null;
 		}
 
-		return null;
+		return current != null && current.toString().equals(item.getId()) ? current : new ECID(item.getId());
 	}
 
 	/**
@@ -150,7 +209,53 @@ class IdentityProperties {
 	 */
 	void updateCustomerIdentifiers(final IdentityMap map) {
 		removeIdentitiesWithReservedNamespaces(map);
+		updateRecencyTracking();
 		identityMap.merge(map);
+		evictIdentitiesOverRetentionLimits();
+	}
+
+	/**
+	 * Update the customer identifiers by merging the identifiers in the passed in {@link IdentityMapView} with the current identifiers.
+	 * Identifiers in reserved namespaces are skipped without being decoded.
+	 *
+	 * @param view the {@code IdentityMapView} containing customer identifiers to add or update with the current customer identifiers
+	 * @see #updateCustomerIdentifiers(IdentityMap)
+	 */
+	void updateCustomerIdentifiers(final IdentityMapView view) {
+		updateRecencyTracking();
+
+		for (final String namespace : view.getNamespaces()) {
+			if (isReservedNamespace(namespace)) {
+				logReservedNamespace(namespace);
+				continue;
+			}
+
+			for (final IdentityItem item : view.getItems(namespace)) {
+				identityMap.addItem(item, namespace);
+			}
+		}
+
+		evictIdentitiesOverRetentionLimits();
+	}
+
+	/**
+	 * Remove customer identifiers specified in passed in {@link IdentityMapView} from the current identifiers.
+	 * Identifiers in reserved namespaces are skipped without being decoded.
+	 *
+	 * @param view the {@code IdentityMapView} with items to remove from current identifiers
+	 * @see #removeCustomerIdentifiers(IdentityMap)
+	 */
+	void removeCustomerIdentifiers(final IdentityMapView view) {
+		for (final String namespace : view.getNamespaces()) {
+			if (isReservedNamespace(namespace)) {
+				logReservedNamespace(namespace);
+				continue;
+			}
+
+			for (final IdentityItem item : view.getItems(namespace)) {
+				identityMap.removeItem(item, namespace);
+			}
+		}
 	}
 
 	/**
@@ -168,6 +273,113 @@ class IdentityProperties {
 		identityMap.remove(map);
 	}
 
+	/**
+	 * Remove the customer identifiers with the given ids, matched ignoring case, from every namespace containing them.
+	 * <p>
+	 * Identifiers with following namespaces are prohibited from removing using the API
+	 * - ECID
+	 * - IDFA
+	 * - GAID
+	 *
+	 * @param ids the ids of the identifiers to remove
+	 * @return the namespaces from which identifiers were removed
+	 */
+	List<String> removeCustomerIdentifiersFromAllNamespaces(final List<String> ids) {
+		final List<String> namespaces = new ArrayList<>();
+
+		for (final String id : ids) {
+			for (final String namespace : identityMap.removeItemFromAllNamespaces(id, reservedNamespaces)) {
+				if (!namespaces.contains(namespace)) {
+					namespaces.add(namespace);
+				}
+			}
+		}
+
+		return namespaces;
+	}
+
+	/**
+	 * Remove all customer identifiers in the given namespaces from the current identifiers. Namespaces are matched ignoring case.
+	 * <p>
+	 * Identifiers with following namespaces are prohibited from removing using the API
+	 * - ECID
+	 * - IDFA
+	 * - GAID
+	 *
+	 * @param namespaces the namespaces to clear
+	 */
+	void clearCustomerIdentifiersForNamespaces(final List<String> namespaces) {
+		for (final String namespace : namespaces) {
+			if (isReservedNamespace(namespace)) {
+				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+							   String.format("IdentityProperties - Removing identifiers in namespace %s is not allowed.", namespace));
+				continue;
+			}
+
+			identityMap.clearItemsForNamespace(namespace);
+		}
+	}
+
+	/**
+	 * Removes the identifiers in {@code candidates} which are expired at {@code now}. Candidates which are no longer
+	 * stored, or were updated with a later or no expiration time, are ignored.
+	 *
+	 * @param candidates the {@link IdentityExpiryWheel.Entry}s of the identifiers which may have expired
+	 * @param now the current time in milliseconds since the epoch
+	 * @return the namespaces from which identifiers were removed; empty if none were removed
+	 */
+	List<String> removeExpiredIdentifiers(final Collection<IdentityExpiryWheel.Entry> candidates, final long now) {
+		final List<String> namespaces = new ArrayList<>();
+
+		for (final IdentityExpiryWheel.Entry candidate : candidates) {
+			final List<IdentityItem> items = identityMap.getItems().get(candidate.namespace);
+
+			if (items == null) {
+				continue;
+			}
+
+			final int index = items.indexOf(new IdentityItem(candidate.id));
+
+			if (index < 0 || !items.get(index).isExpired(now)) {
+				continue;
+			}
+
+			identityMap.removeItem(items.get(index), candidate.namespace);
+
+			if (!namespaces.contains(candidate.namespace)) {
+				namespaces.add(candidate.namespace);
+			}
+		}
+
+		return namespaces;
+	}
+
+	/**
+	 * @return the expiration time of every identifier which expires, keyed by namespace and then by id; null if none expire
+	 * @see IdentityMap#getExpirations()
+	 */
+	Map<String, Object> getExpirations() {
+		return identityMap.getExpirations();
+	}
+
+	/**
+	 * Removes all identifiers, including the ECIDs.
+	 */
+	void clearAllIdentifiers() {
+		for (final String namespace : identityMap.getNamespaces()) {
+			identityMap.clearItemsForNamespace(namespace);
+		}
+	}
+
+	/**
+	 * Sets the list to which every change made to the identifiers is appended as an {@link IdentityChange}.
+	 *
+	 * @param recorder the list recording the changes, or null to stop recording
+	 */
+	void setChangeRecorder(final List<IdentityChange> recorder) {
+		identityMap.setChangeRecorder(recorder);
+	}
+
 	/**
 	 * Converts this into an event data representation in XDM format
 	 *
@@ -175,7 +387,118 @@ class IdentityProperties {
 	 * @return A {@link Map} representing this in XDM format
 	 */
 	Map<String, Object> toXDMData(final boolean allowEmpty) {
-		return identityMap.asXDMMap(allowEmpty);
+		return toXDMData(allowEmpty, null);
+	}
+
+	/**
+	 * Converts the requested namespaces of this into an event data representation in XDM format.
+	 * The state version is included once the identifiers were changed.
+	 *
+	 * @param allowEmpty If the result contains no data, return a dictionary with a single {@link IdentityMap} key
+	 * @param namespaces the namespaces to include; if null all namespaces are included
+	 * @return A {@link Map} representing the requested namespaces in XDM format
+	 */
+	Map<String, Object> toXDMData(final boolean allowEmpty, final Collection<String> namespaces) {
+		return toXDMData(allowEmpty, namespaces, false);
+	}
+
+	/**
+	 * Converts the requested namespaces of this into an event data representation in XDM format, optionally leaving out
+	 * the identifier fields which have their default value.
+	 *
+	 * @param allowEmpty If the result contains no data, return a dictionary with a single {@link IdentityMap} key
+	 * @param namespaces the namespaces to include; if null all namespaces are included
+	 * @param compact true to leave out an ambiguous authenticated state and a false primary flag
+	 * @return A {@link Map} representing the requested namespaces in XDM format
+	 * @see IdentityItem#toObjectMap(boolean)
+	 */
+	Map<String, Object> toXDMData(final boolean allowEmpty, final Collection<String> namespaces, final boolean compact) {
+		final Map<String, Object> xdmData = identityMap.asXDMMap(allowEmpty, namespaces, compact);
+
+		if (stateVersion > 0) {
+			xdmData.put(IdentityConstants.EventDataKeys.STATE_VERSION, stateVersion);
+		}
+
+		return xdmData;
+	}
+
+	/**
+	 * Converts this into a JSON string with the same content as {@link #toXDMData(boolean)} with {@code allowEmpty} false,
+	 * used for persistence, plus the expiration times of identifiers which expire. While retention limits are enabled the
+	 * update sequence of each identifier is included, so the least recently updated identifiers are still known after a
+	 * restart. While the {@link IdentityCompactEncoding} is used for persistence, fields with default values are left out.
+	 * The JSON is assembled from the cached JSON of each namespace and is itself cached until the identifiers, the state
+	 * version or the encoding change.
+	 *
+	 * @return the JSON representation of this
+	 */
+	String toJSONString() {
+		final boolean withRecency = IdentityRetention.isEnabled() && identityMap.isRecencyTracked();
+		final boolean compact = IdentityCompactEncoding.isPersistenceCompact();
+
+		if (jsonCache != null && jsonCacheModificationCount == identityMap.getModificationCount()
+				&& jsonCacheStateVersion == stateVersion && jsonCacheWithRecency == withRecency && jsonCacheCompact == compact) {
+			return jsonCache;
+		}
+
+		final StringBuilder json = new StringBuilder("{");
+		json.append(JSONObject.quote(IdentityConstants.XDMKeys.IDENTITY_MAP)).append(":{");
+		boolean isFirstNamespace = true;
+
+		for (final String namespace : identityMap.getNamespaces()) {
+			final String jsonItems = identityMap.getJSONItems(namespace, compact);
+
+			if (jsonItems == null) {
+				continue;
+			}
+
+			if (!isFirstNamespace) {
+				json.append(',');
+			}
+
+			json.append(JSONObject.quote(namespace)).append(':').append(jsonItems);
+			isFirstNamespace = false;
+		}
+
+		json.append('}');
+
+		if (stateVersion > 0) {
+			json.append(',').append(JSONObject.quote(IdentityConstants.EventDataKeys.STATE_VERSION)).append(':').append(stateVersion);
+		}
+
+		final Map<String, Object> expirations = identityMap.getExpirations();
+
+		if (expirations != null) {
+			json.append(',').append(JSONObject.quote(IdentityConstants.EventDataKeys.EXPIRATIONS)).append(':')
+			.append(new JSONObject(expirations));
+		}
+
+		if (withRecency) {
+			appendRecency(json);
+		}
+
+		jsonCache = json.append('}').toString();
+		jsonCacheModificationCount = identityMap.getModificationCount();
+		jsonCacheStateVersion = stateVersion;
+		jsonCacheWithRecency = withRecency;
+		jsonCacheCompact = compact;
+		return jsonCache;
+	}
+
+	/**
+	 * Checks if {@code namespace} is reserved and may not be modified through the public API. Namespaces are matched ignoring case.
+	 *
+	 * @param namespace the namespace to check
+	 * @return true if {@code namespace} is one of {@link #reservedNamespaces}
+	 */
+	static boolean isReservedNamespace(final String namespace) {
+		for (final String reservedNamespace : reservedNamespaces) {
+			if (reservedNamespace.equalsIgnoreCase(namespace)) {
+				return true;
+			}
+		}
+
+		return false;
 	}
 
 	/**
@@ -187,10 +510,110 @@ class IdentityProperties {
 	private void removeIdentitiesWithReservedNamespaces(final IdentityMap identityMap) {
 		for (final String reservedNamespace : reservedNamespaces) {
 			if (identityMap.clearItemsForNamespace(reservedNamespace)) {
-				MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
-							   String.format("IdentityProperties - Updating/Removing identifiers in namespace %s is not allowed.", reservedNamespace));
+				logReservedNamespace(reservedNamespace);
 			}
 		}
 	}
 
+	/**
+	 * Tracks the recency of the identifiers only while the {@link IdentityRetention} limits are enabled, as it is only
+	 * used to evict identifiers over the limits. Persisted update sequences are restored when tracking starts, unless the
+	 * identifiers were modified since they were loaded.
+	 */
+	private void updateRecencyTracking() {
+		if (!IdentityRetention.isEnabled()) {
+			identityMap.disableRecencyTracking();
+			return;
+		}
+
+		if (identityMap.isRecencyTracked()) {
+			return;
+		}
+
+		identityMap.enableRecencyTracking();
+
+		if (persistedRecency != null && persistedRecencyModificationCount == identityMap.getModificationCount()) {
+			loadRecency(persistedRecency);
+		}
+
+		persistedRecency = null;
+	}
+
+	/**
+	 * Evicts the least recently updated customer identifiers exceeding the {@link IdentityRetention} limits, if enabled.
+	 */
+	private void evictIdentitiesOverRetentionLimits() {
+		if (!IdentityRetention.isEnabled()) {
+			return;
+		}
+
+		final int evicted = identityMap.evictLeastRecentlyUpdated(IdentityRetention.getMaxPerNamespace(),
+							IdentityRetention.getMaxTotal(), reservedNamespaces);
+
+		if (evicted > 0) {
+			IdentityRetention.recordEvictions(evicted);
+			MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+						   String.format("IdentityProperties - Evicted %d least recently updated identifiers over the retention limits.",
+										 evicted));
+		}
+	}
+
+	private void appendRecency(final StringBuilder json) {
+		json.append(',').append(JSONObject.quote(IdentityConstants.PersistenceKeys.RECENCY)).append(":{");
+		boolean isFirstNamespace = true;
+
+		for (final String namespace : identityMap.getNamespaces()) {
+			final long[] sequences = identityMap.getRecency(namespace);
+
+			if (sequences == null) {
+				continue;
+			}
+
+			if (!isFirstNamespace) {
+				json.append(',');
+			}
+
+			json.append(JSONObject.quote(namespace)).append(":[");
+
+			for (int i = 0; i < sequences.length; i++) {
+				if (i > 0) {
+					json.append(',');
+				}
+
+				json.append(sequences[i]);
+			}
+
+			json.append(']');
+			isFirstNamespace = false;
+		}
+
+		json.append('}');
+	}
+
+	private void loadRecency(final Map<String, Object> recencyData) {
+		for (final Map.Entry<String, Object> entry : recencyData.entrySet()) {
+			if (!(entry.getValue() instanceof List)) {
+				continue;
+			}
+
+			final List<?> values = (List<?>) entry.getValue();
+			final long[] sequences = new long[values.size()];
+			boolean isValid = true;
+
+			for (int i = 0; i < sequences.length && isValid; i++) {
+				isValid = values.get(i) instanceof Number;
+				sequences[i] = isValid ? ((Number) values.get(i)).longValue() : 0;
+			}
+
+			if (isValid) {
+				identityMap.setRecency(entry.getKey(), sequences);
+			}
+		}
+	}
+
+	private static void logReservedNamespace(final String namespace) {
+		MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+					   String.format("IdentityProperties - Updating/Removing identifiers in namespace %s is not allowed.", namespace));
+	}
+
 }
@@ -0,0 +1,59 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+/**
+ * The identities read together with the state version they are stored at.
+ *
+ * @see Identity#getIdentitiesWithStateVersion(com.adobe.marketing.mobile.AdobeCallback)
+ */
+public final class IdentityReadResult {
+
+	private final long stateVersion;
+	private final IdentityMap identities;
+
+	/**
+	 * Creates a new {@link IdentityReadResult}
+	 *
+	 * @param stateVersion the state version of {@code identities}
+	 * @param identities the {@link IdentityMap} of all identities; should not be null
+	 */
+	IdentityReadResult(final long stateVersion, final IdentityMap identities) {
+		this.stateVersion = stateVersion;
+		this.identities = identities;
+	}
+
+	/**
+	 * Returns the state version of {@link #getIdentities()}, to be used as the expected state version of
+	 * {@link Identity#updateIdentitiesIfVersionMatches(IdentityMap, long, com.adobe.marketing.mobile.AdobeCallback)}.
+	 *
+	 * @return the state version the identities are stored at
+	 */
+	public long getStateVersion() {
+		return stateVersion;
+	}
+
+	/**
+	 * @return the {@link IdentityMap} of all identities stored at {@link #getStateVersion()}
+	 */
+	public IdentityMap getIdentities() {
+		return identities;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+			   + "\"stateVersion\": " + stateVersion + ", "
+			   + "\"identities\": " + identities
+			   + "}";
+	}
+}
@@ -0,0 +1,260 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.AdobeCallback;
+import com.adobe.marketing.mobile.AdobeError;
+import com.adobe.marketing.mobile.Event;
+import com.adobe.marketing.mobile.LoggingMode;
+import com.adobe.marketing.mobile.MobileCore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
+
+/**
+ * Coalesces concurrent identical identity requests so that a single in-flight request {@link Event}
+ * serves every caller waiting for the same response.
+ * <p>
+ * The first caller for a given request key starts a new {@link Flight} and is responsible for dispatching
+ * the request event. Callers arriving while that flight is pending are attached to it and do not dispatch, unless a
+ * change to the identities was dispatched since the flight started.
+ * When the response is received it is parsed once and the resulting {@link IdentityMap} is fanned out to all
+ * waiting callbacks.
+ * <p>
+ * Each callback is invoked on the {@link Executor} given by its caller, or directly on the thread delivering the
+ * response if none was given. The response is parsed by the first callback to run, so it is not parsed on the
+ * delivering thread unless a callback runs directly.
+ */
+class IdentityRequestCoalescer {
+
+	private final Map<String, Flight> flights = new HashMap<>();
+	private final long staleFlightTimeoutMillis;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param staleFlightTimeoutMillis time after which a pending flight no longer accepts new callers, so that a lost
+	 *                                 response does not block subsequent requests
+	 */
+	IdentityRequestCoalescer(final long staleFlightTimeoutMillis) {
+		this.staleFlightTimeoutMillis = staleFlightTimeoutMillis;
+	}
+
+	/**
+	 * Attaches {@code callback} to the in-flight request for {@code requestKey}, or starts a new flight if none is pending.
+	 *
+	 * @param requestKey identifies requests which can share the same response; should not be null
+	 * @param callback the callback to be notified with the response; should not be null
+	 * @param executor the {@link Executor} on which {@code callback} is invoked, or null to invoke it directly
+	 * @return the new {@link Flight} for which the caller must dispatch the request event,
+	 * or null if {@code callback} was attached to an already pending request
+	 */
+	synchronized Flight join(final String requestKey, final AdobeCallback<IdentityMap> callback,
+							 final Executor executor) {
+		final long now = System.currentTimeMillis();
+		final Flight pending = flights.get(requestKey);
+		final Waiter waiter = new Waiter(callback, executor);
+
+		if (pending != null && now - pending.startTimeMillis < staleFlightTimeoutMillis) {
+			pending.waiters.add(waiter);
+			return null;
+		}
+
+		final Flight flight = new Flight(requestKey, now);
+		flight.waiters.add(waiter);
+		flights.put(requestKey, flight);
+		return flight;
+	}
+
+	/**
+	 * Completes {@code flight} with the given response event. The response is parsed once and every waiting callback
+	 * is invoked with the resulting {@link IdentityMap}. The last callback to run receives the parsed map, the others
+	 * receive their own copy so that callers cannot observe each other's modifications.
+	 *
+	 * @param flight the flight to complete; should not be null
+	 * @param responseEvent the response {@link Event} received for the flight's request event
+	 */
+	void complete(final Flight flight, final Event responseEvent) {
+		final List<Waiter> waiters = close(flight);
+		final Response response = new Response(responseEvent, waiters.size());
+
+		for (final Waiter waiter : waiters) {
+			deliver(waiter, new Runnable() {
+				@Override
+				public void run() {
+					final IdentityMap identityMap = response.take();
+
+					if (identityMap == null) {
+						Identity.returnError(waiter.callback, AdobeError.UNEXPECTED_ERROR);
+						return;
+					}
+
+					waiter.callback.call(identityMap);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Fails {@code flight}, invoking every waiting callback with the given {@code error}.
+	 *
+	 * @param flight the flight to fail; should not be null
+	 * @param error the {@link AdobeError} returned to all waiting callbacks
+	 */
+	void fail(final Flight flight, final AdobeError error) {
+		for (final Waiter waiter : close(flight)) {
+			deliver(waiter, new Runnable() {
+				@Override
+				public void run() {
+					Identity.returnError(waiter.callback, error);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Closes all pending flights so no new callers can join them. Their callers are still notified once their responses
+	 * are received. Called before a change to the identities is dispatched, so callers requesting the identities after
+	 * the change do not receive a response to a request dispatched before it.
+	 */
+	synchronized void closeAll() {
+		flights.clear();
+	}
+
+	/**
+	 * Removes all pending flights without notifying their callbacks.
+	 */
+	synchronized void clear() {
+		flights.clear();
+	}
+
+	/**
+	 * Detaches {@code flight} from the pending flights so no new callers can join it.
+	 *
+	 * @param flight the flight to close
+	 * @return the waiters attached to {@code flight}
+	 */
+	private synchronized List<Waiter> close(final Flight flight) {
+		if (flights.get(flight.requestKey) == flight) {
+			flights.remove(flight.requestKey);
+		}
+
+		return new ArrayList<>(flight.waiters);
+	}
+
+	/**
+	 * Runs {@code notification} on the executor of {@code waiter}, or directly if it has none or rejects it.
+	 * Exceptions thrown by the callback are logged so that other callbacks are still notified.
+	 *
+	 * @param waiter the {@link Waiter} to notify
+	 * @param notification invokes the waiter's callback
+	 */
+	private static void deliver(final Waiter waiter, final Runnable notification) {
+		final Runnable safeNotification = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					notification.run();
+				} catch (Exception e) {
+					MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+								   "IdentityRequestCoalescer - Exception thrown from identity request callback: " + e.getLocalizedMessage());
+				}
+			}
+		};
+
+		if (waiter.executor == null) {
+			safeNotification.run();
+			return;
+		}
+
+		try {
+			waiter.executor.execute(safeNotification);
+		} catch (RejectedExecutionException e) {
+			MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+						   "IdentityRequestCoalescer - Callback executor rejected the response, invoking the callback directly.");
+			safeNotification.run();
+		}
+	}
+
+	/**
+	 * A callback waiting for a response and the {@link Executor} it is invoked on.
+	 */
+	private static final class Waiter {
+		private final AdobeCallback<IdentityMap> callback;
+		private final Executor executor;
+
+		private Waiter(final AdobeCallback<IdentityMap> callback, final Executor executor) {
+			this.callback = callback;
+			this.executor = executor;
+		}
+	}
+
+	/**
+	 * A response shared by the waiters of a flight, parsed by the first waiter to take it.
+	 */
+	private static final class Response {
+		private Event event;
+		private IdentityMap identityMap;
+		private int remainingTakers;
+
+		private Response(final Event event, final int takers) {
+			this.event = event;
+			this.remainingTakers = takers;
+		}
+
+		/**
+		 * Parses the response on first call and returns the {@link IdentityMap} from it. The last taker receives the
+		 * parsed map, other takers receive a copy.
+		 *
+		 * @return the {@code IdentityMap} from the response, or null if the response is invalid
+		 */
+		synchronized IdentityMap take() {
+			if (event != null) {
+				identityMap = IdentityMap.fromXDMMap(event.getEventData());
+				event = null;
+
+				if (identityMap == null) {
+					MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
+								   "IdentityRequestCoalescer - Failed to read IdentityMap from response event, invoking error callback with AdobeError.UNEXPECTED_ERROR");
+				}
+			}
+
+			remainingTakers--;
+
+			if (identityMap == null || remainingTakers <= 0) {
+				return identityMap;
+			}
+
+			return new IdentityMap(identityMap);
+		}
+	}
+
+	/**
+	 * A request which has been dispatched and is awaiting its response.
+	 */
+	static final class Flight {
+		private final String requestKey;
+		private final long startTimeMillis;
+		private final List<Waiter> waiters = new ArrayList<>();
+
+		private Flight(final String requestKey, final long startTimeMillis) {
+			this.requestKey = requestKey;
+			this.startTimeMillis = startTimeMillis;
+		}
+	}
+}
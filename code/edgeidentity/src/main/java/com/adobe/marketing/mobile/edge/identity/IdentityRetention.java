@@ -0,0 +1,84 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional limits on the number of customer identifiers retained by the Identity extension. When an update exceeds a
+ * limit the least recently updated identifiers are evicted. Identifiers in reserved namespaces, such as the ECID,
+ * are never evicted and do not count towards the limits.
+ */
+class IdentityRetention {
+
+	private static volatile int maxPerNamespace;
+	private static volatile int maxTotal;
+	private static final AtomicLong evictionCount = new AtomicLong();
+
+	private IdentityRetention() {}
+
+	/**
+	 * Sets the retention limits. A limit of 0 disables that limit, both limits 0 disables retention limits.
+	 *
+	 * @param maxIdentitiesPerNamespace the maximum number of identifiers per namespace, or 0 for no limit
+	 * @param maxIdentities the maximum number of identifiers in all namespaces, or 0 for no limit
+	 */
+	static void setLimits(final int maxIdentitiesPerNamespace, final int maxIdentities) {
+		maxPerNamespace = maxIdentitiesPerNamespace;
+		maxTotal = maxIdentities;
+	}
+
+	/**
+	 * @return true if any retention limit is set
+	 */
+	static boolean isEnabled() {
+		return maxPerNamespace > 0 || maxTotal > 0;
+	}
+
+	/**
+	 * @return the maximum number of identifiers per namespace, or 0 for no limit
+	 */
+	static int getMaxPerNamespace() {
+		return maxPerNamespace;
+	}
+
+	/**
+	 * @return the maximum number of identifiers in all namespaces, or 0 for no limit
+	 */
+	static int getMaxTotal() {
+		return maxTotal;
+	}
+
+	/**
+	 * Adds {@code count} to the number of evicted identifiers.
+	 *
+	 * @param count the number of identifiers evicted
+	 */
+	static void recordEvictions(final int count) {
+		evictionCount.addAndGet(count);
+	}
+
+	/**
+	 * @return the number of identifiers evicted since the application started
+	 */
+	static long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Disables retention limits and clears the eviction count. Used for testing.
+	 */
+	static void reset() {
+		setLimits(0, 0);
+		evictionCount.set(0);
+	}
+}
@@ -14,7 +14,11 @@ package com.adobe.marketing.mobile.edge.identity;
 import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MobileCore;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
@@ -23,6 +27,7 @@ import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG
  * Manages the business logic of this Identity extension
  */
 class IdentityState {
+	private final List<IdentityChange> changes = new ArrayList<>();
 	private IdentityProperties identityProperties;
 	private boolean hasBooted;
 
@@ -32,7 +37,7 @@ class IdentityState {
 	 * @param identityProperties identity properties
 	 */
 	IdentityState(final IdentityProperties identityProperties) {
-		this.identityProperties = identityProperties;
+		setIdentityProperties(identityProperties);
 	}
 
 	/**
@@ -49,6 +54,28 @@ class IdentityState {
 		return identityProperties;
 	}
 
+	/**
+	 * @return the changes made to the identifiers since the last call to {@link #drainChanges()}, in the order they were made
+	 */
+	List<IdentityChange> getPendingChanges() {
+		return Collections.unmodifiableList(changes);
+	}
+
+	/**
+	 * Returns the changes made to the identifiers since the last call and clears them.
+	 *
+	 * @return the list of {@link IdentityChange}s in the order they were made
+	 */
+	List<IdentityChange> drainChanges() {
+		if (changes.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		final List<IdentityChange> drainedChanges = new ArrayList<>(changes);
+		changes.clear();
+		return drainedChanges;
+	}
+
 	/**
 	 * Completes init for this Identity extension.
 	 * Attempts to load the already persisted identities from persistence into {@link #identityProperties}
@@ -67,11 +94,9 @@ class IdentityState {
 		}
 
 		// Load properties from local storage
-		identityProperties = IdentityStorageService.loadPropertiesFromPersistence();
-
-		if (identityProperties == null) {
-			identityProperties = new IdentityProperties();
-		}
+		final IdentityProperties persistedProperties = IdentityStorageService.loadPropertiesFromPersistence();
+		setIdentityProperties(persistedProperties == null ? new IdentityProperties() : persistedProperties);
+		final int changeCount = changes.size();
 
 		// Reuse the ECID from Identity Direct (if registered) or generate new ECID on first launch
 		if (identityProperties.getECID() == null) {
@@ -108,7 +133,7 @@ class IdentityState {
 							   "IdentityState - Generating new ECID on bootup '" + identityProperties.getECID().toString() + "'");
 			}
 
-			IdentityStorageService.savePropertiesToPersistence(identityProperties);
+			saveProperties(changeCount);
 		}
 
 		hasBooted = true;
@@ -124,10 +149,20 @@ class IdentityState {
 	void resetIdentifiers() {
 		// TODO: AMSDK-11208 Determine if we should dispatch consent event
 
-		identityProperties = new IdentityProperties();
+		final int changeCount = changes.size();
+		long stateVersion = 0;
+
+		if (identityProperties != null) {
+			identityProperties.clearAllIdentifiers();
+			stateVersion = identityProperties.getStateVersion();
+		}
+
+		// the state version carries over so that it keeps increasing across resets
+		setIdentityProperties(new IdentityProperties());
+		identityProperties.setStateVersion(stateVersion);
 		identityProperties.setECID(new ECID());
 		identityProperties.setECIDSecondary(null);
-		IdentityStorageService.savePropertiesToPersistence(identityProperties);
+		saveProperties(changeCount);
 
 		// TODO: AMSDK-11208 Use return value to tell Identity to dispatch consent ad id update
 	}
@@ -138,8 +173,33 @@ class IdentityState {
 	 * @param map the {@code IdentityMap} containing customer identifiers to add or update with the current customer identifiers
 	 */
 	void updateCustomerIdentifiers(final IdentityMap map) {
+		final int changeCount = changes.size();
 		identityProperties.updateCustomerIdentifiers(map);
-		IdentityStorageService.savePropertiesToPersistence(identityProperties);
+		saveProperties(changeCount);
+	}
+
+	/**
+	 * Update the customer identifiers by merging the passed in {@link IdentityMapView} with the current identifiers present
+	 * in {@link #identityProperties}. Identifiers are decoded from the view only as they are applied.
+	 *
+	 * @param view the {@code IdentityMapView} containing customer identifiers to add or update with the current customer identifiers
+	 */
+	void updateCustomerIdentifiers(final IdentityMapView view) {
+		final int changeCount = changes.size();
+		identityProperties.updateCustomerIdentifiers(view);
+		saveProperties(changeCount);
+	}
+
+	/**
+	 * Remove customer identifiers specified in passed in {@link IdentityMapView} from the current identifiers present in
+	 * {@link #identityProperties}.
+	 *
+	 * @param view the {@code IdentityMapView} with items to remove from current identifiers
+	 */
+	void removeCustomerIdentifiers(final IdentityMapView view) {
+		final int changeCount = changes.size();
+		identityProperties.removeCustomerIdentifiers(view);
+		saveProperties(changeCount);
 	}
 
 	/**
@@ -148,8 +208,88 @@ class IdentityState {
 	 * @param map the {@code IdentityMap} with items to remove from current identifiers
 	 */
 	void removeCustomerIdentifiers(final IdentityMap map) {
+		final int changeCount = changes.size();
 		identityProperties.removeCustomerIdentifiers(map);
-		IdentityStorageService.savePropertiesToPersistence(identityProperties);
+		saveProperties(changeCount);
+	}
+
+	/**
+	 * Remove customer identifiers specified in passed in {@link IdentityMapView} and all customer identifiers in {@code namespaces}
+	 * from the current identifiers present in {@link #identityProperties}, then saves the result to persistence once.
+	 *
+	 * @param map the {@code IdentityMapView} with items to remove from current identifiers; may be null
+	 * @param namespaces the namespaces to clear from current identifiers; may be null
+	 */
+	void removeCustomerIdentifiers(final IdentityMapView map, final List<String> namespaces) {
+		removeCustomerIdentifiers(map, namespaces, null);
+	}
+
+	/**
+	 * Remove customer identifiers specified in passed in {@link IdentityMapView}, all customer identifiers in {@code namespaces}
+	 * and the customer identifiers with {@code ids} in any namespace from the current identifiers present in
+	 * {@link #identityProperties}, then saves the result to persistence once.
+	 *
+	 * @param map the {@code IdentityMapView} with items to remove from current identifiers; may be null
+	 * @param namespaces the namespaces to clear from current identifiers; may be null
+	 * @param ids the ids to remove from all namespaces, matched ignoring case; may be null
+	 * @return the namespaces from which identifiers with {@code ids} were removed; empty if none
+	 */
+	List<String> removeCustomerIdentifiers(final IdentityMapView map, final List<String> namespaces,
+										   final List<String> ids) {
+		final int changeCount = changes.size();
+
+		if (map != null) {
+			identityProperties.removeCustomerIdentifiers(map);
+		}
+
+		if (namespaces != null) {
+			identityProperties.clearCustomerIdentifiersForNamespaces(namespaces);
+		}
+
+		final List<String> idNamespaces = ids == null ? new ArrayList<String>() :
+										  identityProperties.removeCustomerIdentifiersFromAllNamespaces(ids);
+		saveProperties(changeCount);
+		return idNamespaces;
+	}
+
+	/**
+	 * Remove the customer identifiers in {@code removedMap} and merge the customer identifiers in {@code updatedMap}
+	 * with the current identifiers present in {@link #identityProperties}, then saves the result to persistence once.
+	 *
+	 * @param updatedMap the {@code IdentityMapView} containing customer identifiers to add or update; may be null
+	 * @param removedMap the {@code IdentityMapView} with items to remove from current identifiers; may be null
+	 */
+	void updateCustomerIdentifiers(final IdentityMapView updatedMap, final IdentityMapView removedMap) {
+		final int changeCount = changes.size();
+
+		if (removedMap != null) {
+			identityProperties.removeCustomerIdentifiers(removedMap);
+		}
+
+		if (updatedMap != null) {
+			identityProperties.updateCustomerIdentifiers(updatedMap);
+		}
+
+		saveProperties(changeCount);
+	}
+
+	/**
+	 * Removes the identifiers in {@code candidates} which are expired at {@code now} from {@link #identityProperties},
+	 * then saves the result to persistence once if any identifier was removed.
+	 *
+	 * @param candidates the {@link IdentityExpiryWheel.Entry}s of the identifiers which may have expired
+	 * @param now the current time in milliseconds since the epoch
+	 * @return the namespaces from which identifiers were removed; empty if none were removed
+	 */
+	List<String> removeExpiredIdentifiers(final Collection<IdentityExpiryWheel.Entry> candidates, final long now) {
+		final int changeCount = changes.size();
+		final List<String> namespaces = identityProperties.removeExpiredIdentifiers(candidates, now);
+
+		if (!namespaces.isEmpty()) {
+			saveProperties(changeCount);
+		}
+
+		return namespaces;
 	}
 
 	/**
@@ -172,13 +312,45 @@ class IdentityState {
 			return false;
 		}
 
+		final int changeCount = changes.size();
 		identityProperties.setECIDSecondary(legacyEcid);
-		IdentityStorageService.savePropertiesToPersistence(identityProperties);
+		saveProperties(changeCount);
 		MobileCore.log(LoggingMode.DEBUG, LOG_TAG,
 					   "IdentityState - Identity direct ECID updated to '" + legacyEcid + "', updating the IdentityMap");
 		return true;
 	}
 
+	/**
+	 * Increments the state version if the identifiers changed since {@code changeCount} changes were recorded,
+	 * then saves {@link #identityProperties} to persistence.
+	 *
+	 * @param changeCount the number of recorded {@link #changes} before the identifiers were modified
+	 */
+	private void saveProperties(final int changeCount) {
+		if (changes.size() > changeCount) {
+			identityProperties.incrementStateVersion();
+		}
+
+		IdentityStorageService.savePropertiesToPersistence(identityProperties);
+	}
+
+	/**
+	 * Sets {@link #identityProperties} and records its changes into {@link #changes}.
+	 *
+	 * @param properties the new {@link IdentityProperties}
+	 */
+	private void setIdentityProperties(final IdentityProperties properties) {
+		if (identityProperties != null) {
+			identityProperties.setChangeRecorder(null);
+		}
+
+		identityProperties = properties;
+
+		if (identityProperties != null) {
+			identityProperties.setChangeRecorder(changes);
+		}
+	}
+
 	/**
 	 * This method is called when the primary Edge ECID is null and the Identity Direct shared state has been updated
 	 * (install scenario when Identity Direct is registered).
@@ -95,9 +95,7 @@ class IdentityStorageService {
 			return;
 		}
 
-		final JSONObject jsonObject = new JSONObject(properties.toXDMData(false));
-		final String jsonString = jsonObject.toString();
-		editor.putString(IdentityConstants.DataStoreKey.IDENTITY_PROPERTIES, jsonString);
+		editor.putString(IdentityConstants.DataStoreKey.IDENTITY_PROPERTIES, properties.toJSONString());
 		editor.apply();
 	}
 
@@ -0,0 +1,81 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import java.util.Arrays;
+
+/**
+ * Bounded tables of canonical namespace and id strings. Identity maps parsed from event data or persistence intern their
+ * namespaces and ids here, so the parsed maps share one instance of each recently seen string instead of each keeping
+ * the copy allocated for its event.
+ * <p>
+ * Each table is direct-mapped: a string is stored in the slot selected by its hash, replacing the string previously
+ * stored there, so the tables never grow and keep the most recently seen strings. The tables are used from several
+ * threads without locking; a lost or stale slot only costs a missed hit, as {@link String}s are immutable.
+ */
+final class IdentityStringPool {
+
+	private static final int NAMESPACE_SLOTS = 64;
+	private static final int ID_SLOTS = 512;
+	// longer strings are not interned, bounding the memory retained by the tables
+	static final int MAX_INTERNED_LENGTH = 128;
+
+	private static final String[] namespaces = new String[NAMESPACE_SLOTS];
+	private static final String[] ids = new String[ID_SLOTS];
+
+	private IdentityStringPool() {}
+
+	/**
+	 * Returns the canonical instance of {@code namespace}.
+	 *
+	 * @param namespace the namespace parsed from event data or persistence
+	 * @return the interned instance equal to {@code namespace}, or {@code namespace} itself if it was not seen recently
+	 */
+	static String internNamespace(final String namespace) {
+		return intern(namespaces, namespace);
+	}
+
+	/**
+	 * Returns the canonical instance of {@code id}.
+	 *
+	 * @param id the identity id parsed from event data or persistence
+	 * @return the interned instance equal to {@code id}, or {@code id} itself if it was not seen recently
+	 */
+	static String internId(final String id) {
+		return intern(ids, id);
+	}
+
+	/**
+	 * Empties the tables, used in tests.
+	 */
+	static void reset() {
+		Arrays.fill(namespaces, null);
+		Arrays.fill(ids, null);
+	}
+
+	private static String intern(final String[] table, final String value) {
+		if (value == null || value.length() > MAX_INTERNED_LENGTH) {
+			return value;
+		}
+
+		final int hash = value.hashCode();
+		final int slot = (hash ^ (hash >>> 16)) & (table.length - 1);
+		final String canonical = table[slot];
+
+		if (value.equals(canonical)) {
+			return canonical;
+		}
+
+		table[slot] = value;
+		return value;
+	}
+}
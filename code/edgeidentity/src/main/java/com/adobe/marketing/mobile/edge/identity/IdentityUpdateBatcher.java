@@ -0,0 +1,345 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.LoggingMode;
+import com.adobe.marketing.mobile.MobileCore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
+
+/**
+ * Accumulates identity updates and removals into a single net delta which is flushed as one request
+ * after a time window elapses or a maximum number of identifiers is reached.
+ * <p>
+ * Within the delta the last operation on an identifier wins: adding an identifier cancels a pending removal of the
+ * same namespace and id, and removing an identifier cancels a pending addition.
+ * <p>
+ * Flushes are handled one at a time in the order they are taken, without holding the lock guarding the pending
+ * identifiers, so callers adding identifiers are not blocked while a batch is dispatched.
+ */
+class IdentityUpdateBatcher {
+
+	private static final long SCHEDULER_KEEP_ALIVE_MS = 1000;
+
+	/**
+	 * Receives the net delta when the batch is flushed.
+	 */
+	interface FlushHandler {
+		/**
+		 * Called with the pending delta, outside the batcher lock but one flush at a time so that flushes are handled in order.
+		 *
+		 * @param updatedIdentities the {@link IdentityMap} of identifiers to add or update; may be empty
+		 * @param removedIdentities the {@code IdentityMap} of identifiers to remove; may be empty
+		 */
+		void flush(final IdentityMap updatedIdentities, final IdentityMap removedIdentities);
+	}
+
+	private final FlushHandler flushHandler;
+	private final Executor flushExecutor;
+	private final Object flushLock = new Object();
+	// records the changes made to the pending maps, counted into pendingItemCount after every operation
+	private final List<IdentityChange> pendingChanges = new ArrayList<>();
+	private IdentityMap updatedIdentities = newPendingMap();
+	private IdentityMap removedIdentities = newPendingMap();
+	private int pendingItemCount;
+	private boolean enabled;
+	private long windowMillis;
+	private int maxItems;
+	private ScheduledThreadPoolExecutor scheduler;
+	private ScheduledFuture<?> scheduledFlush;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param flushHandler the {@link FlushHandler} called with the net delta on every flush; should not be null
+	 */
+	IdentityUpdateBatcher(final FlushHandler flushHandler) {
+		this(flushHandler, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param flushHandler the {@link FlushHandler} called with the net delta on every flush; should not be null
+	 * @param flushExecutor the {@link Executor} on which flushes are run once the time window elapsed, or null to run
+	 *                      them on the batcher's scheduler thread
+	 */
+	IdentityUpdateBatcher(final FlushHandler flushHandler, final Executor flushExecutor) {
+		this.flushHandler = flushHandler;
+		this.flushExecutor = flushExecutor;
+	}
+
+	/**
+	 * Enables batching, or updates the batching configuration if already enabled.
+	 *
+	 * @param windowMillis the time in milliseconds after the first pending identifier when the batch is flushed; should be positive
+	 * @param maxItems the number of pending identifiers at which the batch is flushed; should be positive
+	 */
+	synchronized void enable(final long windowMillis, final int maxItems) {
+		this.enabled = true;
+		this.windowMillis = windowMillis;
+		this.maxItems = maxItems;
+	}
+
+	/**
+	 * Disables batching after flushing any pending identifiers.
+	 */
+	void disable() {
+		flush();
+
+		synchronized (this) {
+			enabled = false;
+
+			if (scheduler != null) {
+				scheduler.shutdown();
+				scheduler = null;
+			}
+		}
+	}
+
+	/**
+	 * @return true if batching is enabled
+	 */
+	synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Adds the identifiers in {@code map} to the pending batch.
+	 *
+	 * @param map the {@link IdentityMap} to add or update; should not be null
+	 * @return true if the identifiers were batched, or false if batching is disabled
+	 */
+	boolean update(final IdentityMap map) {
+		synchronized (this) {
+			if (!enabled) {
+				return false;
+			}
+
+			if (pendingItemCount == 0 && IdentityUpdateCache.getInstance().isUnchanged(map)) {
+				MobileCore.log(LoggingMode.VERBOSE, LOG_TAG,
+							   "IdentityUpdateBatcher - Skipping update, the given identifiers are already stored unchanged.");
+				return true;
+			}
+
+			for (final Map.Entry<String, List<IdentityItem>> entry : map.getItems().entrySet()) {
+				for (final IdentityItem item : entry.getValue()) {
+					removedIdentities.removeItem(item, entry.getKey());
+					updatedIdentities.addItem(item, entry.getKey());
+				}
+			}
+
+			if (!onItemsAdded()) {
+				return true;
+			}
+		}
+
+		flush();
+		return true;
+	}
+
+	/**
+	 * Adds the removal of {@code item} to the pending batch.
+	 *
+	 * @param item the {@link IdentityItem} to remove; should not be null
+	 * @param namespace the namespace of {@code item}; should not be null or empty
+	 * @return true if the removal was batched, or false if batching is disabled
+	 */
+	boolean remove(final IdentityItem item, final String namespace) {
+		synchronized (this) {
+			if (!enabled) {
+				return false;
+			}
+
+			updatedIdentities.removeItem(item, namespace);
+			removedIdentities.addItem(item, namespace);
+
+			if (!onItemsAdded()) {
+				return true;
+			}
+		}
+
+		flush();
+		return true;
+	}
+
+	/**
+	 * Adds the removal of the identifiers in {@code map} to the pending batch.
+	 *
+	 * @param map the {@link IdentityMap} of identifiers to remove; should not be null
+	 * @return true if the removals were batched, or false if batching is disabled
+	 */
+	boolean remove(final IdentityMap map) {
+		synchronized (this) {
+			if (!enabled) {
+				return false;
+			}
+
+			for (final Map.Entry<String, List<IdentityItem>> entry : map.getItems().entrySet()) {
+				for (final IdentityItem item : entry.getValue()) {
+					updatedIdentities.removeItem(item, entry.getKey());
+					removedIdentities.addItem(item, entry.getKey());
+				}
+			}
+
+			if (!onItemsAdded()) {
+				return true;
+			}
+		}
+
+		flush();
+		return true;
+	}
+
+	/**
+	 * Flushes the pending identifiers to the {@link FlushHandler}, if any.
+	 * The pending identifiers are taken under the batcher lock and handed to the {@code FlushHandler} after releasing it.
+	 * A flush started while another flush is being handled waits for it, so batches are handled in the order they were taken.
+	 */
+	void flush() {
+		synchronized (flushLock) {
+			final IdentityMap updated;
+			final IdentityMap removed;
+
+			synchronized (this) {
+				if (scheduledFlush != null) {
+					scheduledFlush.cancel(false);
+					scheduledFlush = null;
+				}
+
+				if (updatedIdentities.isEmpty() && removedIdentities.isEmpty()) {
+					return;
+				}
+
+				updated = updatedIdentities;
+				removed = removedIdentities;
+				updated.setChangeRecorder(null);
+				removed.setChangeRecorder(null);
+				updatedIdentities = newPendingMap();
+				removedIdentities = newPendingMap();
+				pendingItemCount = 0;
+			}
+
+			flushHandler.flush(updated, removed);
+		}
+	}
+
+	/**
+	 * Discards pending identifiers and disables batching. Used for testing.
+	 */
+	synchronized void reset() {
+		updatedIdentities = newPendingMap();
+		removedIdentities = newPendingMap();
+		pendingChanges.clear();
+		pendingItemCount = 0;
+		enabled = false;
+
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+
+		scheduledFlush = null;
+	}
+
+	/**
+	 * Updates the pending identifier count and schedules the timed flush. Must be called while holding the batcher lock.
+	 *
+	 * @return true if the maximum number of identifiers is reached and the caller should flush after releasing the lock
+	 */
+	private boolean onItemsAdded() {
+		for (final IdentityChange change : pendingChanges) {
+			if (change.getType() == IdentityChange.Type.ADDED) {
+				pendingItemCount++;
+			} else if (change.getType() != IdentityChange.Type.UPDATED) {
+				pendingItemCount--;
+			}
+		}
+
+		pendingChanges.clear();
+
+		if (pendingItemCount >= maxItems) {
+			return true;
+		}
+
+		if (scheduledFlush == null && pendingItemCount > 0) {
+			scheduledFlush = getScheduler().schedule(new Runnable() {
+				@Override
+				public void run() {
+					runScheduledFlush();
+				}
+			}, windowMillis, TimeUnit.MILLISECONDS);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Runs the flush once the time window elapsed, on the flush {@link Executor} if one was given so the batch is
+	 * dispatched in order with the calls processed by that executor.
+	 */
+	private void runScheduledFlush() {
+		if (flushExecutor == null) {
+			flush();
+			return;
+		}
+
+		try {
+			flushExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+						   "IdentityUpdateBatcher - The flush executor rejected the timed flush, flushing on the scheduler thread.");
+			flush();
+		}
+	}
+
+	private ScheduledThreadPoolExecutor getScheduler() {
+		if (scheduler == null) {
+			scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "EdgeIdentityUpdateBatcher");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			scheduler.setKeepAliveTime(SCHEDULER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+			scheduler.allowCoreThreadTimeOut(true);
+		}
+
+		return scheduler;
+	}
+
+	/**
+	 * @return a new pending {@link IdentityMap} recording its changes to {@link #pendingChanges}
+	 */
+	private IdentityMap newPendingMap() {
+		final IdentityMap map = new IdentityMap();
+		map.setChangeRecorder(pendingChanges);
+		return map;
+	}
+}
@@ -0,0 +1,263 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Client-side cache of the customer identifiers last confirmed by the {@link IdentityExtension}, per namespace.
+ * <p>
+ * The extension confirms identifiers after it merges an update, so {@link Identity#updateIdentities(IdentityMap)} can
+ * skip dispatching an update whose identifiers are already held by the extension.
+ * Removals and resets invalidate the cache as soon as they are requested. While any removal, reset or update has not yet
+ * been processed by the extension no update is considered unchanged, as the confirmed identifiers may be about to be
+ * removed or changed.
+ */
+class IdentityUpdateCache {
+
+	private static final IdentityUpdateCache INSTANCE = new IdentityUpdateCache();
+
+	// namespace -> lower case id -> last confirmed item
+	private final Map<String, Map<String, IdentityItem>> confirmedItems = new HashMap<>();
+	// unique identifiers of the removal and reset events requested but not yet processed
+	private final Set<String> pendingInvalidations = new HashSet<>();
+	// unique identifiers of the update events requested but not yet processed
+	private final Set<String> pendingUpdates = new HashSet<>();
+
+	IdentityUpdateCache() {}
+
+	/**
+	 * @return the {@link IdentityUpdateCache} shared by the public API and the extension
+	 */
+	static IdentityUpdateCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Determines if every identifier in {@code map} was confirmed by the extension with the same id, authenticated state
+	 * and primary flag, in which case updating with {@code map} would not change the stored identifiers.
+	 *
+	 * @param map the {@link IdentityMap} to check
+	 * @return true if all identifiers in {@code map} are unchanged; false if {@code map} is null or empty, if any identifier
+	 * differs, or if a removal, reset or update is pending
+	 */
+	synchronized boolean isUnchanged(final IdentityMap map) {
+		if (map == null || map.isEmpty() || !pendingInvalidations.isEmpty() || !pendingUpdates.isEmpty()) {
+			return false;
+		}
+
+		for (final Map.Entry<String, List<IdentityItem>> entry : map.getItems().entrySet()) {
+			final Map<String, IdentityItem> confirmed = confirmedItems.get(entry.getKey());
+
+			if (confirmed == null) {
+				return false;
+			}
+
+			for (final IdentityItem item : entry.getValue()) {
+				if (!item.hasSameValues(confirmed.get(key(item)))) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Records the identifiers in {@code map} as held by the extension. Called after the extension merged {@code map}
+	 * into its identifiers.
+	 *
+	 * @param map the {@link IdentityMap} merged by the extension
+	 */
+	synchronized void confirm(final IdentityMap map) {
+		if (map == null) {
+			return;
+		}
+
+		for (final Map.Entry<String, List<IdentityItem>> entry : map.getItems().entrySet()) {
+			Map<String, IdentityItem> confirmed = confirmedItems.get(entry.getKey());
+
+			if (confirmed == null) {
+				confirmed = new HashMap<>();
+				confirmedItems.put(entry.getKey(), confirmed);
+			}
+
+			for (final IdentityItem item : entry.getValue()) {
+				confirmed.put(key(item), item);
+			}
+		}
+	}
+
+	/**
+	 * Records the identifiers in {@code view} as held by the extension, except those in reserved namespaces which are not
+	 * merged. Called after the extension merged {@code view} into its identifiers.
+	 *
+	 * @param view the {@link IdentityMapView} merged by the extension
+	 */
+	synchronized void confirm(final IdentityMapView view) {
+		if (view == null) {
+			return;
+		}
+
+		for (final String namespace : view.getNamespaces()) {
+			if (IdentityProperties.isReservedNamespace(namespace)) {
+				continue;
+			}
+
+			final List<IdentityItem> items = view.getItems(namespace);
+
+			if (items.isEmpty()) {
+				continue;
+			}
+
+			Map<String, IdentityItem> confirmed = confirmedItems.get(namespace);
+
+			if (confirmed == null) {
+				confirmed = new HashMap<>();
+				confirmedItems.put(namespace, confirmed);
+			}
+
+			for (final IdentityItem item : items) {
+				confirmed.put(key(item), item);
+			}
+		}
+	}
+
+	/**
+	 * Records the identifiers in {@code view} as held by the extension, then forgets the identifiers evicted by the
+	 * extension according to {@code changes}. Identifiers evicted and later added again within {@code changes} stay
+	 * confirmed.
+	 *
+	 * @param view the {@link IdentityMapView} merged by the extension
+	 * @param changes the {@link IdentityChange}s made while merging {@code view}, in the order they were made
+	 * @see #confirm(IdentityMapView)
+	 */
+	synchronized void confirm(final IdentityMapView view, final List<IdentityChange> changes) {
+		confirm(view);
+
+		if (changes == null || changes.isEmpty()) {
+			return;
+		}
+
+		// the last change of each identity decides if it is still stored
+		final Map<String, IdentityChange> lastChanges = new HashMap<>();
+
+		for (final IdentityChange change : changes) {
+			lastChanges.put(change.getKey(), change);
+		}
+
+		for (final IdentityChange change : lastChanges.values()) {
+			if (change.getType() != IdentityChange.Type.EVICTED) {
+				continue;
+			}
+
+			final Map<String, IdentityItem> confirmed = confirmedItems.get(change.getNamespace());
+
+			if (confirmed == null) {
+				continue;
+			}
+
+			confirmed.remove(key(change.getItem()));
+
+			if (confirmed.isEmpty()) {
+				confirmedItems.remove(change.getNamespace());
+			}
+		}
+	}
+
+	/**
+	 * Invalidates the given namespaces, matched ignoring case.
+	 *
+	 * @param namespaces the namespaces to invalidate, or null to invalidate the whole cache
+	 */
+	synchronized void invalidate(final Collection<String> namespaces) {
+		if (namespaces == null) {
+			confirmedItems.clear();
+			return;
+		}
+
+		final Iterator<String> iterator = confirmedItems.keySet().iterator();
+
+		while (iterator.hasNext()) {
+			final String confirmedNamespace = iterator.next();
+
+			for (final String namespace : namespaces) {
+				if (confirmedNamespace.equalsIgnoreCase(namespace)) {
+					iterator.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Notes a removal or reset was requested but not yet processed by the extension, and invalidates {@code namespaces}.
+	 *
+	 * @param eventId the unique identifier of the removal or reset {@link com.adobe.marketing.mobile.Event}
+	 * @param namespaces the namespaces to be removed from, or null for a reset
+	 */
+	synchronized void invalidationRequested(final String eventId, final Collection<String> namespaces) {
+		pendingInvalidations.add(eventId);
+		invalidate(namespaces);
+	}
+
+	/**
+	 * Notes a removal or reset was processed by the extension, or could not be dispatched, and invalidates {@code namespaces}.
+	 * Removals and resets which were not requested through {@link #invalidationRequested(String, Collection)}, for example
+	 * events dispatched by other extensions, only invalidate {@code namespaces}.
+	 *
+	 * @param eventId the unique identifier of the removal or reset {@link com.adobe.marketing.mobile.Event}
+	 * @param namespaces the namespaces which were removed from, or null for a reset
+	 */
+	synchronized void invalidationCompleted(final String eventId, final Collection<String> namespaces) {
+		pendingInvalidations.remove(eventId);
+		invalidate(namespaces);
+	}
+
+	/**
+	 * Notes an update was requested but not yet processed by the extension.
+	 *
+	 * @param eventId the unique identifier of the update {@link com.adobe.marketing.mobile.Event}
+	 */
+	synchronized void updateRequested(final String eventId) {
+		pendingUpdates.add(eventId);
+	}
+
+	/**
+	 * Notes an update was processed by the extension, after its identifiers were confirmed, or could not be dispatched.
+	 *
+	 * @param eventId the unique identifier of the update {@link com.adobe.marketing.mobile.Event}
+	 */
+	synchronized void updateCompleted(final String eventId) {
+		pendingUpdates.remove(eventId);
+	}
+
+	/**
+	 * Clears the cache and any pending invalidations and updates.
+	 */
+	synchronized void clear() {
+		confirmedItems.clear();
+		pendingInvalidations.clear();
+		pendingUpdates.clear();
+	}
+
+	private static String key(final IdentityItem item) {
+		return item.getId().toLowerCase(Locale.ROOT);
+	}
+}
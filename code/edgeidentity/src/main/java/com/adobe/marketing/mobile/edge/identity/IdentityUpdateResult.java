@@ -0,0 +1,71 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+/**
+ * The result of a conditional identity update.
+ *
+ * @see Identity#updateIdentitiesIfVersionMatches(IdentityMap, long, com.adobe.marketing.mobile.AdobeCallback)
+ */
+public final class IdentityUpdateResult {
+
+	private final boolean applied;
+	private final long stateVersion;
+	private final IdentityMap identities;
+
+	/**
+	 * Creates a new {@link IdentityUpdateResult}
+	 *
+	 * @param applied true if the update was applied
+	 * @param stateVersion the state version after the update was processed
+	 * @param identities the {@link IdentityMap} of all identities after the update was processed; should not be null
+	 */
+	IdentityUpdateResult(final boolean applied, final long stateVersion, final IdentityMap identities) {
+		this.applied = applied;
+		this.stateVersion = stateVersion;
+		this.identities = identities;
+	}
+
+	/**
+	 * Returns whether the update was applied. An update is not applied if the state version changed since the expected
+	 * state version was read, in which case the update may be retried with {@link #getStateVersion()} after merging
+	 * with {@link #getIdentities()}.
+	 *
+	 * @return true if the update was applied, false on a state version conflict
+	 */
+	public boolean isApplied() {
+		return applied;
+	}
+
+	/**
+	 * @return the current state version, after the update if it was applied
+	 */
+	public long getStateVersion() {
+		return stateVersion;
+	}
+
+	/**
+	 * @return the {@link IdentityMap} of all identities stored at {@link #getStateVersion()}
+	 */
+	public IdentityMap getIdentities() {
+		return identities;
+	}
+
+	@Override
+	public String toString() {
+		return "{"
+			   + "\"applied\": " + applied + ", "
+			   + "\"stateVersion\": " + stateVersion + ", "
+			   + "\"identities\": " + identities
+			   + "}";
+	}
+}
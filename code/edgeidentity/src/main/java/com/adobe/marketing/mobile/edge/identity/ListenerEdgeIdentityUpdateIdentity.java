@@ -53,12 +53,7 @@ class ListenerEdgeIdentityUpdateIdentity extends ExtensionListener {
 			return;
 		}
 
-		parentExtension.getExecutor().execute(new Runnable() {
-			@Override
-			public void run() {
-				parentExtension.processAddEvent(event);
-			}
-		});
+		parentExtension.queueEvent(event);
 	}
 
 	/**
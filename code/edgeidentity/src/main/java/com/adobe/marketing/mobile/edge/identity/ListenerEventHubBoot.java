@@ -46,12 +46,7 @@ class ListenerEventHubBoot extends ExtensionListener {
 			return;
 		}
 
-		parentExtension.getExecutor().execute(new Runnable() {
-			@Override
-			public void run() {
-				parentExtension.bootupIfReady();
-			}
-		});
+		parentExtension.queueEvent(event);
 	}
 
 	/**
@@ -17,7 +17,13 @@ import com.adobe.marketing.mobile.ExtensionListener;
 import com.adobe.marketing.mobile.LoggingMode;
 import com.adobe.marketing.mobile.MobileCore;
 
+import java.util.Map;
+
 class ListenerHubSharedState extends ExtensionListener {
+	// the only state owners handled by the extension, all other shared state events are ignored before any hand-off
+	private static final String HUB_STATE_OWNER = IdentityConstants.SharedState.Hub.NAME;
+	private static final String IDENTITY_DIRECT_STATE_OWNER = IdentityConstants.SharedState.IdentityDirect.NAME;
+
 	/**
 	 * Constructor.
 	 *
@@ -33,17 +39,27 @@ class ListenerHubSharedState extends ExtensionListener {
 	/**
 	 * Method that gets called when event with event type {@link IdentityConstants.EventType#HUB}
 	 * and with event source {@link IdentityConstants.EventSource#SHARED_STATE} is dispatched through eventHub.
+	 * Only shared state changes of the Hub and the direct Identity extension are passed to the extension.
 	 *
 	 * @param event the hub shared state change {@link Event} to be processed
 	 */
 	@Override
 	public void hear(final Event event) {
-		if (event == null || event.getEventData() == null) {
+		final Map<String, Object> eventData = event == null ? null : event.getEventData();
+
+		if (eventData == null) {
 			MobileCore.log(LoggingMode.DEBUG, IdentityConstants.LOG_TAG,
 						   "ListenerHubSharedState - Event / EventData is null. Ignoring the event.");
 			return;
 		}
 
+		final Object stateOwner = eventData.get(IdentityConstants.SharedState.STATE_OWNER);
+		final boolean isIdentityDirectState = IDENTITY_DIRECT_STATE_OWNER.equals(stateOwner);
+
+		if (!isIdentityDirectState && !HUB_STATE_OWNER.equals(stateOwner)) {
+			return;
+		}
+
 		final IdentityExtension parentExtension = getIdentityExtension();
 
 		if (parentExtension == null) {
@@ -52,12 +68,11 @@ class ListenerHubSharedState extends ExtensionListener {
 			return;
 		}
 
-		parentExtension.getExecutor().execute(new Runnable() {
-			@Override
-			public void run() {
-				parentExtension.handleHubSharedState(event);
-			}
-		});
+		if (isIdentityDirectState) {
+			parentExtension.queueIdentityDirectStateEvent(event);
+		} else {
+			parentExtension.queueEvent(event);
+		}
 	}
 
 	/**
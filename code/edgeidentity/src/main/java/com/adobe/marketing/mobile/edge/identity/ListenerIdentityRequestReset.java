@@ -52,12 +52,10 @@ class ListenerIdentityRequestReset extends ExtensionListener {
 			return;
 		}
 
-		parentExtension.getExecutor().execute(new Runnable() {
-			@Override
-			public void run() {
-				parentExtension.processAddEvent(event);
-			}
-		});
+		// confirmed identifiers are cleared by the reset, stop skipping unchanged updates until the reset is processed
+		IdentityUpdateCache.getInstance().invalidationRequested(event.getUniqueIdentifier(), null);
+
+		parentExtension.queueEvent(event);
 	}
 
 	/**
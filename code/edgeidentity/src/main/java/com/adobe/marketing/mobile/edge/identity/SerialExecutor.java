@@ -0,0 +1,187 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.LoggingMode;
+import com.adobe.marketing.mobile.MobileCore;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityConstants.LOG_TAG;
+
+/**
+ * An {@link Executor} which runs its tasks one at a time, in submission order, on a delegate {@code Executor}.
+ * The delegate may be a shared pool running tasks concurrently, at most one task of this executor is submitted to it
+ * at any time. That task drains the queued tasks in a loop, so each task sees the effects of the tasks submitted before
+ * it, and a delegate running tasks on the calling thread does not grow the stack with every queued task.
+ */
+class SerialExecutor implements Executor {
+
+	private final Executor delegate;
+	private final ExecutorService ownedDelegate;
+	private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+	private boolean running;
+	private boolean shutdown;
+	private final Runnable drainTask = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate the {@link Executor} running the tasks; should not be null
+	 * @param ownedDelegate the {@link ExecutorService} shut down with this executor, if {@code delegate} is owned by it;
+	 *                      may be null
+	 */
+	SerialExecutor(final Executor delegate, final ExecutorService ownedDelegate) {
+		this.delegate = delegate;
+		this.ownedDelegate = ownedDelegate;
+	}
+
+	/**
+	 * Queues {@code task} to run after all previously submitted tasks. Tasks submitted after {@link #shutdown()} are ignored.
+	 * If the delegate rejects running the queued tasks, {@code task} is not queued and the rejection is thrown; tasks
+	 * queued before it are kept and run once a later task is accepted.
+	 *
+	 * @param task the {@link Runnable} to run; should not be null
+	 * @throws RejectedExecutionException if the delegate rejected running the queued tasks
+	 */
+	@Override
+	public void execute(final Runnable task) {
+		synchronized (this) {
+			if (shutdown) {
+				MobileCore.log(LoggingMode.DEBUG, LOG_TAG, "SerialExecutor - Executor was shut down, ignoring task.");
+				return;
+			}
+
+			tasks.add(task);
+
+			if (running) {
+				return;
+			}
+
+			running = true;
+		}
+
+		try {
+			delegate.execute(drainTask);
+		} catch (RejectedExecutionException e) {
+			synchronized (this) {
+				tasks.removeLastOccurrence(task);
+				running = false;
+			}
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Discards the pending tasks and stops accepting new tasks. The running task, if any, is allowed to complete.
+	 * The owned delegate is shut down.
+	 */
+	void shutdown() {
+		shutdown(null);
+	}
+
+	/**
+	 * Discards the pending tasks and stops accepting new tasks, then runs {@code lastTask} after the running task, if any.
+	 * The owned delegate is shut down once {@code lastTask} was submitted to it.
+	 *
+	 * @param lastTask the {@link Runnable} run after the running task; may be null
+	 */
+	void shutdown(final Runnable lastTask) {
+		final boolean submitDrain;
+
+		synchronized (this) {
+			shutdown = true;
+			tasks.clear();
+			submitDrain = lastTask != null && !running;
+
+			if (lastTask != null) {
+				tasks.add(lastTask);
+				running = true;
+			}
+		}
+
+		if (submitDrain) {
+			try {
+				delegate.execute(drainTask);
+			} catch (RejectedExecutionException e) {
+				MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+							   "SerialExecutor - Delegate executor rejected the last task: " + e.getLocalizedMessage());
+
+				synchronized (this) {
+					tasks.clear();
+					running = false;
+				}
+			}
+		}
+
+		if (ownedDelegate != null) {
+			ownedDelegate.shutdown();
+		}
+	}
+
+	/**
+	 * @return true if {@link #shutdown()} was called
+	 */
+	synchronized boolean isShutdown() {
+		return shutdown;
+	}
+
+	/**
+	 * Runs the queued tasks until the queue is empty. If a task throws, the remaining tasks are drained by a new delegate
+	 * task and the exception is passed on to the delegate. If the delegate rejects that task, the remaining tasks are kept
+	 * and run once a later task is accepted.
+	 */
+	private void drain() {
+		boolean completed = false;
+
+		try {
+			while (true) {
+				final Runnable next;
+
+				synchronized (this) {
+					next = tasks.poll();
+
+					if (next == null) {
+						running = false;
+						completed = true;
+						return;
+					}
+				}
+
+				next.run();
+			}
+		} finally {
+			if (!completed) {
+				try {
+					delegate.execute(drainTask);
+				} catch (RejectedExecutionException e) {
+					MobileCore.log(LoggingMode.WARNING, LOG_TAG,
+								   "SerialExecutor - Delegate executor rejected the task, pending tasks wait for the next task: "
+								   + e.getLocalizedMessage());
+
+					synchronized (this) {
+						running = false;
+					}
+				}
+			}
+		}
+	}
+}
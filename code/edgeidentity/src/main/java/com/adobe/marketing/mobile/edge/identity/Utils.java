@@ -62,15 +62,20 @@ class Utils {
 	// TODO: add tests / replace with third party library for json conversion; test more around jsonObject/jsonArray with null nodes
 	// TODO: check what should be the expected behavior with the konductor team (e.g. don't add the null nodes or add them with null values)
 	/**
-	 * Converts provided {@link JSONObject} into {@link Map} for any number of levels, which can be used as event data
+	 * Converts provided {@link JSONObject} into {@link Map} for up to {@link IdentityPayloadLimits#MAX_DEPTH} levels,
+	 * which can be used as event data
 	 * This method is recursive.
-	 * The elements for which the conversion fails will be skipped.
+	 * The elements for which the conversion fails, or which are nested deeper than the limit, will be skipped.
 	 *
 	 * @param jsonObject to be converted
 	 * @return {@link Map} containing the elements from the provided json, null if {@code jsonObject} is null
 	 */
 	static Map<String, Object> toMap(final JSONObject jsonObject) {
-		if (jsonObject == null) {
+		return toMap(jsonObject, 0);
+	}
+
+	private static Map<String, Object> toMap(final JSONObject jsonObject, final int depth) {
+		if (jsonObject == null || !IdentityPayloadLimits.isWithinDepth(depth)) {
 			return null;
 		}
 
@@ -94,13 +99,17 @@ class Utils {
 			}
 
 			if (value instanceof JSONObject) {
-				returnValue = toMap((JSONObject)value);
+				returnValue = toMap((JSONObject) value, depth + 1);
 			} else if (value instanceof JSONArray) {
-				returnValue = toList((JSONArray) value);
+				returnValue = toList((JSONArray) value, depth + 1);
 			} else {
 				returnValue = value;
 			}
 
+			if (returnValue == null) {
+				continue;
+			}
+
 			jsonAsMap.put(nextKey, returnValue);
 		}
 
@@ -108,15 +117,20 @@ class Utils {
 	}
 
 	/**
-	 * Converts provided {@link JSONArray} into {@link List} for any number of levels which can be used as event data
+	 * Converts provided {@link JSONArray} into {@link List} for up to {@link IdentityPayloadLimits#MAX_DEPTH} levels,
+	 * which can be used as event data
 	 * This method is recursive.
-	 * The elements for which the conversion fails will be skipped.
+	 * The elements for which the conversion fails, or which are nested deeper than the limit, will be skipped.
 	 *
 	 * @param jsonArray to be converted
 	 * @return {@link List} containing the elements from the provided json, null if {@code jsonArray} is null
 	 */
 	static List<Object> toList(final JSONArray jsonArray) {
-		if (jsonArray == null) {
+		return toList(jsonArray, 0);
+	}
+
+	private static List<Object> toList(final JSONArray jsonArray, final int depth) {
+		if (jsonArray == null || !IdentityPayloadLimits.isWithinDepth(depth)) {
 			return null;
 		}
 
@@ -139,13 +153,17 @@ class Utils {
 			}
 
 			if (value instanceof JSONObject) {
-				returnValue = toMap((JSONObject)value);
+				returnValue = toMap((JSONObject) value, depth + 1);
 			} else if (value instanceof JSONArray) {
-				returnValue = toList((JSONArray) value);
+				returnValue = toList((JSONArray) value, depth + 1);
 			} else {
 				returnValue = value;
 			}
 
+			if (returnValue == null) {
+				continue;
+			}
+
 			jsonArrayAsList.add(returnValue);
 		}
 
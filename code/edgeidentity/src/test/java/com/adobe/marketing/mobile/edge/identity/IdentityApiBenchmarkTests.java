@@ -0,0 +1,151 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.Event;
+import com.adobe.marketing.mobile.ExtensionErrorCallback;
+import com.adobe.marketing.mobile.MobileCore;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Benchmarks the time {@link Identity#updateIdentities(IdentityMap)} spends on the caller thread.
+ * <p>
+ * The synchronous baseline replicates the previous behavior where the identity map was serialized and the event built
+ * on the caller thread. The event hub is mocked, so only the work done by the API itself is measured.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({MobileCore.class})
+public class IdentityApiBenchmarkTests {
+
+	private static final int[] IDENTITY_COUNTS = {10, 100, 1000};
+	private static final int WARMUP_CALLS = 50;
+	private static final int MEASURED_CALLS = 200;
+
+	private final AtomicInteger dispatchedEvents = new AtomicInteger();
+	private final AtomicReference<CountDownLatch> dispatchLatch = new AtomicReference<>();
+
+	@Before
+	public void setup() {
+		PowerMockito.mockStatic(MobileCore.class);
+		Identity.resetPendingRequests();
+
+		PowerMockito.when(MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class))).thenAnswer(
+		new Answer<Boolean>() {
+			@Override
+			public Boolean answer(final InvocationOnMock invocation) {
+				dispatchedEvents.incrementAndGet();
+				dispatchLatch.get().countDown();
+				return true;
+			}
+		});
+	}
+
+	@Test
+	public void benchmarkUpdateIdentitiesCallerThread() throws Exception {
+		System.out.println("updateIdentities time on the caller thread");
+		System.out.println(String.format("%10s | %20s | %20s", "identities", "synchronous (avg us)",
+										 "background (avg us)"));
+
+		for (final int identityCount : IDENTITY_COUNTS) {
+			final IdentityMap map = createIdentityMap(identityCount);
+
+			runSynchronous(map, WARMUP_CALLS);
+			final double synchronousMicros = runSynchronous(map, MEASURED_CALLS);
+
+			runBackground(map, WARMUP_CALLS);
+			dispatchedEvents.set(0);
+			final double backgroundMicros = runBackground(map, MEASURED_CALLS);
+
+			System.out.println(String.format("%10d | %20.3f | %20.3f", identityCount, synchronousMicros, backgroundMicros));
+
+			// every call is still dispatched, in the background
+			assertEquals(MEASURED_CALLS, dispatchedEvents.get());
+		}
+	}
+
+	/**
+	 * Replicates the previous caller thread work: serializing the identity map and building the update event.
+	 *
+	 * @return the average caller thread time per call in microseconds
+	 */
+	private double runSynchronous(final IdentityMap map, final int calls) {
+		long totalNanos = 0;
+
+		for (int i = 0; i < calls; i++) {
+			final long start = System.nanoTime();
+			final Map<String, Object> eventData = map.asXDMMap(false);
+			new Event.Builder(IdentityConstants.EventNames.UPDATE_IDENTITIES,
+							  IdentityConstants.EventType.EDGE_IDENTITY,
+							  IdentityConstants.EventSource.UPDATE_IDENTITY).setEventData(eventData).build();
+			totalNanos += System.nanoTime() - start;
+		}
+
+		return totalNanos / 1000.0 / calls;
+	}
+
+	/**
+	 * Calls {@link Identity#updateIdentities(IdentityMap)} with background dispatch enabled and waits until all updates
+	 * were dispatched in the background.
+	 *
+	 * @return the average caller thread time per call in microseconds
+	 */
+	private double runBackground(final IdentityMap map, final int calls) throws Exception {
+		dispatchLatch.set(new CountDownLatch(calls));
+		long totalNanos = 0;
+		Identity.enableBackgroundDispatch();
+
+		try {
+			for (int i = 0; i < calls; i++) {
+				final long start = System.nanoTime();
+				Identity.updateIdentities(map);
+				totalNanos += System.nanoTime() - start;
+			}
+
+			assertTrue("Timed out waiting for dispatched updates", dispatchLatch.get().await(30, TimeUnit.SECONDS));
+		} finally {
+			Identity.disableBackgroundDispatch();
+		}
+
+		return totalNanos / 1000.0 / calls;
+	}
+
+	private static IdentityMap createIdentityMap(final int identityCount) {
+		final IdentityMap map = new IdentityMap();
+
+		for (int i = 0; i < identityCount; i++) {
+			map.addItem(new IdentityItem("user-" + i + "@example.com", AuthenticatedState.AUTHENTICATED, i == 0),
+						"namespace" + (i % 10));
+		}
+
+		return map;
+	}
+}
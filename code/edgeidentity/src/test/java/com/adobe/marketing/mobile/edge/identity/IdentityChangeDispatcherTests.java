@@ -0,0 +1,235 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityChangeDispatcherTests {
+
+	private IdentityChangeDispatcher dispatcher;
+
+	@Before
+	public void setup() {
+		dispatcher = new IdentityChangeDispatcher();
+	}
+
+	@Test
+	public void testPublish_deliversChangesToAllListeners() throws Exception {
+		// setup
+		final RecordingListener first = new RecordingListener(1);
+		final RecordingListener second = new RecordingListener(1);
+		dispatcher.register(first);
+		dispatcher.register(second);
+		dispatcher.register(first); // duplicate registration is ignored
+
+		// test
+		dispatcher.publish(Arrays.asList(added("id1"), added("id2")));
+
+		// verify
+		assertTrue(first.await());
+		assertTrue(second.await());
+		assertEquals(1, first.calls.size());
+		assertEquals(2, first.calls.get(0).size());
+		assertEquals(1, second.calls.size());
+	}
+
+	@Test
+	public void testPublish_emptyChanges_doesNotNotify() throws Exception {
+		// setup
+		final RecordingListener listener = new RecordingListener(1);
+		dispatcher.register(listener);
+
+		// test
+		dispatcher.publish(Collections.<IdentityChange>emptyList());
+		dispatcher.publish(null);
+
+		// verify
+		assertEquals(false, listener.latch.await(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testPublish_slowListener_receivesConflatedChanges() throws Exception {
+		// setup
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final RecordingListener listener = new RecordingListener(2) {
+			@Override
+			public void onIdentitiesChanged(final List<IdentityChange> changes) {
+				super.onIdentitiesChanged(changes);
+
+				if (calls.size() == 1) {
+					blocked.countDown();
+
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		};
+		dispatcher.register(listener);
+
+		// test
+		dispatcher.publish(Collections.singletonList(added("id1")));
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+		// published while the listener is busy
+		dispatcher.publish(Collections.singletonList(added("id2")));
+		dispatcher.publish(Collections.singletonList(removed("id2")));
+		dispatcher.publish(Collections.singletonList(added("id3")));
+		dispatcher.publish(Collections.singletonList(removed("id1")));
+		release.countDown();
+
+		// verify
+		assertTrue(listener.await());
+		assertEquals(2, listener.calls.size());
+		List<IdentityChange> conflated = listener.calls.get(1);
+		assertEquals(2, conflated.size());
+		assertEquals("id3", conflated.get(0).getItem().getId());
+		assertEquals(IdentityChange.Type.ADDED, conflated.get(0).getType());
+		assertEquals("id1", conflated.get(1).getItem().getId());
+		assertEquals(IdentityChange.Type.REMOVED, conflated.get(1).getType());
+	}
+
+	@Test
+	public void testPublish_listenerThrows_doesNotStopDelivery() throws Exception {
+		// setup
+		final RecordingListener listener = new RecordingListener(2) {
+			@Override
+			public void onIdentitiesChanged(final List<IdentityChange> changes) {
+				super.onIdentitiesChanged(changes);
+				throw new RuntimeException("listener failure");
+			}
+		};
+		dispatcher.register(listener);
+
+		// test
+		dispatcher.publish(Collections.singletonList(added("id1")));
+		Thread.sleep(50);
+		dispatcher.publish(Collections.singletonList(added("id2")));
+
+		// verify
+		assertTrue(listener.await());
+	}
+
+	@Test
+	public void testPublish_listenersShareOneDispatcherThread() throws Exception {
+		// setup
+		final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+		final List<RecordingListener> listeners = new ArrayList<>();
+
+		for (int i = 0; i < 10; i++) {
+			final RecordingListener listener = new RecordingListener(1) {
+				@Override
+				public void onIdentitiesChanged(final List<IdentityChange> changes) {
+					threads.add(Thread.currentThread());
+					super.onIdentitiesChanged(changes);
+				}
+			};
+			listeners.add(listener);
+			dispatcher.register(listener);
+		}
+
+		// test
+		dispatcher.publish(Collections.singletonList(added("id1")));
+
+		// verify
+		for (final RecordingListener listener : listeners) {
+			assertTrue(listener.await());
+		}
+
+		assertEquals(1, new HashSet<>(threads).size());
+	}
+
+	@Test
+	public void testRegister_withExecutor_deliversOnExecutor() throws Exception {
+		// setup
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final List<Runnable> submitted = Collections.synchronizedList(new ArrayList<Runnable>());
+		final RecordingListener listener = new RecordingListener(1);
+		dispatcher.register(listener, new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				submitted.add(runnable);
+				executor.execute(runnable);
+			}
+		});
+
+		try {
+			// test
+			dispatcher.publish(Collections.singletonList(added("id1")));
+
+			// verify
+			assertTrue(listener.await());
+			assertEquals(1, submitted.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testUnregister_stopsDelivery() throws Exception {
+		// setup
+		final RecordingListener listener = new RecordingListener(1);
+		dispatcher.register(listener);
+
+		// test
+		dispatcher.unregister(listener);
+		dispatcher.publish(Collections.singletonList(added("id1")));
+
+		// verify
+		assertEquals(false, listener.latch.await(100, TimeUnit.MILLISECONDS));
+	}
+
+	private IdentityChange added(final String id) {
+		return new IdentityChange(IdentityChange.Type.ADDED, "namespace", new IdentityItem(id), null);
+	}
+
+	private IdentityChange removed(final String id) {
+		return new IdentityChange(IdentityChange.Type.REMOVED, "namespace", new IdentityItem(id), null);
+	}
+
+	private static class RecordingListener implements IdentityChangeListener {
+		final List<List<IdentityChange>> calls = Collections.synchronizedList(new ArrayList<List<IdentityChange>>());
+		final CountDownLatch latch;
+
+		RecordingListener(final int expectedCalls) {
+			latch = new CountDownLatch(expectedCalls);
+		}
+
+		@Override
+		public void onIdentitiesChanged(final List<IdentityChange> changes) {
+			calls.add(changes);
+			latch.countDown();
+		}
+
+		boolean await() throws InterruptedException {
+			return latch.await(5, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdentityChangeTests {
+
+	private static final IdentityItem ITEM = new IdentityItem("id", AuthenticatedState.AMBIGUOUS, false);
+	private static final IdentityItem AUTHENTICATED_ITEM = new IdentityItem("id", AuthenticatedState.AUTHENTICATED, false);
+	private static final IdentityItem PRIMARY_ITEM = new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true);
+
+	@Test
+	public void testGetKey_ignoresIdCase() {
+		assertEquals(added(new IdentityItem("ID")).getKey(), added(new IdentityItem("id")).getKey());
+	}
+
+	@Test
+	public void testConflate_addedThenUpdated_isAdded() {
+		IdentityChange change = IdentityChange.conflate(added(ITEM), updated(ITEM, AUTHENTICATED_ITEM));
+
+		assertEquals(IdentityChange.Type.ADDED, change.getType());
+		assertSame(AUTHENTICATED_ITEM, change.getItem());
+		assertNull(change.getPreviousItem());
+	}
+
+	@Test
+	public void testConflate_addedThenRemoved_cancels() {
+		assertNull(IdentityChange.conflate(added(ITEM), removed(ITEM)));
+	}
+
+	@Test
+	public void testConflate_removedThenAddedWithSameValues_cancels() {
+		assertNull(IdentityChange.conflate(removed(ITEM), added(new IdentityItem("id"))));
+	}
+
+	@Test
+	public void testConflate_removedThenAddedWithDifferentValues_isUpdated() {
+		IdentityChange change = IdentityChange.conflate(removed(ITEM), added(AUTHENTICATED_ITEM));
+
+		assertEquals(IdentityChange.Type.UPDATED, change.getType());
+		assertSame(AUTHENTICATED_ITEM, change.getItem());
+		assertSame(ITEM, change.getPreviousItem());
+	}
+
+	@Test
+	public void testConflate_updatedThenUpdated_keepsFirstPreviousItem() {
+		IdentityChange change = IdentityChange.conflate(updated(ITEM, AUTHENTICATED_ITEM),
+								updated(AUTHENTICATED_ITEM, PRIMARY_ITEM));
+
+		assertEquals(IdentityChange.Type.UPDATED, change.getType());
+		assertSame(PRIMARY_ITEM, change.getItem());
+		assertSame(ITEM, change.getPreviousItem());
+	}
+
+	@Test
+	public void testConflate_updatedThenUpdatedBack_cancels() {
+		assertNull(IdentityChange.conflate(updated(ITEM, AUTHENTICATED_ITEM), updated(AUTHENTICATED_ITEM, ITEM)));
+	}
+
+	@Test
+	public void testConflate_updatedThenRemoved_removesPreviousItem() {
+		IdentityChange change = IdentityChange.conflate(updated(ITEM, AUTHENTICATED_ITEM), removed(AUTHENTICATED_ITEM));
+
+		assertEquals(IdentityChange.Type.REMOVED, change.getType());
+		assertSame(ITEM, change.getItem());
+		assertNull(change.getPreviousItem());
+	}
+
+	private IdentityChange added(final IdentityItem item) {
+		return new IdentityChange(IdentityChange.Type.ADDED, "namespace", item, null);
+	}
+
+	private IdentityChange removed(final IdentityItem item) {
+		return new IdentityChange(IdentityChange.Type.REMOVED, "namespace", item, null);
+	}
+
+	private IdentityChange updated(final IdentityItem previousItem, final IdentityItem item) {
+		return new IdentityChange(IdentityChange.Type.UPDATED, "namespace", item, previousItem);
+	}
+
+	@Test
+	public void testConflate_addedThenEvicted_cancels() {
+		assertNull(IdentityChange.conflate(added(ITEM), evicted(ITEM)));
+	}
+
+	@Test
+	public void testConflate_updatedThenEvicted_evictsPreviousItem() {
+		IdentityChange change = IdentityChange.conflate(updated(ITEM, AUTHENTICATED_ITEM), evicted(AUTHENTICATED_ITEM));
+
+		assertEquals(IdentityChange.Type.EVICTED, change.getType());
+		assertSame(ITEM, change.getItem());
+	}
+
+	@Test
+	public void testConflate_evictedThenAddedWithDifferentValues_isUpdated() {
+		IdentityChange change = IdentityChange.conflate(evicted(ITEM), added(AUTHENTICATED_ITEM));
+
+		assertEquals(IdentityChange.Type.UPDATED, change.getType());
+		assertSame(ITEM, change.getPreviousItem());
+	}
+
+	private IdentityChange evicted(final IdentityItem item) {
+		return new IdentityChange(IdentityChange.Type.EVICTED, "namespace", item, null);
+	}
+}
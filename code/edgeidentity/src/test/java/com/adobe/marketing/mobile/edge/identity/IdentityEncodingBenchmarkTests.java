@@ -0,0 +1,134 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks the size and parse time of identifiers in the full and in the compact encoding.
+ * <p>
+ * The identity maps resemble those of an application: a primary and a secondary ECID plus customer identifiers spread
+ * over a few namespaces, of which one in ten is authenticated and one is primary. The load time covers reading the
+ * persisted JSON at boot, the response parse time covers reading a {@link Identity#getIdentities} response.
+ */
+@Ignore("Benchmark, run manually")
+public class IdentityEncodingBenchmarkTests {
+
+	private static final int[] IDENTITY_COUNTS = {5, 50, 500};
+	private static final String[] NAMESPACES = {"email", "crmId", "phone", "loyaltyId", "pushToken"};
+	private static final int WARMUP_RUNS = 200;
+	private static final int MEASURED_RUNS = 500;
+
+	@After
+	public void teardown() {
+		IdentityCompactEncoding.reset();
+	}
+
+	@Test
+	public void benchmarkCompactEncoding() throws Exception {
+		System.out.println("Size and parse time of full and compact identifiers");
+		System.out.println(String.format("%10s | %22s | %22s | %22s", "identities", "persisted bytes (f/c)",
+										 "load avg us (f/c)", "response avg us (f/c)"));
+
+		for (final int identityCount : IDENTITY_COUNTS) {
+			final IdentityProperties properties = createProperties(identityCount);
+
+			IdentityCompactEncoding.setEnabled(false, false);
+			final String fullJSON = properties.toJSONString();
+			final Map<String, Object> fullResponse = properties.toXDMData(false, null, false);
+			IdentityCompactEncoding.setEnabled(true, true);
+			final String compactJSON = properties.toJSONString();
+			final Map<String, Object> compactResponse = properties.toXDMData(false, null, true);
+
+			final int fullBytes = fullJSON.getBytes(StandardCharsets.UTF_8).length;
+			final int compactBytes = compactJSON.getBytes(StandardCharsets.UTF_8).length;
+
+			measureLoad(fullJSON, WARMUP_RUNS);
+			measureLoad(compactJSON, WARMUP_RUNS);
+			final double fullLoadMicros = measureLoad(fullJSON, MEASURED_RUNS);
+			final double compactLoadMicros = measureLoad(compactJSON, MEASURED_RUNS);
+
+			measureResponseParse(fullResponse, WARMUP_RUNS);
+			measureResponseParse(compactResponse, WARMUP_RUNS);
+			final double fullResponseMicros = measureResponseParse(fullResponse, MEASURED_RUNS);
+			final double compactResponseMicros = measureResponseParse(compactResponse, MEASURED_RUNS);
+
+			System.out.println(String.format("%10d | %10d / %9d | %10.2f / %9.2f | %10.2f / %9.2f", identityCount + 2,
+											 fullBytes, compactBytes, fullLoadMicros, compactLoadMicros, fullResponseMicros, compactResponseMicros));
+
+			// both encodings read back to the same identifiers
+			assertTrue(compactBytes < fullBytes);
+			assertEquals(new IdentityProperties(Utils.toMap(new JSONObject(fullJSON))).toXDMData(false),
+						 new IdentityProperties(Utils.toMap(new JSONObject(compactJSON))).toXDMData(false));
+			assertEquals(IdentityMap.fromXDMMap(fullResponse).asXDMMap(), IdentityMap.fromXDMMap(compactResponse).asXDMMap());
+		}
+	}
+
+	/**
+	 * Reads the persisted JSON as the extension does at boot.
+	 *
+	 * @return the average time per load in microseconds
+	 */
+	private static double measureLoad(final String json, final int runs) throws Exception {
+		long totalNanos = 0;
+
+		for (int i = 0; i < runs; i++) {
+			final long start = System.nanoTime();
+			new IdentityProperties(Utils.toMap(new JSONObject(json)));
+			totalNanos += System.nanoTime() - start;
+		}
+
+		return totalNanos / 1000.0 / runs;
+	}
+
+	/**
+	 * Reads the response event data as {@link Identity#getIdentities} does.
+	 *
+	 * @return the average time per parse in microseconds
+	 */
+	private static double measureResponseParse(final Map<String, Object> eventData, final int runs) {
+		long totalNanos = 0;
+
+		for (int i = 0; i < runs; i++) {
+			final long start = System.nanoTime();
+			IdentityMap.fromXDMMap(eventData);
+			totalNanos += System.nanoTime() - start;
+		}
+
+		return totalNanos / 1000.0 / runs;
+	}
+
+	private static IdentityProperties createProperties(final int identityCount) {
+		final IdentityProperties properties = new IdentityProperties();
+		properties.setECID(new ECID());
+		properties.setECIDSecondary(new ECID());
+		final IdentityMap customerIdentifiers = new IdentityMap();
+
+		for (int i = 0; i < identityCount; i++) {
+			customerIdentifiers.addItem(new IdentityItem("user-" + i + "@example.com",
+										i % 10 == 0 ? AuthenticatedState.AUTHENTICATED : AuthenticatedState.AMBIGUOUS, i == 0),
+										NAMESPACES[i % NAMESPACES.length]);
+		}
+
+		properties.updateCustomerIdentifiers(customerIdentifiers);
+		return properties;
+	}
+}
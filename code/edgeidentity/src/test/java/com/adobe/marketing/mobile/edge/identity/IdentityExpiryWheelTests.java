@@ -0,0 +1,106 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityExpiryWheelTests {
+
+	@Test
+	public void test_advance_returnsEntriesOnceDue() {
+		// setup
+		IdentityExpiryWheel wheel = new IdentityExpiryWheel(10, 4);
+		wheel.advance(100);
+		wheel.schedule("space", "moon", 125);
+		wheel.schedule("space", "mars", 131);
+
+		// test and verify
+		assertTrue(wheel.advance(120).isEmpty());
+
+		List<IdentityExpiryWheel.Entry> due = wheel.advance(130);
+		assertEquals(1, due.size());
+		assertEquals("moon", due.get(0).id);
+		assertEquals(125, due.get(0).expirationTime);
+		assertFalse(wheel.isEmpty());
+
+		due = wheel.advance(140);
+		assertEquals(1, due.size());
+		assertEquals("mars", due.get(0).id);
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test
+	public void test_advance_keepsEntriesBeyondOneRevolution() {
+		// setup, the wheel covers 40 milliseconds per revolution
+		IdentityExpiryWheel wheel = new IdentityExpiryWheel(10, 4);
+		wheel.advance(0);
+		wheel.schedule("space", "far", 95);
+
+		// test and verify
+		assertTrue(wheel.advance(20).isEmpty());
+		assertTrue(wheel.advance(60).isEmpty());
+		assertTrue(wheel.advance(90).isEmpty());
+		assertEquals(1, wheel.advance(100).size());
+	}
+
+	@Test
+	public void test_advance_afterLongPause_returnsAllDueEntries() {
+		// setup
+		IdentityExpiryWheel wheel = new IdentityExpiryWheel(10, 4);
+		wheel.advance(0);
+		wheel.schedule("space", "moon", 15);
+		wheel.schedule("space", "mars", 35);
+		wheel.schedule("space", "venus", 1000);
+
+		// test
+		List<IdentityExpiryWheel.Entry> due = wheel.advance(500);
+
+		// verify
+		assertEquals(2, due.size());
+		assertFalse(wheel.isEmpty());
+	}
+
+	@Test
+	public void test_schedule_passedExpirationIsDueOnNextAdvance() {
+		// setup
+		IdentityExpiryWheel wheel = new IdentityExpiryWheel(10, 4);
+		wheel.advance(100);
+
+		// test
+		wheel.schedule("space", "moon", 50);
+		wheel.schedule("space", "never", 0);
+
+		// verify
+		assertEquals(1, wheel.advance(110).size());
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test
+	public void test_clear() {
+		// setup
+		IdentityExpiryWheel wheel = new IdentityExpiryWheel(10, 4);
+		wheel.schedule("space", "moon", 15);
+
+		// test
+		wheel.clear();
+
+		// verify
+		assertTrue(wheel.isEmpty());
+		assertTrue(wheel.advance(100).isEmpty());
+	}
+}
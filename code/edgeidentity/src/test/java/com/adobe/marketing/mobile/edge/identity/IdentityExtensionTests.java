@@ -32,14 +32,26 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityTestUtil.*;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityTestUtil.buildUpdateIdentityRequest;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -80,6 +92,7 @@ public class IdentityExtensionTests {
 					 0)).thenReturn(mockSharedPreference);
 		Mockito.when(mockSharedPreference.edit()).thenReturn(mockSharedPreferenceEditor);
 
+		IdentityUpdateCache.getInstance().clear();
 		extension = new IdentityExtension(mockExtensionApi);
 
 		// simulate bootup
@@ -89,6 +102,91 @@ public class IdentityExtensionTests {
 		clearInvocations(mockExtensionApi);
 	}
 
+	// ========================================================================================
+	// getExecutor / onUnregistered
+	// ========================================================================================
+	@Test
+	public void test_getExecutor_usesSharedExecutorSerially() throws Exception {
+		// setup
+		final List<Runnable> submitted = new ArrayList<>();
+		IdentityExtension.setSharedExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				submitted.add(runnable);
+			}
+		});
+
+		try {
+			extension = new IdentityExtension(mockExtensionApi);
+			final List<String> ran = new ArrayList<>();
+
+			// test
+			extension.getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					ran.add("first");
+				}
+			});
+			extension.getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					ran.add("second");
+				}
+			});
+
+			// verify only one task is submitted to the shared executor, which runs the queued tasks in order
+			assertEquals(1, submitted.size());
+			submitted.get(0).run();
+			assertEquals(1, submitted.size());
+			assertEquals(Arrays.asList("first", "second"), ran);
+		} finally {
+			IdentityExtension.setSharedExecutor(null);
+		}
+	}
+
+	@Test
+	public void test_getExecutor_usesConfiguredThreadOptions() throws Exception {
+		// setup
+		IdentityExtension.setThreadOptions("TestIdentityThread", Thread.MIN_PRIORITY);
+
+		try {
+			extension = new IdentityExtension(mockExtensionApi);
+			final String[] threadName = new String[1];
+			final int[] threadPriority = new int[1];
+			final CountDownLatch latch = new CountDownLatch(1);
+
+			// test
+			extension.getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					threadName[0] = Thread.currentThread().getName();
+					threadPriority[0] = Thread.currentThread().getPriority();
+					latch.countDown();
+				}
+			});
+
+			// verify
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			assertEquals("TestIdentityThread", threadName[0]);
+			assertEquals(Thread.MIN_PRIORITY, threadPriority[0]);
+		} finally {
+			IdentityExtension.setThreadOptions(null, Thread.NORM_PRIORITY);
+		}
+	}
+
+	@Test
+	public void test_onUnregistered_shutsDownExecutor() {
+		// setup
+		final SerialExecutor executor = (SerialExecutor) extension.getExecutor();
+
+		// test
+		extension.onUnregistered();
+
+		// verify
+		assertTrue(executor.isShutdown());
+		assertSame(executor, extension.getExecutor());
+	}
+
 	// ========================================================================================
 	// constructor
 	// ========================================================================================
@@ -242,6 +340,90 @@ public class IdentityExtensionTests {
 		assertTrue(identityMap.isEmpty());
 	}
 
+	@Test
+	public void test_handleIdentityRequest_withNamespaces_returnsOnlyRequestedNamespaces() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID());
+		IdentityMap customerIdentifiers = new IdentityMap();
+		customerIdentifiers.addItem(new IdentityItem("user@example.com"), "email");
+		customerIdentifiers.addItem(new IdentityItem("12345"), "crmId");
+		props.updateCustomerIdentifiers(customerIdentifiers);
+		PowerMockito.stub(PowerMockito.method(IdentityState.class, "getIdentityProperties")).toReturn(props);
+
+		Map<String, Object> eventData = new HashMap<>();
+		eventData.put(IdentityConstants.EventDataKeys.NAMESPACES, Arrays.asList("email", "unknown"));
+		Event event = new Event.Builder("Test event", IdentityConstants.EventType.EDGE_IDENTITY,
+										IdentityConstants.EventSource.REQUEST_IDENTITY).setEventData(eventData).build();
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+
+		// test
+		extension.handleIdentityRequest(event);
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class),
+										 any(ExtensionErrorCallback.class));
+
+		final IdentityMap identityMap = IdentityMap.fromXDMMap(responseEventCaptor.getValue().getEventData());
+		assertEquals(Collections.singletonList("email"), identityMap.getNamespaces());
+		assertEquals("user@example.com", identityMap.getIdentityItemsForNamespace("email").get(0).getId());
+	}
+
+	@Test
+	public void test_handleIdentityRequest_compactResponses_omitsDefaultFields() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID());
+		IdentityMap customerIdentifiers = new IdentityMap();
+		customerIdentifiers.addItem(new IdentityItem("user@example.com", AuthenticatedState.AUTHENTICATED, true), "email");
+		props.updateCustomerIdentifiers(customerIdentifiers);
+		PowerMockito.stub(PowerMockito.method(IdentityState.class, "getIdentityProperties")).toReturn(props);
+		Event event = new Event.Builder("Test event", IdentityConstants.EventType.EDGE_IDENTITY,
+										IdentityConstants.EventSource.REQUEST_IDENTITY).build();
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+
+		// test
+		try {
+			IdentityCompactEncoding.setEnabled(true, true);
+			extension.handleIdentityRequest(event);
+		} finally {
+			IdentityCompactEncoding.reset();
+		}
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class),
+										 any(ExtensionErrorCallback.class));
+
+		final Map<String, String> flatMap = flattenMap(responseEventCaptor.getValue().getEventData());
+		assertEquals(4, flatMap.size());
+		assertEquals("authenticated", flatMap.get("identityMap.email[0].authenticatedState"));
+		assertEquals("true", flatMap.get("identityMap.email[0].primary"));
+		assertEquals(props.toXDMData(false), IdentityMap.fromXDMMap(responseEventCaptor.getValue().getEventData()).asXDMMap());
+	}
+
+	@Test
+	public void test_handleIdentityRequest_withInvalidNamespaces_returnsAllNamespaces() {
+		// setup
+		Map<String, Object> eventData = new HashMap<>();
+		eventData.put(IdentityConstants.EventDataKeys.NAMESPACES, "ECID");
+		Event event = new Event.Builder("Test event", IdentityConstants.EventType.EDGE_IDENTITY,
+										IdentityConstants.EventSource.REQUEST_IDENTITY).setEventData(eventData).build();
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+
+		// test
+		extension.handleIdentityRequest(event);
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class),
+										 any(ExtensionErrorCallback.class));
+
+		final IdentityMap identityMap = IdentityMap.fromXDMMap(responseEventCaptor.getValue().getEventData());
+		assertEquals(1, identityMap.getIdentityItemsForNamespace("ECID").size());
+	}
+
 	@Test
 	public void test_handleIdentityResetRequest() {
 		// setup
@@ -293,6 +475,44 @@ public class IdentityExtensionTests {
 		assertTrue(eventCaptor.getAllValues().isEmpty());
 	}
 
+	@Test
+	public void test_queueIdentityDirectStateEvent_onlyLatestPendingEventHandled() {
+		// setup
+		final List<Runnable> submitted = new ArrayList<>();
+		IdentityExtension.setSharedExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				submitted.add(runnable);
+			}
+		});
+
+		try {
+			setupExistingIdentityProps(new ECID());
+			extension = new IdentityExtension(mockExtensionApi);
+			extension.bootupIfReady();
+			clearInvocations(mockExtensionApi);
+			setIdentityDirectSharedState("1234");
+
+			final Event firstEvent = buildIdentityDirectSharedStateEvent();
+			final Event secondEvent = buildIdentityDirectSharedStateEvent();
+
+			// test
+			extension.queueIdentityDirectStateEvent(firstEvent);
+			extension.queueIdentityDirectStateEvent(secondEvent);
+			submitted.get(0).run();
+
+			// verify only the latest event reads the direct Identity shared state
+			verify(mockExtensionApi, times(0)).getSharedEventState(eq(IdentityConstants.SharedState.IdentityDirect.NAME),
+					eq(firstEvent), any(ExtensionErrorCallback.class));
+			verify(mockExtensionApi, times(1)).getSharedEventState(eq(IdentityConstants.SharedState.IdentityDirect.NAME),
+					eq(secondEvent), any(ExtensionErrorCallback.class));
+			verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), eq(secondEvent),
+					any(ExtensionErrorCallback.class));
+		} finally {
+			IdentityExtension.setSharedExecutor(null);
+		}
+	}
+
 	@Test
 	public void test_handleHubSharedState_noOpNullEvent() {
 		setIdentityDirectSharedState("1234");
@@ -409,6 +629,643 @@ public class IdentityExtensionTests {
 		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
 	}
 
+	@Test
+	public void test_handleUpdateIdentities_sharedStateCoalescing_publishesOneSharedStateForLastEvent() {
+		// setup
+		IdentityExtension.setSharedStateWindow(60000);
+
+		try {
+			final Event firstEvent = buildUpdateIdentityRequest(createXDMIdentityMap(new TestItem("space", "moon")));
+			final Event secondEvent = buildUpdateIdentityRequest(createXDMIdentityMap(new TestItem("space", "mars")));
+
+			// test
+			extension.handleUpdateIdentities(firstEvent);
+			extension.handleUpdateIdentities(secondEvent);
+
+			// verify no shared state is set during the window
+			verify(mockExtensionApi, times(0)).setXDMSharedEventState(nullable(Map.class), nullable(Event.class),
+					any(ExtensionErrorCallback.class));
+
+			// test
+			extension.publishPendingSharedState();
+
+			// verify one shared state with both changes is tied to the last event
+			final ArgumentCaptor<Map<String, Object>> sharedStateCaptor = ArgumentCaptor.forClass(Map.class);
+			verify(mockExtensionApi, times(1)).setXDMSharedEventState(sharedStateCaptor.capture(), eq(secondEvent),
+					any(ExtensionErrorCallback.class));
+			verify(mockExtensionApi, times(1)).setXDMSharedEventState(nullable(Map.class), nullable(Event.class),
+					any(ExtensionErrorCallback.class));
+			final IdentityMap sharedMap = IdentityMap.fromXDMMap(sharedStateCaptor.getValue());
+			assertEquals(2, sharedMap.getIdentityItemsForNamespace("space").size());
+
+			// verify the next change starts a new window
+			final Event thirdEvent = buildUpdateIdentityRequest(createXDMIdentityMap(new TestItem("space", "venus")));
+			extension.handleUpdateIdentities(thirdEvent);
+			verify(mockExtensionApi, times(1)).setXDMSharedEventState(nullable(Map.class), nullable(Event.class),
+					any(ExtensionErrorCallback.class));
+			extension.publishPendingSharedState();
+			verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), eq(thirdEvent),
+					any(ExtensionErrorCallback.class));
+		} finally {
+			IdentityExtension.setSharedStateWindow(0);
+		}
+	}
+
+	@Test
+	public void test_handleRequestReset_sharedStateCoalescing_defersResetCompleteUntilPublished() {
+		// setup
+		IdentityExtension.setSharedStateWindow(60000);
+
+		try {
+			final Event resetEvent = new Event.Builder("Reset Identities Request", IdentityConstants.EventType.EDGE_IDENTITY,
+					IdentityConstants.EventSource.REQUEST_RESET).build();
+
+			// test
+			extension.handleRequestReset(resetEvent);
+
+			// verify
+			PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+			MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+
+			// test
+			extension.publishPendingSharedState();
+
+			// verify the reset complete event is dispatched after the shared state of the reset
+			verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), eq(resetEvent),
+					any(ExtensionErrorCallback.class));
+			PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+			MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+		} finally {
+			IdentityExtension.setSharedStateWindow(0);
+		}
+	}
+
+	@Test
+	public void test_onUnregistered_publishesCoalescedSharedState() throws Exception {
+		// setup
+		IdentityExtension.setSharedStateWindow(60000);
+		IdentityExtension.setSharedExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				runnable.run();
+			}
+		});
+
+		try {
+			extension = new IdentityExtension(mockExtensionApi);
+			final Event event = buildUpdateIdentityRequest(createXDMIdentityMap(new TestItem("space", "moon")));
+			extension.handleUpdateIdentities(event);
+			extension.getExecutor();
+
+			// test
+			extension.onUnregistered();
+
+			// verify
+			verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), eq(event),
+					any(ExtensionErrorCallback.class));
+		} finally {
+			IdentityExtension.setSharedStateWindow(0);
+			IdentityExtension.setSharedExecutor(null);
+		}
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_sharedStateCoalescing_defersResponsesUntilPublished() {
+		// setup
+		IdentityExtension.setSharedStateWindow(60000);
+
+		try {
+			final ArgumentCaptor<Event> requestEventCaptor = ArgumentCaptor.forClass(Event.class);
+			final Map<String, Object> firstData = createXDMIdentityMap(new TestItem("space", "moon"));
+			firstData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+			final Map<String, Object> secondData = createXDMIdentityMap(new TestItem("space", "mars"));
+			secondData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+			final Event firstEvent = buildUpdateIdentityRequest(firstData);
+			final Event secondEvent = buildUpdateIdentityRequest(secondData);
+
+			// test
+			extension.handleUpdateIdentities(firstEvent);
+			extension.handleUpdateIdentities(secondEvent);
+
+			// verify no response is dispatched while the shared state is pending
+			PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+			MobileCore.dispatchResponseEvent(any(Event.class), any(Event.class), any(ExtensionErrorCallback.class));
+
+			// test
+			extension.publishPendingSharedState();
+
+			// verify the responses are dispatched in order once the shared state is published
+			PowerMockito.verifyStatic(MobileCore.class, Mockito.times(2));
+			MobileCore.dispatchResponseEvent(any(Event.class), requestEventCaptor.capture(),
+											 any(ExtensionErrorCallback.class));
+			assertEquals(Arrays.asList(firstEvent, secondEvent), requestEventCaptor.getAllValues());
+		} finally {
+			IdentityExtension.setSharedStateWindow(0);
+		}
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_sharedStateCoalescing_publishesWhenWindowElapses() {
+		// setup
+		IdentityExtension.setSharedStateWindow(10);
+
+		try {
+			final Event event = buildUpdateIdentityRequest(createXDMIdentityMap(new TestItem("space", "moon")));
+
+			// test
+			extension.handleUpdateIdentities(event);
+
+			// verify
+			verify(mockExtensionApi, Mockito.timeout(5000).times(1)).setXDMSharedEventState(any(Map.class),
+					eq(event), any(ExtensionErrorCallback.class));
+		} finally {
+			IdentityExtension.setSharedStateWindow(0);
+			extension.onUnregistered();
+		}
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_confirmsIdentifiers() {
+		// setup
+		extension.state = new MockIdentityState(new IdentityProperties());
+		Map<String, Object> identityXDM = createXDMIdentityMap(
+											  new TestItem("id1", "somevalue")
+										  );
+
+		// test
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(identityXDM));
+
+		// verify
+		assertTrue(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(identityXDM)));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_evictedIdentifiers_areNotConfirmed() {
+		// setup
+		IdentityRetention.setLimits(1, 0);
+
+		try {
+			Map<String, Object> firstXDM = createXDMIdentityMap(new TestItem("space", "id1"));
+			Map<String, Object> secondXDM = createXDMIdentityMap(new TestItem("space", "id2"));
+			Map<String, Object> bothXDM = createXDMIdentityMap(new TestItem("space", "id3"), new TestItem("space", "id4"));
+
+			// test, id2 evicts id1
+			extension.handleUpdateIdentities(buildUpdateIdentityRequest(firstXDM));
+			extension.handleUpdateIdentities(buildUpdateIdentityRequest(secondXDM));
+
+			// verify
+			assertFalse(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(firstXDM)));
+			assertTrue(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(secondXDM)));
+
+			// test, re-updating the evicted id1 stores it again
+			extension.handleUpdateIdentities(buildUpdateIdentityRequest(firstXDM));
+
+			// verify
+			IdentityMap stored = IdentityMap.fromXDMMap(extension.state.getIdentityProperties().toXDMData(false));
+			assertEquals(1, stored.getIdentityItemsForNamespace("space").size());
+			assertEquals("id1", stored.getIdentityItemsForNamespace("space").get(0).getId());
+			assertTrue(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(firstXDM)));
+			assertFalse(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(secondXDM)));
+
+			// test, an update exceeding the limit evicts some of its own identifiers
+			extension.handleUpdateIdentities(buildUpdateIdentityRequest(bothXDM));
+
+			// verify
+			assertFalse(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(bothXDM)));
+		} finally {
+			IdentityRetention.reset();
+		}
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_completesPendingUpdate() {
+		// setup
+		Map<String, Object> identityXDM = createXDMIdentityMap(new TestItem("space", "id1"));
+		Event event = buildUpdateIdentityRequest(identityXDM);
+		IdentityUpdateCache.getInstance().updateRequested(event.getUniqueIdentifier());
+
+		// test
+		extension.handleUpdateIdentities(event);
+
+		// verify
+		assertTrue(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(identityXDM)));
+	}
+
+	@Test
+	public void test_expireIdentities_removesExpiredIdentifiersInOneBatch() {
+		// setup
+		IdentityMap identities = new IdentityMap();
+		identities.addItem(new IdentityItem("session1", AuthenticatedState.AMBIGUOUS, false, 1000), "session");
+		identities.addItem(new IdentityItem("session2", AuthenticatedState.AMBIGUOUS, false, 2000), "session");
+		identities.addItem(new IdentityItem("campaign", AuthenticatedState.AMBIGUOUS, false, 3000), "campaign");
+		identities.addItem(new IdentityItem("permanent"), "space");
+		Map<String, Object> eventData = identities.asXDMMap(false);
+		eventData.put(IdentityConstants.EventDataKeys.EXPIRATIONS, identities.getExpirations());
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(eventData));
+		assertEquals(2, extension.state.getIdentityProperties().getExpirations().size());
+		clearInvocations(mockExtensionApi, mockSharedPreferenceEditor);
+
+		// test
+		extension.expireIdentities();
+
+		// verify one persistence write and one shared state for the batch
+		verify(mockSharedPreferenceEditor, times(1)).putString(eq(IdentityConstants.DataStoreKey.IDENTITY_PROPERTIES),
+				anyString());
+		verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), nullable(Event.class),
+				any(ExtensionErrorCallback.class));
+		Map<String, Object> identityMap = (Map<String, Object>) extension.state.getIdentityProperties().toXDMData(
+											  false).get(IdentityConstants.XDMKeys.IDENTITY_MAP);
+		assertFalse(identityMap.containsKey("session"));
+		assertFalse(identityMap.containsKey("campaign"));
+		assertTrue(identityMap.containsKey("space"));
+		assertTrue(extension.expiryWheel.isEmpty());
+
+		// nothing more to expire
+		clearInvocations(mockExtensionApi);
+		extension.expireIdentities();
+		verify(mockExtensionApi, times(0)).setXDMSharedEventState(any(Map.class), nullable(Event.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void test_handleRemoveIdentity_invalidatesConfirmedIdentifiers() {
+		// setup
+		extension.state = new MockIdentityState(new IdentityProperties());
+		Map<String, Object> identityXDM = createXDMIdentityMap(
+											  new TestItem("id1", "somevalue")
+										  );
+		IdentityUpdateCache.getInstance().confirm(IdentityMap.fromXDMMap(identityXDM));
+
+		// test
+		extension.handleRemoveIdentity(buildRemoveIdentityRequest(identityXDM));
+
+		// verify
+		assertFalse(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(identityXDM)));
+	}
+
+	@Test
+	public void test_handleRemoveIdentity_foreignRemoveEvent_keepsApiRemovalPending() {
+		// setup
+		extension.state = new MockIdentityState(new IdentityProperties());
+		final Map<String, Object> removedXDM = createXDMIdentityMap(new TestItem("id1", "space1"));
+		final Map<String, Object> foreignXDM = createXDMIdentityMap(new TestItem("id3", "space3"));
+		final IdentityMap confirmedMap = IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("id2", "space2")));
+		IdentityUpdateCache.getInstance().confirm(confirmedMap);
+		final Event apiRemoveEvent = buildRemoveIdentityRequest(removedXDM);
+		IdentityUpdateCache.getInstance().invalidationRequested(apiRemoveEvent.getUniqueIdentifier(),
+				Collections.singletonList("space1"));
+
+		// test, a remove event not dispatched through the Identity API is handled first
+		extension.handleRemoveIdentity(buildRemoveIdentityRequest(foreignXDM));
+
+		// verify the API removal is still pending
+		assertFalse(IdentityUpdateCache.getInstance().isUnchanged(confirmedMap));
+
+		// test
+		extension.handleRemoveIdentity(apiRemoveEvent);
+
+		// verify
+		assertTrue(IdentityUpdateCache.getInstance().isUnchanged(confirmedMap));
+	}
+
+	@Test
+	public void test_handleRequestReset_invalidatesConfirmedIdentifiers() {
+		// setup
+		Map<String, Object> identityXDM = createXDMIdentityMap(
+											  new TestItem("id1", "somevalue")
+										  );
+		IdentityUpdateCache.getInstance().confirm(IdentityMap.fromXDMMap(identityXDM));
+
+		// test
+		extension.handleRequestReset(new Event.Builder("Test event", IdentityConstants.EventType.GENERIC_IDENTITY,
+									 IdentityConstants.EventSource.REQUEST_RESET).build());
+
+		// verify
+		assertFalse(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(identityXDM)));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_withRemovedIdentities_updatesAndRemovesCustomerIdentifiers() {
+		// setup
+		IdentityProperties properties = new IdentityProperties();
+		IdentityMap existingIdentifiers = new IdentityMap();
+		existingIdentifiers.addItem(new IdentityItem("existing"), "space1");
+		existingIdentifiers.addItem(new IdentityItem("kept"), "space1");
+		properties.updateCustomerIdentifiers(existingIdentifiers);
+		MockIdentityState mockIdentityState = new MockIdentityState(properties);
+		extension.state = mockIdentityState;
+
+		IdentityMap updatedIdentifiers = new IdentityMap();
+		updatedIdentifiers.addItem(new IdentityItem("new"), "space2");
+		IdentityMap removedIdentifiers = new IdentityMap();
+		removedIdentifiers.addItem(new IdentityItem("existing"), "space1");
+		Map<String, Object> eventData = updatedIdentifiers.asXDMMap(false);
+		eventData.put(IdentityConstants.EventDataKeys.REMOVED_IDENTITIES, removedIdentifiers.asXDMMap(false));
+
+		// test
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(eventData));
+
+		// verify
+		IdentityMap expectedIdentifiers = new IdentityMap();
+		expectedIdentifiers.addItem(new IdentityItem("kept"), "space1");
+		expectedIdentifiers.addItem(new IdentityItem("new"), "space2");
+		assertEquals(expectedIdentifiers.asXDMMap().get(IdentityConstants.XDMKeys.IDENTITY_MAP),
+					 properties.toXDMData(true).get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+		assertEquals(0, mockIdentityState.updateCustomerIdentifiersCalledTimes);
+		verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), any(Event.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_publishesIdentityChanges() throws Exception {
+		// setup
+		final CountDownLatch latch = new CountDownLatch(1);
+		final List<IdentityChange> receivedChanges = new ArrayList<>();
+		final IdentityChangeListener listener = new IdentityChangeListener() {
+			@Override
+			public void onIdentitiesChanged(final List<IdentityChange> changes) {
+				receivedChanges.addAll(changes);
+				latch.countDown();
+			}
+		};
+		IdentityChangeDispatcher.getInstance().register(listener);
+
+		// test
+		Map<String, Object> identityXDM = createXDMIdentityMap(
+											  new TestItem("id1", "somevalue")
+										  );
+
+		try {
+			extension.handleUpdateIdentities(buildUpdateIdentityRequest(identityXDM));
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+		} finally {
+			IdentityChangeDispatcher.getInstance().unregister(listener);
+		}
+
+		// verify
+		assertEquals(1, receivedChanges.size());
+		assertEquals(IdentityChange.Type.ADDED, receivedChanges.get(0).getType());
+		assertEquals("id1", receivedChanges.get(0).getNamespace());
+		assertEquals("somevalue", receivedChanges.get(0).getItem().getId());
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_sharesStateVersion() {
+		// setup
+		final ArgumentCaptor<Map> sharedStateCaptor = ArgumentCaptor.forClass(Map.class);
+		final long initialVersion = extension.state.getIdentityProperties().getStateVersion();
+		Map<String, Object> identityXDM = createXDMIdentityMap(
+											  new TestItem("id1", "somevalue")
+										  );
+
+		// test
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(identityXDM));
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(identityXDM));
+
+		// verify
+		verify(mockExtensionApi, times(2)).setXDMSharedEventState(sharedStateCaptor.capture(), any(Event.class),
+				any(ExtensionErrorCallback.class));
+		assertEquals(initialVersion + 1, sharedStateCaptor.getAllValues().get(0).get(IdentityConstants.EventDataKeys.STATE_VERSION));
+		assertEquals(initialVersion + 1, sharedStateCaptor.getAllValues().get(1).get(IdentityConstants.EventDataKeys.STATE_VERSION));
+	}
+
+	@Test
+	public void test_handleIdentityRequest_includesStateVersion() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID());
+		props.setStateVersion(7);
+		PowerMockito.stub(PowerMockito.method(IdentityState.class, "getIdentityProperties")).toReturn(props);
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+
+		// test
+		extension.handleIdentityRequest(new Event.Builder("Test event", IdentityConstants.EventType.EDGE_IDENTITY,
+										IdentityConstants.EventSource.REQUEST_IDENTITY).build());
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class),
+										 any(ExtensionErrorCallback.class));
+		assertEquals(7L, responseEventCaptor.getValue().getEventData().get(IdentityConstants.EventDataKeys.STATE_VERSION));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_responseRequested_updatesSharedStateAndDispatchesStateVersion() {
+		// setup
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+		final ArgumentCaptor<Event> requestEventCaptor = ArgumentCaptor.forClass(Event.class);
+		final long initialVersion = extension.state.getIdentityProperties().getStateVersion();
+		Map<String, Object> eventData = createXDMIdentityMap(
+											new TestItem("id1", "somevalue")
+										);
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+		Event updateIdentityEvent = buildUpdateIdentityRequest(eventData);
+
+		// test
+		extension.handleUpdateIdentities(updateIdentityEvent);
+
+		// verify
+		verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), eq(updateIdentityEvent),
+				any(ExtensionErrorCallback.class));
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), requestEventCaptor.capture(),
+										 any(ExtensionErrorCallback.class));
+		assertEquals(updateIdentityEvent, requestEventCaptor.getValue());
+		Event responseEvent = responseEventCaptor.getValue();
+		assertEquals(IdentityConstants.EventNames.UPDATE_IDENTITIES_COMPLETE, responseEvent.getName());
+		assertEquals(IdentityConstants.EventSource.RESPONSE_IDENTITY.toLowerCase(), responseEvent.getSource());
+		assertEquals(initialVersion + 1, responseEvent.getEventData().get(IdentityConstants.EventDataKeys.STATE_VERSION));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_responseNotRequested_doesNotDispatchResponse() {
+		// test
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(createXDMIdentityMap(
+											 new TestItem("id1", "somevalue")
+										 )));
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchResponseEvent(any(Event.class), any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_responseRequestedWithoutIdentifiers_dispatchesResponse() {
+		// setup
+		Map<String, Object> eventData = new HashMap<>();
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+
+		// test
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(eventData));
+
+		// verify response is dispatched without updating the shared state
+		verify(mockExtensionApi, times(0)).setXDMSharedEventState(any(Map.class), any(Event.class),
+				any(ExtensionErrorCallback.class));
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(any(Event.class), any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_exceedsPayloadLimits_dispatchesRejectedResponse() {
+		// setup
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+		IdentityProperties properties = new IdentityProperties();
+		MockIdentityState mockIdentityState = new MockIdentityState(properties);
+		extension.state = mockIdentityState;
+		Map<String, Object> eventData = createXDMIdentityMap(
+											new TestItem("id1", "space1"),
+											new TestItem("id2", "space2")
+										);
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+		IdentityPayloadLimits.setLimits(1, IdentityPayloadLimits.DEFAULT_MAX_ITEMS_PER_NAMESPACE,
+										IdentityPayloadLimits.DEFAULT_MAX_ID_LENGTH, IdentityPayloadLimits.DEFAULT_MAX_TOTAL_BYTES);
+
+		try {
+			// test
+			extension.handleUpdateIdentities(buildUpdateIdentityRequest(eventData));
+		} finally {
+			IdentityPayloadLimits.reset();
+		}
+
+		// verify nothing is updated
+		assertEquals(0, mockIdentityState.updateCustomerIdentifiersCalledTimes);
+		verify(mockExtensionApi, times(0)).setXDMSharedEventState(any(Map.class), any(Event.class),
+				any(ExtensionErrorCallback.class));
+
+		// verify the response is marked as rejected
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class), any(ExtensionErrorCallback.class));
+		Map<String, Object> responseData = responseEventCaptor.getValue().getEventData();
+		assertEquals(true, responseData.get(IdentityConstants.EventDataKeys.REJECTED));
+		assertNull(responseData.get(IdentityConstants.EventDataKeys.APPLIED));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_conditionalExceedsPayloadLimits_isNotApplied() {
+		// setup
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+		IdentityProperties properties = new IdentityProperties();
+		properties.setStateVersion(2);
+		extension.state = new IdentityState(properties);
+		Map<String, Object> eventData = createXDMIdentityMap(
+											new TestItem("id1", "space1"),
+											new TestItem("id2", "space2")
+										);
+		eventData.put(IdentityConstants.EventDataKeys.EXPECTED_STATE_VERSION, 2L);
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+		IdentityPayloadLimits.setLimits(1, IdentityPayloadLimits.DEFAULT_MAX_ITEMS_PER_NAMESPACE,
+										IdentityPayloadLimits.DEFAULT_MAX_ID_LENGTH, IdentityPayloadLimits.DEFAULT_MAX_TOTAL_BYTES);
+
+		try {
+			// test
+			extension.handleUpdateIdentities(buildUpdateIdentityRequest(eventData));
+		} finally {
+			IdentityPayloadLimits.reset();
+		}
+
+		// verify
+		assertEquals(2, properties.getStateVersion());
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class), any(ExtensionErrorCallback.class));
+		Map<String, Object> responseData = responseEventCaptor.getValue().getEventData();
+		assertEquals(true, responseData.get(IdentityConstants.EventDataKeys.REJECTED));
+		assertEquals(false, responseData.get(IdentityConstants.EventDataKeys.APPLIED));
+	}
+
+	@Test
+	public void test_handleRemoveIdentity_exceedsPayloadLimits_dispatchesRejectedResponse() {
+		// setup
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+		IdentityProperties properties = new IdentityProperties(createXDMIdentityMap(
+											new TestItem("id1", "space1"),
+											new TestItem("id2", "space2")
+										));
+		MockIdentityState mockIdentityState = new MockIdentityState(properties);
+		extension.state = mockIdentityState;
+		Map<String, Object> eventData = createXDMIdentityMap(
+											new TestItem("id1", "space1"),
+											new TestItem("id2", "space2")
+										);
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+		IdentityPayloadLimits.setLimits(1, IdentityPayloadLimits.DEFAULT_MAX_ITEMS_PER_NAMESPACE,
+										IdentityPayloadLimits.DEFAULT_MAX_ID_LENGTH, IdentityPayloadLimits.DEFAULT_MAX_TOTAL_BYTES);
+
+		try {
+			// test
+			extension.handleRemoveIdentity(buildRemoveIdentityRequest(eventData));
+		} finally {
+			IdentityPayloadLimits.reset();
+		}
+
+		// verify
+		assertEquals(0, mockIdentityState.removeCustomerIdentifiersCalledTimes);
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class), any(ExtensionErrorCallback.class));
+		assertEquals(true, responseEventCaptor.getValue().getEventData().get(IdentityConstants.EventDataKeys.REJECTED));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_conditionalVersionMatches_appliesUpdate() {
+		// setup
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+		IdentityProperties properties = new IdentityProperties();
+		properties.setStateVersion(2);
+		extension.state = new IdentityState(properties);
+		Map<String, Object> eventData = createXDMIdentityMap(
+											new TestItem("UserId", "secretID")
+										);
+		eventData.put(IdentityConstants.EventDataKeys.EXPECTED_STATE_VERSION, 2L);
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+
+		// test
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(eventData));
+
+		// verify
+		assertEquals(3, properties.getStateVersion());
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class), any(ExtensionErrorCallback.class));
+		Map<String, Object> responseData = responseEventCaptor.getValue().getEventData();
+		assertEquals(true, responseData.get(IdentityConstants.EventDataKeys.APPLIED));
+		assertEquals(3L, responseData.get(IdentityConstants.EventDataKeys.STATE_VERSION));
+		assertEquals("secretID", flattenMap(responseData).get("identityMap.UserId[0].id"));
+	}
+
+	@Test
+	public void test_handleUpdateIdentities_conditionalVersionConflict_returnsCurrentIdentities() {
+		// setup
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+		IdentityProperties properties = new IdentityProperties(createXDMIdentityMap(
+											new TestItem("UserId", "currentID")
+										));
+		properties.setStateVersion(5);
+		MockIdentityState mockIdentityState = new MockIdentityState(properties);
+		extension.state = mockIdentityState;
+		Map<String, Object> eventData = createXDMIdentityMap(
+											new TestItem("UserId", "secretID")
+										);
+		eventData.put(IdentityConstants.EventDataKeys.EXPECTED_STATE_VERSION, 4L);
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+
+		// test
+		extension.handleUpdateIdentities(buildUpdateIdentityRequest(eventData));
+
+		// verify nothing is updated
+		assertEquals(0, mockIdentityState.updateCustomerIdentifiersCalledTimes);
+		assertEquals(5, properties.getStateVersion());
+		verify(mockExtensionApi, times(0)).setXDMSharedEventState(any(Map.class), any(Event.class),
+				any(ExtensionErrorCallback.class));
+
+		// verify response contains the current identities
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class), any(ExtensionErrorCallback.class));
+		Map<String, Object> responseData = responseEventCaptor.getValue().getEventData();
+		assertEquals(false, responseData.get(IdentityConstants.EventDataKeys.APPLIED));
+		assertEquals(5L, responseData.get(IdentityConstants.EventDataKeys.STATE_VERSION));
+		Map<String, String> flatResponse = flattenMap(responseData);
+		assertEquals("currentID", flatResponse.get("identityMap.UserId[0].id"));
+		assertNull(flatResponse.get("identityMap.UserId[1].id"));
+	}
+
 	@Test
 	public void test_handleUpdateIdentities_nullEventData_returns() {
 		// setup
@@ -430,6 +1287,111 @@ public class IdentityExtensionTests {
 	// ========================================================================================
 	// handleRemoveIdentity
 	// ========================================================================================
+	@Test
+	public void test_handleRemoveIdentity_withNamespaces_removesAllIdentifiersInNamespaces() {
+		// setup
+		Map<String, Object> identityXDM = createXDMIdentityMap(
+											  new TestItem("UserId", "secretID"),
+											  new TestItem("UserId", "otherID"),
+											  new TestItem("PushId", "token"),
+											  new TestItem("CrmId", "crm")
+										  );
+		IdentityProperties properties = new IdentityProperties(identityXDM);
+		MockIdentityState mockIdentityState = new MockIdentityState(properties);
+		extension.state = mockIdentityState;
+		IdentityUpdateCache.getInstance().confirm(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("UserId",
+				"secretID"))));
+
+		// test
+		Map<String, Object> eventData = createXDMIdentityMap(
+											new TestItem("PushId", "token")
+										);
+		eventData.put(IdentityConstants.EventDataKeys.NAMESPACES, Arrays.asList("userid"));
+		Event removeIdentityEvent = buildRemoveIdentityRequest(eventData);
+		extension.handleRemoveIdentity(removeIdentityEvent);
+
+		// verify identifiers removed with a single state change
+		assertEquals(0, mockIdentityState.removeCustomerIdentifiersCalledTimes);
+		assertEquals(createXDMIdentityMap(new TestItem("CrmId", "crm")).get(IdentityConstants.XDMKeys.IDENTITY_MAP),
+					 properties.toXDMData(true).get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+		verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), eq(removeIdentityEvent),
+				any(ExtensionErrorCallback.class));
+
+		// verify namespace is invalidated
+		assertFalse(IdentityUpdateCache.getInstance().isUnchanged(IdentityMap.fromXDMMap(createXDMIdentityMap(
+						new TestItem("UserId", "secretID")))));
+	}
+
+	@Test
+	public void test_handleRemoveIdentity_withOnlyNamespaces_removesIdentifiers() {
+		// setup
+		Map<String, Object> identityXDM = createXDMIdentityMap(
+											  new TestItem("UserId", "secretID"),
+											  new TestItem("PushId", "token")
+										  );
+		IdentityProperties properties = new IdentityProperties(identityXDM);
+		extension.state = new MockIdentityState(properties);
+
+		// test
+		Map<String, Object> eventData = new HashMap<>();
+		eventData.put(IdentityConstants.EventDataKeys.NAMESPACES, Arrays.asList("UserId", "ECID"));
+		extension.handleRemoveIdentity(buildRemoveIdentityRequest(eventData));
+
+		// verify
+		assertEquals(createXDMIdentityMap(new TestItem("PushId", "token")).get(IdentityConstants.XDMKeys.IDENTITY_MAP),
+					 properties.toXDMData(true).get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+	}
+
+	@Test
+	public void test_handleRemoveIdentity_withIds_removesIdentifiersFromAllNamespaces() {
+		// setup
+		IdentityProperties properties = new IdentityProperties(createXDMIdentityMap(
+					new TestItem("email", "user"),
+					new TestItem("crm", "USER"),
+					new TestItem("crm", "other")
+				));
+		extension.state = new MockIdentityState(properties);
+		IdentityUpdateCache.getInstance().confirm(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("crm",
+				"other"))));
+
+		// test
+		Map<String, Object> eventData = new HashMap<>();
+		eventData.put(IdentityConstants.EventDataKeys.IDS, Collections.singletonList("User"));
+		extension.handleRemoveIdentity(buildRemoveIdentityRequest(eventData));
+
+		// verify
+		assertEquals(createXDMIdentityMap(new TestItem("crm", "other")).get(IdentityConstants.XDMKeys.IDENTITY_MAP),
+					 properties.toXDMData(true).get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+		IdentityMap unchanged = new IdentityMap();
+		unchanged.addItem(new IdentityItem("other"), "crm");
+		assertFalse(IdentityUpdateCache.getInstance().isUnchanged(unchanged));
+		verify(mockExtensionApi, times(1)).setXDMSharedEventState(any(Map.class), any(Event.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void test_handleRemoveIdentity_responseRequested_dispatchesStateVersion() {
+		// setup
+		final ArgumentCaptor<Event> responseEventCaptor = ArgumentCaptor.forClass(Event.class);
+		IdentityProperties properties = new IdentityProperties(createXDMIdentityMap(
+											new TestItem("UserId", "secretID")
+										));
+		properties.setStateVersion(3);
+		extension.state = new MockIdentityState(properties);
+		Map<String, Object> eventData = new HashMap<>();
+		eventData.put(IdentityConstants.EventDataKeys.NAMESPACES, Arrays.asList("UserId"));
+		eventData.put(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED, true);
+
+		// test
+		extension.handleRemoveIdentity(buildRemoveIdentityRequest(eventData));
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchResponseEvent(responseEventCaptor.capture(), any(Event.class), any(ExtensionErrorCallback.class));
+		assertEquals(IdentityConstants.EventNames.REMOVE_IDENTITIES_COMPLETE, responseEventCaptor.getValue().getName());
+		assertEquals(4L, responseEventCaptor.getValue().getEventData().get(IdentityConstants.EventDataKeys.STATE_VERSION));
+	}
+
 	@Test
 	public void test_handleRemoveIdentity_whenValidData_removesCustomerIdentifiers_updatesSharedState() {
 		// setup
@@ -523,6 +1485,129 @@ public class IdentityExtensionTests {
 
 	}
 
+	@Test
+	public void test_queueEvent_schedulesSingleDrainUntilMailboxEmpty() {
+		// setup
+		final List<Runnable> submitted = new ArrayList<>();
+		IdentityExtension.setSharedExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				submitted.add(runnable);
+			}
+		});
+
+		try {
+			extension = new IdentityExtension(mockExtensionApi);
+			Map<String, Object> identityXDM = createXDMIdentityMap(
+												  new TestItem("space", "moon")
+											  );
+			MockIdentityState mockIdentityState = new MockIdentityState(new IdentityProperties());
+			mockIdentityState.hasBooted = true;
+			extension.state = mockIdentityState;
+
+			// test
+			extension.queueEvent(buildUpdateIdentityRequest(identityXDM));
+			extension.queueEvent(buildRemoveIdentityRequest(identityXDM));
+			extension.queueEvent(buildUpdateIdentityRequest(identityXDM));
+
+			// verify one drain is scheduled for all events
+			assertEquals(1, submitted.size());
+			assertEquals(0, mockIdentityState.updateCustomerIdentifiersCalledTimes);
+			submitted.get(0).run();
+			assertEquals(2, mockIdentityState.updateCustomerIdentifiersCalledTimes);
+			assertEquals(1, mockIdentityState.removeCustomerIdentifiersCalledTimes);
+
+			// verify a new drain is scheduled once the mailbox was emptied
+			extension.queueEvent(buildUpdateIdentityRequest(identityXDM));
+			assertEquals(2, submitted.size());
+		} finally {
+			IdentityExtension.setSharedExecutor(null);
+		}
+	}
+
+	@Test
+	public void test_queueEvent_executorRejectsDrain_retriesDrain() throws Exception {
+		// setup
+		final List<Runnable> submitted = Collections.synchronizedList(new ArrayList<Runnable>());
+		final AtomicInteger rejections = new AtomicInteger();
+		IdentityExtension.setSharedExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				if (rejections.getAndIncrement() == 0) {
+					throw new RejectedExecutionException("saturated");
+				}
+
+				submitted.add(runnable);
+			}
+		});
+
+		try {
+			extension = new IdentityExtension(mockExtensionApi);
+			MockIdentityState mockIdentityState = new MockIdentityState(new IdentityProperties());
+			mockIdentityState.hasBooted = true;
+			extension.state = mockIdentityState;
+
+			// test
+			extension.queueEvent(buildUpdateIdentityRequest(createXDMIdentityMap(new TestItem("space", "moon"))));
+
+			// verify the rejected drain is retried and processes the queued event
+			final long deadline = System.currentTimeMillis() + 5000;
+
+			while (submitted.isEmpty() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+
+			assertEquals(1, submitted.size());
+			submitted.get(0).run();
+			assertEquals(1, mockIdentityState.updateCustomerIdentifiersCalledTimes);
+
+			// verify later events schedule a new drain
+			extension.queueEvent(buildUpdateIdentityRequest(createXDMIdentityMap(new TestItem("space", "mars"))));
+			assertEquals(2, submitted.size());
+		} finally {
+			IdentityExtension.setSharedExecutor(null);
+		}
+	}
+
+	@Test
+	public void test_queueEvent_cachesEventsUntilHubBooted() {
+		// setup
+		final List<Runnable> submitted = new ArrayList<>();
+		IdentityExtension.setSharedExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				submitted.add(runnable);
+			}
+		});
+
+		try {
+			extension = new IdentityExtension(mockExtensionApi);
+			Map<String, Object> identityXDM = createXDMIdentityMap(
+												  new TestItem("space", "moon")
+											  );
+
+			// test
+			extension.queueEvent(buildUpdateIdentityRequest(identityXDM));
+			submitted.get(0).run();
+
+			// verify
+			verify(mockExtensionApi, times(0)).setXDMSharedEventState(any(Map.class), any(Event.class),
+					any(ExtensionErrorCallback.class));
+
+			// test
+			extension.queueEvent(new Event.Builder("Event Hub Boot", IdentityConstants.EventType.HUB,
+												   IdentityConstants.EventSource.BOOTED).build());
+			submitted.get(1).run();
+
+			// verify boot shared state and the cached update shared state
+			assertTrue(extension.state.hasBooted());
+			verify(mockExtensionApi, times(2)).setXDMSharedEventState(any(Map.class), nullable(Event.class),
+					any(ExtensionErrorCallback.class));
+		} finally {
+			IdentityExtension.setSharedExecutor(null);
+		}
+	}
+
 	// ========================================================================================
 	// private helper methods
 	// ========================================================================================
@@ -536,6 +1621,17 @@ public class IdentityExtensionTests {
 					 null)).thenReturn(propsJSON);
 	}
 
+	private Event buildIdentityDirectSharedStateEvent() {
+		return new Event.Builder("Test event",
+								 IdentityConstants.EventType.HUB,
+								 IdentityConstants.EventSource.SHARED_STATE)
+			   .setEventData(new HashMap<String, Object>() {
+			{
+				put(IdentityConstants.SharedState.STATE_OWNER, IdentityConstants.SharedState.IdentityDirect.NAME);
+			}
+		}).build();
+	}
+
 	private void setIdentityDirectSharedState(final String ecid) {
 		when(mockExtensionApi.getSharedEventState(eq(IdentityConstants.SharedState.IdentityDirect.NAME),
 				any(Event.class),
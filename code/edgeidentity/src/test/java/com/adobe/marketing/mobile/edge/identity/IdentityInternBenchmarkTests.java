@@ -0,0 +1,171 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Benchmarks the memory used by identity maps parsed from event data with interned namespaces and ids.
+ * <p>
+ * Each parse reads event data holding its own copies of the namespace and id strings, as event data deserialized for
+ * every event does. The retained bytes are measured while all parsed maps are held, as they are by queued events, the
+ * update cache and application callbacks. The baseline replicates the previous parse, which kept the strings of the
+ * event data. The bytes allocated by the parse itself are reported as well, to show interning adds no allocations; the
+ * duplicate strings it drops were allocated with the event data, before the parse.
+ */
+@Ignore("Benchmark, run manually")
+public class IdentityInternBenchmarkTests {
+
+	private static final int[] RETAINED_MAPS = {250, 500, 1000};
+	private static final int NAMESPACES = 10;
+	private static final int ITEMS_PER_NAMESPACE = 20;
+	private static final int WARMUP_ROUNDS = 2;
+
+	@Before
+	public void setup() {
+		IdentityStringPool.reset();
+	}
+
+	@Test
+	public void benchmarkParsedIdentityMapMemory() {
+		System.out.println("Memory of parsed identity maps with " + (NAMESPACES * ITEMS_PER_NAMESPACE) + " identities each");
+		System.out.println(String.format("%6s | %28s | %28s", "maps", "baseline (retained/alloc KB)",
+										 "interned (retained/alloc KB)"));
+
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			run(RETAINED_MAPS[0], false);
+			run(RETAINED_MAPS[0], true);
+		}
+
+		for (final int maps : RETAINED_MAPS) {
+			final Result baseline = run(maps, false);
+			final Result interned = run(maps, true);
+
+			System.out.println(String.format("%6d | %13.1f / %12.1f | %13.1f / %12.1f", maps,
+											 baseline.retainedBytes / 1024.0, baseline.allocatedBytes / 1024.0,
+											 interned.retainedBytes / 1024.0, interned.allocatedBytes / 1024.0));
+		}
+	}
+
+	private Result run(final int maps, final boolean interned) {
+		final List<IdentityMap> parsedMaps = new ArrayList<>(maps);
+		long allocatedBytes = 0;
+		final long retainedBefore = usedHeap();
+
+		for (int i = 0; i < maps; i++) {
+			final Map<String, Object> eventData = createEventData();
+			final long allocatedBefore = allocatedBytes();
+			parsedMaps.add(interned ? IdentityMap.fromXDMMap(eventData) : parseWithoutInterning(eventData));
+			allocatedBytes += allocatedBytes() - allocatedBefore;
+		}
+
+		final long retainedBytes = usedHeap() - retainedBefore;
+		assertEquals(maps, parsedMaps.size());
+
+		if (interned) {
+			// the measured maps share their strings
+			final IdentityMap first = parsedMaps.get(0);
+			final IdentityMap last = parsedMaps.get(maps - 1);
+			final String namespace = first.getNamespaces().get(0);
+			assertSame(namespace, last.getNamespaces().get(last.getNamespaces().indexOf(namespace)));
+			assertSame(first.getItems().get(namespace).get(0).getId(), last.getItems().get(namespace).get(0).getId());
+		}
+		return new Result(retainedBytes, allocatedBytes);
+	}
+
+	/**
+	 * Replicates the previous {@link IdentityMap#fromXDMMap(Map)}, keeping the namespace and id strings of the event data.
+	 */
+	private static IdentityMap parseWithoutInterning(final Map<String, Object> eventData) {
+		final IdentityMap map = new IdentityMap();
+		final Map<String, Object> identityMapData = (Map<String, Object>) eventData.get(IdentityConstants.XDMKeys.IDENTITY_MAP);
+
+		for (final Map.Entry<String, Object> entry : identityMapData.entrySet()) {
+			for (final Object itemData : (List<?>) entry.getValue()) {
+				final Map<String, Object> item = (Map<String, Object>) itemData;
+				map.addItem(new IdentityItem((String) item.get(IdentityConstants.XDMKeys.ID),
+											 AuthenticatedState.fromString((String) item.get(IdentityConstants.XDMKeys.AUTHENTICATED_STATE)),
+											 (Boolean) item.get(IdentityConstants.XDMKeys.PRIMARY)), entry.getKey());
+			}
+		}
+
+		return map;
+	}
+
+	/**
+	 * Creates event data with new copies of every namespace and id string.
+	 */
+	private static Map<String, Object> createEventData() {
+		final Map<String, Object> identityMapData = new HashMap<>();
+
+		for (int ns = 0; ns < NAMESPACES; ns++) {
+			final List<Object> items = new ArrayList<>();
+
+			for (int i = 0; i < ITEMS_PER_NAMESPACE; i++) {
+				final Map<String, Object> item = new HashMap<>();
+				item.put(IdentityConstants.XDMKeys.ID, new String("user-" + ns + "-" + i + "@example.com"));
+				item.put(IdentityConstants.XDMKeys.AUTHENTICATED_STATE, "authenticated");
+				item.put(IdentityConstants.XDMKeys.PRIMARY, i == 0);
+				items.add(item);
+			}
+
+			identityMapData.put(new String("namespace" + ns), items);
+		}
+
+		final Map<String, Object> eventData = new HashMap<>();
+		eventData.put(IdentityConstants.XDMKeys.IDENTITY_MAP, identityMapData);
+		return eventData;
+	}
+
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread, or 0 if the JVM does not report it
+	 */
+	private static long allocatedBytes() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			return 0;
+		}
+
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(
+				   Thread.currentThread().getId());
+	}
+
+	private static final class Result {
+		final long retainedBytes;
+		final long allocatedBytes;
+
+		Result(final long retainedBytes, final long allocatedBytes) {
+			this.retainedBytes = retainedBytes;
+			this.allocatedBytes = allocatedBytes;
+		}
+	}
+}
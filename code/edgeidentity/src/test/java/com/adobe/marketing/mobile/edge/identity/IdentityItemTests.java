@@ -13,6 +13,7 @@ package com.adobe.marketing.mobile.edge.identity;
 
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,6 +61,22 @@ public class IdentityItemTests {
 		assertEquals(true, (boolean) data.get("primary"));
 	}
 
+	@Test
+	public void testIdentityItem_toObjectMap_compactOmitsDefaults() {
+		// setup
+		IdentityItem item = new IdentityItem("id");
+		IdentityItem authenticated = new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true);
+
+		// test
+		Map<String, Object> data = item.toObjectMap(true);
+		Map<String, Object> authenticatedData = authenticated.toObjectMap(true);
+
+		// verify
+		assertEquals(Collections.<String, Object>singletonMap("id", "id"), data);
+		assertTrue(item.hasSameValues(IdentityItem.fromData(data)));
+		assertEquals(authenticated.toObjectMap(), authenticatedData);
+	}
+
 	@Test
 	public void testIdentityItem_fromData_full() {
 		// setup
@@ -124,4 +141,38 @@ public class IdentityItemTests {
 
 		assertFalse(item1.equals(item2));
 	}
+
+	@Test
+	public void testIdentityItem_expirationTime() {
+		IdentityItem item = new IdentityItem("id", AuthenticatedState.AMBIGUOUS, false, 1000);
+
+		assertEquals(1000, item.getExpirationTime());
+		assertEquals(1000, new IdentityItem(item).getExpirationTime());
+		assertEquals(0, new IdentityItem("id", AuthenticatedState.AMBIGUOUS, false, -5).getExpirationTime());
+		assertFalse(item.isExpired(999));
+		assertTrue(item.isExpired(1000));
+		assertFalse(new IdentityItem("id").isExpired(Long.MAX_VALUE));
+		assertFalse(item.toObjectMap().containsKey("expirationTime"));
+		assertEquals(3, item.toObjectMap().size());
+	}
+
+	@Test
+	public void testIdentityItem_hasSameValues_comparesExpirationTime() {
+		IdentityItem item = new IdentityItem("id", AuthenticatedState.AMBIGUOUS, false, 1000);
+
+		assertTrue(item.hasSameValues(new IdentityItem("id", AuthenticatedState.AMBIGUOUS, false, 1000)));
+		assertFalse(item.hasSameValues(new IdentityItem("id", AuthenticatedState.AMBIGUOUS, false, 2000)));
+		assertFalse(item.hasSameValues(new IdentityItem("id")));
+	}
+
+	@Test
+	public void testIdentityItem_withExpiration() {
+		IdentityItem item = new IdentityItem("id");
+		Map<String, Object> expirations = new HashMap<>();
+		expirations.put("id", 1000L);
+
+		assertEquals(1000, item.withExpiration(expirations).getExpirationTime());
+		assertEquals(0, item.withExpiration(null).getExpirationTime());
+		assertEquals(0, new IdentityItem("other").withExpiration(expirations).getExpirationTime());
+	}
 }
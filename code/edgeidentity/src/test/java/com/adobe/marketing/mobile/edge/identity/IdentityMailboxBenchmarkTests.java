@@ -0,0 +1,168 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.Event;
+import com.adobe.marketing.mobile.ExtensionApi;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks the throughput of handing off events from the event hub listeners to the extension thread.
+ * <p>
+ * The per-event baseline replicates the previous behavior where every listener call submitted a new {@code Runnable} to
+ * the extension executor, which added the event to a second queue before processing it. The mailbox run uses {@link IdentityExtension#queueEvent(Event)}.
+ * Event handling itself is stubbed, so only the hand-off is measured. Runs without the PowerMock class loader, which
+ * would otherwise dominate the measured time.
+ */
+@Ignore("Benchmark, run manually")
+public class IdentityMailboxBenchmarkTests {
+
+	private static final int PRODUCERS = 4;
+	private static final int EVENTS_PER_PRODUCER = 25000;
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int MEASURED_ROUNDS = 5;
+
+	private final Event event = new Event.Builder("Update Identities", IdentityConstants.EventType.EDGE_IDENTITY,
+			IdentityConstants.EventSource.UPDATE_IDENTITY).build();
+
+	@Test
+	public void benchmarkEventHandOffThroughput() throws Exception {
+		final int totalEvents = PRODUCERS * EVENTS_PER_PRODUCER;
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			runPerEventRunnable(totalEvents);
+			runMailbox(totalEvents);
+		}
+
+		long perEventNanos = 0;
+		long mailboxNanos = 0;
+
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			perEventNanos += runPerEventRunnable(totalEvents);
+			mailboxNanos += runMailbox(totalEvents);
+		}
+
+		System.out.println(String.format("Event hand-off throughput, %d producers x %d events", PRODUCERS,
+										 EVENTS_PER_PRODUCER));
+		System.out.println(String.format("%25s | %20s", "design", "events per ms"));
+		System.out.println(String.format("%25s | %20.1f", "per-event Runnable",
+										 eventsPerMilli(totalEvents * MEASURED_ROUNDS, perEventNanos)));
+		System.out.println(String.format("%25s | %20.1f", "mailbox", eventsPerMilli(totalEvents * MEASURED_ROUNDS,
+										 mailboxNanos)));
+	}
+
+	/**
+	 * Replicates the previous hand-off: a {@code Runnable} per event on the extension executor, adding the event to a
+	 * second queue which is then processed.
+	 *
+	 * @return the time in nanoseconds until all events were handled
+	 */
+	private long runPerEventRunnable(final int totalEvents) throws Exception {
+		final IdentityExtension extension = new IdentityExtension(Mockito.mock(ExtensionApi.class));
+		final Executor executor = extension.getExecutor();
+		final ConcurrentLinkedQueue<Event> cachedEvents = new ConcurrentLinkedQueue<>();
+		final CountDownLatch handled = new CountDownLatch(totalEvents);
+
+		final Runnable producer = new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							cachedEvents.add(event);
+
+							while (!cachedEvents.isEmpty()) {
+								cachedEvents.peek();
+								handled.countDown();
+								cachedEvents.poll();
+							}
+						}
+					});
+				}
+			}
+		};
+
+		try {
+			return runProducers(producer, handled);
+		} finally {
+			extension.onUnregistered();
+		}
+	}
+
+	/**
+	 * Hands off events through the extension mailbox, with event handling stubbed.
+	 *
+	 * @return the time in nanoseconds until all events were handled
+	 */
+	private long runMailbox(final int totalEvents) throws Exception {
+		final CountDownLatch handled = new CountDownLatch(totalEvents);
+		final IdentityExtension extension = new IdentityExtension(Mockito.mock(ExtensionApi.class)) {
+			@Override
+			void processAddEvent(final Event event) {
+				handled.countDown();
+			}
+		};
+
+		final Runnable producer = new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+					extension.queueEvent(event);
+				}
+			}
+		};
+
+		try {
+			return runProducers(producer, handled);
+		} finally {
+			extension.onUnregistered();
+		}
+	}
+
+	private static long runProducers(final Runnable producer, final CountDownLatch handled) throws Exception {
+		final Thread[] threads = new Thread[PRODUCERS];
+
+		for (int i = 0; i < PRODUCERS; i++) {
+			threads[i] = new Thread(producer);
+		}
+
+		final long start = System.nanoTime();
+
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+
+		assertTrue("Timed out waiting for handled events", handled.await(60, TimeUnit.SECONDS));
+		final long elapsed = System.nanoTime() - start;
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		return elapsed;
+	}
+
+	private static double eventsPerMilli(final long events, final long nanos) {
+		return events / (nanos / 1000000.0);
+	}
+}
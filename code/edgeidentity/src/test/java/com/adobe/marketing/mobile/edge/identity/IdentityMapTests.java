@@ -11,15 +11,22 @@
 
 package com.adobe.marketing.mobile.edge.identity;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -294,6 +301,30 @@ public class IdentityMapTests {
 	}
 
 
+	@Test
+	public void test_copyConstructor() {
+		// setup
+		IdentityMap sampleUserMap =
+			buildSampleIdentityMap();  // 2 items with namespace "location", 3 items with namespace "login"
+
+		// test
+		IdentityMap copy = new IdentityMap(sampleUserMap);
+		copy.removeItem(new IdentityItem("California"), "location");
+		copy.addItem(new IdentityItem("newId"), "newNamespace");
+
+		// verify the copy is independent of the original map
+		Map<String, List<IdentityItem>> castedMap = getCastedIdentityMap(sampleUserMap);
+		assertEquals(2, castedMap.size());
+		assertEquals(2, castedMap.get("location").size());
+		assertEquals(3, castedMap.get("login").size());
+
+		Map<String, List<IdentityItem>> castedCopy = getCastedIdentityMap(copy);
+		assertEquals(3, castedCopy.size());
+		assertEquals(1, castedCopy.get("location").size());
+		assertEquals(3, castedCopy.get("login").size());
+		assertEquals(1, castedCopy.get("newNamespace").size());
+	}
+
 	@Test
 	public void test_FromData() throws Exception {
 		// setup
@@ -380,12 +411,202 @@ public class IdentityMapTests {
 		assertEquals(new HashMap<>(), xdmMap.get(IdentityConstants.XDMKeys.IDENTITY_MAP));
 	}
 
+	@Test
+	public void testAsXDMMap_withNamespaces_onlyIncludesRequestedNamespaces() {
+		// setup
+		IdentityMap sampleUserMap =
+			buildSampleIdentityMap();  // 2 items with namespace "location", 3 items with namespace "login"
+
+		// test
+		Map<String, Object> xdmMap = sampleUserMap.asXDMMap(false, Arrays.asList("login", "nonexistentNamespace"));
+
+		// verify
+		Map<String, List<Object>> identityMap = (Map<String, List<Object>>) xdmMap.get(IdentityConstants.XDMKeys.IDENTITY_MAP);
+		assertEquals(1, identityMap.size());
+		assertEquals(3, identityMap.get("login").size());
+	}
+
+	@Test
+	public void testAsXDMMap_withNamespaces_noMatchingNamespace() {
+		// setup
+		IdentityMap sampleUserMap = buildSampleIdentityMap();
+
+		// test
+		Map<String, Object> allowEmptyXdmMap = sampleUserMap.asXDMMap(true, Collections.singletonList("LOGIN"));
+		Map<String, Object> xdmMap = sampleUserMap.asXDMMap(false, Collections.singletonList("LOGIN"));
+
+		// verify namespaces are matched exactly
+		assertTrue(allowEmptyXdmMap.isEmpty());
+		assertEquals(new HashMap<>(), xdmMap.get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+	}
+
+	@Test
+	public void testAsXDMMap_withNullNamespaces_includesAllNamespaces() {
+		// setup
+		IdentityMap sampleUserMap = buildSampleIdentityMap();
+
+		// test
+		Map<String, Object> xdmMap = sampleUserMap.asXDMMap(false, null);
+
+		// verify
+		assertEquals(sampleUserMap.asXDMMap(false), xdmMap);
+	}
+
+	@Test
+	public void testChangeRecorder_recordsAddedUpdatedAndRemovedItems() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("existing"), "namespace");
+		List<IdentityChange> changes = new ArrayList<>();
+		map.setChangeRecorder(changes);
+
+		// test
+		map.addItem(new IdentityItem("new"), "namespace");
+		map.addItem(new IdentityItem("existing"), "namespace"); // unchanged, not recorded
+		map.addItem(new IdentityItem("EXISTING", AuthenticatedState.AUTHENTICATED, false), "namespace");
+		map.removeItem(new IdentityItem("new"), "namespace");
+		map.removeItem(new IdentityItem("unknown"), "namespace"); // not stored, not recorded
+		map.addItem(new IdentityItem("other"), "otherNamespace");
+		map.clearItemsForNamespace("OTHERNAMESPACE");
+
+		// verify
+		assertEquals(5, changes.size());
+		assertEquals(IdentityChange.Type.ADDED, changes.get(0).getType());
+		assertEquals("new", changes.get(0).getItem().getId());
+		assertEquals(IdentityChange.Type.UPDATED, changes.get(1).getType());
+		assertEquals("EXISTING", changes.get(1).getItem().getId());
+		assertEquals("existing", changes.get(1).getPreviousItem().getId());
+		assertEquals(IdentityChange.Type.REMOVED, changes.get(2).getType());
+		assertEquals("new", changes.get(2).getItem().getId());
+		assertEquals(IdentityChange.Type.ADDED, changes.get(3).getType());
+		assertEquals(IdentityChange.Type.REMOVED, changes.get(4).getType());
+		assertEquals("otherNamespace", changes.get(4).getNamespace());
+	}
+
+	@Test
+	public void testChangeRecorder_notCopied() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		List<IdentityChange> changes = new ArrayList<>();
+		map.setChangeRecorder(changes);
+
+		// test
+		IdentityMap copy = new IdentityMap(map);
+		copy.addItem(new IdentityItem("id"), "namespace");
+
+		// verify
+		assertTrue(changes.isEmpty());
+	}
+
+	@Test
+	public void testSnapshot_isNotAffectedByChangesToOriginal() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id1"), "namespace");
+		map.addItem(new IdentityItem("id2"), "namespace");
+
+		// test
+		IdentityMap snapshot = map.snapshot();
+		map.addItem(new IdentityItem("id3"), "namespace");
+		map.removeItem(new IdentityItem("id1"), "namespace");
+		map.addItem(new IdentityItem("other"), "otherspace");
+
+		// verify
+		assertEquals(Arrays.asList("namespace"), snapshot.getNamespaces());
+		assertEquals(2, snapshot.getIdentityItemsForNamespace("namespace").size());
+		assertEquals("id1", snapshot.getIdentityItemsForNamespace("namespace").get(0).getId());
+		assertEquals(2, map.getIdentityItemsForNamespace("namespace").size());
+		assertEquals("id2", map.getIdentityItemsForNamespace("namespace").get(0).getId());
+	}
+
+	@Test
+	public void testSnapshot_changesToSnapshotDoNotAffectOriginal() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id1"), "namespace");
+		map.addItem(new IdentityItem("other"), "otherspace");
+
+		// test
+		IdentityMap snapshot = map.snapshot();
+		snapshot.removeItem(new IdentityItem("id1"), "namespace");
+		snapshot.clearItemsForNamespace("otherspace");
+
+		// verify
+		assertTrue(snapshot.isEmpty());
+		assertEquals(1, map.getIdentityItemsForNamespace("namespace").size());
+		assertEquals(1, map.getIdentityItemsForNamespace("otherspace").size());
+	}
+
 	private Map<String, List<IdentityItem>> getCastedIdentityMap(final IdentityMap map) {
 		final Map<String, Object> xdmMap = map.asXDMMap();
 		return (Map<String, List<IdentityItem>>) xdmMap.get(IdentityConstants.XDMKeys.IDENTITY_MAP);
 	}
 
 
+	@Test
+	public void test_asXDMMap_cachesItemsUntilNamespaceModified() {
+		// setup
+		IdentityMap map = buildSampleIdentityMap();
+		final Map<String, Object> firstXDM = (Map<String, Object>) map.asXDMMap().get(IdentityConstants.XDMKeys.IDENTITY_MAP);
+
+		// test
+		map.addItem(new IdentityItem("Texas"), "location");
+		final Map<String, Object> secondXDM = (Map<String, Object>) map.asXDMMap().get(IdentityConstants.XDMKeys.IDENTITY_MAP);
+
+		// verify only the modified namespace is rebuilt
+		assertSame(firstXDM.get("login"), secondXDM.get("login"));
+		assertNotSame(firstXDM.get("location"), secondXDM.get("location"));
+		assertEquals(3, ((List) secondXDM.get("location")).size());
+	}
+
+	@Test
+	public void test_getJSONItems_cachedUntilNamespaceModified() throws Exception {
+		// setup
+		IdentityMap map = buildSampleIdentityMap();
+		final String loginJSON = map.getJSONItems("login", false);
+		final int modificationCount = map.getModificationCount();
+
+		// test
+		map.removeItem(new IdentityItem("California"), "location");
+
+		// verify
+		assertSame(loginJSON, map.getJSONItems("login", false));
+		assertEquals(modificationCount + 1, map.getModificationCount());
+		assertEquals(1, new JSONArray(map.getJSONItems("location", false)).length());
+		assertNull(map.getJSONItems("unknown", false));
+	}
+
+	@Test
+	public void test_getJSONItems_compactRebuiltWhenFormChanges() throws Exception {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("California"), "location");
+		final String fullJSON = map.getJSONItems("location", false);
+
+		// test
+		final String compactJSON = map.getJSONItems("location", true);
+
+		// verify
+		assertEquals(1, new JSONArray(compactJSON).getJSONObject(0).length());
+		assertSame(compactJSON, map.getJSONItems("location", true));
+		assertEquals(fullJSON, map.getJSONItems("location", false));
+		assertEquals(map.asXDMMap(), IdentityMap.fromXDMMap(map.asXDMMap(false, null, true)).asXDMMap());
+	}
+
+	@Test
+	public void test_clearItemsForNamespace_invalidatesCachedItems() {
+		// setup
+		IdentityMap map = buildSampleIdentityMap();
+		map.getJSONItems("location", false);
+
+		// test
+		map.clearItemsForNamespace("LOCATION");
+
+		// verify
+		assertNull(map.getJSONItems("location", false));
+		assertNull(((Map<String, Object>) map.asXDMMap().get(IdentityConstants.XDMKeys.IDENTITY_MAP)).get("location"));
+	}
+
 	private IdentityMap buildSampleIdentityMap() {
 		// User Login Identity Items
 		IdentityItem email = new IdentityItem("john@doe", AuthenticatedState.AUTHENTICATED, true);
@@ -406,4 +627,303 @@ public class IdentityMapTests {
 		return adobeIdentityMap;
 	}
 
+	@Test
+	public void test_evictLeastRecentlyUpdated_perNamespace() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.enableRecencyTracking();
+		map.addItem(new IdentityItem("first"), "namespace");
+		map.addItem(new IdentityItem("second"), "namespace");
+		map.addItem(new IdentityItem("third"), "namespace");
+		map.addItem(new IdentityItem("FIRST", AuthenticatedState.AUTHENTICATED, false), "namespace"); // updated, most recent
+		List<IdentityChange> changes = new ArrayList<>();
+		map.setChangeRecorder(changes);
+
+		// test
+		final int evicted = map.evictLeastRecentlyUpdated(2, 0, null);
+
+		// verify
+		assertEquals(1, evicted);
+		List<IdentityItem> items = map.getIdentityItemsForNamespace("namespace");
+		assertEquals(2, items.size());
+		assertEquals("FIRST", items.get(0).getId());
+		assertEquals("third", items.get(1).getId());
+		assertEquals(1, changes.size());
+		assertEquals(IdentityChange.Type.EVICTED, changes.get(0).getType());
+		assertEquals("second", changes.get(0).getItem().getId());
+	}
+
+	@Test
+	public void test_evictLeastRecentlyUpdated_totalAcrossNamespacesSkipsExempt() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.enableRecencyTracking();
+		map.addItem(new IdentityItem("ecid"), "ECID");
+		map.addItem(new IdentityItem("old"), "space");
+		map.addItem(new IdentityItem("newer"), "location");
+		map.addItem(new IdentityItem("newest"), "space");
+
+		// test
+		final int evicted = map.evictLeastRecentlyUpdated(0, 2, Collections.singletonList("ecid"));
+
+		// verify
+		assertEquals(1, evicted);
+		assertEquals(1, map.getIdentityItemsForNamespace("ECID").size());
+		assertEquals(1, map.getIdentityItemsForNamespace("space").size());
+		assertEquals("newest", map.getIdentityItemsForNamespace("space").get(0).getId());
+		assertEquals(1, map.getIdentityItemsForNamespace("location").size());
+	}
+
+	@Test
+	public void test_evictLeastRecentlyUpdated_notTracked() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("first"), "namespace");
+		map.addItem(new IdentityItem("second"), "namespace");
+
+		// test and verify
+		assertEquals(0, map.evictLeastRecentlyUpdated(1, 1, null));
+		assertEquals(2, map.getIdentityItemsForNamespace("namespace").size());
+	}
+
+	@Test
+	public void test_recency_alignedWithItems() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("existing"), "namespace");
+		map.enableRecencyTracking();
+
+		// test
+		map.addItem(new IdentityItem("added"), "namespace");
+		map.addItem(new IdentityItem("first"), "namespace", true);
+		map.removeItem(new IdentityItem("existing"), "namespace");
+
+		// verify
+		final long[] recency = map.getRecency("namespace");
+		assertEquals(2, recency.length);
+		assertTrue(recency[0] > recency[1]); // "first" was added after "added"
+		assertTrue(recency[1] > 0);
+
+		map.setRecency("namespace", new long[] {7, 3});
+		assertEquals(7, map.getRecency("namespace")[0]);
+		map.setRecency("namespace", new long[] {1}); // not one per item, ignored
+		assertEquals(7, map.getRecency("namespace")[0]);
+		map.addItem(new IdentityItem("later"), "namespace");
+		assertEquals(8, map.getRecency("namespace")[2]);
+
+		map.clearItemsForNamespace("namespace");
+		assertNull(map.getRecency("namespace"));
+	}
+
+	@Test
+	public void test_recency_manyInsertsStayAligned() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.enableRecencyTracking();
+
+		// test
+		for (int i = 0; i < 100; i++) {
+			map.addItem(new IdentityItem("id" + i), "namespace");
+		}
+
+		map.addItem(new IdentityItem("first"), "namespace", true);
+		map.removeItem(new IdentityItem("id50"), "namespace");
+
+		// verify
+		final long[] recency = map.getRecency("namespace");
+		assertEquals(100, recency.length);
+		assertEquals(101, recency[0]);
+		assertEquals(1, recency[1]);
+		assertEquals(50, recency[50]);
+		assertEquals(52, recency[51]);
+		assertEquals(100, recency[99]);
+	}
+
+	@Test
+	public void test_disableRecencyTracking_discardsRecency() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.enableRecencyTracking();
+		map.addItem(new IdentityItem("id"), "namespace");
+
+		// test
+		map.disableRecencyTracking();
+		map.addItem(new IdentityItem("other"), "namespace");
+
+		// verify
+		assertFalse(map.isRecencyTracked());
+		assertNull(map.getRecency("namespace"));
+		assertEquals(0, map.evictLeastRecentlyUpdated(1, 0, null));
+	}
+
+	@Test
+	public void test_getExpirations_roundTripsThroughFromXDMMap() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("session", AuthenticatedState.AMBIGUOUS, false, 5000), "space");
+		map.addItem(new IdentityItem("permanent"), "space");
+		map.addItem(new IdentityItem("other"), "location");
+
+		// test
+		Map<String, Object> xdmMap = map.asXDMMap();
+		xdmMap.put(IdentityConstants.EventDataKeys.EXPIRATIONS, map.getExpirations());
+		IdentityMap decoded = IdentityMap.fromXDMMap(xdmMap);
+
+		// verify
+		assertEquals(Collections.singletonMap("space", (Object) Collections.singletonMap("session", 5000L)),
+					 map.getExpirations());
+		assertEquals(5000, decoded.getIdentityItemsForNamespace("space").get(0).getExpirationTime());
+		assertEquals(0, decoded.getIdentityItemsForNamespace("space").get(1).getExpirationTime());
+		assertNull(new IdentityMap().getExpirations());
+	}
+
+	@Test
+	public void test_getPrimaryItems_indexFollowsAddUpdateAndRemove() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("primary", AuthenticatedState.AUTHENTICATED, true), "space");
+		map.addItem(new IdentityItem("other"), "space");
+
+		// test, the index is maintained on every modification
+		assertEquals(1, map.getPrimaryItemCount());
+		map.addItem(new IdentityItem("OTHER", AuthenticatedState.AMBIGUOUS, true), "space");
+		map.addItem(new IdentityItem("primary", AuthenticatedState.AUTHENTICATED, false), "space");
+		map.addItem(new IdentityItem("location", AuthenticatedState.AMBIGUOUS, true), "location");
+		map.removeItem(new IdentityItem("location"), "location");
+
+		// verify
+		Map<String, List<IdentityItem>> primaryItems = map.getPrimaryItems();
+		assertEquals(1, primaryItems.size());
+		assertEquals(1, primaryItems.get("space").size());
+		assertEquals("OTHER", primaryItems.get("space").get(0).getId());
+		assertEquals(1, map.getPrimaryItemCount());
+	}
+
+	@Test
+	public void test_getItemsWithAuthenticatedState_indexFollowsMergeRemoveAndClear() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("user", AuthenticatedState.AUTHENTICATED, false), "email");
+		assertEquals(1, map.getItemCountWithAuthenticatedState(AuthenticatedState.AUTHENTICATED));
+
+		// test
+		IdentityMap update = new IdentityMap();
+		update.addItem(new IdentityItem("crm", AuthenticatedState.AUTHENTICATED, false), "crm");
+		update.addItem(new IdentityItem("user", AuthenticatedState.LOGGED_OUT, false), "email");
+		update.addItem(new IdentityItem("device"), "device");
+		map.merge(update);
+
+		// verify
+		Map<String, List<IdentityItem>> authenticated = map.getItemsWithAuthenticatedState(AuthenticatedState.AUTHENTICATED);
+		assertEquals(1, authenticated.size());
+		assertEquals("crm", authenticated.get("crm").get(0).getId());
+		assertEquals(1, map.getItemCountWithAuthenticatedState(AuthenticatedState.LOGGED_OUT));
+		assertEquals(1, map.getItemCountWithAuthenticatedState(AuthenticatedState.AMBIGUOUS));
+
+		IdentityMap removal = new IdentityMap();
+		removal.addItem(new IdentityItem("device"), "device");
+		map.remove(removal);
+		map.clearItemsForNamespace("CRM");
+		assertTrue(map.getItemsWithAuthenticatedState(AuthenticatedState.AUTHENTICATED).isEmpty());
+		assertEquals(0, map.getItemCountWithAuthenticatedState(AuthenticatedState.AMBIGUOUS));
+		assertEquals(1, map.getItemCountWithAuthenticatedState(AuthenticatedState.LOGGED_OUT));
+	}
+
+	@Test
+	public void test_indexes_notSharedWithSnapshot() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("primary", AuthenticatedState.AMBIGUOUS, true), "space");
+		assertEquals(1, map.getPrimaryItemCount());
+		IdentityMap snapshot = map.snapshot();
+
+		// test
+		snapshot.removeItem(new IdentityItem("primary"), "space");
+		map.addItem(new IdentityItem("second", AuthenticatedState.AMBIGUOUS, true), "space");
+
+		// verify
+		assertEquals(2, map.getPrimaryItemCount());
+		assertEquals(0, snapshot.getPrimaryItemCount());
+	}
+
+	@Test
+	public void test_indexes_builtOnFirstQuery_carriedThroughSnapshotAndCopy() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("primary", AuthenticatedState.AUTHENTICATED, true), "space");
+		map.addItem(new IdentityItem("other", AuthenticatedState.LOGGED_OUT, false), "location");
+		IdentityMap unqueriedCopy = new IdentityMap(map);
+		assertEquals(1, map.getPrimaryItemCount());
+
+		// test
+		IdentityMap snapshot = map.snapshot();
+		IdentityMap copy = new IdentityMap(map);
+		IdentityMap decoded = IdentityMap.fromXDMMap(map.asXDMMap());
+		copy.removeItem(new IdentityItem("primary"), "space");
+		snapshot.addItem(new IdentityItem("added", AuthenticatedState.LOGGED_OUT, true), "location");
+		unqueriedCopy.addItem(new IdentityItem("added", AuthenticatedState.LOGGED_OUT, true), "location");
+
+		// verify
+		for (IdentityMap each : Arrays.asList(map, decoded)) {
+			assertEquals(1, each.getPrimaryItemCount());
+			assertEquals("primary", each.getPrimaryItems().get("space").get(0).getId());
+			assertEquals(1, each.getItemCountWithAuthenticatedState(AuthenticatedState.LOGGED_OUT));
+			assertEquals(Collections.singletonList("location"), each.getNamespacesForId("OTHER"));
+			assertTrue(each.getNamespacesForId("added").isEmpty());
+		}
+
+		for (IdentityMap each : Arrays.asList(snapshot, unqueriedCopy)) {
+			assertEquals(2, each.getPrimaryItemCount());
+			assertEquals(2, each.getItemCountWithAuthenticatedState(AuthenticatedState.LOGGED_OUT));
+			assertEquals(Collections.singletonList("location"), each.getNamespacesForId("ADDED"));
+		}
+
+		assertEquals(0, copy.getPrimaryItemCount());
+		assertEquals(0, copy.getItemCountWithAuthenticatedState(AuthenticatedState.AUTHENTICATED));
+		assertTrue(copy.getNamespacesForId("primary").isEmpty());
+	}
+
+	@Test
+	public void test_getNamespacesForId_ignoresCaseAndFollowsChanges() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("user@example.com"), "email");
+		map.addItem(new IdentityItem("USER@example.com"), "crm");
+		map.addItem(new IdentityItem("other"), "crm");
+
+		// test and verify
+		List<String> namespaces = map.getNamespacesForId("User@Example.com");
+		assertEquals(2, namespaces.size());
+		assertTrue(namespaces.containsAll(Arrays.asList("email", "crm")));
+		assertTrue(map.getNamespacesForId("unknown").isEmpty());
+		assertTrue(map.getNamespacesForId(null).isEmpty());
+
+		map.removeItem(new IdentityItem("user@example.com"), "email");
+		assertEquals(Collections.singletonList("crm"), map.getNamespacesForId("user@example.com"));
+
+		map.clearItemsForNamespace("crm");
+		assertTrue(map.getNamespacesForId("user@example.com").isEmpty());
+	}
+
+	@Test
+	public void test_removeItemFromAllNamespaces_skipsExemptNamespaces() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("shared"), "email");
+		map.addItem(new IdentityItem("SHARED"), "crm");
+		map.addItem(new IdentityItem("shared"), "ECID");
+		map.addItem(new IdentityItem("kept"), "crm");
+		List<IdentityChange> changes = new ArrayList<>();
+		map.setChangeRecorder(changes);
+
+		// test
+		List<String> removedNamespaces = map.removeItemFromAllNamespaces("Shared", Collections.singletonList("ecid"));
+
+		// verify
+		assertEquals(2, removedNamespaces.size());
+		assertEquals(2, changes.size());
+		assertEquals(Collections.singletonList("ECID"), map.getNamespacesForId("shared"));
+		assertTrue(map.getIdentityItemsForNamespace("email").isEmpty());
+		assertEquals(1, map.getIdentityItemsForNamespace("crm").size());
+	}
 }
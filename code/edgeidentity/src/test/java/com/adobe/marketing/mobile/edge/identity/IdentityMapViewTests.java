@@ -0,0 +1,140 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityTestUtil.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityMapViewTests {
+
+	@Test
+	public void test_fromXDMMap_noIdentityMap() {
+		assertNull(IdentityMapView.fromXDMMap(null));
+		assertNull(IdentityMapView.fromXDMMap(new HashMap<String, Object>()));
+		assertNull(IdentityMapView.fromXDMMap(Collections.<String, Object>singletonMap(IdentityConstants.XDMKeys.IDENTITY_MAP,
+				   "invalid")));
+	}
+
+	@Test
+	public void test_getItems_decodesOnceOnFirstAccess() {
+		// setup
+		IdentityMapView view = IdentityMapView.fromXDMMap(createXDMIdentityMap(
+								   new TestItem("space", "moon"),
+								   new TestItem("space", "mars"),
+								   new TestItem("location", "california")
+							   ));
+
+		// test
+		final List<IdentityItem> items = view.getItems("space");
+
+		// verify
+		assertEquals(2, items.size());
+		assertEquals("moon", items.get(0).getId());
+		assertEquals("mars", items.get(1).getId());
+		assertSame(items, view.getItems("space"));
+		assertTrue(view.getItems("unknown").isEmpty());
+	}
+
+	@Test
+	public void test_getItems_skipsInvalidItems() {
+		// setup
+		final List<Object> items = new ArrayList<>();
+		items.add("invalid");
+		items.add(Collections.singletonMap(IdentityConstants.XDMKeys.ID, "moon"));
+		final Map<String, Object> identityMap = new HashMap<>();
+		identityMap.put("space", items);
+		identityMap.put("location", "invalid");
+
+		// test
+		IdentityMapView view = IdentityMapView.fromXDMMap(Collections.<String, Object>singletonMap(
+								   IdentityConstants.XDMKeys.IDENTITY_MAP, identityMap));
+
+		// verify
+		assertEquals(1, view.getItems("space").size());
+		assertTrue(view.getItems("location").isEmpty());
+	}
+
+	@Test
+	public void test_toIdentityMap() {
+		// setup
+		final Map<String, Object> xdmMap = createXDMIdentityMap(
+											   new TestItem("space", "moon"),
+											   new TestItem("location", "california")
+										   );
+
+		// test
+		IdentityMap map = IdentityMapView.fromXDMMap(xdmMap).toIdentityMap();
+
+		// verify
+		assertEquals(xdmMap, map.asXDMMap());
+	}
+
+	@Test
+	public void test_updateCustomerIdentifiers_reservedNamespacesNotDecoded() {
+		// setup
+		final List<String> readNamespaces = new ArrayList<>();
+		final Map<String, Object> identityMap = new HashMap<String, Object>() {
+			@Override
+			public Object get(final Object key) {
+				readNamespaces.add((String) key);
+				return super.get(key);
+			}
+		};
+		identityMap.putAll((Map<String, Object>) createXDMIdentityMap(
+							   new TestItem("ECID", "ecid"),
+							   new TestItem("space", "moon")
+						   ).get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+		IdentityMapView view = IdentityMapView.fromXDMMap(Collections.<String, Object>singletonMap(
+								   IdentityConstants.XDMKeys.IDENTITY_MAP, identityMap));
+		IdentityProperties props = new IdentityProperties();
+
+		// test
+		props.updateCustomerIdentifiers(view);
+
+		// verify
+		assertEquals(Collections.singletonList("space"), readNamespaces);
+		Map<String, String> flatMap = flattenMap(props.toXDMData(false));
+		assertEquals("moon", flatMap.get("identityMap.space[0].id"));
+		assertFalse(flatMap.containsKey("identityMap.ECID[0].id"));
+	}
+
+	@Test
+	public void test_removeCustomerIdentifiers_skipsReservedNamespaces() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID("ecid"));
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("space", "moon"))));
+
+		// test
+		props.removeCustomerIdentifiers(IdentityMapView.fromXDMMap(createXDMIdentityMap(
+											new TestItem("ECID", "ecid"),
+											new TestItem("space", "moon")
+										)));
+
+		// verify
+		Map<String, String> flatMap = flattenMap(props.toXDMData(false));
+		assertEquals("ecid", flatMap.get("identityMap.ECID[0].id"));
+		assertNull(flatMap.get("identityMap.space[0].id"));
+	}
+}
@@ -0,0 +1,180 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityTestUtil.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("unchecked")
+public class IdentityPayloadLimitsTests {
+
+	@After
+	public void teardown() {
+		IdentityPayloadLimits.reset();
+	}
+
+	@Test
+	public void test_isWithinLimits_defaultLimits() {
+		assertTrue(IdentityPayloadLimits.isWithinLimits(identityMapData(createXDMIdentityMap(
+						   new TestItem("space", "moon"),
+						   new TestItem("location", "california")
+					   ))));
+	}
+
+	@Test
+	public void test_isWithinLimits_tooManyNamespaces() {
+		// setup
+		IdentityPayloadLimits.setLimits(1, 10, 10, 100);
+
+		// test
+		final boolean result = IdentityPayloadLimits.isWithinLimits(identityMapData(createXDMIdentityMap(
+								   new TestItem("space", "moon"),
+								   new TestItem("location", "ca")
+							   )));
+
+		// verify
+		assertFalse(result);
+		assertEquals(1, IdentityPayloadLimits.getRejectionCount(IdentityPayloadLimits.Limit.NAMESPACES));
+	}
+
+	@Test
+	public void test_isWithinLimits_tooManyItemsInNamespace() {
+		// setup
+		IdentityPayloadLimits.setLimits(10, 1, 10, 100);
+
+		// test
+		final boolean result = IdentityPayloadLimits.isWithinLimits(identityMapData(createXDMIdentityMap(
+								   new TestItem("space", "moon"),
+								   new TestItem("space", "mars")
+							   )));
+
+		// verify
+		assertFalse(result);
+		assertEquals(1, IdentityPayloadLimits.getRejectionCount(IdentityPayloadLimits.Limit.ITEMS_PER_NAMESPACE));
+	}
+
+	@Test
+	public void test_isWithinLimits_idTooLong() {
+		// setup
+		IdentityPayloadLimits.setLimits(10, 10, 4, 100);
+
+		// test
+		final boolean result = IdentityPayloadLimits.isWithinLimits(identityMapData(createXDMIdentityMap(
+								   new TestItem("space", "moon"),
+								   new TestItem("space", "jupiter")
+							   )));
+
+		// verify
+		assertFalse(result);
+		assertEquals(1, IdentityPayloadLimits.getRejectionCount(IdentityPayloadLimits.Limit.ID_LENGTH));
+	}
+
+	@Test
+	public void test_isWithinLimits_totalBytesExceeded() {
+		// setup, "space" + "moon" + "mars" is 13 characters
+		IdentityPayloadLimits.setLimits(10, 10, 10, 12);
+
+		// test
+		final boolean result = IdentityPayloadLimits.isWithinLimits(identityMapData(createXDMIdentityMap(
+								   new TestItem("space", "moon"),
+								   new TestItem("space", "mars")
+							   )));
+
+		// verify
+		assertFalse(result);
+		assertEquals(1, IdentityPayloadLimits.getRejectionCount(IdentityPayloadLimits.Limit.TOTAL_BYTES));
+
+		IdentityPayloadLimits.setLimits(10, 10, 10, 13);
+		assertTrue(IdentityPayloadLimits.isWithinLimits(identityMapData(createXDMIdentityMap(
+							   new TestItem("space", "moon"),
+							   new TestItem("space", "mars")
+						   ))));
+	}
+
+	@Test
+	public void test_isWithinLimits_ignoresInvalidItems() {
+		// setup
+		IdentityPayloadLimits.setLimits(10, 10, 4, 100);
+		final Map<String, Object> invalidItem = new HashMap<>();
+		invalidItem.put(IdentityConstants.XDMKeys.ID, 12345678);
+		final List<Object> items = new ArrayList<>();
+		items.add(invalidItem);
+		items.add("not an item");
+		final Map<String, Object> identityMapData = new HashMap<>();
+		identityMapData.put("space", items);
+		identityMapData.put("location", "not a list");
+
+		// test & verify
+		assertTrue(IdentityPayloadLimits.isWithinLimits(identityMapData));
+	}
+
+	@Test
+	public void test_fromXDMMap_rejectedPayloadIsNotDecoded() {
+		// setup
+		IdentityPayloadLimits.setLimits(1, 10, 10, 100);
+
+		// test & verify
+		assertNull(IdentityMapView.fromXDMMap(createXDMIdentityMap(
+					   new TestItem("space", "moon"),
+					   new TestItem("location", "ca")
+				   )));
+		assertNotNull(IdentityMapView.fromXDMMap(createXDMIdentityMap(
+						  new TestItem("space", "moon")
+					  )));
+	}
+
+	@Test
+	public void test_identityMapFromXDMMap_ownIdentifiersAreNotLimited() {
+		// setup, persisted identifiers stored before the limits were lowered
+		final Map<String, Object> persisted = createXDMIdentityMap(
+				new TestItem("ECID", "ecid"),
+				new TestItem("space", "moon"),
+				new TestItem("location", "ca"));
+		IdentityPayloadLimits.setLimits(1, 10, 10, 100);
+
+		// test
+		final IdentityProperties properties = new IdentityProperties(persisted);
+
+		// verify
+		assertEquals("ecid", properties.getECID().toString());
+		assertEquals(3, IdentityMap.fromXDMMap(persisted).getNamespaces().size());
+		assertEquals(0, IdentityPayloadLimits.getRejectionCount(IdentityPayloadLimits.Limit.NAMESPACES));
+	}
+
+	@Test
+	public void test_setPayloadLimits_invalidLimitsIgnored() {
+		// test
+		Identity.setPayloadLimits(0, 1, 1, 1);
+
+		// verify
+		assertTrue(IdentityPayloadLimits.isWithinLimits(identityMapData(createXDMIdentityMap(
+						   new TestItem("space", "moon"),
+						   new TestItem("location", "california")
+					   ))));
+	}
+
+	private static Map<String, Object> identityMapData(final Map<String, Object> xdmMap) {
+		return (Map<String, Object>) xdmMap.get(IdentityConstants.XDMKeys.IDENTITY_MAP);
+	}
+}
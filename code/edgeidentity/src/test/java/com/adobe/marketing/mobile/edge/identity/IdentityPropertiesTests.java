@@ -11,16 +11,31 @@
 
 package com.adobe.marketing.mobile.edge.identity;
 
+import org.json.JSONObject;
+import org.junit.After;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityTestUtil.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class IdentityPropertiesTests {
 
+	@After
+	public void teardown() {
+		IdentityRetention.reset();
+		IdentityCompactEncoding.reset();
+	}
+
 	// ======================================================================================================================
 	// Tests for method : toXDMData(final boolean allowEmpty)
 	// ======================================================================================================================
@@ -268,6 +283,50 @@ public class IdentityPropertiesTests {
 
 	}
 
+	@Test
+	public void test_getECID_returnsSameInstanceUntilECIDChanges() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID("primary"));
+		props.setECIDSecondary(new ECID("secondary"));
+		final ECID ecid = props.getECID();
+		final ECID ecidSecondary = props.getECIDSecondary();
+
+		// test
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("space", "moon"))));
+
+		// verify
+		assertSame(ecid, props.getECID());
+		assertSame(ecidSecondary, props.getECIDSecondary());
+
+		// test
+		props.setECID(new ECID("primaryAgain"));
+
+		// verify
+		assertEquals("primaryAgain", props.getECID().toString());
+		assertSame(ecidSecondary, props.getECIDSecondary());
+	}
+
+	@Test
+	public void test_getECID_inSyncWithLoadedAndClearedIdentityMap() {
+		// setup
+		IdentityProperties props = new IdentityProperties(createXDMIdentityMap(
+					new TestItem("ECID", "primary"),
+					new TestItem("ECID", "secondary")
+				));
+
+		// verify
+		assertEquals("primary", props.getECID().toString());
+		assertEquals("secondary", props.getECIDSecondary().toString());
+
+		// test
+		props.clearAllIdentifiers();
+
+		// verify
+		assertNull(props.getECID());
+		assertNull(props.getECIDSecondary());
+	}
+
 
 	// ======================================================================================================================
 	// Tests for "updateCustomerIdentifiers" is already covered in "handleUpdateRequest" tests in IdentityExtensionTests
@@ -278,5 +337,233 @@ public class IdentityPropertiesTests {
 	// Tests for "removeCustomerIdentifiers" is already covered in handleRemoveRequest tests in IdentityExtensionTests
 	// ======================================================================================================================
 
+	@Test
+	public void test_clearCustomerIdentifiersForNamespaces_ignoresCaseAndReservedNamespaces() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID("primary"));
+		IdentityMap customerIdentifiers = new IdentityMap();
+		customerIdentifiers.addItem(new IdentityItem("user1"), "Email");
+		customerIdentifiers.addItem(new IdentityItem("user2"), "Email");
+		customerIdentifiers.addItem(new IdentityItem("crm"), "crmId");
+		props.updateCustomerIdentifiers(customerIdentifiers);
+
+		// test
+		props.clearCustomerIdentifiersForNamespaces(Arrays.asList("email", "ecid", "unknown"));
+
+		// verify
+		Map<String, String> flatMap = flattenMap(props.toXDMData(false));
+		assertEquals("primary", flatMap.get("identityMap.ECID[0].id"));
+		assertEquals("crm", flatMap.get("identityMap.crmId[0].id"));
+		assertNull(flatMap.get("identityMap.Email[0].id"));
+	}
+
+	@Test
+	public void test_stateVersion_roundTripsThroughXDMData() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID("primary"));
+		assertNull(props.toXDMData(false).get(IdentityConstants.EventDataKeys.STATE_VERSION));
+		props.incrementStateVersion();
+		props.incrementStateVersion();
+
+		// test
+		IdentityProperties loadedProps = new IdentityProperties(props.toXDMData(false));
+
+		// verify
+		assertEquals(2L, props.toXDMData(false).get(IdentityConstants.EventDataKeys.STATE_VERSION));
+		assertEquals(2, loadedProps.getStateVersion());
+		assertEquals("primary", loadedProps.getECID().toString());
+	}
+
+	@Test
+	public void test_toJSONString_matchesXDMData() throws Exception {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID("primary"));
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(
+											new TestItem("Email", "example@email.com"),
+											new TestItem("name\"space", "quoted"))));
+		props.incrementStateVersion();
+
+		// test
+		final String json = props.toJSONString();
+
+		// verify
+		assertEquals(flattenMap(props.toXDMData(false)), flattenMap(Utils.toMap(new JSONObject(json))));
+	}
+
+	@Test
+	public void test_toJSONString_compactEncodingReadsBackToSameIdentifiers() throws Exception {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID("primary"));
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(
+											new TestItem("Email", "example@email.com"))));
+		final String fullJSON = props.toJSONString();
+		IdentityCompactEncoding.setEnabled(true, false);
+
+		// test
+		final String json = props.toJSONString();
+
+		// verify
+		assertTrue(json.length() < fullJSON.length());
+		assertFalse(json.contains(IdentityConstants.XDMKeys.AUTHENTICATED_STATE));
+		assertEquals(flattenMap(props.toXDMData(false)),
+					 flattenMap(new IdentityProperties(Utils.toMap(new JSONObject(json))).toXDMData(false)));
+	}
+
+	@Test
+	public void test_toJSONString_emptyProperties() throws Exception {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+
+		// test
+		final JSONObject json = new JSONObject(props.toJSONString());
+
+		// verify
+		assertEquals(0, json.getJSONObject(IdentityConstants.XDMKeys.IDENTITY_MAP).length());
+		assertEquals(1, json.length());
+	}
+
+	@Test
+	public void test_toJSONString_cachedUntilChanged() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID("primary"));
+		final String json = props.toJSONString();
+
+		// test and verify
+		assertSame(json, props.toJSONString());
+
+		props.incrementStateVersion();
+		final String versionedJSON = props.toJSONString();
+		assertNotSame(json, versionedJSON);
+
+		props.setECIDSecondary(new ECID("secondary"));
+		assertNotSame(versionedJSON, props.toJSONString());
+		assertTrue(props.toJSONString().contains("secondary"));
+	}
+
+	// ======================================================================================================================
+	// Tests for expiration
+	// ======================================================================================================================
+
+	@Test
+	public void test_toJSONString_persistsExpirations() throws Exception {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("session", AuthenticatedState.AMBIGUOUS, false, 5000), "space");
+		props.updateCustomerIdentifiers(map);
+
+		// test
+		IdentityProperties loaded = new IdentityProperties(Utils.toMap(new JSONObject(props.toJSONString())));
+
+		// verify
+		assertEquals(props.getExpirations(), loaded.getExpirations());
+		assertFalse(props.toXDMData(false).containsKey(IdentityConstants.EventDataKeys.EXPIRATIONS));
+	}
+
+	@Test
+	public void test_removeExpiredIdentifiers_onlyRemovesItemsStillExpired() {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("expired", AuthenticatedState.AMBIGUOUS, false, 1000), "space");
+		map.addItem(new IdentityItem("extended", AuthenticatedState.AMBIGUOUS, false, 9000), "space");
+		map.addItem(new IdentityItem("permanent"), "location");
+		props.updateCustomerIdentifiers(map);
+		IdentityExpiryWheel wheel = new IdentityExpiryWheel(1, 4);
+		wheel.schedule("space", "expired", 1000);
+		wheel.schedule("space", "extended", 1000); // scheduled before its expiration was extended
+		wheel.schedule("location", "permanent", 1000);
+		wheel.schedule("space", "unknown", 1000);
+
+		// test
+		List<String> namespaces = props.removeExpiredIdentifiers(wheel.advance(2000), 2000);
+
+		// verify
+		assertEquals(Collections.singletonList("space"), namespaces);
+		Map<String, String> flatMap = flattenMap(props.toXDMData(false));
+		assertEquals("extended", flatMap.get("identityMap.space[0].id"));
+		assertNull(flatMap.get("identityMap.space[1].id"));
+		assertEquals("permanent", flatMap.get("identityMap.location[0].id"));
+	}
+
+	// ======================================================================================================================
+	// Tests for retention limits
+	// ======================================================================================================================
+
+	@Test
+	public void test_updateCustomerIdentifiers_evictsLeastRecentlyUpdatedButNeverECID() {
+		// setup
+		IdentityRetention.setLimits(2, 0);
+		IdentityProperties props = new IdentityProperties();
+		props.setECID(new ECID("primary"));
+		props.setECIDSecondary(new ECID("secondary"));
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("space", "moon"))));
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("space", "mars"))));
 
+		// test
+		props.updateCustomerIdentifiers(IdentityMapView.fromXDMMap(createXDMIdentityMap(new TestItem("space", "venus"))));
+
+		// verify
+		Map<String, String> flatMap = flattenMap(props.toXDMData(false));
+		assertEquals(12, flatMap.size()); // 2 ECIDs and 2 space items, 3 fields each
+		assertEquals("mars", flatMap.get("identityMap.space[0].id"));
+		assertEquals("venus", flatMap.get("identityMap.space[1].id"));
+		assertEquals("primary", props.getECID().toString());
+		assertEquals("secondary", props.getECIDSecondary().toString());
+		assertEquals(1, IdentityRetention.getEvictionCount());
+	}
+
+	@Test
+	public void test_toJSONString_persistsRecencyOnlyWhileRetentionEnabled() throws Exception {
+		// setup
+		IdentityProperties props = new IdentityProperties();
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(
+											new TestItem("space", "moon"),
+											new TestItem("space", "mars"))));
+		assertFalse(new JSONObject(props.toJSONString()).has(IdentityConstants.PersistenceKeys.RECENCY));
+
+		// test
+		IdentityRetention.setLimits(0, 10);
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("space", "moon"))));
+		final String json = props.toJSONString();
+
+		// verify, "moon" is now the most recently updated and survives a reload over the limit
+		assertTrue(new JSONObject(json).has(IdentityConstants.PersistenceKeys.RECENCY));
+		IdentityProperties loaded = new IdentityProperties(Utils.toMap(new JSONObject(json)));
+		IdentityRetention.setLimits(0, 2);
+		loaded.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("location", "ca"))));
+		Map<String, String> flatMap = flattenMap(loaded.toXDMData(false));
+		assertEquals("moon", flatMap.get("identityMap.space[0].id"));
+		assertNull(flatMap.get("identityMap.space[1].id"));
+		assertEquals("ca", flatMap.get("identityMap.location[0].id"));
+	}
+
+	@Test
+	public void test_updateCustomerIdentifiers_retentionEnabledAfterLoad_restoresPersistedRecency() throws Exception {
+		// setup, "moon" is the most recently updated in the persisted identifiers
+		IdentityRetention.setLimits(0, 10);
+		IdentityProperties props = new IdentityProperties();
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(
+											new TestItem("space", "moon"),
+											new TestItem("space", "mars"))));
+		props.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("space", "moon"))));
+		final String json = props.toJSONString();
+		IdentityRetention.reset();
+		IdentityProperties loaded = new IdentityProperties(Utils.toMap(new JSONObject(json)));
+
+		// test
+		IdentityRetention.setLimits(0, 2);
+		loaded.updateCustomerIdentifiers(IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem("location", "ca"))));
+
+		// verify
+		Map<String, String> flatMap = flattenMap(loaded.toXDMData(false));
+		assertEquals("moon", flatMap.get("identityMap.space[0].id"));
+		assertNull(flatMap.get("identityMap.space[1].id"));
+		assertEquals("ca", flatMap.get("identityMap.location[0].id"));
+	}
 }
@@ -0,0 +1,244 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.AdobeCallback;
+import com.adobe.marketing.mobile.Event;
+import com.adobe.marketing.mobile.ExtensionErrorCallback;
+import com.adobe.marketing.mobile.MobileCore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Benchmarks the callback latency of concurrent {@link Identity#getIdentities(AdobeCallback)} callers.
+ * <p>
+ * The event hub is simulated by a single thread which builds the response from a realistic identity map for each
+ * dispatched request and delivers it to the response callback, as the SDK does. The uncoalesced baseline replicates
+ * the previous behavior where each caller dispatched its own request and parsed its own response.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({MobileCore.class})
+public class IdentityRequestBenchmarkTests {
+
+	private static final int[] CONCURRENT_CALLERS = {1, 10, 50, 200};
+	private static final int NAMESPACES = 10;
+	private static final int ITEMS_PER_NAMESPACE = 20;
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 5;
+
+	private ExecutorService hubExecutor;
+	private IdentityProperties properties;
+	private AtomicInteger dispatchedRequests;
+
+	@Before
+	public void setup() {
+		PowerMockito.mockStatic(MobileCore.class);
+		Identity.resetPendingRequests();
+		hubExecutor = Executors.newSingleThreadExecutor();
+		dispatchedRequests = new AtomicInteger();
+
+		properties = new IdentityProperties();
+		properties.setECID(new ECID());
+		final IdentityMap customerIdentifiers = new IdentityMap();
+
+		for (int ns = 0; ns < NAMESPACES; ns++) {
+			for (int i = 0; i < ITEMS_PER_NAMESPACE; i++) {
+				customerIdentifiers.addItem(new IdentityItem("user-" + ns + "-" + i + "@example.com",
+											AuthenticatedState.AUTHENTICATED, i == 0), "namespace" + ns);
+			}
+		}
+
+		properties.updateCustomerIdentifiers(customerIdentifiers);
+
+		PowerMockito.when(MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
+						  any(ExtensionErrorCallback.class))).thenAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(final InvocationOnMock invocation) {
+				final AdobeCallback<Event> responseCallback = invocation.getArgument(1);
+				simulateHubResponse(responseCallback, false);
+				return true;
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		hubExecutor.shutdownNow();
+		hubExecutor.awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void benchmarkConcurrentGetIdentities() throws Exception {
+		System.out.println("getIdentities callback latency, identity map with " + (NAMESPACES * ITEMS_PER_NAMESPACE + 1) +
+						   " identities");
+		System.out.println(String.format("%8s | %28s | %28s", "callers", "uncoalesced (events, avg/max ms)",
+										 "coalesced (events, avg/max ms)"));
+
+		for (final int callers : CONCURRENT_CALLERS) {
+			Result baseline = null;
+			Result coalesced = null;
+
+			for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+				final Result roundBaseline = runRound(callers, false);
+				final Result roundCoalesced = runRound(callers, true);
+
+				if (round >= WARMUP_ROUNDS) {
+					baseline = roundBaseline.add(baseline);
+					coalesced = roundCoalesced.add(coalesced);
+				}
+			}
+
+			System.out.println(String.format("%8d | %8d %9.3f / %8.3f | %8d %9.3f / %8.3f", callers,
+											 baseline.events / MEASURED_ROUNDS, baseline.averageMillis(), baseline.maxMillis(MEASURED_ROUNDS),
+											 coalesced.events / MEASURED_ROUNDS, coalesced.averageMillis(), coalesced.maxMillis(MEASURED_ROUNDS)));
+
+			// every baseline caller dispatches its own request, coalesced callers share in-flight requests
+			assertEquals(callers * MEASURED_ROUNDS, baseline.events);
+			assertTrue(coalesced.events <= baseline.events);
+		}
+	}
+
+	private Result runRound(final int callers, final boolean coalesced) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(callers);
+		final AtomicLong totalLatency = new AtomicLong();
+		final AtomicLong maxLatency = new AtomicLong();
+		final ExecutorService callerExecutor = Executors.newFixedThreadPool(Math.min(callers, 16));
+		dispatchedRequests.set(0);
+
+		for (int i = 0; i < callers; i++) {
+			callerExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+
+					final long requestTime = System.nanoTime();
+					final AdobeCallback<IdentityMap> callback = new AdobeCallback<IdentityMap>() {
+						@Override
+						public void call(final IdentityMap identityMap) {
+							final long latency = System.nanoTime() - requestTime;
+							totalLatency.addAndGet(latency);
+
+							long max;
+
+							do {
+								max = maxLatency.get();
+							} while (latency > max && !maxLatency.compareAndSet(max, latency));
+
+							done.countDown();
+						}
+					};
+
+					if (coalesced) {
+						Identity.getIdentities(callback);
+					} else {
+						dispatchUncoalescedRequest(callback);
+					}
+				}
+			});
+		}
+
+		start.countDown();
+		assertTrue("Timed out waiting for callbacks", done.await(10, TimeUnit.SECONDS));
+		callerExecutor.shutdown();
+
+		return new Result(dispatchedRequests.get(), callers, totalLatency.get(), maxLatency.get());
+	}
+
+	/**
+	 * Replicates the request flow without coalescing: one request event and one response parse per caller.
+	 */
+	private void dispatchUncoalescedRequest(final AdobeCallback<IdentityMap> callback) {
+		new Event.Builder(IdentityConstants.EventNames.REQUEST_IDENTITIES,
+						  IdentityConstants.EventType.EDGE_IDENTITY,
+						  IdentityConstants.EventSource.REQUEST_IDENTITY).build();
+		simulateHubResponse(new AdobeCallback<Event>() {
+			@Override
+			public void call(final Event responseEvent) {
+				callback.call(IdentityMap.fromXDMMap(responseEvent.getEventData()));
+			}
+		}, true);
+	}
+
+	/**
+	 * Builds the response event on the simulated hub thread, as {@link IdentityExtension#handleIdentityRequest(Event)} does,
+	 * and delivers it to {@code responseCallback} on the same thread.
+	 */
+	private void simulateHubResponse(final AdobeCallback<Event> responseCallback, final boolean countRequest) {
+		dispatchedRequests.incrementAndGet();
+		hubExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final Event responseEvent = new Event.Builder(IdentityConstants.EventNames.IDENTITY_RESPONSE_CONTENT_ONE_TIME,
+						IdentityConstants.EventType.EDGE_IDENTITY,
+						IdentityConstants.EventSource.RESPONSE_IDENTITY).setEventData(properties.toXDMData(false)).build();
+				responseCallback.call(responseEvent);
+			}
+		});
+	}
+
+	private static final class Result {
+		final int events;
+		final int callbacks;
+		final long totalLatencyNanos;
+		final long maxLatencyNanos;
+
+		Result(final int events, final int callbacks, final long totalLatencyNanos, final long maxLatencyNanos) {
+			this.events = events;
+			this.callbacks = callbacks;
+			this.totalLatencyNanos = totalLatencyNanos;
+			this.maxLatencyNanos = maxLatencyNanos;
+		}
+
+		Result add(final Result other) {
+			if (other == null) {
+				return this;
+			}
+
+			return new Result(events + other.events, callbacks + other.callbacks, totalLatencyNanos + other.totalLatencyNanos,
+							  maxLatencyNanos + other.maxLatencyNanos);
+		}
+
+		double averageMillis() {
+			return totalLatencyNanos / (double) callbacks / 1_000_000d;
+		}
+
+		double maxMillis(final int rounds) {
+			return maxLatencyNanos / (double) rounds / 1_000_000d;
+		}
+	}
+}
@@ -0,0 +1,297 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import com.adobe.marketing.mobile.AdobeCallback;
+import com.adobe.marketing.mobile.AdobeCallbackWithError;
+import com.adobe.marketing.mobile.AdobeError;
+import com.adobe.marketing.mobile.Event;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdentityRequestCoalescerTests {
+
+	private IdentityRequestCoalescer coalescer;
+	private List<IdentityMap> responses;
+	private List<AdobeError> errors;
+	private AdobeCallbackWithError<IdentityMap> callback;
+
+	@Before
+	public void setup() {
+		coalescer = new IdentityRequestCoalescer(5000);
+		responses = new ArrayList<>();
+		errors = new ArrayList<>();
+		callback = new AdobeCallbackWithError<IdentityMap>() {
+			@Override
+			public void fail(AdobeError adobeError) {
+				errors.add(adobeError);
+			}
+
+			@Override
+			public void call(IdentityMap identityMap) {
+				responses.add(identityMap);
+			}
+		};
+	}
+
+	@Test
+	public void testJoin_firstCallerStartsFlight() {
+		assertNotNull(coalescer.join("request", callback, null));
+		assertNull(coalescer.join("request", callback, null));
+		assertNull(coalescer.join("request", callback, null));
+	}
+
+	@Test
+	public void testJoin_differentKeysStartDifferentFlights() {
+		assertNotNull(coalescer.join("request", callback, null));
+		assertNotNull(coalescer.join("otherRequest", callback, null));
+	}
+
+	@Test
+	public void testJoin_staleFlightIsNotJoined() {
+		// setup
+		coalescer = new IdentityRequestCoalescer(0);
+
+		// test
+		assertNotNull(coalescer.join("request", callback, null));
+
+		// verify
+		assertNotNull(coalescer.join("request", callback, null));
+	}
+
+	@Test
+	public void testComplete_fansOutSingleParsedResponse() {
+		// setup
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", callback, null);
+		coalescer.join("request", callback, null);
+		coalescer.join("request", callback, null);
+
+		// test
+		coalescer.complete(flight, buildResponseEvent());
+
+		// verify
+		assertEquals(3, responses.size());
+		assertEquals(0, errors.size());
+
+		for (IdentityMap map : responses) {
+			assertEquals("id1", map.getIdentityItemsForNamespace("space").get(0).getId());
+		}
+
+		assertNotSame(responses.get(0), responses.get(1));
+		assertNotSame(responses.get(0), responses.get(2));
+	}
+
+	@Test
+	public void testComplete_startsNewFlightAfterCompletion() {
+		// setup
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", callback, null);
+
+		// test
+		coalescer.complete(flight, buildResponseEvent());
+
+		// verify
+		assertNotNull(coalescer.join("request", callback, null));
+	}
+
+	@Test
+	public void testComplete_staleFlightDoesNotCloseNewFlight() {
+		// setup
+		coalescer = new IdentityRequestCoalescer(-1);
+		final IdentityRequestCoalescer.Flight staleFlight = coalescer.join("request", callback, null);
+		final IdentityRequestCoalescer.Flight newFlight = coalescer.join("request", callback, null);
+
+		// test
+		coalescer.complete(staleFlight, buildResponseEvent());
+
+		// verify
+		assertEquals(1, responses.size());
+		coalescer.complete(newFlight, buildResponseEvent());
+		assertEquals(2, responses.size());
+	}
+
+	@Test
+	public void testComplete_nullResponseEvent_failsAllCallbacks() {
+		// setup
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", callback, null);
+		coalescer.join("request", callback, null);
+
+		// test
+		coalescer.complete(flight, null);
+
+		// verify
+		assertEquals(0, responses.size());
+		assertEquals(2, errors.size());
+		assertSame(AdobeError.UNEXPECTED_ERROR, errors.get(0));
+		assertSame(AdobeError.UNEXPECTED_ERROR, errors.get(1));
+	}
+
+	@Test
+	public void testComplete_callbackThrows_otherCallbacksStillNotified() {
+		// setup
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap identityMap) {
+				throw new IllegalStateException("test");
+			}
+		}, null);
+		coalescer.join("request", callback, null);
+
+		// test
+		coalescer.complete(flight, buildResponseEvent());
+
+		// verify
+		assertEquals(1, responses.size());
+	}
+
+	@Test
+	public void testFail_failsAllCallbacks() {
+		// setup
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", callback, null);
+		coalescer.join("request", callback, null);
+
+		// test
+		coalescer.fail(flight, AdobeError.CALLBACK_TIMEOUT);
+
+		// verify
+		assertEquals(2, errors.size());
+		assertSame(AdobeError.CALLBACK_TIMEOUT, errors.get(0));
+		assertNotNull(coalescer.join("request", callback, null));
+	}
+
+	@Test
+	public void testComplete_withExecutor_invokesCallbackOnExecutor() {
+		// setup
+		final List<Runnable> queuedTasks = new ArrayList<>();
+		final Executor queueingExecutor = new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				queuedTasks.add(runnable);
+			}
+		};
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", callback, queueingExecutor);
+		coalescer.join("request", callback, null);
+		coalescer.join("request", callback, queueingExecutor);
+
+		// test
+		coalescer.complete(flight, buildResponseEvent());
+
+		// verify only the direct callback is invoked on the delivering thread
+		assertEquals(1, responses.size());
+		assertEquals(2, queuedTasks.size());
+
+		// test
+		for (Runnable task : queuedTasks) {
+			task.run();
+		}
+
+		// verify every callback receives its own map
+		assertEquals(3, responses.size());
+		assertNotSame(responses.get(0), responses.get(1));
+		assertNotSame(responses.get(1), responses.get(2));
+		assertNotSame(responses.get(0), responses.get(2));
+
+		for (IdentityMap map : responses) {
+			assertEquals("id1", map.getIdentityItemsForNamespace("space").get(0).getId());
+		}
+	}
+
+	@Test
+	public void testFail_withExecutor_invokesErrorOnExecutor() {
+		// setup
+		final List<Runnable> queuedTasks = new ArrayList<>();
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", callback, new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				queuedTasks.add(runnable);
+			}
+		});
+
+		// test
+		coalescer.fail(flight, AdobeError.CALLBACK_TIMEOUT);
+
+		// verify
+		assertEquals(0, errors.size());
+		queuedTasks.get(0).run();
+		assertEquals(Collections.singletonList(AdobeError.CALLBACK_TIMEOUT), errors);
+	}
+
+	@Test
+	public void testComplete_executorRejects_invokesCallbackDirectly() {
+		// setup
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", callback, new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				throw new RejectedExecutionException("test");
+			}
+		});
+
+		// test
+		coalescer.complete(flight, buildResponseEvent());
+
+		// verify
+		assertEquals(1, responses.size());
+	}
+
+	@Test
+	public void testClear_discardsPendingFlights() {
+		// setup
+		coalescer.join("request", callback, null);
+
+		// test
+		coalescer.clear();
+
+		// verify
+		assertNotNull(coalescer.join("request", callback, null));
+	}
+
+	@Test
+	public void testCloseAll_newCallersStartNewFlight_pendingCallersStillNotified() {
+		// setup
+		final List<IdentityMap> responses = new ArrayList<>();
+		final AdobeCallback<IdentityMap> recordingCallback = new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(final IdentityMap map) {
+				responses.add(map);
+			}
+		};
+		final IdentityRequestCoalescer.Flight flight = coalescer.join("request", recordingCallback, null);
+
+		// test
+		coalescer.closeAll();
+
+		// verify
+		assertNotNull(coalescer.join("request", callback, null));
+		coalescer.complete(flight, buildResponseEvent());
+		assertEquals(1, responses.size());
+	}
+
+	private Event buildResponseEvent() {
+		final IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id1"), "space");
+		return new Event.Builder(IdentityConstants.EventNames.IDENTITY_RESPONSE_CONTENT_ONE_TIME,
+								 IdentityConstants.EventType.EDGE_IDENTITY,
+								 IdentityConstants.EventSource.RESPONSE_IDENTITY).setEventData(map.asXDMMap()).build();
+	}
+}
@@ -30,6 +30,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.adobe.marketing.mobile.edge.identity.IdentityTestUtil.createXDMIdentityMap;
@@ -39,6 +40,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -317,6 +319,92 @@ public class IdentityStateTests {
 		verify(mockSharedPreferenceEditor, Mockito.times(1)).apply(); // should save to data store
 	}
 
+	@Test
+	public void testResetIdentifiers_recordsChanges() {
+		// setup
+		IdentityState state = new IdentityState(new IdentityProperties());
+		state.getIdentityProperties().setECID(new ECID("existing"));
+		IdentityMap customerIdentifiers = new IdentityMap();
+		customerIdentifiers.addItem(new IdentityItem("secretID"), "UserId");
+		state.updateCustomerIdentifiers(customerIdentifiers);
+		state.drainChanges();
+
+		// test
+		state.resetIdentifiers();
+
+		// verify
+		List<IdentityChange> changes = state.drainChanges();
+		assertEquals(3, changes.size());
+		assertEquals(IdentityChange.Type.REMOVED, changes.get(0).getType());
+		assertEquals(IdentityChange.Type.REMOVED, changes.get(1).getType());
+		assertEquals(IdentityChange.Type.ADDED, changes.get(2).getType());
+		assertEquals(IdentityConstants.Namespaces.ECID, changes.get(2).getNamespace());
+		assertEquals(state.getIdentityProperties().getECID().toString(), changes.get(2).getItem().getId());
+		assertTrue(state.drainChanges().isEmpty());
+	}
+
+	@Test
+	public void testStateVersion_incrementsOnlyOnEffectiveChanges() {
+		// setup
+		IdentityState state = new IdentityState(new IdentityProperties());
+		IdentityMap customerIdentifiers = new IdentityMap();
+		customerIdentifiers.addItem(new IdentityItem("secretID"), "UserId");
+
+		// test & verify
+		state.updateCustomerIdentifiers(customerIdentifiers);
+		assertEquals(1, state.getIdentityProperties().getStateVersion());
+
+		state.updateCustomerIdentifiers(customerIdentifiers); // unchanged
+		assertEquals(1, state.getIdentityProperties().getStateVersion());
+
+		IdentityMap unknownIdentifiers = new IdentityMap();
+		unknownIdentifiers.addItem(new IdentityItem("unknown"), "UserId");
+		state.removeCustomerIdentifiers(unknownIdentifiers); // nothing removed
+		assertEquals(1, state.getIdentityProperties().getStateVersion());
+
+		state.removeCustomerIdentifiers(customerIdentifiers);
+		assertEquals(2, state.getIdentityProperties().getStateVersion());
+
+		state.updateLegacyExperienceCloudId(new ECID());
+		assertEquals(2, state.getIdentityProperties().getStateVersion()); // no primary ECID, secondary not set
+	}
+
+	@Test
+	public void testStateVersion_carriesOverReset() {
+		// setup
+		IdentityProperties properties = new IdentityProperties();
+		properties.setStateVersion(41);
+		IdentityState state = new IdentityState(properties);
+
+		// test
+		state.resetIdentifiers();
+
+		// verify
+		assertEquals(42, state.getIdentityProperties().getStateVersion());
+		final ArgumentCaptor<String> persistenceValueCaptor = ArgumentCaptor.forClass(String.class);
+		verify(mockSharedPreferenceEditor, times(1)).putString(eq(IdentityConstants.DataStoreKey.IDENTITY_PROPERTIES),
+				persistenceValueCaptor.capture());
+		assertEquals("42", flattenJSONString(persistenceValueCaptor.getValue()).get("stateVersion"));
+	}
+
+	@Test
+	public void testUpdateCustomerIdentifiers_recordsChanges() {
+		// setup
+		IdentityState state = new IdentityState(new IdentityProperties());
+
+		// test
+		IdentityMap customerIdentifiers = new IdentityMap();
+		customerIdentifiers.addItem(new IdentityItem("secretID"), "UserId");
+		customerIdentifiers.addItem(new IdentityItem("ecid"), IdentityConstants.Namespaces.ECID);
+		state.updateCustomerIdentifiers(customerIdentifiers);
+
+		// verify reserved namespaces are not changed
+		List<IdentityChange> changes = state.drainChanges();
+		assertEquals(1, changes.size());
+		assertEquals(IdentityChange.Type.ADDED, changes.get(0).getType());
+		assertEquals("UserId", changes.get(0).getNamespace());
+	}
+
 	@Test
 	public void testUpdateCustomerIdentifiers_happy() throws Exception {
 		// setup
@@ -363,7 +451,8 @@ public class IdentityStateTests {
 		verify(mockSharedPreferenceEditor, times(1)).putString(eq(IdentityConstants.DataStoreKey.IDENTITY_PROPERTIES),
 				persistenceValueCaptor.capture());
 		Map<String, String> persistedData = flattenJSONString(persistenceValueCaptor.getAllValues().get(0));
-		assertEquals(6, persistedData.size()); // USERID identifier and initial ECID
+		assertEquals(7, persistedData.size()); // USERID identifier, initial ECID and state version
+		assertEquals("1", persistedData.get("stateVersion"));
 		assertEquals("somevalue", persistedData.get("identityMap.UserId[0].id"));
 		assertEquals("ambiguous", persistedData.get("identityMap.UserId[0].authenticatedState"));
 		assertEquals("false", persistedData.get("identityMap.UserId[0].primary"));
@@ -393,7 +482,7 @@ public class IdentityStateTests {
 		verify(mockSharedPreferenceEditor, times(1)).putString(eq(IdentityConstants.DataStoreKey.IDENTITY_PROPERTIES),
 				persistenceValueCaptor.capture());
 		Map<String, String> persistedData = flattenJSONString(persistenceValueCaptor.getAllValues().get(0));
-		assertEquals(9, persistedData.size()); // updated ids + ECID
+		assertEquals(10, persistedData.size()); // updated ids + ECID + state version
 		assertEquals("somevalue", persistedData.get("identityMap.caseSensitive[0].id"));
 		assertEquals("SOMEVALUE", persistedData.get("identityMap.CASESENSITIVE[0].id"));
 		assertEquals("internalECID", persistedData.get("identityMap.ECID[0].id"));
@@ -420,7 +509,8 @@ public class IdentityStateTests {
 		verify(mockSharedPreferenceEditor, times(1)).putString(eq(IdentityConstants.DataStoreKey.IDENTITY_PROPERTIES),
 				persistenceValueCaptor.capture());
 		Map<String, String> persistedData = flattenJSONString(persistenceValueCaptor.getAllValues().get(0));
-		assertEquals(3, persistedData.size());
+		assertEquals(4, persistedData.size());
+		assertEquals("1", persistedData.get("stateVersion"));
 		assertNull(persistedData.get("identityMap.UserId[0].id"));
 		assertEquals("token", persistedData.get("identityMap.PushId[0].id"));
 	}
@@ -0,0 +1,115 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.adobe.marketing.mobile.edge.identity.IdentityTestUtil.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdentityStringPoolTests {
+
+	@Before
+	public void setup() {
+		IdentityStringPool.reset();
+	}
+
+	@Test
+	public void test_intern_returnsFirstSeenInstance() {
+		final String namespace = new String("space");
+		final String id = new String("moon");
+
+		assertSame(namespace, IdentityStringPool.internNamespace(namespace));
+		assertSame(namespace, IdentityStringPool.internNamespace(new String("space")));
+		assertSame(id, IdentityStringPool.internId(id));
+		assertSame(id, IdentityStringPool.internId(new String("moon")));
+		assertNull(IdentityStringPool.internId(null));
+	}
+
+	@Test
+	public void test_internId_skipsLongIds() {
+		final char[] chars = new char[IdentityStringPool.MAX_INTERNED_LENGTH + 1];
+		Arrays.fill(chars, 'a');
+		final String id = new String(chars);
+		IdentityStringPool.internId(id);
+
+		final String other = new String(chars);
+		assertSame(other, IdentityStringPool.internId(other));
+		assertEquals(id, other);
+	}
+
+	@Test
+	public void test_fromXDMMap_parsedMapsShareNamespacesAndIds() {
+		// test
+		final IdentityMap first = IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem(new String("space"),
+									   new String("moon"))));
+		final IdentityMap second = IdentityMap.fromXDMMap(createXDMIdentityMap(new TestItem(new String("space"),
+									   new String("moon"))));
+
+		// verify
+		assertSame(first.getNamespaces().get(0), second.getNamespaces().get(0));
+		assertSame(first.getItems().get("space").get(0).getId(), second.getItems().get("space").get(0).getId());
+	}
+
+	@Test
+	public void test_fromXDMMap_parsedMapsShareAllNamespacesAndIds() {
+		// test
+		final IdentityMap first = IdentityMap.fromXDMMap(createXDMIdentityMap(
+									  new TestItem(new String("space"), new String("moon")),
+									  new TestItem(new String("space"), new String("sun")),
+									  new TestItem(new String("ocean"), new String("wave"))));
+		final IdentityMap second = IdentityMap.fromXDMMap(createXDMIdentityMap(
+									   new TestItem(new String("space"), new String("moon")),
+									   new TestItem(new String("space"), new String("sun")),
+									   new TestItem(new String("ocean"), new String("wave"))));
+
+		// verify
+		assertEquals(first.getNamespaces(), second.getNamespaces());
+
+		for (final String namespace : first.getNamespaces()) {
+			assertSame(namespace, second.getNamespaces().get(second.getNamespaces().indexOf(namespace)));
+			final List<IdentityItem> firstItems = first.getIdentityItemsForNamespace(namespace);
+			final List<IdentityItem> secondItems = second.getIdentityItemsForNamespace(namespace);
+			assertEquals(firstItems.size(), secondItems.size());
+
+			for (int i = 0; i < firstItems.size(); i++) {
+				assertSame(firstItems.get(i).getId(), secondItems.get(i).getId());
+			}
+		}
+	}
+
+	@Test
+	public void test_view_internsNamespacesAndIds() {
+		// setup
+		final String namespace = IdentityStringPool.internNamespace(new String("space"));
+		final String id = IdentityStringPool.internId(new String("moon"));
+		final Map<String, Object> xdmMap = createXDMIdentityMap(new TestItem(new String("space"), new String("moon")));
+
+		// test
+		final IdentityMapView view = IdentityMapView.fromXDMMap(xdmMap);
+		final List<String> namespaces = view.getNamespaces();
+
+		// verify
+		assertSame(namespace, namespaces.get(0));
+		assertSame(id, view.getItems(namespaces.get(0)).get(0).getId());
+		assertNotSame(id, ((Map<?, ?>)((List<?>)((Map<?, ?>) xdmMap.get(IdentityConstants.XDMKeys.IDENTITY_MAP)).get(
+						  "space")).get(0)).get(IdentityConstants.XDMKeys.ID));
+	}
+}
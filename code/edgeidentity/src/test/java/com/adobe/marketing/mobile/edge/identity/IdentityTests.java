@@ -25,17 +25,27 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 
@@ -46,6 +56,7 @@ public class IdentityTests {
 	@Before
 	public void setup() {
 		PowerMockito.mockStatic(MobileCore.class);
+		Identity.resetPendingRequests();
 	}
 
 	// ========================================================================================
@@ -112,7 +123,8 @@ public class IdentityTests {
 		assertEquals(IdentityConstants.EventNames.IDENTITY_REQUEST_IDENTITY_ECID, dispatchedEvent.getName());
 		assertEquals(IdentityConstants.EventType.EDGE_IDENTITY.toLowerCase(), dispatchedEvent.getType());
 		assertEquals(IdentityConstants.EventSource.REQUEST_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
-		assertTrue(dispatchedEvent.getEventData().isEmpty());
+		assertEquals(Collections.singletonList(IdentityConstants.Namespaces.ECID),
+					 dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.NAMESPACES));
 
 		// verify callback responses
 		ECID ecid = new ECID();
@@ -286,258 +298,1227 @@ public class IdentityTests {
 	}
 
 	@Test
-	public void testUpdateIdentitiesNullAndEmptyMap() {
+	public void testUpdateIdentities_unchangedIdentities_doesNotDispatch() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true), "mainspace");
+		IdentityUpdateCache.getInstance().confirm(map);
+
+		// test
+		IdentityMap sameMap = new IdentityMap();
+		sameMap.addItem(new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true), "mainspace");
+		Identity.updateIdentities(sameMap);
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testUpdateIdentities_changedIdentities_dispatches() {
+		// setup
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true), "mainspace");
+		IdentityUpdateCache.getInstance().confirm(map);
+
 		// test
+		IdentityMap changedMap = new IdentityMap();
+		changedMap.addItem(new IdentityItem("id", AuthenticatedState.LOGGED_OUT, true), "mainspace");
+		Identity.updateIdentities(changedMap);
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testUpdateIdentities_afterRemoveIdentity_dispatches() {
+		// setup
+		IdentityItem item = new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true);
 		IdentityMap map = new IdentityMap();
+		map.addItem(item, "mainspace");
+		IdentityUpdateCache.getInstance().confirm(map);
+
+		// test
+		Identity.removeIdentity(item, "mainspace");
 		Identity.updateIdentities(map);
-		Identity.updateIdentities(null);
 
-		// verify none of these API calls dispatch an event
-		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		// verify both the remove and update events are dispatched
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(2));
 		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
 	}
 
+	@Test
+	public void testUpdateIdentities_changeInFlight_dispatchesRevertToConfirmedIdentities() {
+		// setup
+		IdentityMap notPrimary = new IdentityMap();
+		notPrimary.addItem(new IdentityItem("id", AuthenticatedState.AMBIGUOUS, false), "mainspace");
+		IdentityUpdateCache.getInstance().confirm(notPrimary);
+		IdentityMap primary = new IdentityMap();
+		primary.addItem(new IdentityItem("id", AuthenticatedState.AMBIGUOUS, true), "mainspace");
+
+		// test, the update to primary is dispatched but not yet processed by the extension
+		Identity.updateIdentities(primary);
+		Identity.updateIdentities(notPrimary);
+
+		// verify the revert is not skipped as unchanged
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(2));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
 
 	@Test
-	public void testRemoveIdentity() {
+	public void testUpdateIdentities_batchingEnabled_dispatchesOnFlush() {
 		// setup
 		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
-		final ArgumentCaptor<ExtensionErrorCallback> extensionErrorCallbackCaptor = ArgumentCaptor.forClass(
-					ExtensionErrorCallback.class);
-		IdentityItem sampleItem = new IdentityItem("sample", AuthenticatedState.AMBIGUOUS, false);
+		Identity.enableUpdateBatching(60000, 100);
+		IdentityItem removedItem = new IdentityItem("removed");
 
 		// test
-		Identity.removeIdentity(sampleItem, "namespace");
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true), "mainspace");
+		Identity.updateIdentities(map);
+		IdentityMap otherMap = new IdentityMap();
+		otherMap.addItem(new IdentityItem("idtwo"), "secondspace");
+		Identity.updateIdentities(otherMap);
+		Identity.removeIdentity(removedItem, "mainspace");
 
-		// verify dispatch event
+		// verify nothing is dispatched before flush
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+
+		// test
+		Identity.flushPendingUpdates();
+
+		// verify a single update event is dispatched
 		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
-		MobileCore.dispatchEvent(eventCaptor.capture(), extensionErrorCallbackCaptor.capture());
+		MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
 
 		Event dispatchedEvent = eventCaptor.getValue();
-		assertEquals(IdentityConstants.EventNames.REMOVE_IDENTITIES, dispatchedEvent.getName());
-		assertEquals(IdentityConstants.EventType.EDGE_IDENTITY.toLowerCase(), dispatchedEvent.getType());
-		assertEquals(IdentityConstants.EventSource.REMOVE_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
-		IdentityMap sampleInputIdentitymap = new IdentityMap();
-		sampleInputIdentitymap.addItem(sampleItem, "namespace");
-		assertEquals(sampleInputIdentitymap.asXDMMap(), dispatchedEvent.getEventData());
+		assertEquals(IdentityConstants.EventNames.UPDATE_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(IdentityConstants.EventSource.UPDATE_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
 
-		// TODO - enable when ExtensionError creation is available
-		// should not crash on calling the callback
-		//extensionErrorCallback.error(ExtensionError.UNEXPECTED_ERROR);
+		IdentityMap expectedUpdates = new IdentityMap();
+		expectedUpdates.addItem(new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true), "mainspace");
+		expectedUpdates.addItem(new IdentityItem("idtwo"), "secondspace");
+		assertEquals(expectedUpdates.asXDMMap(false).get(IdentityConstants.XDMKeys.IDENTITY_MAP),
+					 dispatchedEvent.getEventData().get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+
+		IdentityMap expectedRemovals = new IdentityMap();
+		expectedRemovals.addItem(removedItem, "mainspace");
+		assertEquals(expectedRemovals.asXDMMap(false),
+					 dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.REMOVED_IDENTITIES));
 	}
 
 	@Test
-	public void testRemoveIdentity_WithInvalidInputs() {
+	public void testUpdateIdentities_batchingDisabled_flushesAndDispatchesImmediately() {
 		// setup
-		IdentityItem sampleItem = new IdentityItem("sample", AuthenticatedState.AMBIGUOUS, false);
+		Identity.enableUpdateBatching(60000, 100);
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+		Identity.updateIdentities(map);
 
 		// test
-		Identity.removeIdentity(null, "namespace");
-		Identity.removeIdentity(sampleItem, "");
-		Identity.removeIdentity(sampleItem, null);
+		Identity.disableUpdateBatching();
+		Identity.updateIdentities(map);
 
-		// verify none of these API calls dispatch an event
-		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		// verify the flushed batch and the direct update are dispatched
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(2));
 		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
 	}
 
+	@Test
+	public void testEnableUpdateBatching_invalidParameters_doesNotEnable() {
+		// test
+		Identity.enableUpdateBatching(0, 100);
+		Identity.enableUpdateBatching(1000, 0);
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+		Identity.updateIdentities(map);
+
+		// verify update is dispatched immediately
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
 
-	// ========================================================================================
-	// getIdentities API
-	// ========================================================================================
 	@Test
-	public void testGetIdentities() throws Exception {
+	public void testUpdateIdentitiesWithCallback_requestsResponseAndReturnsStateVersion() {
 		// setup
 		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
 		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
-		final ArgumentCaptor<ExtensionErrorCallback> extensionErrorCallbackCaptor = ArgumentCaptor.forClass(
-					ExtensionErrorCallback.class);
-		final List<IdentityMap> callbackReturnValues = new ArrayList<>();
+		final List<Long> callbackReturnValues = new ArrayList<>();
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id", AuthenticatedState.AUTHENTICATED, true), "mainspace");
+		IdentityUpdateCache.getInstance().confirm(map);
 
 		// test
-		Identity.getIdentities(new AdobeCallback<IdentityMap>() {
+		Identity.updateIdentities(map, new AdobeCallback<Long>() {
 			@Override
-			public void call(IdentityMap map) {
-				callbackReturnValues.add(map);
+			public void call(Long stateVersion) {
+				callbackReturnValues.add(stateVersion);
 			}
 		});
 
-		// verify
+		// verify the update is dispatched even though unchanged
 		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
 		MobileCore.dispatchEventWithResponseCallback(eventCaptor.capture(), adobeCallbackCaptor.capture(),
-				extensionErrorCallbackCaptor.capture());
-
-		// verify the dispatched event details
+				any(ExtensionErrorCallback.class));
 		Event dispatchedEvent = eventCaptor.getValue();
-		assertEquals(IdentityConstants.EventNames.REQUEST_IDENTITIES, dispatchedEvent.getName());
-		assertEquals(IdentityConstants.EventType.EDGE_IDENTITY.toLowerCase(), dispatchedEvent.getType());
-		assertEquals(IdentityConstants.EventSource.REQUEST_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
-		assertTrue(dispatchedEvent.getEventData().isEmpty());
-
-		// verify callback responses
-		final ECID ecid = new ECID();
-		final String coreId = "core-test-id";
-		final String jsonStr = "{\n" +
-							   "      \"identityMap\": {\n" +
-							   "        \"ECID\": [\n" +
-							   "          {\n" +
-							   "            \"id\":" + ecid.toString() + ",\n" +
-							   "            \"authenticatedState\": \"ambiguous\",\n" +
-							   "            \"primary\": true\n" +
-							   "          }\n" +
-							   "        ],\n" +
-							   "        \"CORE\": [\n" +
-							   "          {\n" +
-							   "            \"id\":" + coreId + ",\n" +
-							   "            \"authenticatedState\": \"authenticated\",\n" +
-							   "            \"primary\": false\n" +
-							   "          }\n" +
-							   "        ]\n" +
-							   "      }\n" +
-							   "}";
-
-		final JSONObject jsonObject = new JSONObject(jsonStr);
-		final Map<String, Object> xdmData = Utils.toMap(jsonObject);
-
-		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(xdmData));
-		IdentityItem ecidItem = callbackReturnValues.get(0).getIdentityItemsForNamespace("ECID").get(0);
-		IdentityItem coreItem = callbackReturnValues.get(0).getIdentityItemsForNamespace("CORE").get(0);
-
-		assertEquals(ecid.toString(), ecidItem.getId());
-		assertEquals(AuthenticatedState.AMBIGUOUS, ecidItem.getAuthenticatedState());
-		assertEquals(true, ecidItem.isPrimary());
-
-		assertEquals(coreId, coreItem.getId());
-		assertEquals(AuthenticatedState.AUTHENTICATED, coreItem.getAuthenticatedState());
-		assertEquals(false, coreItem.isPrimary());
-
-		// TODO - enable when ExtensionError creation is available
-		// should not crash on calling the callback
-		//extensionErrorCallback.error(ExtensionError.UNEXPECTED_ERROR);
+		assertEquals(IdentityConstants.EventNames.UPDATE_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(IdentityConstants.EventSource.UPDATE_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
+		assertEquals(true, dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED));
+		assertEquals(map.asXDMMap().get(IdentityConstants.XDMKeys.IDENTITY_MAP),
+					 dispatchedEvent.getEventData().get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+
+		// verify callback response
+		Map<String, Object> responseData = new HashMap<>();
+		responseData.put(IdentityConstants.EventDataKeys.STATE_VERSION, 5L);
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(responseData));
+		assertEquals(Collections.singletonList(5L), callbackReturnValues);
 	}
 
 	@Test
-	public void testGetIdentities_nullCallback() {
+	public void testUpdateIdentitiesWithCallback_batchingEnabled_flushesPendingUpdatesFirst() {
+		// setup
+		Identity.enableUpdateBatching(60000, 100);
+		IdentityMap pendingMap = new IdentityMap();
+		pendingMap.addItem(new IdentityItem("pending"), "mainspace");
+		Identity.updateIdentities(pendingMap);
+
 		// test
-		Identity.getIdentities(null);
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+		Identity.updateIdentities(map, new AdobeCallback<Long>() {
+			@Override
+			public void call(Long stateVersion) {}
+		});
 
-		// verify
-		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		// verify the pending batch is dispatched before the update
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
 		MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
 				any(ExtensionErrorCallback.class));
 	}
 
 	@Test
-	public void testGetIdentities_nullResponseEvent() {
+	public void testUpdateIdentitiesWithCallback_invalidResponse_returnsError() {
 		// setup
-		final String KEY_IS_ERRORCALLBACK_CALLED = "errorCallBackCalled";
-		final String KEY_CAPTUREDERRORCALLBACK = "capturedErrorCallback";
-		final Map<String, Object> errorCapture = new HashMap<>();
+		final List<AdobeError> errors = new ArrayList<>();
 		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
-		final AdobeCallbackWithError callbackWithError = new AdobeCallbackWithError() {
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+
+		// test
+		Identity.updateIdentities(map, new AdobeCallbackWithError<Long>() {
 			@Override
 			public void fail(AdobeError adobeError) {
-				errorCapture.put(KEY_IS_ERRORCALLBACK_CALLED, true);
-				errorCapture.put(KEY_CAPTUREDERRORCALLBACK, adobeError);
+				errors.add(adobeError);
 			}
 
 			@Override
-			public void call(Object o) {
-			}
-		};
-
-		// test
-		Identity.getIdentities(callbackWithError);
+			public void call(Long stateVersion) {}
+		});
 
-		// verify if the event is dispatched
 		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
 		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
 				any(ExtensionErrorCallback.class));
-
-		// set response event to null
 		adobeCallbackCaptor.getValue().call(null);
 
 		// verify
-		assertTrue((boolean) errorCapture.get(KEY_IS_ERRORCALLBACK_CALLED));
-		assertEquals(AdobeError.UNEXPECTED_ERROR, errorCapture.get(KEY_CAPTUREDERRORCALLBACK));
+		assertEquals(Collections.singletonList(AdobeError.UNEXPECTED_ERROR), errors);
 	}
 
 	@Test
-	public void testGetIdentities_invalidEventData() {
+	public void testUpdateIdentitiesWithCallback_rejectedResponse_returnsError() {
 		// setup
-		final String KEY_IS_ERRORCALLBACK_CALLED = "errorCallBackCalled";
-		final String KEY_CAPTUREDERRORCALLBACK = "capturedErrorCallback";
-		final Map<String, Object> errorCapture = new HashMap<>();
+		final List<AdobeError> errors = new ArrayList<>();
+		final List<Long> stateVersions = new ArrayList<>();
 		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
-		final AdobeCallbackWithError callbackWithError = new AdobeCallbackWithError() {
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+		final Map<String, Object> responseData = new HashMap<>();
+		responseData.put(IdentityConstants.EventDataKeys.STATE_VERSION, 3L);
+		responseData.put(IdentityConstants.EventDataKeys.REJECTED, true);
+		final Event responseEvent = new Event.Builder(IdentityConstants.EventNames.UPDATE_IDENTITIES_COMPLETE,
+				IdentityConstants.EventType.EDGE_IDENTITY,
+				IdentityConstants.EventSource.RESPONSE_IDENTITY).setEventData(responseData).build();
+
+		// test
+		Identity.updateIdentities(map, new AdobeCallbackWithError<Long>() {
 			@Override
 			public void fail(AdobeError adobeError) {
-				errorCapture.put(KEY_IS_ERRORCALLBACK_CALLED, true);
-				errorCapture.put(KEY_CAPTUREDERRORCALLBACK, adobeError);
+				errors.add(adobeError);
 			}
 
 			@Override
-			public void call(Object o) {
+			public void call(Long stateVersion) {
+				stateVersions.add(stateVersion);
 			}
-		};
-
-		// test
-		Identity.getIdentities(callbackWithError);
+		});
 
-		// verify if the event is dispatched
 		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
 		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
 				any(ExtensionErrorCallback.class));
-
-		// set response event to null
-		Map<String, Object> eventData = new HashMap<>();
-		eventData.put("someKey", "someValue");
-		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(eventData));
+		adobeCallbackCaptor.getValue().call(responseEvent);
 
 		// verify
-		assertTrue((boolean) errorCapture.get(KEY_IS_ERRORCALLBACK_CALLED));
-		assertEquals(AdobeError.UNEXPECTED_ERROR, errorCapture.get(KEY_CAPTUREDERRORCALLBACK));
+		assertEquals(Collections.singletonList(AdobeError.UNEXPECTED_ERROR), errors);
+		assertTrue(stateVersions.isEmpty());
 	}
 
 	@Test
-	public void testGetIdentities_missingIdentityMap() {
+	public void testUpdateIdentitiesWithCallback_emptyMap_returnsError() {
 		// setup
-		final String KEY_IS_ERRORCALLBACK_CALLED = "errorCallBackCalled";
-		final String KEY_CAPTUREDERRORCALLBACK = "capturedErrorCallback";
-		final Map<String, Object> errorCapture = new HashMap<>();
-		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
-		final AdobeCallbackWithError callbackWithError = new AdobeCallbackWithError() {
+		final List<AdobeError> errors = new ArrayList<>();
+
+		// test
+		Identity.updateIdentities(new IdentityMap(), new AdobeCallbackWithError<Long>() {
 			@Override
 			public void fail(AdobeError adobeError) {
-				errorCapture.put(KEY_IS_ERRORCALLBACK_CALLED, true);
-				errorCapture.put(KEY_CAPTUREDERRORCALLBACK, adobeError);
+				errors.add(adobeError);
 			}
 
 			@Override
-			public void call(Object o) {
-			}
-		};
+			public void call(Long stateVersion) {}
+		});
+
+		// verify
+		assertEquals(Collections.singletonList(AdobeError.UNEXPECTED_ERROR), errors);
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testUpdateIdentitiesIfVersionMatches_dispatchesConditionalUpdate() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<IdentityUpdateResult> results = new ArrayList<>();
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
 
 		// test
-		Identity.getIdentities(callbackWithError);
+		Identity.updateIdentitiesIfVersionMatches(map, 4, new AdobeCallback<IdentityUpdateResult>() {
+			@Override
+			public void call(IdentityUpdateResult result) {
+				results.add(result);
+			}
+		});
 
-		// verify if the event is dispatched
+		// verify
 		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
-		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+		MobileCore.dispatchEventWithResponseCallback(eventCaptor.capture(), adobeCallbackCaptor.capture(),
 				any(ExtensionErrorCallback.class));
+		Event dispatchedEvent = eventCaptor.getValue();
+		assertEquals(IdentityConstants.EventSource.UPDATE_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
+		assertEquals(4L, dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.EXPECTED_STATE_VERSION));
+		assertEquals(true, dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED));
+
+		// verify conflict response
+		IdentityMap currentIdentities = new IdentityMap();
+		currentIdentities.addItem(new IdentityItem("other"), "mainspace");
+		Map<String, Object> responseData = currentIdentities.asXDMMap();
+		responseData.put(IdentityConstants.EventDataKeys.STATE_VERSION, 6L);
+		responseData.put(IdentityConstants.EventDataKeys.APPLIED, false);
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(responseData));
+
+		assertEquals(1, results.size());
+		assertFalse(results.get(0).isApplied());
+		assertEquals(6L, results.get(0).getStateVersion());
+		assertEquals("other", results.get(0).getIdentities().getIdentityItemsForNamespace("mainspace").get(0).getId());
+	}
 
-		// set response event to map missing IdentityMap
-		Map<String, Object> emptyXDMData = new HashMap<>();
-		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(emptyXDMData));
+	@Test
+	public void testUpdateIdentitiesIfVersionMatches_invalidInputs() {
+		// setup
+		final List<AdobeError> errors = new ArrayList<>();
 
-		// verify
-		assertTrue((boolean) errorCapture.get(KEY_IS_ERRORCALLBACK_CALLED));
-		assertEquals(AdobeError.UNEXPECTED_ERROR, errorCapture.get(KEY_CAPTUREDERRORCALLBACK));
-	}
+		// test
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+		Identity.updateIdentitiesIfVersionMatches(map, 1, null);
+		Identity.updateIdentitiesIfVersionMatches(null, 1, new AdobeCallbackWithError<IdentityUpdateResult>() {
+			@Override
+			public void fail(AdobeError adobeError) {
+				errors.add(adobeError);
+			}
+
+			@Override
+			public void call(IdentityUpdateResult result) {}
+		});
+
+		// verify
+		assertEquals(Collections.singletonList(AdobeError.UNEXPECTED_ERROR), errors);
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testUpdateIdentities_processedOffCallerThread_sendsIdentitiesAtCallTime() {
+		// setup
+		final List<Runnable> pendingTasks = new ArrayList<>();
+		Identity.setApiExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				pendingTasks.add(runnable);
+			}
+		});
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+
+		// test
+		Identity.updateIdentities(map);
+		map.addItem(new IdentityItem("later"), "mainspace");
+
+		// verify nothing is dispatched on the caller thread
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+
+		// test
+		assertEquals(1, pendingTasks.size());
+		pendingTasks.get(0).run();
+
+		// verify the identities at call time are dispatched
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+		IdentityMap expectedMap = new IdentityMap();
+		expectedMap.addItem(new IdentityItem("id"), "mainspace");
+		assertEquals(expectedMap.asXDMMap(), eventCaptor.getValue().getEventData());
+	}
+
+	@Test
+	public void testUpdateIdentities_byDefault_dispatchesOnCallerThread() {
+		// setup
+		final List<Thread> dispatchThreads = new ArrayList<>();
+		PowerMockito.doAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(final InvocationOnMock invocation) {
+				dispatchThreads.add(Thread.currentThread());
+				return true;
+			}
+		}).when(MobileCore.class);
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+
+		// test
+		Identity.updateIdentities(map);
+
+		// verify the event is dispatched before the call returns
+		assertEquals(Collections.singletonList(Thread.currentThread()), dispatchThreads);
+	}
+
+	@Test
+	public void testUpdateIdentities_backgroundDispatchEnabled_dispatchesOffCallerThread() throws Exception {
+		// setup
+		final List<Thread> dispatchThreads = Collections.synchronizedList(new ArrayList<Thread>());
+		final CountDownLatch dispatched = new CountDownLatch(1);
+		PowerMockito.doAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(final InvocationOnMock invocation) {
+				dispatchThreads.add(Thread.currentThread());
+				dispatched.countDown();
+				return true;
+			}
+		}).when(MobileCore.class);
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+
+		try {
+			// test
+			Identity.enableBackgroundDispatch();
+			Identity.updateIdentities(map);
+
+			// verify
+			assertTrue(dispatched.await(5, TimeUnit.SECONDS));
+			assertEquals(1, dispatchThreads.size());
+			assertNotSame(Thread.currentThread(), dispatchThreads.get(0));
+		} finally {
+			Identity.disableBackgroundDispatch();
+		}
+	}
+
+	@Test
+	public void testUpdateIdentitiesNullAndEmptyMap() {
+		// test
+		IdentityMap map = new IdentityMap();
+		Identity.updateIdentities(map);
+		Identity.updateIdentities(null);
+
+		// verify none of these API calls dispatch an event
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+
+	@Test
+	public void testRemoveIdentity() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		final ArgumentCaptor<ExtensionErrorCallback> extensionErrorCallbackCaptor = ArgumentCaptor.forClass(
+					ExtensionErrorCallback.class);
+		IdentityItem sampleItem = new IdentityItem("sample", AuthenticatedState.AMBIGUOUS, false);
+
+		// test
+		Identity.removeIdentity(sampleItem, "namespace");
+
+		// verify dispatch event
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(eventCaptor.capture(), extensionErrorCallbackCaptor.capture());
+
+		Event dispatchedEvent = eventCaptor.getValue();
+		assertEquals(IdentityConstants.EventNames.REMOVE_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(IdentityConstants.EventType.EDGE_IDENTITY.toLowerCase(), dispatchedEvent.getType());
+		assertEquals(IdentityConstants.EventSource.REMOVE_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
+		IdentityMap sampleInputIdentitymap = new IdentityMap();
+		sampleInputIdentitymap.addItem(sampleItem, "namespace");
+		assertEquals(sampleInputIdentitymap.asXDMMap(), dispatchedEvent.getEventData());
+
+		// TODO - enable when ExtensionError creation is available
+		// should not crash on calling the callback
+		//extensionErrorCallback.error(ExtensionError.UNEXPECTED_ERROR);
+	}
+
+	@Test
+	public void testRemoveIdentities() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id1"), "namespace");
+		map.addItem(new IdentityItem("id2"), "namespace");
+		map.addItem(new IdentityItem("id3"), "othernamespace");
+
+		// test
+		Identity.removeIdentities(map);
+
+		// verify a single event is dispatched
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+
+		Event dispatchedEvent = eventCaptor.getValue();
+		assertEquals(IdentityConstants.EventNames.REMOVE_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(IdentityConstants.EventType.EDGE_IDENTITY.toLowerCase(), dispatchedEvent.getType());
+		assertEquals(IdentityConstants.EventSource.REMOVE_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
+		assertEquals(map.asXDMMap(), dispatchedEvent.getEventData());
+	}
+
+	@Test
+	public void testRemoveIdentities_WithInvalidInputs() {
+		// test
+		Identity.removeIdentities(null);
+		Identity.removeIdentities(new IdentityMap());
+
+		// verify none of these API calls dispatch an event
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testRemoveIdentitiesForNamespace() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+
+		// test
+		Identity.removeIdentitiesForNamespace("namespace");
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+
+		Event dispatchedEvent = eventCaptor.getValue();
+		assertEquals(IdentityConstants.EventNames.REMOVE_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(IdentityConstants.EventSource.REMOVE_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
+		assertEquals(Collections.singletonList("namespace"),
+					 dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.NAMESPACES));
+		assertNull(dispatchedEvent.getEventData().get(IdentityConstants.XDMKeys.IDENTITY_MAP));
+	}
+
+	@Test
+	public void testRemoveIdentityFromAllNamespaces() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+
+		// test
+		Identity.removeIdentityFromAllNamespaces("user");
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+
+		Event dispatchedEvent = eventCaptor.getValue();
+		assertEquals(IdentityConstants.EventNames.REMOVE_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(Collections.singletonList("user"), dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.IDS));
+		assertNull(dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.NAMESPACES));
+
+		// invalid ids are not dispatched
+		Identity.removeIdentityFromAllNamespaces(null);
+		Identity.removeIdentityFromAllNamespaces("");
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testRemoveIdentitiesForNamespace_WithInvalidInputs() {
+		// test
+		Identity.removeIdentitiesForNamespace(null);
+		Identity.removeIdentitiesForNamespace("");
+
+		// verify none of these API calls dispatch an event
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testRemoveIdentitiesForNamespace_batchingEnabled_flushesPendingUpdatesFirst() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		Identity.enableUpdateBatching(60000, 100);
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "namespace");
+		Identity.updateIdentities(map);
+
+		// test
+		Identity.removeIdentitiesForNamespace("namespace");
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(2));
+		MobileCore.dispatchEvent(eventCaptor.capture(), any(ExtensionErrorCallback.class));
+		assertEquals(IdentityConstants.EventNames.UPDATE_IDENTITIES, eventCaptor.getAllValues().get(0).getName());
+		assertEquals(IdentityConstants.EventNames.REMOVE_IDENTITIES, eventCaptor.getAllValues().get(1).getName());
+	}
+
+	@Test
+	public void testRemoveIdentityWithCallback_requestsResponseAndReturnsStateVersion() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<Long> callbackReturnValues = new ArrayList<>();
+
+		// test
+		Identity.removeIdentity(new IdentityItem("sample"), "namespace", new AdobeCallback<Long>() {
+			@Override
+			public void call(Long stateVersion) {
+				callbackReturnValues.add(stateVersion);
+			}
+		});
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(eventCaptor.capture(), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+		Event dispatchedEvent = eventCaptor.getValue();
+		assertEquals(IdentityConstants.EventNames.REMOVE_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(IdentityConstants.EventSource.REMOVE_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
+		assertEquals(true, dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.RESPONSE_REQUESTED));
+
+		Map<String, Object> responseData = new HashMap<>();
+		responseData.put(IdentityConstants.EventDataKeys.STATE_VERSION, 2L);
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(responseData));
+		assertEquals(Collections.singletonList(2L), callbackReturnValues);
+	}
+
+	@Test
+	public void testRemoveIdentity_WithInvalidInputs() {
+		// setup
+		IdentityItem sampleItem = new IdentityItem("sample", AuthenticatedState.AMBIGUOUS, false);
+
+		// test
+		Identity.removeIdentity(null, "namespace");
+		Identity.removeIdentity(sampleItem, "");
+		Identity.removeIdentity(sampleItem, null);
+
+		// verify none of these API calls dispatch an event
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEvent(any(Event.class), any(ExtensionErrorCallback.class));
+	}
+
+
+	// ========================================================================================
+	// getIdentities API
+	// ========================================================================================
+	@Test
+	public void testGetIdentities() throws Exception {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final ArgumentCaptor<ExtensionErrorCallback> extensionErrorCallbackCaptor = ArgumentCaptor.forClass(
+					ExtensionErrorCallback.class);
+		final List<IdentityMap> callbackReturnValues = new ArrayList<>();
+
+		// test
+		Identity.getIdentities(new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap map) {
+				callbackReturnValues.add(map);
+			}
+		});
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(eventCaptor.capture(), adobeCallbackCaptor.capture(),
+				extensionErrorCallbackCaptor.capture());
+
+		// verify the dispatched event details
+		Event dispatchedEvent = eventCaptor.getValue();
+		assertEquals(IdentityConstants.EventNames.REQUEST_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(IdentityConstants.EventType.EDGE_IDENTITY.toLowerCase(), dispatchedEvent.getType());
+		assertEquals(IdentityConstants.EventSource.REQUEST_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
+		assertTrue(dispatchedEvent.getEventData().isEmpty());
+
+		// verify callback responses
+		final ECID ecid = new ECID();
+		final String coreId = "core-test-id";
+		final String jsonStr = "{\n" +
+							   "      \"identityMap\": {\n" +
+							   "        \"ECID\": [\n" +
+							   "          {\n" +
+							   "            \"id\":" + ecid.toString() + ",\n" +
+							   "            \"authenticatedState\": \"ambiguous\",\n" +
+							   "            \"primary\": true\n" +
+							   "          }\n" +
+							   "        ],\n" +
+							   "        \"CORE\": [\n" +
+							   "          {\n" +
+							   "            \"id\":" + coreId + ",\n" +
+							   "            \"authenticatedState\": \"authenticated\",\n" +
+							   "            \"primary\": false\n" +
+							   "          }\n" +
+							   "        ]\n" +
+							   "      }\n" +
+							   "}";
+
+		final JSONObject jsonObject = new JSONObject(jsonStr);
+		final Map<String, Object> xdmData = Utils.toMap(jsonObject);
+
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(xdmData));
+		IdentityItem ecidItem = callbackReturnValues.get(0).getIdentityItemsForNamespace("ECID").get(0);
+		IdentityItem coreItem = callbackReturnValues.get(0).getIdentityItemsForNamespace("CORE").get(0);
+
+		assertEquals(ecid.toString(), ecidItem.getId());
+		assertEquals(AuthenticatedState.AMBIGUOUS, ecidItem.getAuthenticatedState());
+		assertEquals(true, ecidItem.isPrimary());
+
+		assertEquals(coreId, coreItem.getId());
+		assertEquals(AuthenticatedState.AUTHENTICATED, coreItem.getAuthenticatedState());
+		assertEquals(false, coreItem.isPrimary());
+
+		// TODO - enable when ExtensionError creation is available
+		// should not crash on calling the callback
+		//extensionErrorCallback.error(ExtensionError.UNEXPECTED_ERROR);
+	}
+
+	@Test
+	public void testGetIdentities_withExecutor_invokesCallbackOnExecutor() throws Exception {
+		// setup
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<Runnable> queuedTasks = new ArrayList<>();
+		final List<IdentityMap> callbackReturnValues = new ArrayList<>();
+
+		// test
+		Identity.getIdentities(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				queuedTasks.add(runnable);
+			}
+		}, new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap map) {
+				callbackReturnValues.add(map);
+			}
+		});
+
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+		IdentityMap responseMap = new IdentityMap();
+		responseMap.addItem(new IdentityItem("id"), "mainspace");
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(responseMap.asXDMMap()));
+
+		// verify callback is not invoked on the response thread
+		assertTrue(callbackReturnValues.isEmpty());
+		assertEquals(1, queuedTasks.size());
+
+		// test
+		queuedTasks.get(0).run();
+
+		// verify
+		assertEquals(1, callbackReturnValues.size());
+		assertEquals("id", callbackReturnValues.get(0).getIdentityItemsForNamespace("mainspace").get(0).getId());
+	}
+
+	@Test
+	public void testGetExperienceCloudId_withExecutor_invokesCallbackOnExecutor() {
+		// setup
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<Runnable> queuedTasks = new ArrayList<>();
+		final List<String> callbackReturnValues = new ArrayList<>();
+		final ECID ecid = new ECID();
+
+		// test
+		Identity.getExperienceCloudId(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				queuedTasks.add(runnable);
+			}
+		}, new AdobeCallback<String>() {
+			@Override
+			public void call(String id) {
+				callbackReturnValues.add(id);
+			}
+		});
+
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+		IdentityMap responseMap = new IdentityMap();
+		responseMap.addItem(new IdentityItem(ecid.toString()), IdentityConstants.Namespaces.ECID);
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(responseMap.asXDMMap()));
+
+		// verify
+		assertTrue(callbackReturnValues.isEmpty());
+		queuedTasks.get(0).run();
+		assertEquals(Collections.singletonList(ecid.toString()), callbackReturnValues);
+	}
+
+	@Test
+	public void testGetIdentities_nullCallback() {
+		// test
+		Identity.getIdentities(null);
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(0));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testGetIdentities_nullResponseEvent() {
+		// setup
+		final String KEY_IS_ERRORCALLBACK_CALLED = "errorCallBackCalled";
+		final String KEY_CAPTUREDERRORCALLBACK = "capturedErrorCallback";
+		final Map<String, Object> errorCapture = new HashMap<>();
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final AdobeCallbackWithError callbackWithError = new AdobeCallbackWithError() {
+			@Override
+			public void fail(AdobeError adobeError) {
+				errorCapture.put(KEY_IS_ERRORCALLBACK_CALLED, true);
+				errorCapture.put(KEY_CAPTUREDERRORCALLBACK, adobeError);
+			}
+
+			@Override
+			public void call(Object o) {
+			}
+		};
+
+		// test
+		Identity.getIdentities(callbackWithError);
+
+		// verify if the event is dispatched
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+
+		// set response event to null
+		adobeCallbackCaptor.getValue().call(null);
+
+		// verify
+		assertTrue((boolean) errorCapture.get(KEY_IS_ERRORCALLBACK_CALLED));
+		assertEquals(AdobeError.UNEXPECTED_ERROR, errorCapture.get(KEY_CAPTUREDERRORCALLBACK));
+	}
+
+	@Test
+	public void testGetIdentities_invalidEventData() {
+		// setup
+		final String KEY_IS_ERRORCALLBACK_CALLED = "errorCallBackCalled";
+		final String KEY_CAPTUREDERRORCALLBACK = "capturedErrorCallback";
+		final Map<String, Object> errorCapture = new HashMap<>();
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final AdobeCallbackWithError callbackWithError = new AdobeCallbackWithError() {
+			@Override
+			public void fail(AdobeError adobeError) {
+				errorCapture.put(KEY_IS_ERRORCALLBACK_CALLED, true);
+				errorCapture.put(KEY_CAPTUREDERRORCALLBACK, adobeError);
+			}
+
+			@Override
+			public void call(Object o) {
+			}
+		};
+
+		// test
+		Identity.getIdentities(callbackWithError);
+
+		// verify if the event is dispatched
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+
+		// set response event to null
+		Map<String, Object> eventData = new HashMap<>();
+		eventData.put("someKey", "someValue");
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(eventData));
+
+		// verify
+		assertTrue((boolean) errorCapture.get(KEY_IS_ERRORCALLBACK_CALLED));
+		assertEquals(AdobeError.UNEXPECTED_ERROR, errorCapture.get(KEY_CAPTUREDERRORCALLBACK));
+	}
+
+	@Test
+	public void testGetIdentities_missingIdentityMap() {
+		// setup
+		final String KEY_IS_ERRORCALLBACK_CALLED = "errorCallBackCalled";
+		final String KEY_CAPTUREDERRORCALLBACK = "capturedErrorCallback";
+		final Map<String, Object> errorCapture = new HashMap<>();
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final AdobeCallbackWithError callbackWithError = new AdobeCallbackWithError() {
+			@Override
+			public void fail(AdobeError adobeError) {
+				errorCapture.put(KEY_IS_ERRORCALLBACK_CALLED, true);
+				errorCapture.put(KEY_CAPTUREDERRORCALLBACK, adobeError);
+			}
+
+			@Override
+			public void call(Object o) {
+			}
+		};
+
+		// test
+		Identity.getIdentities(callbackWithError);
+
+		// verify if the event is dispatched
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+
+		// set response event to map missing IdentityMap
+		Map<String, Object> emptyXDMData = new HashMap<>();
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(emptyXDMData));
+
+		// verify
+		assertTrue((boolean) errorCapture.get(KEY_IS_ERRORCALLBACK_CALLED));
+		assertEquals(AdobeError.UNEXPECTED_ERROR, errorCapture.get(KEY_CAPTUREDERRORCALLBACK));
+	}
+
+	@Test
+	public void testGetIdentities_concurrentCallsAreCoalesced() throws Exception {
+		// setup
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<IdentityMap> callbackReturnValues = new ArrayList<>();
+		final AdobeCallback<IdentityMap> callback = new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap map) {
+				callbackReturnValues.add(map);
+			}
+		};
+
+		// test
+		Identity.getIdentities(callback);
+		Identity.getIdentities(callback);
+		Identity.getIdentities(callback);
+
+		// verify only one request event is dispatched
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+
+		final ECID ecid = new ECID();
+		final Map<String, Object> xdmData = Utils.toMap(new JSONObject("{\"identityMap\": {\"ECID\": [{\"id\": \"" +
+											ecid.toString() + "\"}]}}"));
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(xdmData));
+
+		// verify all callbacks receive the response, each with its own IdentityMap instance
+		assertEquals(3, callbackReturnValues.size());
+
+		for (IdentityMap map : callbackReturnValues) {
+			assertEquals(ecid.toString(), map.getIdentityItemsForNamespace("ECID").get(0).getId());
+		}
+
+		assertNotSame(callbackReturnValues.get(0), callbackReturnValues.get(1));
+		assertNotSame(callbackReturnValues.get(1), callbackReturnValues.get(2));
+
+		// verify a new request is dispatched once the previous one completed
+		Identity.getIdentities(callback);
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(2));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testGetIdentities_afterUpdateOrRemove_notCoalescedWithEarlierRequest() {
+		// setup
+		final AdobeCallback<IdentityMap> callback = new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap map) {}
+		};
+		IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem("id"), "mainspace");
+
+		// test
+		Identity.getIdentities(callback);
+		Identity.updateIdentities(map);
+		Identity.getIdentities(callback);
+		Identity.getIdentities(callback);
+		Identity.removeIdentity(new IdentityItem("id"), "mainspace");
+		Identity.getIdentities(callback);
+
+		// verify a request is dispatched after each change, later requests without a change in between are coalesced
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(3));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testGetIdentities_withNamespaces() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<IdentityMap> callbackReturnValues = new ArrayList<>();
+
+		// test
+		Identity.getIdentities(Arrays.asList("email", "", null, "crmId", "email"), new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap map) {
+				callbackReturnValues.add(map);
+			}
+		});
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(eventCaptor.capture(), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+
+		// verify the dispatched event details
+		Event dispatchedEvent = eventCaptor.getValue();
+		assertEquals(IdentityConstants.EventNames.REQUEST_IDENTITIES, dispatchedEvent.getName());
+		assertEquals(IdentityConstants.EventSource.REQUEST_IDENTITY.toLowerCase(), dispatchedEvent.getSource());
+		assertEquals(Arrays.asList("crmId", "email"),
+					 dispatchedEvent.getEventData().get(IdentityConstants.EventDataKeys.NAMESPACES));
+
+		// verify callback response
+		IdentityMap responseMap = new IdentityMap();
+		responseMap.addItem(new IdentityItem("user@example.com"), "email");
+		adobeCallbackCaptor.getValue().call(buildIdentityResponseEvent(responseMap.asXDMMap(false)));
+		assertEquals(1, callbackReturnValues.size());
+		assertEquals("user@example.com", callbackReturnValues.get(0).getIdentityItemsForNamespace("email").get(0).getId());
+	}
+
+	@Test
+	public void testGetIdentities_withEmptyNamespaces_requestsAllIdentities() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+
+		// test
+		Identity.getIdentities(new ArrayList<String>(), new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap map) {}
+		});
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(eventCaptor.capture(), any(AdobeCallback.class),
+				any(ExtensionErrorCallback.class));
+		assertTrue(eventCaptor.getValue().getEventData().isEmpty());
+	}
+
+	@Test
+	public void testGetIdentities_withNamespaces_coalescedOnlyForSameNamespaces() {
+		// setup
+		final AdobeCallback<IdentityMap> callback = new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap map) {}
+		};
+
+		// test
+		Identity.getIdentities(Arrays.asList("email", "crmId"), callback);
+		Identity.getIdentities(Arrays.asList("crmId", "email"), callback);
+		Identity.getIdentities(Collections.singletonList("email"), callback);
+		Identity.getIdentities(callback);
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(3));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testGetIdentitiesAndGetExperienceCloudId_areNotCoalescedTogether() {
+		// test
+		Identity.getIdentities(new AdobeCallback<IdentityMap>() {
+			@Override
+			public void call(IdentityMap map) {}
+		});
+		Identity.getExperienceCloudId(new AdobeCallback<String>() {
+			@Override
+			public void call(String s) {}
+		});
+
+		// verify
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(2));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), any(AdobeCallback.class),
+				any(ExtensionErrorCallback.class));
+	}
+
+	@Test
+	public void testGetExperienceCloudId_concurrentCallsReceiveSameError() {
+		// setup
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<AdobeError> errors = new ArrayList<>();
+		final AdobeCallbackWithError<String> callbackWithError = new AdobeCallbackWithError<String>() {
+			@Override
+			public void fail(AdobeError adobeError) {
+				errors.add(adobeError);
+			}
+
+			@Override
+			public void call(String s) {
+			}
+		};
+
+		// test
+		Identity.getExperienceCloudId(callbackWithError);
+		Identity.getExperienceCloudId(callbackWithError);
+
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+		adobeCallbackCaptor.getValue().call(null);
+
+		// verify
+		assertEquals(2, errors.size());
+		assertEquals(AdobeError.UNEXPECTED_ERROR, errors.get(0));
+		assertEquals(AdobeError.UNEXPECTED_ERROR, errors.get(1));
+	}
+
+	@Test
+	public void testGetIdentitiesWithStateVersion() {
+		// setup
+		final ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<IdentityReadResult> results = new ArrayList<>();
+		final AdobeCallback<IdentityReadResult> callback = new AdobeCallback<IdentityReadResult>() {
+			@Override
+			public void call(IdentityReadResult result) {
+				results.add(result);
+			}
+		};
+
+		// test
+		Identity.getIdentitiesWithStateVersion(callback);
+		Identity.getIdentitiesWithStateVersion(callback);
+
+		// verify both requests are dispatched, never coalesced
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(2));
+		MobileCore.dispatchEventWithResponseCallback(eventCaptor.capture(), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+		assertEquals(IdentityConstants.EventNames.REQUEST_IDENTITIES, eventCaptor.getValue().getName());
+
+		final Map<String, Object> responseData = IdentityTestUtil.createXDMIdentityMap(
+					new IdentityTestUtil.TestItem("space", "id"));
+		responseData.put(IdentityConstants.EventDataKeys.STATE_VERSION, 7L);
+		adobeCallbackCaptor.getAllValues().get(0).call(buildIdentityResponseEvent(responseData));
+		adobeCallbackCaptor.getAllValues().get(1).call(buildIdentityResponseEvent(
+					IdentityTestUtil.createXDMIdentityMap(new IdentityTestUtil.TestItem("space", "id"))));
+
+		// verify
+		assertEquals(2, results.size());
+		assertEquals(7L, results.get(0).getStateVersion());
+		assertEquals("id", results.get(0).getIdentities().getIdentityItemsForNamespace("space").get(0).getId());
+		assertEquals(0L, results.get(1).getStateVersion());
+		assertEquals("id", results.get(1).getIdentities().getIdentityItemsForNamespace("space").get(0).getId());
+	}
+
+	@Test
+	public void testGetIdentitiesWithStateVersion_nullResponseEvent_returnsError() {
+		// setup
+		final ArgumentCaptor<AdobeCallback> adobeCallbackCaptor = ArgumentCaptor.forClass(AdobeCallback.class);
+		final List<AdobeError> errors = new ArrayList<>();
+		final List<IdentityReadResult> results = new ArrayList<>();
+
+		// test
+		Identity.getIdentitiesWithStateVersion(new AdobeCallbackWithError<IdentityReadResult>() {
+			@Override
+			public void fail(AdobeError adobeError) {
+				errors.add(adobeError);
+			}
+
+			@Override
+			public void call(IdentityReadResult result) {
+				results.add(result);
+			}
+		});
+
+		PowerMockito.verifyStatic(MobileCore.class, Mockito.times(1));
+		MobileCore.dispatchEventWithResponseCallback(any(Event.class), adobeCallbackCaptor.capture(),
+				any(ExtensionErrorCallback.class));
+		adobeCallbackCaptor.getValue().call(null);
+
+		// verify
+		assertTrue(results.isEmpty());
+		assertEquals(1, errors.size());
+		assertEquals(AdobeError.UNEXPECTED_ERROR, errors.get(0));
+	}
+
+	// ========================================================================================
+	// getIdentityRetentionEvictionCount
+	// ========================================================================================
+
+	@Test
+	public void testGetIdentityRetentionEvictionCount() {
+		try {
+			// setup
+			IdentityRetention.reset();
+			assertEquals(0, Identity.getIdentityRetentionEvictionCount());
+
+			// test
+			IdentityRetention.recordEvictions(2);
+			IdentityRetention.recordEvictions(1);
+
+			// verify
+			assertEquals(3, Identity.getIdentityRetentionEvictionCount());
+		} finally {
+			IdentityRetention.reset();
+		}
+	}
+
+	// ========================================================================================
+	// getPayloadLimitRejectionCount
+	// ========================================================================================
+
+	@Test
+	public void testGetPayloadLimitRejectionCount_countsRejectionsForAllLimits() {
+		try {
+			// setup
+			IdentityPayloadLimits.reset();
+			IdentityPayloadLimits.setLimits(1, 1, 4, 100);
+			assertEquals(0, Identity.getPayloadLimitRejectionCount());
+
+			// test
+			IdentityPayloadLimits.isWithinLimits(identityMapData(IdentityTestUtil.createXDMIdentityMap(
+					new IdentityTestUtil.TestItem("space", "moon"),
+					new IdentityTestUtil.TestItem("location", "ca"))));
+			IdentityPayloadLimits.isWithinLimits(identityMapData(IdentityTestUtil.createXDMIdentityMap(
+					new IdentityTestUtil.TestItem("space", "jupiter"))));
+			IdentityPayloadLimits.isWithinLimits(identityMapData(IdentityTestUtil.createXDMIdentityMap(
+					new IdentityTestUtil.TestItem("space", "mars"))));
+
+			// verify
+			assertEquals(2, Identity.getPayloadLimitRejectionCount());
+		} finally {
+			IdentityPayloadLimits.reset();
+		}
+	}
+
+	// ========================================================================================
+	// Private method
+	// ========================================================================================
+	private static Map<String, Object> identityMapData(final Map<String, Object> xdmMap) {
+		return (Map<String, Object>) xdmMap.get(IdentityConstants.XDMKeys.IDENTITY_MAP);
+	}
 
-	// ========================================================================================
-	// Private method
-	// ========================================================================================
 	private Event buildIdentityResponseEvent(final Map<String, Object> eventData) {
 		return new Event.Builder(IdentityConstants.EventNames.IDENTITY_REQUEST_IDENTITY_ECID,
 								 IdentityConstants.EventType.EDGE_IDENTITY,
@@ -0,0 +1,325 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityUpdateBatcherTests {
+
+	private IdentityUpdateBatcher batcher;
+	private List<IdentityMap> flushedUpdates;
+	private List<IdentityMap> flushedRemovals;
+
+	@Before
+	public void setup() {
+		IdentityUpdateCache.getInstance().clear();
+		flushedUpdates = new ArrayList<>();
+		flushedRemovals = new ArrayList<>();
+		batcher = new IdentityUpdateBatcher(new IdentityUpdateBatcher.FlushHandler() {
+			@Override
+			public void flush(IdentityMap updatedIdentities, IdentityMap removedIdentities) {
+				synchronized (flushedUpdates) {
+					flushedUpdates.add(updatedIdentities);
+					flushedRemovals.add(removedIdentities);
+					flushedUpdates.notifyAll();
+				}
+			}
+		});
+	}
+
+	@After
+	public void teardown() {
+		batcher.reset();
+	}
+
+	@Test
+	public void testUpdate_whenDisabled_returnsFalse() {
+		assertFalse(batcher.isEnabled());
+		assertFalse(batcher.update(buildMap("id1", "space1")));
+		assertFalse(batcher.remove(new IdentityItem("id1"), "space1"));
+
+		batcher.flush();
+		assertTrue(flushedUpdates.isEmpty());
+	}
+
+	@Test
+	public void testFlush_accumulatesUpdatesAndRemovals() {
+		// setup
+		batcher.enable(60000, 100);
+
+		// test
+		assertTrue(batcher.update(buildMap("id1", "space1")));
+		assertTrue(batcher.update(buildMap("id2", "space2")));
+		assertTrue(batcher.remove(new IdentityItem("id3"), "space1"));
+		batcher.flush();
+
+		// verify
+		assertEquals(1, flushedUpdates.size());
+		IdentityMap expectedUpdates = buildMap("id1", "space1");
+		expectedUpdates.addItem(new IdentityItem("id2"), "space2");
+		assertEquals(expectedUpdates.asXDMMap(), flushedUpdates.get(0).asXDMMap());
+		assertEquals(buildMap("id3", "space1").asXDMMap(), flushedRemovals.get(0).asXDMMap());
+	}
+
+	@Test
+	public void testFlush_lastOperationWins() {
+		// setup
+		batcher.enable(60000, 100);
+
+		// test
+		batcher.update(buildMap("id1", "space1"));
+		batcher.remove(new IdentityItem("ID1"), "space1");
+		batcher.remove(new IdentityItem("id2"), "space1");
+		batcher.update(buildMap("id2", "space1"));
+		batcher.update(new IdentityMap() {
+			{
+				addItem(new IdentityItem("id2", AuthenticatedState.AUTHENTICATED, true), "space1");
+			}
+		});
+		batcher.flush();
+
+		// verify
+		IdentityMap expectedUpdates = new IdentityMap();
+		expectedUpdates.addItem(new IdentityItem("id2", AuthenticatedState.AUTHENTICATED, true), "space1");
+		assertEquals(expectedUpdates.asXDMMap(), flushedUpdates.get(0).asXDMMap());
+		assertEquals(buildMap("ID1", "space1").asXDMMap(), flushedRemovals.get(0).asXDMMap());
+	}
+
+	@Test
+	public void testRemove_identityMap() {
+		// setup
+		batcher.enable(60000, 100);
+		batcher.update(buildMap("id1", "space1"));
+
+		// test
+		IdentityMap removedMap = buildMap("id1", "space1");
+		removedMap.addItem(new IdentityItem("id2"), "space2");
+		assertTrue(batcher.remove(removedMap));
+		batcher.flush();
+
+		// verify
+		assertTrue(flushedUpdates.get(0).isEmpty());
+		assertEquals(removedMap.asXDMMap(), flushedRemovals.get(0).asXDMMap());
+	}
+
+	@Test
+	public void testFlush_noPendingIdentifiers_doesNotFlush() {
+		// setup
+		batcher.enable(60000, 100);
+
+		// test
+		batcher.flush();
+
+		// verify
+		assertTrue(flushedUpdates.isEmpty());
+	}
+
+	@Test
+	public void testUpdate_maxItemsReached_flushes() {
+		// setup
+		batcher.enable(60000, 3);
+
+		// test
+		batcher.update(buildMap("id1", "space1"));
+		batcher.update(buildMap("id1", "space1"));
+		batcher.remove(new IdentityItem("id2"), "space1");
+		assertTrue(flushedUpdates.isEmpty());
+		batcher.update(buildMap("id3", "space1"));
+
+		// verify
+		assertEquals(1, flushedUpdates.size());
+		assertEquals(2, flushedUpdates.get(0).getIdentityItemsForNamespace("space1").size());
+		assertEquals(1, flushedRemovals.get(0).getIdentityItemsForNamespace("space1").size());
+	}
+
+	@Test
+	public void testUpdate_maxItemsReached_countsNetPendingIdentifiers() {
+		// setup
+		batcher.enable(60000, 3);
+
+		// test
+		batcher.update(buildMap("id1", "space1"));
+		batcher.remove(new IdentityItem("id1"), "space1");
+		batcher.update(buildMap("id1", "space1"));
+		batcher.remove(buildMap("id2", "space1"));
+		batcher.update(buildMap("id2", "space1"));
+		batcher.flush();
+		batcher.update(buildMap("id3", "space1"));
+		batcher.update(buildMap("id4", "space1"));
+		assertEquals(1, flushedUpdates.size());
+		batcher.remove(new IdentityItem("id5"), "space1");
+
+		// verify
+		assertEquals(2, flushedUpdates.size());
+		assertEquals(2, flushedUpdates.get(0).getIdentityItemsForNamespace("space1").size());
+		assertEquals(2, flushedUpdates.get(1).getIdentityItemsForNamespace("space1").size());
+		assertEquals(1, flushedRemovals.get(1).getIdentityItemsForNamespace("space1").size());
+	}
+
+	@Test
+	public void testUpdate_windowElapsed_flushes() throws Exception {
+		// setup
+		batcher.enable(50, 100);
+
+		// test
+		batcher.update(buildMap("id1", "space1"));
+		batcher.update(buildMap("id2", "space1"));
+
+		// verify
+		synchronized (flushedUpdates) {
+			final long deadline = System.currentTimeMillis() + 5000;
+
+			while (flushedUpdates.isEmpty() && System.currentTimeMillis() < deadline) {
+				flushedUpdates.wait(100);
+			}
+		}
+
+		assertEquals(1, flushedUpdates.size());
+		assertEquals(2, flushedUpdates.get(0).getIdentityItemsForNamespace("space1").size());
+	}
+
+	@Test
+	public void testUpdate_unchangedIdentitiesWithNoPendingBatch_areSkipped() {
+		// setup
+		IdentityUpdateCache.getInstance().confirm(buildMap("id1", "space1"));
+		batcher.enable(60000, 100);
+
+		// test
+		assertTrue(batcher.update(buildMap("id1", "space1")));
+		batcher.flush();
+
+		// verify
+		assertTrue(flushedUpdates.isEmpty());
+	}
+
+	@Test
+	public void testUpdate_unchangedIdentitiesWithPendingRemoval_areBatched() {
+		// setup
+		IdentityUpdateCache.getInstance().confirm(buildMap("id1", "space1"));
+		batcher.enable(60000, 100);
+
+		// test
+		batcher.remove(new IdentityItem("id1"), "space1");
+		batcher.update(buildMap("id1", "space1"));
+		batcher.flush();
+
+		// verify
+		assertEquals(buildMap("id1", "space1").asXDMMap(), flushedUpdates.get(0).asXDMMap());
+		assertTrue(flushedRemovals.get(0).isEmpty());
+	}
+
+	@Test
+	public void testDisable_flushesPendingIdentifiers() {
+		// setup
+		batcher.enable(60000, 100);
+		batcher.update(buildMap("id1", "space1"));
+
+		// test
+		batcher.disable();
+
+		// verify
+		assertEquals(1, flushedUpdates.size());
+		assertFalse(batcher.isEnabled());
+		assertFalse(batcher.update(buildMap("id2", "space1")));
+	}
+
+	@Test
+	public void testUpdate_windowElapsed_flushesOnFlushExecutor() throws Exception {
+		// setup
+		final List<Runnable> submitted = new ArrayList<>();
+		final CountDownLatch submittedLatch = new CountDownLatch(1);
+		batcher = new IdentityUpdateBatcher(new IdentityUpdateBatcher.FlushHandler() {
+			@Override
+			public void flush(IdentityMap updatedIdentities, IdentityMap removedIdentities) {
+				flushedUpdates.add(updatedIdentities);
+			}
+		}, new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				submitted.add(runnable);
+				submittedLatch.countDown();
+			}
+		});
+		batcher.enable(50, 100);
+
+		// test
+		batcher.update(buildMap("id1", "space1"));
+
+		// verify the scheduler thread only submits the flush
+		assertTrue(submittedLatch.await(5, TimeUnit.SECONDS));
+		assertTrue(flushedUpdates.isEmpty());
+
+		submitted.get(0).run();
+		assertEquals(1, flushedUpdates.size());
+	}
+
+	@Test
+	public void testFlush_handlerRunsWithoutHoldingBatcherLock() throws Exception {
+		// setup
+		final CountDownLatch updatedDuringFlush = new CountDownLatch(1);
+		batcher = new IdentityUpdateBatcher(new IdentityUpdateBatcher.FlushHandler() {
+			@Override
+			public void flush(IdentityMap updatedIdentities, IdentityMap removedIdentities) {
+				flushedUpdates.add(updatedIdentities);
+
+				if (flushedUpdates.size() > 1) {
+					return;
+				}
+
+				final Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						batcher.update(buildMap("id2", "space1"));
+						updatedDuringFlush.countDown();
+					}
+				});
+				thread.start();
+
+				try {
+					updatedDuringFlush.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		batcher.enable(60000, 100);
+		batcher.update(buildMap("id1", "space1"));
+
+		// test
+		batcher.flush();
+
+		// verify the update made while the first batch was handled is part of the next batch
+		assertEquals(0, updatedDuringFlush.getCount());
+		batcher.flush();
+		assertEquals(2, flushedUpdates.size());
+		assertEquals(buildMap("id1", "space1").asXDMMap(), flushedUpdates.get(0).asXDMMap());
+		assertEquals(buildMap("id2", "space1").asXDMMap(), flushedUpdates.get(1).asXDMMap());
+	}
+
+	private IdentityMap buildMap(final String id, final String namespace) {
+		final IdentityMap map = new IdentityMap();
+		map.addItem(new IdentityItem(id), namespace);
+		return map;
+	}
+}
@@ -0,0 +1,275 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityUpdateCacheTests {
+
+	private IdentityUpdateCache cache;
+
+	@Before
+	public void setup() {
+		cache = new IdentityUpdateCache();
+	}
+
+	@Test
+	public void testIsUnchanged_nullOrEmptyMap() {
+		assertFalse(cache.isUnchanged(null));
+		assertFalse(cache.isUnchanged(new IdentityMap()));
+	}
+
+	@Test
+	public void testIsUnchanged_afterConfirm() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1", AuthenticatedState.AUTHENTICATED, true), "space1"));
+		cache.confirm(buildMap(new IdentityItem("id2"), "space2"));
+
+		// verify
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id1", AuthenticatedState.AUTHENTICATED, true), "space1")));
+		IdentityMap map = buildMap(new IdentityItem("id1", AuthenticatedState.AUTHENTICATED, true), "space1");
+		map.addItem(new IdentityItem("id2"), "space2");
+		assertTrue(cache.isUnchanged(map));
+	}
+
+	@Test
+	public void testConfirm_viewSkipsReservedNamespaces() {
+		// setup
+		IdentityMap map = buildMap(new IdentityItem("id1"), "space1");
+		map.addItem(new IdentityItem("ecid"), "ECID");
+
+		// test
+		cache.confirm(IdentityMapView.fromXDMMap(map.asXDMMap()));
+
+		// verify
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("ecid"), "ECID")));
+	}
+
+	@Test
+	public void testIsUnchanged_notConfirmed() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space1")));
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space2")));
+
+		IdentityMap map = buildMap(new IdentityItem("id1"), "space1");
+		map.addItem(new IdentityItem("id2"), "space1");
+		assertFalse(cache.isUnchanged(map));
+	}
+
+	@Test
+	public void testIsUnchanged_itemPropertiesChanged() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1", AuthenticatedState.AUTHENTICATED, true), "space1"));
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("ID1", AuthenticatedState.AUTHENTICATED, true), "space1")));
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1", AuthenticatedState.LOGGED_OUT, true), "space1")));
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1", AuthenticatedState.AUTHENTICATED, false), "space1")));
+	}
+
+	@Test
+	public void testConfirm_replacesItemWithSameIdIgnoringCase() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+
+		// test
+		cache.confirm(buildMap(new IdentityItem("ID1"), "space1"));
+
+		// verify
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("ID1"), "space1")));
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+	}
+
+	@Test
+	public void testInvalidate_removesNamespace() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+		cache.confirm(buildMap(new IdentityItem("id2"), "space1"));
+		cache.confirm(buildMap(new IdentityItem("id3"), "space2"));
+
+		// test
+		cache.invalidate(Collections.singletonList("space1"));
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space1")));
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id3"), "space2")));
+	}
+
+	@Test
+	public void testInvalidate_matchesNamespaceIgnoringCase() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+
+		// test
+		cache.invalidate(Collections.singletonList("SPACE1"));
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+	}
+
+	@Test
+	public void testInvalidationRequested_disablesUntilCompleted() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+		cache.confirm(buildMap(new IdentityItem("id2"), "space2"));
+
+		// test
+		cache.invalidationRequested("remove", Collections.singletonList("space1"));
+		// an update dispatched before the removal is confirmed while the removal is pending
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space2")));
+
+		// test
+		cache.invalidationCompleted("remove", Collections.singletonList("space1"));
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space2")));
+	}
+
+	@Test
+	public void testInvalidationRequested_reset_clearsAll() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+
+		// test
+		cache.invalidationRequested("reset", null);
+		cache.confirm(buildMap(new IdentityItem("id2"), "space2"));
+		cache.invalidationCompleted("reset", null);
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space2")));
+
+		// test
+		cache.confirm(buildMap(new IdentityItem("id2"), "space2"));
+
+		// verify
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space2")));
+	}
+
+	@Test
+	public void testInvalidationCompleted_withoutRequest_doesNotDisableCache() {
+		// test
+		cache.invalidationCompleted("foreign", Collections.singletonList("space1"));
+		cache.confirm(buildMap(new IdentityItem("id2"), "space2"));
+
+		// verify
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space2")));
+	}
+
+	@Test
+	public void testInvalidationCompleted_foreignRemoval_keepsRequestedInvalidationPending() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id2"), "space2"));
+		cache.invalidationRequested("remove", Collections.singletonList("space1"));
+
+		// test, a removal dispatched by another extension is processed before the requested removal
+		cache.invalidationCompleted("foreign", Collections.singletonList("space3"));
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space2")));
+
+		// test
+		cache.invalidationCompleted("remove", Collections.singletonList("space1"));
+
+		// verify
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space2")));
+	}
+
+	@Test
+	public void testClear() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+		cache.invalidationRequested("remove", Collections.singletonList("space2"));
+
+		// test
+		cache.clear();
+		cache.confirm(buildMap(new IdentityItem("id2"), "space2"));
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space2")));
+	}
+
+	@Test
+	public void testConfirm_withChanges_forgetsEvictedIdentifiers() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+		IdentityMap map = buildMap(new IdentityItem("id2"), "space1");
+		map.addItem(new IdentityItem("id3"), "space1");
+		List<IdentityChange> changes = new ArrayList<>();
+		changes.add(new IdentityChange(IdentityChange.Type.ADDED, "space1", new IdentityItem("id2"), null));
+		changes.add(new IdentityChange(IdentityChange.Type.ADDED, "space1", new IdentityItem("id3"), null));
+		changes.add(new IdentityChange(IdentityChange.Type.EVICTED, "space1", new IdentityItem("ID1"), null));
+		changes.add(new IdentityChange(IdentityChange.Type.EVICTED, "space1", new IdentityItem("id2"), null));
+
+		// test
+		cache.confirm(IdentityMapView.fromXDMMap(map.asXDMMap()), changes);
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id2"), "space1")));
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id3"), "space1")));
+	}
+
+	@Test
+	public void testConfirm_withChanges_keepsIdentifiersAddedAfterEviction() {
+		// setup
+		IdentityMap map = buildMap(new IdentityItem("id1"), "space1");
+		List<IdentityChange> changes = new ArrayList<>();
+		changes.add(new IdentityChange(IdentityChange.Type.EVICTED, "space1", new IdentityItem("id1"), null));
+		changes.add(new IdentityChange(IdentityChange.Type.ADDED, "space1", new IdentityItem("id1"), null));
+
+		// test
+		cache.confirm(IdentityMapView.fromXDMMap(map.asXDMMap()), changes);
+
+		// verify
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+	}
+
+	@Test
+	public void testIsUnchanged_updatePending_untilUpdateCompleted() {
+		// setup
+		cache.confirm(buildMap(new IdentityItem("id1"), "space1"));
+
+		// test
+		cache.updateRequested("update");
+
+		// verify
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+		cache.updateCompleted("other");
+		assertFalse(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+		cache.updateCompleted("update");
+		assertTrue(cache.isUnchanged(buildMap(new IdentityItem("id1"), "space1")));
+	}
+
+	private IdentityMap buildMap(final IdentityItem item, final String namespace) {
+		final IdentityMap map = new IdentityMap();
+		map.addItem(item, namespace);
+		return map;
+	}
+}
@@ -19,10 +19,6 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
@@ -35,13 +31,10 @@ public class ListenerEdgeIdentityRemoveIdentityTests {
 	private IdentityExtension mockIdentityExtension;
 
 	private ListenerEdgeIdentityRemoveIdentity listener;
-	private ExecutorService testExecutor;
 
 	@Before
 	public void setup() {
-		testExecutor = Executors.newSingleThreadExecutor();
 		mockIdentityExtension = Mockito.mock(IdentityExtension.class);
-		doReturn(testExecutor).when(mockIdentityExtension).getExecutor();
 		MobileCore.start(null);
 		listener = spy(new ListenerEdgeIdentityRemoveIdentity(null, IdentityConstants.EventType.EDGE_IDENTITY,
 					   IdentityConstants.EventSource.REMOVE_IDENTITY));
@@ -58,8 +51,7 @@ public class ListenerEdgeIdentityRemoveIdentityTests {
 		listener.hear(event);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(1)).processAddEvent(event);
+		verify(mockIdentityExtension, times(1)).queueEvent(event);
 	}
 
 	@Test
@@ -73,8 +65,7 @@ public class ListenerEdgeIdentityRemoveIdentityTests {
 		listener.hear(event);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(0)).processAddEvent(any(Event.class));
+		verify(mockIdentityExtension, times(0)).queueEvent(any(Event.class));
 	}
 
 	@Test
@@ -87,7 +78,6 @@ public class ListenerEdgeIdentityRemoveIdentityTests {
 		listener.hear(null);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(0)).processAddEvent(any(Event.class));
+		verify(mockIdentityExtension, times(0)).queueEvent(any(Event.class));
 	}
 }
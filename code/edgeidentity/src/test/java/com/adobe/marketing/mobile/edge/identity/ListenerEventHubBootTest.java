@@ -19,10 +19,6 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
@@ -35,13 +31,10 @@ public class ListenerEventHubBootTest {
 	private IdentityExtension mockIdentityExtension;
 
 	private ListenerEventHubBoot listener;
-	private ExecutorService testExecutor;
 
 	@Before
 	public void setup() {
-		testExecutor = Executors.newSingleThreadExecutor();
 		mockIdentityExtension = Mockito.mock(IdentityExtension.class);
-		doReturn(testExecutor).when(mockIdentityExtension).getExecutor();
 		MobileCore.start(null);
 		listener = spy(new ListenerEventHubBoot(null, IdentityConstants.EventType.HUB, IdentityConstants.EventSource.BOOTED));
 	}
@@ -57,8 +50,7 @@ public class ListenerEventHubBootTest {
 		listener.hear(event);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(1)).bootupIfReady();
+		verify(mockIdentityExtension, times(1)).queueEvent(event);
 	}
 
 	@Test
@@ -72,8 +64,7 @@ public class ListenerEventHubBootTest {
 		listener.hear(event);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(0)).bootupIfReady();
+		verify(mockIdentityExtension, times(0)).queueEvent(event);
 	}
 
 }
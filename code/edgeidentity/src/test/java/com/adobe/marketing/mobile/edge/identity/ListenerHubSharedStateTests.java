@@ -19,9 +19,7 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Collections;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
@@ -34,13 +32,10 @@ public class ListenerHubSharedStateTests {
 	private IdentityExtension mockIdentityExtension;
 
 	private ListenerHubSharedState listener;
-	private ExecutorService testExecutor;
 
 	@Before
 	public void setup() {
-		testExecutor = Executors.newSingleThreadExecutor();
 		mockIdentityExtension = Mockito.mock(IdentityExtension.class);
-		doReturn(testExecutor).when(mockIdentityExtension).getExecutor();
 		MobileCore.start(null);
 		listener = spy(new ListenerHubSharedState(null, IdentityConstants.EventType.HUB,
 					   IdentityConstants.EventSource.SHARED_STATE));
@@ -49,31 +44,55 @@ public class ListenerHubSharedStateTests {
 	@Test
 	public void testHear() throws Exception {
 		// setup
-		Event event = new Event.Builder("Shared State Change", IdentityConstants.EventType.HUB,
-										IdentityConstants.EventSource.SHARED_STATE).build();
+		Event event = buildSharedStateEvent(IdentityConstants.SharedState.Hub.NAME);
 		doReturn(mockIdentityExtension).when(listener).getIdentityExtension();
 
 		// test
 		listener.hear(event);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(1)).handleHubSharedState(event);
+		verify(mockIdentityExtension, times(1)).queueEvent(event);
+	}
+
+	@Test
+	public void testHear_IdentityDirectStateOwner() throws Exception {
+		// setup
+		Event event = buildSharedStateEvent(IdentityConstants.SharedState.IdentityDirect.NAME);
+		doReturn(mockIdentityExtension).when(listener).getIdentityExtension();
+
+		// test
+		listener.hear(event);
+
+		// verify
+		verify(mockIdentityExtension, times(1)).queueIdentityDirectStateEvent(event);
+		verify(mockIdentityExtension, times(0)).queueEvent(any(Event.class));
+	}
+
+	@Test
+	public void testHear_OtherStateOwnerIgnored() throws Exception {
+		// setup
+		Event event = buildSharedStateEvent("com.adobe.module.configuration");
+		doReturn(mockIdentityExtension).when(listener).getIdentityExtension();
+
+		// test
+		listener.hear(event);
+
+		// verify
+		verify(mockIdentityExtension, times(0)).queueEvent(any(Event.class));
+		verify(mockIdentityExtension, times(0)).queueIdentityDirectStateEvent(any(Event.class));
 	}
 
 	@Test
 	public void testHear_WhenParentExtensionNull() throws Exception {
 		// setup
-		Event event = new Event.Builder("Shared State Change", IdentityConstants.EventType.HUB,
-										IdentityConstants.EventSource.SHARED_STATE).build();
+		Event event = buildSharedStateEvent(IdentityConstants.SharedState.Hub.NAME);
 		doReturn(null).when(listener).getIdentityExtension();
 
 		// test
 		listener.hear(event);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(0)).handleHubSharedState(any(Event.class));
+		verify(mockIdentityExtension, times(0)).queueEvent(any(Event.class));
 	}
 
 	@Test
@@ -86,7 +105,13 @@ public class ListenerHubSharedStateTests {
 		listener.hear(null);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(0)).handleHubSharedState(any(Event.class));
+		verify(mockIdentityExtension, times(0)).queueEvent(any(Event.class));
+	}
+
+	private static Event buildSharedStateEvent(final String stateOwner) {
+		return new Event.Builder("Shared State Change", IdentityConstants.EventType.HUB,
+								 IdentityConstants.EventSource.SHARED_STATE)
+			   .setEventData(Collections.<String, Object>singletonMap(IdentityConstants.SharedState.STATE_OWNER, stateOwner))
+			   .build();
 	}
 }
@@ -19,10 +19,6 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
@@ -34,13 +30,10 @@ public class ListenerIdentityRequestResetTests {
 	private IdentityExtension mockIdentityExtension;
 
 	private ListenerIdentityRequestReset listener;
-	private ExecutorService testExecutor;
 
 	@Before
 	public void setup() {
-		testExecutor = Executors.newSingleThreadExecutor();
 		mockIdentityExtension = Mockito.mock(IdentityExtension.class);
-		doReturn(testExecutor).when(mockIdentityExtension).getExecutor();
 		MobileCore.start(null);
 		listener = spy(new ListenerIdentityRequestReset(null, IdentityConstants.EventType.EDGE_IDENTITY,
 					   IdentityConstants.EventSource.REQUEST_RESET));
@@ -57,8 +50,7 @@ public class ListenerIdentityRequestResetTests {
 		listener.hear(event);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(1)).processAddEvent(event);
+		verify(mockIdentityExtension, times(1)).queueEvent(event);
 	}
 
 	@Test
@@ -72,8 +64,7 @@ public class ListenerIdentityRequestResetTests {
 		listener.hear(event);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(0)).processAddEvent(any(Event.class));
+		verify(mockIdentityExtension, times(0)).queueEvent(any(Event.class));
 	}
 
 	@Test
@@ -86,7 +77,6 @@ public class ListenerIdentityRequestResetTests {
 		listener.hear(null);
 
 		// verify
-		testExecutor.awaitTermination(100, TimeUnit.MILLISECONDS);
-		verify(mockIdentityExtension, times(0)).processAddEvent(any(Event.class));
+		verify(mockIdentityExtension, times(0)).queueEvent(any(Event.class));
 	}
 }
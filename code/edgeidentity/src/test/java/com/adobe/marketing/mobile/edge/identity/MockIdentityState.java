@@ -39,6 +39,16 @@ class MockIdentityState extends IdentityState {
 		removeCustomerIdentifiersParams.add(map);
 	}
 
+	@Override
+	void updateCustomerIdentifiers(final IdentityMapView view) {
+		updateCustomerIdentifiers(view.toIdentityMap());
+	}
+
+	@Override
+	void removeCustomerIdentifiers(final IdentityMapView view) {
+		removeCustomerIdentifiers(view.toIdentityMap());
+	}
+
 	boolean hasBooted = false;
 	@Override
 	boolean hasBooted() {
@@ -0,0 +1,284 @@
+/*
+  Copyright 2021 Adobe. All rights reserved.
+  This file is licensed to you under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License. You may obtain a copy
+  of the License at http://www.apache.org/licenses/LICENSE-2.0
+  Unless required by applicable law or agreed to in writing, software distributed under
+  the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+  OF ANY KIND, either express or implied. See the License for the specific language
+  governing permissions and limitations under the License.
+*/
+
+package com.adobe.marketing.mobile.edge.identity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SerialExecutorTests {
+
+	private ExecutorService pool;
+
+	@Before
+	public void setup() {
+		pool = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void teardown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testExecute_runsTasksInOrderOneAtATime() throws Exception {
+		// setup
+		final SerialExecutor executor = new SerialExecutor(pool, null);
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(200);
+
+		// test
+		for (int i = 0; i < 200; i++) {
+			final int index = i;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+					order.add(index);
+					running.decrementAndGet();
+					latch.countDown();
+				}
+			});
+		}
+
+		// verify
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, maxRunning.get());
+
+		for (int i = 0; i < 200; i++) {
+			assertEquals(i, (int) order.get(i));
+		}
+	}
+
+	@Test
+	public void testExecute_throwingTaskDoesNotStallQueue() throws Exception {
+		// setup
+		final SerialExecutor executor = new SerialExecutor(pool, null);
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		// test
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				throw new IllegalStateException("test");
+			}
+		});
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		});
+
+		// verify
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testExecute_directDelegate_drainsQueuedTasksWithoutRecursion() {
+		// setup
+		final SerialExecutor executor = new SerialExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				runnable.run();
+			}
+		}, null);
+		final AtomicInteger ran = new AtomicInteger();
+
+		// test, tasks submitted by the running task are queued and drained once it returns
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 100000; i++) {
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							ran.incrementAndGet();
+						}
+					});
+				}
+			}
+		});
+
+		// verify
+		assertEquals(100000, ran.get());
+	}
+
+	@Test
+	public void testShutdown_discardsPendingAndNewTasks() throws Exception {
+		// setup
+		final SerialExecutor executor = new SerialExecutor(pool, pool);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger ran = new AtomicInteger();
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ran.incrementAndGet();
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		// test
+		executor.shutdown();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ran.incrementAndGet();
+			}
+		});
+		release.countDown();
+
+		// verify
+		assertTrue(executor.isShutdown());
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(0, ran.get());
+	}
+
+	@Test
+	public void testShutdown_withLastTask_runsLastTaskInsteadOfPendingTasks() {
+		// setup
+		final List<Runnable> accepted = new ArrayList<>();
+		final List<String> ran = new ArrayList<>();
+		final SerialExecutor executor = new SerialExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				accepted.add(runnable);
+			}
+		}, null);
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ran.add("pending");
+			}
+		});
+
+		// test
+		executor.shutdown(new Runnable() {
+			@Override
+			public void run() {
+				ran.add("last");
+			}
+		});
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ran.add("after");
+			}
+		});
+
+		// verify
+		assertEquals(1, accepted.size());
+		accepted.get(0).run();
+		assertEquals(Collections.singletonList("last"), ran);
+		assertTrue(executor.isShutdown());
+	}
+
+	@Test
+	public void testExecute_rejectedByDelegate_throwsAndKeepsEarlierTasks() {
+		// setup
+		final List<Runnable> accepted = new ArrayList<>();
+		final List<String> ran = new ArrayList<>();
+		final boolean[] reject = {false};
+		final SerialExecutor executor = new SerialExecutor(new Executor() {
+			@Override
+			public void execute(final Runnable runnable) {
+				if (reject[0]) {
+					throw new RejectedExecutionException();
+				}
+
+				accepted.add(runnable);
+			}
+		}, null);
+
+		// a task throws, and the delegate rejects draining the task queued behind it
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				reject[0] = true;
+				throw new IllegalStateException("test");
+			}
+		});
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ran.add("queued");
+			}
+		});
+
+		try {
+			accepted.get(0).run();
+		} catch (IllegalStateException expected) {
+			// the exception of the task is passed on to the delegate
+		}
+
+		// test
+		boolean rejected = false;
+
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					ran.add("rejected");
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected = true;
+		}
+
+		reject[0] = false;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ran.add("accepted");
+			}
+		});
+
+		// verify
+		assertTrue(rejected);
+		assertEquals(2, accepted.size());
+		accepted.get(1).run();
+		assertEquals(Arrays.asList("queued", "accepted"), ran);
+		assertFalse(executor.isShutdown());
+	}
+}
@@ -11,6 +11,7 @@
 
 package com.adobe.marketing.mobile.edge.identity;
 
+import org.json.JSONObject;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -159,4 +160,32 @@ public class UtilsTests {
 		assertEquals(2, ((Map<String, Object>)nestedDeepCopy.get(0).get("nestedMap")).size());
 	}
 
+	@Test
+	public void testUtils_toMapSkipsValuesNestedTooDeep() throws Exception {
+		// setup, the innermost object is nested MAX_DEPTH levels deep
+		JSONObject json = new JSONObject().put("leaf", "value");
+
+		for (int i = 0; i < IdentityPayloadLimits.MAX_DEPTH; i++) {
+			json = new JSONObject().put("nested", json).put("key", "value");
+		}
+
+		// test
+		final Map<String, Object> withinLimit = Utils.toMap(json);
+		final Map<String, Object> tooDeep = Utils.toMap(new JSONObject().put("nested", json));
+
+		// verify
+		assertEquals("value", innermost(withinLimit).get("leaf"));
+		assertNull(innermost(tooDeep).get("leaf"));
+		assertEquals("value", innermost(tooDeep).get("key"));
+	}
+
+	private static Map<String, Object> innermost(final Map<String, Object> map) {
+		Map<String, Object> current = map;
+
+		while (current.get("nested") instanceof Map) {
+			current = (Map<String, Object>) current.get("nested");
+		}
+
+		return current;
+	}
 }